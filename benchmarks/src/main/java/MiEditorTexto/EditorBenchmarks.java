@@ -0,0 +1,431 @@
+package MiEditorTexto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.*;
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// ======================================================================================
+// Benchmarks del editor
+// ======================================================================================
+
+// Mide los caminos calientes del editor sobre documentos sintéticos (de 1 KB a 500 MB,
+// parámetro "size"). Cada medida prepara su estado fuera del cronómetro (los @State de
+// abajo) y JMH se encarga del proceso aparte, el calentamiento y las repeticiones; los
+// resultados van a un CSV (ver benchmarks/build.gradle), para comparar versiones.
+// Los 500 MB necesitan unos 6 GB de montón, que es lo que se le da a cada fork.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class EditorBenchmarks {
+
+    private static final String[] WORDS = (
+            "el la de que y en un una los las se por con para como mas pero sus texto editor documento " +
+            "archivo linea palabra parrafo capitulo pagina tiempo dia vida mundo casa ciudad camino agua " +
+            "noche luz mano voz forma manera parte lugar caso punto grupo problema historia momento trabajo " +
+            "escribir leer guardar abrir buscar cambiar pensar decir hacer poder querer saber llegar pasar " +
+            "nuevo grande largo rapido lento claro oscuro rojo azul verde primero ultimo siguiente anterior " +
+            "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor incididunt").split(" ");
+
+    // Lo que se busca y reemplaza (sale una vez cada pocos cientos de palabras)
+    private static final String FIND = "ipsum";
+
+    // --- Estado ---
+
+    // Fichero de texto de "size" bytes, generado una vez por fork
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"1K", "64K", "1M", "16M"})
+        public String size;
+
+        Path dir;
+        Path file;
+        long bytes;
+
+        @Setup(Level.Trial)
+        public void create() throws IOException {
+            bytes = parseSize(size);
+            dir = Files.createTempDirectory("editor-bench");
+            file = dir.resolve("texto.txt");
+            writeText(file, bytes);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                    Files.deleteIfExists(p);
+            }
+        }
+
+        // El documento tal como lo abre el editor
+        EditorDocument load() throws Exception {
+            return new DocumentLoader(file.toFile(), new EditorTextoGUI.ProgressLabel()).doInBackground();
+        }
+
+        // El mismo documento con una racha en negrita cada 4 KB
+        EditorDocument formatted() throws Exception {
+            EditorDocument doc = load();
+            MutableAttributeSet bold = new SimpleAttributeSet();
+            StyleConstants.setBold(bold, true);
+            for (int offset = 0; offset + 64 < doc.getLength(); offset += 4096)
+                doc.setCharacterAttributes(offset, 64, bold, false);
+            return doc;
+        }
+    }
+
+    // El documento abierto, para lo que lo deja como estaba (o no importa que cambie)
+    @State(Scope.Benchmark)
+    public static class Loaded {
+        EditorDocument doc;
+
+        @Setup(Level.Trial)
+        public void load(Input input) throws Exception {
+            doc = input.load();
+        }
+    }
+
+    // Un documento nuevo en cada llamada, con sus coincidencias ya buscadas y preparadas
+    // (lo que hace el SwingWorker): se mide solo lo que queda para el EDT
+    @State(Scope.Benchmark)
+    public static class Replace {
+        EditorDocument doc;
+        FindReplaceEngine.Matches matches;
+
+        @Setup(Level.Invocation)
+        public void find(Input input) throws Exception {
+            doc = input.load();
+            matches = FindReplaceEngine.findAll(doc, FIND, "IPSUM", false, p -> {
+            }, () -> false);
+            FindReplaceEngine.prepare(doc, matches);
+        }
+    }
+
+    // El documento con formato y su .etx
+    @State(Scope.Benchmark)
+    public static class Rich {
+        EditorDocument doc;
+        File etx;
+
+        @Setup(Level.Trial)
+        public void save(Input input) throws Exception {
+            doc = input.formatted();
+            etx = input.dir.resolve("formato.etx").toFile();
+            new DocumentSaver(doc, etx, new EditorTextoGUI.ProgressLabel()).doInBackground();
+        }
+    }
+
+    // El editor con el documento colocado (LazyLayoutKit) en una ventana de 800x600
+    @State(Scope.Benchmark)
+    public static class View {
+        JScrollPane view;
+
+        @Setup(Level.Trial)
+        public void install(Loaded loaded) throws Exception {
+            onEdt(() -> {
+                view = editorView();
+                ((JTextPane) view.getViewport().getView()).setDocument(loaded.doc);
+                paint(view);
+            });
+        }
+    }
+
+    // NuiController con un listener que cuenta lo entregado; "chars" es el total de texto
+    // dicho en cada llamada
+    @State(Scope.Benchmark)
+    public static class Nui {
+        @Param({"1K", "64K", "1M"})
+        public String chars;
+
+        NuiController controller;
+        AtomicLong received;
+        String[] utterances;
+
+        @Setup(Level.Trial)
+        public void start() {
+            controller = new NuiController();
+            received = new AtomicLong();
+            controller.addListener((cmd, payload) -> received.incrementAndGet());
+            utterances = utterances(parseSize(chars));
+        }
+    }
+
+    // --- Benchmarks ---
+
+    // NuiController.processInput de punta a punta: cola, análisis y entrega en el EDT
+    @Benchmark
+    public long nuiProcessInput(Nui nui) {
+        long target = nui.received.get() + nui.utterances.length;
+        for (String utterance : nui.utterances)
+            nui.controller.processInput(utterance);
+        while (nui.received.get() < target)
+            Thread.onSpinWait();
+        return target;
+    }
+
+    // Lo que cuesta mantener la barra de estado (updateStatus) mientras se escribe:
+    // pulsaciones y borrados sueltos en sitios al azar, consultando los contadores
+    // después de cada uno
+    @Benchmark
+    public void statusTyping(Loaded loaded, Blackhole bh) throws Exception {
+        EditorDocument doc = loaded.doc;
+        Random random = new Random(7);
+        int[] offsets = new int[5_000];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = random.nextInt(doc.getLength() + 1);
+            doc.insertString(offsets[i], i % 6 == 0 ? " " : "x", null);
+            bh.consume(doc.getCharCount() + doc.getWordCount() + doc.getLineCount());
+        }
+        for (int i = offsets.length - 1; i >= 0; i--) {
+            doc.remove(offsets[i], 1);
+            bh.consume(doc.getCharCount() + doc.getWordCount() + doc.getLineCount());
+        }
+    }
+
+    // openFile(): DocumentLoader (lectura, decodificación y construcción del documento)
+    @Benchmark
+    public EditorDocument ioOpen(Input input) throws Exception {
+        return input.load();
+    }
+
+    // saveFileWithProgress(): DocumentSaver (codificación, temporal, fsync y rename)
+    @Benchmark
+    public File ioSave(Input input, Loaded loaded) throws Exception {
+        File target = input.dir.resolve("guardado.txt").toFile();
+        new DocumentSaver(loaded.doc, target, new EditorTextoGUI.ProgressLabel()).doInBackground();
+        return target;
+    }
+
+    // Lo mismo en el formato propio (.etx), con una racha en negrita cada 4 KB
+    @Benchmark
+    public File ioSaveEtx(Input input, Rich rich) throws Exception {
+        File target = input.dir.resolve("guardado.etx").toFile();
+        new DocumentSaver(rich.doc, target, new EditorTextoGUI.ProgressLabel()).doInBackground();
+        return target;
+    }
+
+    @Benchmark
+    public EditorDocument ioOpenEtx(Rich rich) throws Exception {
+        return new DocumentLoader(rich.etx, new EditorTextoGUI.ProgressLabel()).doInBackground();
+    }
+
+    // Buscar y reemplazar: la búsqueda (en segundo plano en el editor) y la aplicación
+    // de los reemplazos por separado
+    @Benchmark
+    public int findLiteral(Loaded loaded) throws Exception {
+        return FindReplaceEngine.findAll(loaded.doc, FIND, "IPSUM", false, p -> {
+        }, () -> false).count();
+    }
+
+    @Benchmark
+    public int findRegex(Loaded loaded) throws Exception {
+        return FindReplaceEngine.findAll(loaded.doc, "\\b(\\w+)or\\b", "$1OR", true, p -> {
+        }, () -> false).count();
+    }
+
+    @Benchmark
+    public int replaceApply(Replace replace) throws Exception {
+        FindReplaceEngine.replaceAll(replace.doc, replace.matches);
+        return replace.matches.count();
+    }
+
+    // applyStyle/applyColor con todo el texto seleccionado (setCharacterAttributes
+    // sobre la selección, que es lo que hace JTextPane)
+    @Benchmark
+    public void styleBold(Loaded loaded) {
+        EditorDocument doc = loaded.doc;
+        MutableAttributeSet attrs = new SimpleAttributeSet();
+        StyleConstants.setBold(attrs, !StyleConstants.isBold(doc.getCharacterElement(0).getAttributes()));
+        doc.setCharacterAttributes(0, doc.getLength(), attrs, false);
+    }
+
+    @Benchmark
+    public void styleColor(Loaded loaded) {
+        EditorDocument doc = loaded.doc;
+        MutableAttributeSet attrs = new SimpleAttributeSet();
+        boolean red = Color.RED.equals(StyleConstants.getForeground(doc.getCharacterElement(0).getAttributes()));
+        StyleConstants.setForeground(attrs, red ? Color.BLUE : Color.RED);
+        doc.setCharacterAttributes(0, doc.getLength(), attrs, false);
+    }
+
+    // Maquetación y primer pintado al colocar el documento, y después saltos a sitios al
+    // azar pintando cada vez, como al arrastrar la barra de desplazamiento. En el EDT,
+    // como en el editor.
+    @Benchmark
+    public void viewOpen(Loaded loaded) throws Exception {
+        onEdt(() -> {
+            JScrollPane view = editorView();
+            JTextPane textPane = (JTextPane) view.getViewport().getView();
+            textPane.setDocument(loaded.doc);
+            paint(view);
+            textPane.setDocument(new EditorDocument()); // Suelta el documento
+        });
+    }
+
+    @Benchmark
+    public void viewScroll(View state) throws Exception {
+        JScrollPane view = state.view;
+        Random random = new Random(11);
+        onEdt(() -> {
+            for (int i = 0; i < 100; i++) {
+                int height = view.getViewport().getView().getHeight();
+                view.getViewport().setViewPosition(new Point(0, random.nextInt(Math.max(1, height - 600))));
+                paint(view);
+            }
+        });
+    }
+
+    // Primer análisis completo del texto (TextAnalytics, en su ForkJoinPool), hasta que
+    // el panel recibiría el resumen final
+    @Benchmark
+    public long analyticsFull(Loaded loaded) throws Exception {
+        EditorDocument doc = loaded.doc;
+        TextAnalytics analytics = new TextAnalytics(doc);
+        CountDownLatch done = new CountDownLatch(1);
+        long[] words = new long[1];
+        onEdt(() -> analytics.setListener(summary -> {
+            if (summary.complete()) {
+                words[0] = summary.words;
+                done.countDown();
+            }
+        }));
+        done.await();
+        onEdt(() -> analytics.setListener(null));
+        doc.removeDocumentListener(analytics);
+        return words[0];
+    }
+
+    // --- Vista ---
+
+    private static JScrollPane editorView() {
+        JTextPane textPane = new JTextPane();
+        textPane.setEditorKit(new LazyLayoutKit());
+        textPane.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        JScrollPane view = new JScrollPane(textPane);
+        view.setSize(800, 600);
+        return view;
+    }
+
+    // Coloca y pinta la ventana en una imagen (no hace falta pantalla)
+    private static void paint(JScrollPane view) {
+        view.validate();
+        BufferedImage image = new BufferedImage(view.getWidth(), view.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        view.paint(g);
+        g.dispose();
+    }
+
+    private static void onEdt(Runnable task) throws Exception {
+        SwingUtilities.invokeAndWait(task);
+    }
+
+    // --- Datos sintéticos ---
+
+    // Texto ASCII con palabras de frecuencia desigual (las primeras de WORDS salen más),
+    // líneas de 40 a 120 caracteres y un párrafo en blanco cada diez líneas de media
+    private static void writeText(Path file, long size) throws IOException {
+        Random random = new Random(size);
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.US_ASCII,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), 1 << 20)) {
+            long written = 0;
+            StringBuilder line = new StringBuilder(128);
+            while (written < size) {
+                line.setLength(0);
+                int width = 40 + random.nextInt(81);
+                while (line.length() < width) {
+                    if (line.length() > 0)
+                        line.append(' ');
+                    line.append(word(random));
+                }
+                line.append('\n');
+                if (random.nextInt(10) == 0)
+                    line.append('\n');
+                int n = (int) Math.min(line.length(), size - written);
+                if (n < line.length())
+                    line.setCharAt(n - 1, '\n'); // El fichero acaba siempre en salto de línea
+                out.append(line, 0, n);
+                written += n;
+            }
+        }
+    }
+
+    private static String word(Random random) {
+        double r = random.nextDouble();
+        return WORDS[(int) (r * r * WORDS.length)];
+    }
+
+    // Frases para el NuiController: comandos y dictados (todas se entienden, para poder
+    // contar las entregadas)
+    private static String[] utterances(long totalChars) {
+        String[] templates = {"guardar", "poner negrita", "color azul", "ponlo en cursiva por favor",
+                "abre el documento", "make it red"};
+        Random random = new Random(3);
+        List<String> list = new ArrayList<>();
+        long chars = 0;
+        while (chars < totalChars) {
+            String utterance;
+            if (random.nextInt(3) == 0) {
+                StringBuilder sb = new StringBuilder("dictar");
+                for (int i = 3 + random.nextInt(12); i > 0; i--)
+                    sb.append(' ').append(word(random));
+                utterance = sb.toString();
+            } else {
+                utterance = templates[random.nextInt(templates.length)];
+            }
+            list.add(utterance);
+            chars += utterance.length();
+        }
+        return list.toArray(new String[0]);
+    }
+
+    // "1K", "16M", "500M"...
+    private static long parseSize(String text) {
+        text = text.trim().toUpperCase(Locale.ROOT);
+        long unit = 1;
+        if (text.endsWith("K"))
+            unit = 1L << 10;
+        else if (text.endsWith("M"))
+            unit = 1L << 20;
+        else if (text.endsWith("G"))
+            unit = 1L << 30;
+        if (unit > 1)
+            text = text.substring(0, text.length() - 1);
+        return Long.parseLong(text) * unit;
+    }
+}
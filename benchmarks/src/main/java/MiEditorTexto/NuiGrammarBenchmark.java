@@ -0,0 +1,168 @@
+package MiEditorTexto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// ======================================================================================
+// Microbenchmark: NuiGrammar frente a la cadena de if/else original
+// ======================================================================================
+
+// Compara tres formas de reconocer el comando de una frase:
+//  - "legacy": el if/else con String.contains de NuiController antes de NuiGrammar
+//  - "legacyTable": lo mismo pero con todas las frases de /nui/comandos.txt, que es lo
+//    que costaría seguir añadiendo sinónimos a la cadena
+//  - "grammar": el autómata de Aho-Corasick sobre palabras
+// Cada llamada analiza INPUTS frases, así que el tiempo por operación es por frase.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NuiGrammarBenchmark {
+
+    private static final int INPUTS = 10_000;
+    private static final String[] WORDS = {
+            "por", "favor", "el", "texto", "que", "de", "la", "documento", "ahora", "mismo", "this", "please",
+            "the", "file", "todo", "lista", "compra", "mañana", "reunión", "informe", "capítulo", "uno"};
+
+    private List<String[]> table;
+    private String[] inputs;
+    private NuiGrammar grammar;
+
+    @Setup
+    public void setup() throws IOException {
+        table = readTable();
+        inputs = generate(INPUTS, table, new Random(42));
+        grammar = NuiGrammar.standard();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void legacy(Blackhole bh) {
+        for (String s : inputs)
+            bh.consume(parseLegacy(s));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void legacyTable(Blackhole bh) {
+        for (String s : inputs)
+            bh.consume(parseLegacyTable(s, table));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void grammar(Blackhole bh) {
+        for (String s : inputs)
+            bh.consume(grammar.parse(s));
+    }
+
+    // --- Referencias ---
+
+    // Copia literal de la cadena que tenía NuiController.processInput
+    static NuiCommand parseLegacy(String input) {
+        String text = input.toLowerCase().trim();
+        if (text.contains("nuevo") || text.contains("borrar todo")) {
+            return NuiCommand.NUEVO_DOCUMENTO;
+        } else if (text.contains("abrir") || text.contains("cargar")) {
+            return NuiCommand.ABRIR_DOCUMENTO;
+        } else if (text.contains("guardar") || text.contains("salvar")) {
+            return NuiCommand.GUARDAR_DOCUMENTO;
+        } else if (text.contains("negrita") || text.contains("fuerte")) {
+            return NuiCommand.APLICAR_NEGRITA;
+        } else if (text.contains("cursiva") || text.contains("italica")) {
+            return NuiCommand.APLICAR_CURSIVA;
+        } else if (text.contains("rojo")) {
+            return NuiCommand.COLOR_ROJO;
+        } else if (text.contains("azul")) {
+            return NuiCommand.COLOR_AZUL;
+        } else if (text.startsWith("dictar") || text.startsWith("escribir")) {
+            return NuiCommand.DICTAR_TEXTO;
+        }
+        return null;
+    }
+
+    // La misma estrategia recorriendo la tabla completa (en su orden de prioridad)
+    static NuiCommand parseLegacyTable(String input, List<String[]> table) {
+        String text = input.toLowerCase().trim();
+        for (String[] entry : table) {
+            NuiCommand command = NuiCommand.valueOf(entry[0]);
+            if (command == NuiCommand.DICTAR_TEXTO ? text.startsWith(entry[1]) : text.contains(entry[1]))
+                return command;
+        }
+        return null;
+    }
+
+    // --- Datos ---
+
+    // Pares (comando, frase) de /nui/comandos.txt, primero los de dictado y luego el resto
+    // en el orden del fichero
+    private static List<String[]> readTable() throws IOException {
+        List<String[]> dictation = new ArrayList<>();
+        List<String[]> rest = new ArrayList<>();
+        try (InputStream in = NuiGrammar.class.getResourceAsStream("/nui/comandos.txt")) {
+            if (in == null)
+                throw new IOException("No se encuentra /nui/comandos.txt en el classpath");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                int colon = line.indexOf(':');
+                if (line.isEmpty() || line.startsWith("#") || colon < 0)
+                    continue;
+                String command = line.substring(0, colon).trim();
+                for (String phrase : line.substring(colon + 1).split("\\|")) {
+                    String[] entry = {command, phrase.trim()};
+                    (command.equals("DICTAR_TEXTO") ? dictation : rest).add(entry);
+                }
+            }
+        }
+        dictation.addAll(rest);
+        return dictation;
+    }
+
+    // Frases de 3 a 20 palabras; la mitad lleva un sinónimo de la tabla (al azar, en
+    // cualquier posición) y una de cada diez es un dictado largo
+    private static String[] generate(int count, List<String[]> table, Random random) {
+        String[] inputs = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int words = 3 + random.nextInt(18);
+            int keyword = random.nextBoolean() ? random.nextInt(words) : -1;
+            boolean dictation = random.nextInt(10) == 0;
+            if (dictation)
+                sb.append("dictar ");
+            for (int w = 0; w < words; w++) {
+                if (w > 0)
+                    sb.append(' ');
+                if (w == keyword && !dictation)
+                    sb.append(table.get(random.nextInt(table.size()))[1]);
+                else
+                    sb.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            inputs[i] = random.nextBoolean() ? sb.toString() : sb.substring(0, 1).toUpperCase() + sb.substring(1);
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,161 @@
+package MiEditorTexto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// ======================================================================================
+// Benchmark de arranque
+// ======================================================================================
+
+// Arranca el editor varias veces, cada vez en una JVM nueva con -Deditor.arranque.medir=true
+// (ver Startup), y mide dos tiempos desde que arranca el proceso: el primer pintado de la
+// ventana y el momento en que acepta teclas. Si se le da un archivo CDS, repite las mismas
+// medidas usándolo, para ver lo que se gana. Añade una fila por medida a un CSV
+// (startup.paint, startup.input y lo mismo con ".cds"). No es un benchmark JMH: lo que
+// mide es justamente lo que tarda una JVM nueva.
+//
+// Necesita pantalla: es el arranque de verdad, con su ventana. Uso, con el editor
+// empaquetado y el archivo generado por scripts/appcds.sh:
+//   java -cp editor.jar:flatlaf.jar:benchmarks.jar MiEditorTexto.StartupBenchmark [--runs 10] \
+//        [--cds editor.jsa] [--out startup-results.csv] [--label nombre-de-la-version]
+// o, sin CDS, ./gradlew :benchmarks:startup --args="--runs 10".
+// Las JVM hijas usan el mismo classpath que esta (el archivo CDS vale si empieza por el
+// classpath con el que se generó).
+public class StartupBenchmark {
+
+    private static final String HEADER =
+            "fecha,etiqueta,java,benchmark,iteraciones,media_ms,min_ms,max_ms,desviacion_ms";
+
+    // Lo que puede tardar un arranque antes de darlo por colgado
+    private static final long TIMEOUT_SECONDS = 60;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int runs = Integer.parseInt(options.getOrDefault("runs", "10"));
+        Path archive = options.containsKey("cds") ? Path.of(options.get("cds")) : null;
+        Path out = Path.of(options.getOrDefault("out", "startup-results.csv"));
+        String label = options.getOrDefault("label", "");
+        if (archive != null && !Files.isRegularFile(archive)) {
+            System.err.println("No existe el archivo CDS " + archive + " (se genera con scripts/appcds.sh)");
+            System.exit(2);
+        }
+
+        try (PrintWriter csv = openCsv(out)) {
+            measure(runs, null, label, csv);
+            if (archive != null)
+                measure(runs, archive, label, csv);
+        }
+        System.out.println("Resultados añadidos a " + out.toAbsolutePath());
+    }
+
+    private static void measure(int runs, Path archive, String label, PrintWriter csv)
+            throws IOException, InterruptedException {
+        String suffix = archive != null ? ".cds" : "";
+        // Un arranque de calentamiento que no cuenta (caché de disco del JDK y de las clases)
+        launch(archive);
+        double[] paint = new double[runs];
+        double[] input = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            long[] times = launch(archive);
+            paint[i] = times[0];
+            input[i] = times[1];
+        }
+        report("startup.paint" + suffix, paint, label, csv);
+        report("startup.input" + suffix, input, label, csv);
+    }
+
+    // Tiempos {pintado, entrada} en ms de un arranque
+    private static long[] launch(Path archive) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (archive != null) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+            command.add("-Xshare:on"); // Que falle si el archivo no vale, en vez de ignorarlo
+        }
+        command.add("-Deditor.arranque.medir=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(EditorTextoGUI.class.getName());
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long[] times = null;
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(Startup.REPORT + " "))
+                    times = parse(line);
+                else
+                    output.add(line);
+            }
+        }
+        if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("El editor no terminó en " + TIMEOUT_SECONDS + " s");
+        }
+        if (times == null)
+            throw new IOException("El editor no informó de sus tiempos:\n" + String.join("\n", output));
+        return times;
+    }
+
+    // "ARRANQUE pintado_ms=412 entrada_ms=530"
+    private static long[] parse(String line) {
+        long[] times = new long[2];
+        for (String field : line.split(" ")) {
+            if (field.startsWith("pintado_ms="))
+                times[0] = Long.parseLong(field.substring("pintado_ms=".length()));
+            else if (field.startsWith("entrada_ms="))
+                times[1] = Long.parseLong(field.substring("entrada_ms=".length()));
+        }
+        return times;
+    }
+
+    private static void report(String name, double[] times, String label, PrintWriter csv) {
+        double mean = Arrays.stream(times).average().orElse(0);
+        double min = Arrays.stream(times).min().orElse(0);
+        double max = Arrays.stream(times).max().orElse(0);
+        double stddev = Math.sqrt(Arrays.stream(times).map(t -> (t - mean) * (t - mean)).sum() / times.length);
+        System.out.printf(Locale.ROOT, "%-20s %8.1f ms ±%7.1f (mín %.0f, máx %.0f)%n", name, mean, stddev, min, max);
+        csv.println(String.format(Locale.ROOT, "%s,%s,%s,%s,%d,%.3f,%.3f,%.3f,%.3f",
+                LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME), label.replace(',', ' '),
+                System.getProperty("java.version"), name, times.length, mean, min, max, stddev));
+        csv.flush();
+    }
+
+    // --- Opciones y CSV ---
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length)
+                throw new IllegalArgumentException("Opción no válida: " + args[i]);
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static PrintWriter openCsv(Path out) throws IOException {
+        boolean exists = Files.exists(out) && Files.size(out) > 0;
+        PrintWriter csv = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        if (!exists)
+            csv.println(HEADER);
+        return csv;
+    }
+}
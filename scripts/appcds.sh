@@ -0,0 +1,26 @@
+#!/bin/sh
+# Genera el archivo de clases compartidas (AppCDS) con el que el editor arranca antes: la
+# JVM mapea las clases de Swing, FlatLaf y del editor ya leídas, verificadas y enlazadas
+# en vez de hacerlo otra vez en cada arranque. Sale de una ejecución de entrenamiento que
+# abre la ventana, espera a que acepte entrada y a que termine la precarga (ver Startup)
+# y se cierra sola.
+#
+# Uso, desde la raíz del proyecto, con el editor compilado en un directorio (clases y
+# recursos juntos, como out/ en IntelliJ):
+#   scripts/appcds.sh [directorio compilado] [flatlaf.jar]   (por defecto out y flatlaf.jar)
+# Deja editor.jar y editor.jsa; después se arranca con:
+#   java -XX:SharedArchiveFile=editor.jsa -cp editor.jar:flatlaf.jar MiEditorTexto.EditorTextoGUI
+# El classpath tiene que ser de .jar (la JVM no archiva clases de directorios) y el mismo
+# con el que se generó, con el mismo JDK (13 o posterior): al recompilar o cambiar de JDK
+# hay que volver a generarlo. Si no vale, la JVM lo ignora y arranca como siempre.
+# Para medir lo que se gana:
+#   java -cp editor.jar:flatlaf.jar:benchmarks.jar MiEditorTexto.StartupBenchmark --cds editor.jsa
+set -e
+
+CLASSES="${1:-out}"
+FLATLAF="${2:-flatlaf.jar}"
+
+jar --create --file editor.jar -C "$CLASSES" .
+java -XX:ArchiveClassesAtExit=editor.jsa -Deditor.arranque.medir=true \
+     -cp "editor.jar:$FLATLAF" MiEditorTexto.EditorTextoGUI
+echo "Archivo CDS: editor.jsa (classpath editor.jar:$FLATLAF)"
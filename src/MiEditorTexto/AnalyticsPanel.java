@@ -0,0 +1,128 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.border.TitledBorder;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+
+// ======================================================================================
+// Panel de análisis del texto (Ctrl+Mayús+A)
+// ======================================================================================
+
+// Panel lateral con lo que calcula TextAnalytics para el documento activo. Solo escucha
+// mientras está a la vista; con un fichero grande en modo solo lectura no hay análisis.
+class AnalyticsPanel extends JPanel implements TextAnalytics.Listener {
+
+    private final JLabel words = new JLabel();
+    private final JLabel sentences = new JLabel();
+    private final JLabel paragraphs = new JLabel();
+    private final JLabel wordsPerSentence = new JLabel();
+    private final JLabel syllablesPerWord = new JLabel();
+    private final JLabel fernandezHuerta = new JLabel();
+    private final JLabel szigriszt = new JLabel();
+    private final JLabel status = new JLabel();
+    private final DefaultTableModel topWords = model("Palabra");
+    private final DefaultTableModel phrases = model("Frase");
+    private final JScrollPane phrasesScroll;
+    private TextAnalytics analytics;
+
+    AnalyticsPanel() {
+        super(new BorderLayout(5, 5));
+        setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        setPreferredSize(new Dimension(280, 0));
+
+        JPanel figures = new JPanel(new GridLayout(0, 2, 8, 2));
+        row(figures, "Palabras", words);
+        row(figures, "Oraciones", sentences);
+        row(figures, "Párrafos", paragraphs);
+        row(figures, "Palabras/oración", wordsPerSentence);
+        row(figures, "Sílabas/palabra", syllablesPerWord);
+        row(figures, "Fernández Huerta", fernandezHuerta);
+        row(figures, "INFLESZ", szigriszt);
+
+        JPanel north = new JPanel(new BorderLayout(5, 5));
+        north.add(figures, BorderLayout.CENTER);
+        north.add(status, BorderLayout.SOUTH);
+
+        JPanel tables = new JPanel(new GridLayout(2, 1, 5, 5));
+        tables.add(scroll(topWords, "Palabras más usadas"));
+        phrasesScroll = scroll(phrases, "Frases repetidas");
+        tables.add(phrasesScroll);
+
+        add(north, BorderLayout.NORTH);
+        add(tables, BorderLayout.CENTER);
+        attach(null);
+    }
+
+    private static DefaultTableModel model(String first) {
+        return new DefaultTableModel(new String[]{first, "Veces"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    private static void row(JPanel panel, String name, JLabel value) {
+        panel.add(new JLabel(name));
+        panel.add(value);
+    }
+
+    private static JScrollPane scroll(DefaultTableModel model, String title) {
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(1).setMaxWidth(60);
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setBorder(BorderFactory.createTitledBorder(title));
+        return scroll;
+    }
+
+    // Pasa a mostrar "doc" (null = ninguno: deja de escuchar)
+    void attach(EditorDocument doc) {
+        TextAnalytics next = doc != null ? doc.getAnalytics() : null;
+        if (next == analytics)
+            return;
+        if (analytics != null)
+            analytics.setListener(null);
+        analytics = next;
+        clear(doc != null ? "Analizando..." : "No disponible para este documento");
+        if (analytics != null)
+            analytics.setListener(this);
+    }
+
+    private void clear(String message) {
+        for (JLabel label : new JLabel[]{words, sentences, paragraphs, wordsPerSentence, syllablesPerWord,
+                fernandezHuerta, szigriszt})
+            label.setText("-");
+        topWords.setRowCount(0);
+        phrases.setRowCount(0);
+        status.setText(message);
+    }
+
+    @Override
+    public void analyzed(TextAnalytics.Summary summary) {
+        long t = Diagnostics.start();
+        words.setText(String.valueOf(summary.words));
+        sentences.setText(String.valueOf(summary.sentences));
+        paragraphs.setText(String.valueOf(summary.paragraphs));
+        wordsPerSentence.setText(String.format("%.1f", summary.wordsPerSentence()));
+        syllablesPerWord.setText(String.format("%.2f", summary.syllablesPerWord()));
+        fernandezHuerta.setText(String.format("%.1f", summary.fernandezHuerta()));
+        szigriszt.setText(String.format("%.1f (%s)", summary.szigriszt(), summary.inflesz()));
+        fill(topWords, summary.topWords);
+        fill(phrases, summary.repeatedPhrases);
+        ((TitledBorder) phrasesScroll.getBorder()).setTitle(summary.phraseSampling == 1
+                ? "Frases repetidas" : "Frases repetidas (muestra de 1 de cada " + summary.phraseSampling + ")");
+        phrasesScroll.repaint();
+        status.setText(summary.complete() ? " "
+                : "Analizando... " + (100L * summary.analyzed / Math.max(1, summary.blocks)) + " %");
+        Diagnostics.end("Panel de análisis", t);
+    }
+
+    private static void fill(DefaultTableModel model, List<TextAnalytics.Count> counts) {
+        model.setRowCount(0);
+        for (TextAnalytics.Count count : counts)
+            model.addRow(new Object[]{count.text, count.count});
+    }
+}
@@ -0,0 +1,100 @@
+package MiEditorTexto;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// ======================================================================================
+// Atributos en binario
+// ======================================================================================
+
+// Escribe y lee los atributos de formato que usa el editor (los de StyleConstants de
+// carácter y de párrafo) con un byte por clave. Lo demás (la resolución de estilos,
+// atributos de componentes o iconos) no se guarda.
+final class AttributeCodec {
+
+    private static final Object[] KEYS = {
+            StyleConstants.Bold, StyleConstants.Italic, StyleConstants.Underline,
+            StyleConstants.StrikeThrough, StyleConstants.Subscript, StyleConstants.Superscript,
+            StyleConstants.Foreground, StyleConstants.Background,
+            StyleConstants.FontFamily, StyleConstants.FontSize,
+            StyleConstants.Alignment, StyleConstants.FirstLineIndent, StyleConstants.LeftIndent,
+            StyleConstants.RightIndent, StyleConstants.LineSpacing, StyleConstants.SpaceAbove,
+            StyleConstants.SpaceBelow};
+    private static final Map<Object, Integer> INDEX = new IdentityHashMap<>();
+
+    static {
+        for (int i = 0; i < KEYS.length; i++)
+            INDEX.put(KEYS[i], i);
+    }
+
+    private AttributeCodec() {
+    }
+
+    static void write(DataOutput out, AttributeSet attrs) throws IOException {
+        int count = 0;
+        if (attrs != null) {
+            for (Enumeration<?> names = attrs.getAttributeNames(); names.hasMoreElements(); ) {
+                if (INDEX.containsKey(names.nextElement()))
+                    count++;
+            }
+        }
+        out.writeByte(count);
+        if (count == 0)
+            return;
+        for (Enumeration<?> names = attrs.getAttributeNames(); names.hasMoreElements(); ) {
+            Object name = names.nextElement();
+            Integer index = INDEX.get(name);
+            if (index == null)
+                continue;
+            out.writeByte(index);
+            Object value = attrs.getAttribute(name);
+            if (value instanceof Boolean)
+                out.writeBoolean((Boolean) value);
+            else if (value instanceof Color)
+                out.writeInt(((Color) value).getRGB());
+            else if (value instanceof String)
+                out.writeUTF((String) value);
+            else if (value instanceof Integer)
+                out.writeInt((Integer) value);
+            else if (value instanceof Float)
+                out.writeFloat((Float) value);
+            else
+                throw new IOException("Valor no admitido para " + name + ": " + value);
+        }
+    }
+
+    static AttributeSet read(DataInput in) throws IOException {
+        int count = in.readUnsignedByte();
+        if (count == 0)
+            return SimpleAttributeSet.EMPTY;
+        MutableAttributeSet attrs = new SimpleAttributeSet();
+        for (int i = 0; i < count; i++) {
+            int index = in.readUnsignedByte();
+            if (index >= KEYS.length)
+                throw new IOException("Atributo desconocido: " + index);
+            Object key = KEYS[index];
+            Object value;
+            if (index <= 5)
+                value = in.readBoolean();
+            else if (index <= 7)
+                value = new Color(in.readInt(), true);
+            else if (index == 8)
+                value = in.readUTF();
+            else if (index <= 10)
+                value = in.readInt();
+            else
+                value = in.readFloat();
+            attrs.addAttribute(key, value);
+        }
+        return attrs;
+    }
+}
@@ -0,0 +1,586 @@
+package MiEditorTexto;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// ======================================================================================
+// Conversor por lotes (sin ventana)
+// ======================================================================================
+
+// Aplica a árboles enteros de ficheros lo que el editor hace de uno en uno: cambio de
+// codificación, de final de línea, reglas de buscar y reemplazar y guiones de órdenes
+// de voz (analizados con la misma gramática que NuiController). Cada fichero se lee y se
+// escribe por bloques, línea a línea, sin cargarlo entero; el resultado va a un temporal
+// que sustituye al destino con un rename atómico (como DocumentSaver).
+// Los ficheros se reparten en un ForkJoinPool y un semáforo limita cuántos hay en curso,
+// así que recorrer decenas de miles no llena la cola.
+//
+// Uso (también con EditorTextoGUI --batch ...):
+//   java -cp out:flatlaf.jar MiEditorTexto.BatchConverter <directorio|fichero>... \
+//        [--out DIR] [--include '*.txt'] [--charset UTF-8] [--bom si|no] [--eol lf|crlf|cr] \
+//        [--replace 'buscar=>reemplazo']... [--rules reglas.txt] [--regex si] \
+//        [--script guion.txt] [--threads N] [--in-flight N] [--quiet si]
+// Sin --out, los ficheros se sustituyen en su sitio (solo si cambian). Las reglas se
+// aplican a cada línea por separado. Código de salida: 0 si todo fue bien, 1 si algún
+// fichero falló, 2 si las opciones no son válidas.
+public class BatchConverter {
+
+    static final String OPTION = "--batch";
+
+    private static final int BLOCK = 1 << 16;
+    private static final String RULE_SEPARATOR = "=>";
+    // Buffers de cada hilo del pool, que se reutilizan de un fichero a otro
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    // --- Configuración (igual para todos los ficheros) ---
+    private final List<Path> sources = new ArrayList<>();
+    private Path out;
+    private PathMatcher include = FileSystems.getDefault().getPathMatcher("glob:*.txt");
+    private Charset charset; // null = la del fichero
+    private Boolean bom; // null = el del fichero, si el destino es Unicode
+    private String eol; // null = el de cada línea
+    private final List<Rule> rules = new ArrayList<>();
+    private boolean regex;
+    private boolean discardContent; // El guion empieza con un documento nuevo
+    private String dictated = ""; // Lo que el guion añade al final
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int inFlight = -1;
+    private boolean quiet;
+
+    // --- Totales ---
+    private final AtomicInteger converted = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final PrintStream console = System.out;
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        BatchConverter converter = new BatchConverter();
+        try {
+            converter.parse(args);
+        } catch (IllegalArgumentException | IOException ex) {
+            System.err.println("Conversor: " + ex.getMessage());
+            return 2;
+        }
+        try {
+            return converter.convertAll();
+        } catch (IOException | InterruptedException ex) {
+            System.err.println("Conversor: " + ex);
+            return 1;
+        }
+    }
+
+    // --- Opciones ---
+
+    private void parse(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                sources.add(Path.of(args[i]));
+                continue;
+            }
+            if (i + 1 == args.length)
+                throw new IllegalArgumentException("Falta el valor de " + args[i]);
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--out":
+                    out = Path.of(value);
+                    break;
+                case "--include":
+                    include = FileSystems.getDefault().getPathMatcher("glob:" + value);
+                    break;
+                case "--charset":
+                    charset = Charset.forName(value);
+                    break;
+                case "--bom":
+                    bom = yes(value);
+                    break;
+                case "--eol":
+                    eol = lineSeparator(value);
+                    break;
+                case "--replace":
+                    rules.add(Rule.parse(value));
+                    break;
+                case "--rules":
+                    for (String line : Files.readAllLines(Path.of(value), StandardCharsets.UTF_8)) {
+                        if (!line.isBlank() && !line.startsWith("#"))
+                            rules.add(Rule.parse(line));
+                    }
+                    break;
+                case "--regex":
+                    regex = yes(value);
+                    break;
+                case "--script":
+                    script(Files.readAllLines(Path.of(value), StandardCharsets.UTF_8));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--in-flight":
+                    inFlight = Integer.parseInt(value);
+                    break;
+                case "--quiet":
+                    quiet = yes(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opción no válida: " + args[i - 1]);
+            }
+        }
+        if (sources.isEmpty())
+            throw new IllegalArgumentException("No se indicó ningún fichero ni directorio");
+        if (threads < 1)
+            throw new IllegalArgumentException("--threads debe ser al menos 1");
+        if (inFlight < 1)
+            inFlight = threads * 2;
+        for (Rule rule : rules)
+            rule.compile(regex);
+    }
+
+    private static boolean yes(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "si":
+            case "sí":
+            case "true":
+                return true;
+            case "no":
+            case "false":
+                return false;
+            default:
+                throw new IllegalArgumentException("Se esperaba si o no: " + value);
+        }
+    }
+
+    private static String lineSeparator(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "lf":
+                return "\n";
+            case "crlf":
+                return "\r\n";
+            case "cr":
+                return "\r";
+            default:
+                throw new IllegalArgumentException("Final de línea no válido: " + value + " (lf, crlf o cr)");
+        }
+    }
+
+    // Una orden por línea, como se dirían al editor. Solo tienen sentido las que cambian
+    // el texto: "nuevo documento" lo vacía y "dictar ..." escribe al final; guardar no
+    // hace falta y el formato no existe en texto plano
+    private void script(List<String> lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            if (line.isBlank() || line.startsWith("#"))
+                continue;
+            NuiGrammar.Match match = NuiController.interpret(line);
+            if (match == null)
+                throw new IllegalArgumentException("Orden no reconocida en el guion: " + line.trim());
+            switch (match.command) {
+                case NUEVO_DOCUMENTO:
+                    discardContent = true;
+                    text.setLength(0);
+                    break;
+                case DICTAR_TEXTO:
+                    text.append(match.payload).append(' '); // Como DictationSink
+                    break;
+                case ABRIR_DOCUMENTO:
+                    throw new IllegalArgumentException("\"" + line.trim() + "\" no se puede usar en un guion por lotes");
+                case GUARDAR_DOCUMENTO:
+                    break;
+                default:
+                    System.err.println("Conversor: \"" + line.trim() + "\" (" + match.command
+                            + ") no afecta al texto plano; se ignora");
+            }
+        }
+        dictated = text.toString();
+    }
+
+    // --- Recorrido ---
+
+    private int convertAll() throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Semaphore slots = new Semaphore(inFlight);
+        try {
+            for (Path source : sources) {
+                Path root = source.toAbsolutePath().normalize();
+                // Files.walk va leyendo los directorios según se consume. Un directorio que
+                // no se puede leer sale como UncheckedIOException al pedir el siguiente:
+                // cuenta como un fallo y se sigue con el resto del árbol
+                try (Stream<Path> files = Files.walk(root)) {
+                    Iterator<Path> it = files.iterator();
+                    while (true) {
+                        Path file;
+                        try {
+                            if (!it.hasNext())
+                                break;
+                            file = it.next();
+                        } catch (UncheckedIOException ex) {
+                            failed(ex.getCause());
+                            continue;
+                        }
+                        if (!Files.isRegularFile(file) || !include.matches(file.getFileName()) || isOwnFile(file))
+                            continue;
+                        Path target = target(root, file);
+                        slots.acquire();
+                        pool.execute(() -> {
+                            try {
+                                convert(file, target);
+                            } finally {
+                                slots.release();
+                            }
+                        });
+                    }
+                } catch (IOException ex) {
+                    failed(ex); // El propio origen no existe o no se puede leer
+                }
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        report(System.nanoTime() - started);
+        return failed.get() == 0 ? 0 : 1;
+    }
+
+    // Temporales del guardado atómico y diarios del editor
+    private static boolean isOwnFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(".") && (name.endsWith(".tmp") || name.endsWith(".diario"));
+    }
+
+    private Path target(Path root, Path file) {
+        if (out == null)
+            return file;
+        Path relative = root.equals(file) ? file.getFileName() : root.relativize(file);
+        return out.toAbsolutePath().resolve(relative);
+    }
+
+    private void convert(Path source, Path target) {
+        long started = System.nanoTime();
+        try {
+            Result result = convertFile(source, target);
+            long elapsed = System.nanoTime() - started;
+            bytesIn.addAndGet(result.bytesIn);
+            bytesOut.addAndGet(result.bytesOut);
+            (result.changed ? converted : unchanged).incrementAndGet();
+            if (!quiet)
+                console.printf(Locale.ROOT, "%-10s %9.1f ms %8.1f MB/s  %-24s %s%n",
+                        result.changed ? "OK" : "SIN CAMBIOS", elapsed / 1e6, megabytesPerSecond(result.bytesIn, elapsed),
+                        result.formats, source);
+        } catch (Exception ex) {
+            failed.incrementAndGet();
+            console.println("ERROR      " + source + ": " + ex.getMessage());
+        }
+    }
+
+    // Un fichero o directorio que no se pudo recorrer
+    private void failed(IOException ex) {
+        failed.incrementAndGet();
+        console.println("ERROR      " + ex);
+    }
+
+    private void report(long elapsed) {
+        int files = converted.get() + unchanged.get() + failed.get();
+        console.printf(Locale.ROOT, "%d ficheros (%d convertidos, %d sin cambios, %d con error) en %.1f s: "
+                        + "%.1f MB leídos, %.1f MB escritos, %.1f MB/s, %.0f ficheros/s%n",
+                files, converted.get(), unchanged.get(), failed.get(), elapsed / 1e9,
+                bytesIn.get() / 1e6, bytesOut.get() / 1e6, megabytesPerSecond(bytesIn.get(), elapsed),
+                files / Math.max(elapsed / 1e9, 1e-9));
+    }
+
+    private static double megabytesPerSecond(long bytes, long nanos) {
+        return nanos == 0 ? 0 : bytes / 1e6 / (nanos / 1e9);
+    }
+
+    // --- Conversión de un fichero ---
+
+    private static final class Result {
+        long bytesIn;
+        long bytesOut;
+        boolean changed;
+        String formats;
+    }
+
+    private Result convertFile(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer sample = ByteBuffer.allocate((int) Math.min(TextFormat.SAMPLE_SIZE, in.size()));
+            while (sample.hasRemaining() && in.read(sample, sample.position()) >= 0) {
+            }
+            List<TextFormat> formats = TextFormat.candidates(sample.flip(), in.size() <= TextFormat.SAMPLE_SIZE);
+            for (int i = 0; ; i++) {
+                try {
+                    return convertFile(in, formats.get(i), source, target);
+                } catch (CharacterCodingException ex) {
+                    if (i == formats.size() - 1)
+                        throw ex;
+                }
+            }
+        }
+    }
+
+    // Un intento con una codificación de entrada (CharacterCodingException si no es la)
+    private Result convertFile(FileChannel in, TextFormat format, Path source, Path target) throws IOException {
+        TextFormat output = outputFormat(format);
+        Path temp = Files.createFile(target.resolveSibling("." + target.getFileName() + "." + System.nanoTime() + ".tmp"));
+        try {
+            DocumentSaver.copyPermissions(Files.exists(target) ? target : source, temp);
+            Result result = new Result();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                Transform transform = new Transform(output, channel);
+                transform.changed = discardContent || !dictated.isEmpty();
+                if (!discardContent)
+                    transform.read(in, format);
+                transform.append(dictated);
+                transform.finish();
+                result.changed = transform.changed || !output.charset.equals(format.charset) || output.bom != format.bom;
+                // En su sitio, lo que no cambia ni se toca
+                if (result.changed || !target.equals(source)) {
+                    channel.force(true);
+                    result.bytesOut = channel.size();
+                }
+            }
+            result.bytesIn = in.size();
+            result.formats = format.charset.name() + " -> " + output.charset.name();
+            if (result.changed || !target.equals(source))
+                DocumentSaver.move(temp, target);
+            return result;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private TextFormat outputFormat(TextFormat input) {
+        Charset target = charset != null ? charset : input.charset;
+        boolean unicode = target.name().startsWith("UTF-");
+        boolean withBom = bom != null ? bom : input.bom && unicode;
+        return new TextFormat(target, withBom && unicode, eol);
+    }
+
+    private static final class Buffers {
+        final ByteBuffer input = ByteBuffer.allocateDirect(BLOCK);
+        final CharBuffer chars = CharBuffer.allocate(BLOCK);
+        final CharBuffer pending = CharBuffer.allocate(BLOCK);
+        final ByteBuffer bytes = ByteBuffer.allocateDirect(BLOCK);
+        final StringBuilder line = new StringBuilder();
+    }
+
+    // Lee, parte en líneas, aplica las reglas y escribe (un objeto por fichero)
+    private final class Transform {
+        private final String separator; // null = el de cada línea
+        private final FileChannel channel;
+        private final CharsetEncoder encoder;
+        private final Buffers buffers = BUFFERS.get();
+        private final ByteBuffer bytes = buffers.bytes;
+        private final CharBuffer pending = buffers.pending;
+        private final StringBuilder line = buffers.line; // Solo si hay reglas
+        private boolean lastWasCR;
+        boolean changed;
+
+        Transform(TextFormat output, FileChannel channel) {
+            this.separator = output.lineSeparator;
+            this.channel = channel;
+            encoder = output.charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            bytes.clear();
+            pending.clear();
+            line.setLength(0);
+            bytes.put(output.bomBytes());
+        }
+
+        void read(FileChannel in, TextFormat format) throws IOException {
+            CharsetDecoder decoder = format.charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            ByteBuffer input = buffers.input.clear();
+            CharBuffer chars = buffers.chars.clear();
+            in.position(format.bomBytes().length);
+            boolean eof = false;
+            while (!eof) {
+                eof = in.read(input) < 0;
+                input.flip();
+                CoderResult result;
+                do {
+                    result = decoder.decode(input, chars, eof);
+                    if (result.isError())
+                        result.throwException();
+                    chars.flip();
+                    lines(chars.array(), chars.position(), chars.limit());
+                    chars.clear();
+                } while (result == CoderResult.OVERFLOW);
+                input.compact();
+            }
+            while (decoder.flush(chars) == CoderResult.OVERFLOW) {
+                chars.flip();
+                lines(chars.array(), 0, chars.limit());
+                chars.clear();
+            }
+            chars.flip();
+            lines(chars.array(), 0, chars.limit());
+            if (lastWasCR)
+                endLine("\r");
+            if (!rules.isEmpty())
+                text(line); // Última línea, sin final
+        }
+
+        // Separa las líneas de un bloque decodificado; sin reglas, el texto pasa tal cual
+        private void lines(char[] array, int start, int end) throws IOException {
+            int run = start;
+            for (int i = start; i < end; i++) {
+                char c = array[i];
+                if (c != '\r' && c != '\n') {
+                    if (lastWasCR) {
+                        endLine("\r");
+                        run = i;
+                    }
+                    continue;
+                }
+                content(array, run, i - run);
+                run = i + 1;
+                if (c == '\r') {
+                    if (lastWasCR)
+                        endLine("\r");
+                    lastWasCR = true;
+                } else {
+                    endLine(lastWasCR ? "\r\n" : "\n");
+                }
+            }
+            content(array, run, end - run);
+        }
+
+        private void content(char[] array, int offset, int length) throws IOException {
+            if (length == 0)
+                return;
+            if (rules.isEmpty())
+                write(array, offset, length);
+            else
+                line.append(array, offset, length);
+        }
+
+        private void endLine(String original) throws IOException {
+            lastWasCR = false;
+            if (!rules.isEmpty()) {
+                text(line);
+                line.setLength(0);
+            }
+            String written = separator != null ? separator : original;
+            changed |= !written.equals(original);
+            append(written);
+        }
+
+        private void text(CharSequence text) throws IOException {
+            String original = text.toString();
+            String replaced = original;
+            for (Rule rule : rules)
+                replaced = rule.apply(replaced);
+            changed |= !replaced.equals(original);
+            append(replaced);
+        }
+
+        void append(String text) throws IOException {
+            if (!text.isEmpty()) {
+                char[] array = text.toCharArray();
+                write(array, 0, array.length);
+            }
+        }
+
+        private void write(char[] array, int offset, int length) throws IOException {
+            while (length > 0) {
+                int n = Math.min(length, pending.remaining());
+                pending.put(array, offset, n);
+                offset += n;
+                length -= n;
+                if (!pending.hasRemaining())
+                    encode(false);
+            }
+        }
+
+        private void encode(boolean endOfInput) throws IOException {
+            pending.flip();
+            CoderResult result;
+            while ((result = encoder.encode(pending, bytes, endOfInput)) == CoderResult.OVERFLOW)
+                drain();
+            if (result.isError())
+                throw new IOException("Hay caracteres que no se pueden escribir en " + encoder.charset().name());
+            pending.compact();
+        }
+
+        void finish() throws IOException {
+            encode(true);
+            while (encoder.flush(bytes) == CoderResult.OVERFLOW)
+                drain();
+            drain();
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+            bytes.clear();
+        }
+    }
+
+    // Regla "buscar=>reemplazo" (literal o expresión regular, como en Buscar y Reemplazar)
+    private static final class Rule {
+        private final String find;
+        private final String replacement;
+        private Pattern pattern;
+
+        private Rule(String find, String replacement) {
+            this.find = find;
+            this.replacement = replacement;
+        }
+
+        static Rule parse(String text) {
+            int separator = text.indexOf(RULE_SEPARATOR);
+            if (separator <= 0)
+                throw new IllegalArgumentException("Regla no válida (buscar=>reemplazo): " + text);
+            return new Rule(text.substring(0, separator), text.substring(separator + RULE_SEPARATOR.length()));
+        }
+
+        void compile(boolean regex) {
+            if (regex)
+                pattern = Pattern.compile(find);
+        }
+
+        String apply(String line) {
+            if (pattern == null)
+                return line.replace(find, replacement);
+            Matcher matcher = pattern.matcher(line);
+            return matcher.find() ? matcher.replaceAll(replacement) : line;
+        }
+    }
+}
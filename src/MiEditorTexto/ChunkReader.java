@@ -0,0 +1,100 @@
+package MiEditorTexto;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+import java.io.IOException;
+
+// ======================================================================================
+// Lectura por bloques para guardar sin retener el documento
+// ======================================================================================
+
+// Quien guarda (DocumentSaver, el volcado de pestañas de Workspace) no debe tener el
+// cerrojo de lectura mientras codifica y escribe, que va a velocidad de disco: con este
+// lector cada bloque se copia con el cerrojo tomado y se suelta antes de devolverlo. Si
+// entre un bloque y otro cambió el texto o el formato (EditorDocument.getVersion), lo que
+// se lleva escrito mezcla dos versiones y se avisa con ChangedException.
+final class ChunkReader {
+
+    // El documento cambió desde que se empezó a leer
+    static final class ChangedException extends IOException {
+        ChangedException() {
+            super("El documento cambió mientras se guardaba");
+        }
+    }
+
+    interface Read {
+        void run() throws BadLocationException;
+    }
+
+    private final Document doc;
+    private final int version; // -1 si el documento no lleva la cuenta
+    private final int length;
+    private final Segment segment = new Segment();
+    private char[] copy = new char[0];
+
+    ChunkReader(Document doc) {
+        this.doc = doc;
+        int[] state = new int[2];
+        doc.render(() -> {
+            state[0] = doc instanceof EditorDocument ? ((EditorDocument) doc).getVersion() : -1;
+            state[1] = doc.getLength();
+        });
+        version = state[0];
+        length = state[1];
+        segment.setPartialReturn(true);
+    }
+
+    // Versión que se está leyendo (-1 si no es un EditorDocument)
+    int getVersion() {
+        return version;
+    }
+
+    // Sin cuenta de ediciones no hay forma de saber si cambió: hay que leerlo todo con
+    // el cerrojo tomado
+    boolean detectsChanges() {
+        return version >= 0;
+    }
+
+    // Longitud de la versión que se está leyendo
+    int getLength() {
+        return length;
+    }
+
+    // Ejecuta "read" con el cerrojo de lectura, si el documento sigue siendo esa versión
+    void locked(Read read) throws BadLocationException, ChangedException {
+        BadLocationException[] error = new BadLocationException[1];
+        boolean[] changed = new boolean[1];
+        doc.render(() -> {
+            if (version >= 0 && ((EditorDocument) doc).getVersion() != version) {
+                changed[0] = true;
+                return;
+            }
+            try {
+                read.run();
+            } catch (BadLocationException ex) {
+                error[0] = ex;
+            }
+        });
+        if (changed[0])
+            throw new ChangedException();
+        if (error[0] != null)
+            throw error[0];
+    }
+
+    // Como Document.getText, pero "into" apunta a una copia propia (la misma en cada
+    // llamada), que sigue valiendo después de soltar el cerrojo
+    void getText(int offset, int count, Segment into) throws BadLocationException, ChangedException {
+        if (copy.length < count)
+            copy = new char[Math.max(count, copy.length * 2)];
+        locked(() -> {
+            for (int done = 0; done < count; done += segment.count) {
+                doc.getText(offset + done, count - done, segment);
+                System.arraycopy(segment.array, segment.offset, copy, done, segment.count);
+            }
+        });
+        into.array = copy;
+        into.offset = 0;
+        into.count = count;
+    }
+}
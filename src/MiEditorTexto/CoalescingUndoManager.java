@@ -0,0 +1,315 @@
+package MiEditorTexto;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.CompoundEdit;
+import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
+import java.util.ArrayList;
+import java.util.List;
+
+// ======================================================================================
+// Historial de deshacer
+// ======================================================================================
+
+// UndoManager que junta lo que se escribe tecla a tecla en una sola edición por palabra
+// (o por pausa), permite agrupar varias ediciones a mano (beginGroup/endGroup) y limita
+// el historial tanto por número de ediciones como por memoria estimada: cuando se pasa
+// de cualquiera de los dos límites se olvidan las ediciones más antiguas. La memoria se
+// lleva como un total que se actualiza al añadir y al olvidar, sin recorrer el historial.
+class CoalescingUndoManager extends UndoManager {
+
+    static final int DEFAULT_LIMIT = 1000;
+    static final long DEFAULT_MAX_BYTES = 32L << 20;
+    // Una pausa más larga que esto empieza una edición nueva
+    private static final long TYPING_PAUSE_MS = 1000;
+    // Coste fijo aproximado de una edición (evento, cambios de elementos, marcas)
+    private static final long EDIT_OVERHEAD = 128;
+    // Un cambio de formato guarda, por cada párrafo tocado, su ElementEdit (o la copia de
+    // los atributos del párrafo) y las hojas de antes y de después con sus marcas
+    private static final long PARAGRAPH_CHANGE_BYTES = 64;
+    private static final long ELEMENT_BYTES = 96;
+
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    // Suma de estimate() de "edits". Deshacer y rehacer no cambian lo que ocupa cada
+    // edición; lo que sí crece es una TypingEdit abierta al absorber un carácter, y
+    // crece justo lo que se carga por ese carácter en addEdit
+    private long bytes;
+    private Group group;
+    private int groupDepth;
+
+    CoalescingUndoManager() {
+        setLimit(DEFAULT_LIMIT);
+    }
+
+    void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimForBytes();
+    }
+
+    // Memoria aproximada que ocupa el historial
+    synchronized long getEstimatedBytes() {
+        return bytes;
+    }
+
+    // Todo lo que llegue hasta el endGroup correspondiente se deshace de una vez. Se
+    // pueden anidar; manda el grupo más externo.
+    void beginGroup() {
+        if (groupDepth++ == 0)
+            group = new Group();
+    }
+
+    void endGroup() {
+        if (groupDepth == 0)
+            throw new IllegalStateException("endGroup sin beginGroup");
+        if (--groupDepth > 0)
+            return;
+        Group finished = group;
+        group = null;
+        finished.end();
+        if (finished.isSignificant())
+            addEdit(finished);
+    }
+
+    @Override
+    public synchronized boolean addEdit(UndoableEdit anEdit) {
+        if (group != null)
+            return group.addEdit(anEdit);
+        // Entre como edición nueva o absorbida por la TypingEdit anterior, ocupa lo mismo
+        boolean added = super.addEdit(TypingEdit.accepts(anEdit) ? new TypingEdit(anEdit) : anEdit);
+        if (added)
+            bytes += estimate(anEdit);
+        trimForBytes();
+        return added;
+    }
+
+    // Por aquí pasa todo lo que UndoManager olvida: lo que había para rehacer al añadir
+    // algo nuevo, lo que sobra por el límite de ediciones y lo que quita trimForBytes
+    @Override
+    protected void trimEdits(int from, int to) {
+        for (int i = from; i <= to; i++)
+            bytes -= estimate(edits.get(i));
+        super.trimEdits(from, to);
+    }
+
+    @Override
+    public synchronized void discardAllEdits() {
+        super.discardAllEdits();
+        bytes = 0;
+        group = null;
+        groupDepth = 0;
+    }
+
+    // Olvida las ediciones más antiguas mientras el historial pase de maxBytes (la
+    // última hecha se conserva siempre, por grande que sea)
+    private synchronized void trimForBytes() {
+        while (bytes > maxBytes && !edits.isEmpty()
+                && edits.get(0) != editToBeUndone() && edits.get(0) != editToBeRedone())
+            trimEdits(0, 0);
+    }
+
+    static long estimate(UndoableEdit edit) {
+        if (edit instanceof Sized)
+            return ((Sized) edit).estimatedBytes();
+        // Un evento del documento guarda el texto afectado (al borrar, o al deshacer
+        // una inserción) y los elementos que cambian. Los de atributos de un
+        // EditorDocument llegan ya medidos (Change); los de otro documento llegan en un
+        // envoltorio de AbstractDocument que no deja ver qué guardan.
+        if (edit instanceof AbstractDocument.DefaultDocumentEvent
+                && ((DocumentEvent) edit).getType() != DocumentEvent.EventType.CHANGE)
+            return EDIT_OVERHEAD + 2L * ((DocumentEvent) edit).getLength();
+        return EDIT_OVERHEAD;
+    }
+
+    interface Sized {
+        long estimatedBytes();
+    }
+
+    // --- Grupos ---
+
+    // Edición compuesta que sabe cuánto ocupa. La usan beginGroup/endGroup y quien
+    // genere varias ediciones que deban deshacerse juntas (ver EditorDocument).
+    static class Group extends CompoundEdit implements Sized {
+        private long bytes;
+
+        @Override
+        public boolean addEdit(UndoableEdit anEdit) {
+            boolean added = super.addEdit(anEdit);
+            if (added)
+                bytes += estimate(anEdit);
+            return added;
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return bytes;
+        }
+    }
+
+    // --- Cambios de formato ---
+
+    // Evento CHANGE medido al dispararlo (ver EditorDocument.fireUndoableEditUpdate), que
+    // es cuando se ven sus cambios de elementos y la estructura es la suya. No guarda
+    // texto (su longitud es la del tramo formateado, no lo que ocupa) sino un cambio por
+    // párrafo: las hojas que se quitaron y las que se pusieron o, con atributos de
+    // párrafo, la copia de los que tenía.
+    static final class Change extends AbstractUndoableEdit implements Sized {
+        private final UndoableEdit edit;
+        private final long bytes;
+
+        Change(AbstractDocument.DefaultDocumentEvent e) {
+            edit = e;
+            Element root = e.getDocument().getDefaultRootElement();
+            int length = e.getDocument().getLength();
+            int first = root.getElementIndex(Math.min(e.getOffset(), length));
+            int last = root.getElementIndex(Math.min(e.getOffset() + Math.max(0, e.getLength() - 1), length));
+            long total = EDIT_OVERHEAD;
+            for (int p = first; p <= last; p++) {
+                total += PARAGRAPH_CHANGE_BYTES;
+                DocumentEvent.ElementChange change = e.getChange(root.getElement(p));
+                if (change != null)
+                    total += ELEMENT_BYTES * (change.getChildrenRemoved().length + change.getChildrenAdded().length);
+            }
+            bytes = total;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            edit.undo();
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            edit.redo();
+        }
+
+        @Override
+        public void die() {
+            super.die();
+            edit.die();
+        }
+
+        @Override
+        public boolean isSignificant() {
+            return edit.isSignificant();
+        }
+
+        @Override
+        public String getPresentationName() {
+            return edit.getPresentationName();
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return bytes;
+        }
+    }
+
+    // --- Escritura tecla a tecla ---
+
+    // Caracteres escritos (o borrados) seguidos. Absorbe el siguiente evento si es del
+    // mismo tipo, contiguo, llega antes de TYPING_PAUSE_MS y, al escribir, no empieza
+    // una palabra nueva tras un blanco: así "hola mundo" se deshace en dos pasos.
+    private static final class TypingEdit extends AbstractUndoableEdit implements Sized {
+        private final List<UndoableEdit> events = new ArrayList<>();
+        private final DocumentEvent.EventType type;
+        private int nextOffset; // Donde tendría que caer el siguiente carácter
+        private long lastTime;
+        private boolean lastWasBlank;
+        private boolean open = true;
+
+        TypingEdit(UndoableEdit first) {
+            DocumentEvent e = (DocumentEvent) first;
+            type = e.getType();
+            events.add(first);
+            follow(e);
+        }
+
+        // Solo los eventos de un carácter (pulsaciones, retroceso, suprimir)
+        static boolean accepts(UndoableEdit edit) {
+            if (!(edit instanceof AbstractDocument.DefaultDocumentEvent))
+                return false;
+            DocumentEvent e = (DocumentEvent) edit;
+            return e.getLength() == 1 && e.getType() != DocumentEvent.EventType.CHANGE;
+        }
+
+        private void follow(DocumentEvent e) {
+            nextOffset = e.getOffset() + (type == DocumentEvent.EventType.INSERT ? 1 : 0);
+            lastTime = System.currentTimeMillis();
+            lastWasBlank = type == DocumentEvent.EventType.INSERT && isBlank(e);
+        }
+
+        private static boolean isBlank(DocumentEvent e) {
+            Segment s = new Segment();
+            try {
+                e.getDocument().getText(e.getOffset(), 1, s);
+            } catch (BadLocationException ex) {
+                return false;
+            }
+            return CountingContent.isWhitespace(s.first());
+        }
+
+        @Override
+        public boolean addEdit(UndoableEdit anEdit) {
+            if (!open)
+                return false;
+            UndoableEdit edit = anEdit instanceof TypingEdit ? ((TypingEdit) anEdit).events.get(0) : anEdit;
+            if (!accepts(edit) || !joins((DocumentEvent) edit)) {
+                open = false;
+                return false;
+            }
+            events.add(edit);
+            follow((DocumentEvent) edit);
+            return true;
+        }
+
+        private boolean joins(DocumentEvent e) {
+            if (e.getType() != type || System.currentTimeMillis() - lastTime > TYPING_PAUSE_MS)
+                return false;
+            if (type == DocumentEvent.EventType.INSERT)
+                return e.getOffset() == nextOffset && !(lastWasBlank && !isBlank(e));
+            // Suprimir borra en el mismo sitio; retroceso, en el anterior
+            return e.getOffset() == nextOffset || e.getOffset() == nextOffset - 1;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            open = false;
+            for (int i = events.size() - 1; i >= 0; i--)
+                events.get(i).undo();
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            for (UndoableEdit edit : events)
+                edit.redo();
+        }
+
+        @Override
+        public void die() {
+            super.die();
+            for (UndoableEdit edit : events)
+                edit.die();
+        }
+
+        @Override
+        public String getPresentationName() {
+            return events.get(0).getPresentationName();
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return events.size() * (EDIT_OVERHEAD + 2);
+        }
+    }
+}
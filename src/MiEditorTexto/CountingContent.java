@@ -0,0 +1,211 @@
+package MiEditorTexto;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+
+// ======================================================================================
+// Contenido del documento que mantiene los contadores de la barra de estado
+// ======================================================================================
+
+// Envuelve el Content real (GapContent, etc.) y actualiza caracteres y palabras con
+// cada inserción/borrado mirando solo el texto tocado y sus dos vecinos. Así el coste
+// de una pulsación no depende del tamaño del documento.
+// Se hace a nivel de Content (y no en el DocumentListener) porque aquí el texto que se
+// borra todavía existe, y porque los deshacer/rehacer también pasan por aquí.
+class CountingContent implements AbstractDocument.Content {
+
+    private final AbstractDocument.Content delegate;
+    private final Segment segment = new Segment();
+    private int words;
+    private int edits;
+
+    CountingContent(AbstractDocument.Content delegate) {
+        this.delegate = delegate;
+        segment.setPartialReturn(true);
+        try {
+            words = countWords(0, delegate.length());
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Caracteres del documento (sin el salto de línea implícito del final)
+    int getCharCount() {
+        return delegate.length() - 1;
+    }
+
+    int getWordCount() {
+        return words;
+    }
+
+    // Cambia con cada inserción o borrado (también al deshacer/rehacer): sirve para
+    // saber si un resultado calculado en segundo plano sigue valiendo
+    int getEditCount() {
+        return edits;
+    }
+
+    // Misma definición que el antiguo split("\\s+"): una palabra es una racha de
+    // caracteres que no son espacio en blanco
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // --- Content ---
+
+    @Override
+    public Position createPosition(int offset) throws BadLocationException {
+        return delegate.createPosition(offset);
+    }
+
+    @Override
+    public int length() {
+        return delegate.length();
+    }
+
+    @Override
+    public UndoableEdit insertString(int where, String str) throws BadLocationException {
+        UndoableEdit edit = delegate.insertString(where, str);
+        inserted(where, str.length());
+        return edit == null ? null : new CountingEdit(edit, where, str.length(), true);
+    }
+
+    @Override
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+        removing(where, nitems);
+        UndoableEdit edit = delegate.remove(where, nitems);
+        return edit == null ? null : new CountingEdit(edit, where, nitems, false);
+    }
+
+    // Tramo del fichero original de un PieceTableContent (ver EditorDocument.insertOriginal)
+    UndoableEdit insertOriginal(int where, int start, int length) throws BadLocationException {
+        UndoableEdit edit = ((PieceTableContent) delegate).insertOriginal(where, start, length);
+        inserted(where, length);
+        return new CountingEdit(edit, where, length, true);
+    }
+
+    @Override
+    public String getString(int where, int len) throws BadLocationException {
+        return delegate.getString(where, len);
+    }
+
+    @Override
+    public void getChars(int where, int len, Segment txt) throws BadLocationException {
+        delegate.getChars(where, len, txt);
+    }
+
+    // --- Contadores ---
+
+    // El texto [where, where + len) ya está dentro del contenido
+    private void inserted(int where, int len) throws BadLocationException {
+        edits++;
+        words += wordDelta(where, len);
+    }
+
+    // El texto [where, where + len) todavía está dentro del contenido
+    private void removing(int where, int len) throws BadLocationException {
+        edits++;
+        words -= wordDelta(where, len);
+    }
+
+    // Palabras que aporta el tramo [where, where + len) respecto al documento sin él:
+    // sus propias palabras, menos las que se funden con los vecinos, más la palabra
+    // que queda partida en dos si el tramo cae en medio de una.
+    private int wordDelta(int where, int len) throws BadLocationException {
+        if (len <= 0)
+            return 0;
+        boolean left = where > 0 && !isWhitespace(charAt(where - 1));
+        boolean right = where + len < delegate.length() && !isWhitespace(charAt(where + len));
+        boolean first = !isWhitespace(charAt(where));
+        boolean last = !isWhitespace(charAt(where + len - 1));
+
+        int delta = countWords(where, len);
+        if (left && right)
+            delta++;
+        if (left && first)
+            delta--;
+        if (last && right)
+            delta--;
+        return delta;
+    }
+
+    private char charAt(int offset) throws BadLocationException {
+        delegate.getChars(offset, 1, segment);
+        return segment.array[segment.offset];
+    }
+
+    // Cuenta rachas de no-blancos leyendo por bloques, sin copiar el texto a un String
+    private int countWords(int where, int len) throws BadLocationException {
+        int count = 0;
+        boolean inWord = false;
+        int end = where + len;
+        while (where < end) {
+            delegate.getChars(where, end - where, segment);
+            char[] array = segment.array;
+            int stop = segment.offset + segment.count;
+            for (int i = segment.offset; i < stop; i++) {
+                boolean word = !isWhitespace(array[i]);
+                if (word && !inWord)
+                    count++;
+                inWord = word;
+            }
+            where += segment.count;
+        }
+        return count;
+    }
+
+    // Envuelve la edición del Content para que deshacer/rehacer también ajusten los
+    // contadores (el DefaultDocumentEvent deshace el Content directamente)
+    private class CountingEdit extends AbstractUndoableEdit {
+        private final UndoableEdit edit;
+        private final int where;
+        private final int length;
+        private final boolean insert;
+
+        CountingEdit(UndoableEdit edit, int where, int length, boolean insert) {
+            this.edit = edit;
+            this.where = where;
+            this.length = length;
+            this.insert = insert;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            try {
+                if (insert)
+                    removing(where, length);
+                edit.undo();
+                if (!insert)
+                    inserted(where, length);
+            } catch (BadLocationException e) {
+                throw new CannotUndoException();
+            }
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            try {
+                if (!insert)
+                    removing(where, length);
+                edit.redo();
+                if (insert)
+                    inserted(where, length);
+            } catch (BadLocationException e) {
+                throw new CannotRedoException();
+            }
+        }
+
+        @Override
+        public void die() {
+            super.die();
+            edit.die();
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package MiEditorTexto;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.swing.*;
+import javax.swing.text.Document;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ======================================================================================
+// Diagnóstico: tiempos del editor (JFR, JMX y panel oculto)
+// ======================================================================================
+
+// Mide lo que hace que el editor "se cuelgue" y lo deja en tres sitios:
+//  - Eventos de JFR (categoría "Editor"): pulsaciones, bloqueos del EDT con la pila que
+//    se estaba ejecutando, aperturas/guardados y operaciones lentas. Solo cuestan algo
+//    si hay una grabación activa (p. ej. -XX:StartFlightRecording).
+//  - Un MBean (MiEditorTexto:type=Diagnostics) con contadores y percentiles.
+//  - El panel de Ctrl+Mayús+D (DiagnosticsPanel).
+// Registrar una medida son unos pocos incrementos atómicos, así que va siempre activo.
+final class Diagnostics {
+
+    // Un EDT que tarda más que esto en atender un evento se considera bloqueado
+    static final long STALL_THRESHOLD_MS = 200;
+    private static final long WATCHDOG_PERIOD_MS = 50;
+
+    static final LatencyHistogram KEYSTROKES = new LatencyHistogram();
+    static final LatencyHistogram STALLS = new LatencyHistogram();
+    static final LatencyHistogram OPENS = new LatencyHistogram();
+    static final LatencyHistogram SAVES = new LatencyHistogram();
+    private static final Map<String, LatencyHistogram> OPERATIONS = new ConcurrentHashMap<>();
+
+    // Los actualizan a la vez los hilos de carga y los carriles de IoScheduler
+    private static final AtomicLong bytesOpened = new AtomicLong();
+    private static final AtomicLong bytesSaved = new AtomicLong();
+    private static volatile String lastStallStack = "";
+    private static volatile Thread edt;
+
+    private static boolean installed;
+
+    private Diagnostics() {
+    }
+
+    // Arranca el vigilante del EDT, la medida de pulsaciones sobre textPane y el MBean
+    static synchronized void install(JTextPane textPane) {
+        if (installed)
+            return;
+        installed = true;
+        installKeystrokes(textPane);
+        // El servidor de MBeans tarda en arrancar: se registra desde el vigilante, no
+        // mientras se abre la ventana
+        Thread watchdog = new Thread(() -> {
+            registerBean();
+            watchEdt();
+        }, "Vigilante-EDT");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    private static void registerBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(new Bean(), DiagnosticsMBean.class), new ObjectName("MiEditorTexto:type=Diagnostics"));
+        } catch (Exception e) {
+            System.err.println("Diagnóstico: no se pudo registrar el MBean: " + e);
+        }
+    }
+
+    // --- Operaciones ---
+
+    // Uso: long t = Diagnostics.start(); ...; Diagnostics.end("nombre", t);
+    static long start() {
+        return System.nanoTime();
+    }
+
+    static void end(String operation, long start) {
+        long nanos = System.nanoTime() - start;
+        OPERATIONS.computeIfAbsent(operation, k -> new LatencyHistogram()).record(nanos);
+        if (nanos >= OperationEvent.THRESHOLD_NANOS) {
+            OperationEvent event = new OperationEvent();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.time = nanos;
+                event.commit();
+            }
+        }
+    }
+
+    // Lectura o escritura de un fichero completo (DocumentLoader/DocumentSaver)
+    static void fileIo(boolean save, File file, long bytes, long nanos) {
+        if (save) {
+            SAVES.record(nanos);
+            bytesSaved.addAndGet(bytes);
+        } else {
+            OPENS.record(nanos);
+            bytesOpened.addAndGet(bytes);
+        }
+        FileIoEvent event = new FileIoEvent();
+        if (event.shouldCommit()) {
+            event.operation = save ? "guardar" : "abrir";
+            event.path = file.getPath();
+            event.bytes = bytes;
+            event.time = nanos;
+            event.megabytesPerSecond = megabytesPerSecond(bytes, nanos);
+            event.commit();
+        }
+    }
+
+    static double megabytesPerSecond(long bytes, long nanos) {
+        return nanos == 0 ? 0 : bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+
+    static Map<String, LatencyHistogram> operations() {
+        return new TreeMap<>(OPERATIONS);
+    }
+
+    static long bytesOpened() {
+        return bytesOpened.get();
+    }
+
+    static long bytesSaved() {
+        return bytesSaved.get();
+    }
+
+    static String lastStallStack() {
+        return lastStallStack;
+    }
+
+    static void reset() {
+        KEYSTROKES.reset();
+        STALLS.reset();
+        OPENS.reset();
+        SAVES.reset();
+        OPERATIONS.clear();
+        bytesOpened.set(0);
+        bytesSaved.set(0);
+        lastStallStack = "";
+    }
+
+    // --- Pulsaciones ---
+
+    // Desde que se genera la pulsación hasta que el documento (y sus listeners, barra de
+    // estado incluida) la han procesado; solo cuentan las que cambian el documento. La
+    // espera en cola sale de KeyEvent.getWhen (en milisegundos); el proceso se mide entre
+    // el despachador previo y el posterior.
+    private static void installKeystrokes(JTextPane textPane) {
+        long[] before = new long[2]; // Nanos al empezar, y cambios del documento en ese momento
+        KeyboardFocusManager manager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
+        manager.addKeyEventDispatcher(e -> {
+            if (e.getID() != KeyEvent.KEY_RELEASED && e.getComponent() == textPane) {
+                before[0] = System.nanoTime();
+                before[1] = editCount(textPane.getDocument());
+            }
+            return false;
+        });
+        manager.addKeyEventPostProcessor(e -> {
+            if (e.getID() != KeyEvent.KEY_RELEASED && e.getComponent() == textPane && before[0] != 0) {
+                long processing = System.nanoTime() - before[0];
+                if (editCount(textPane.getDocument()) != before[1]) {
+                    long queued = Math.max(0, System.currentTimeMillis() - e.getWhen()) * 1_000_000 - processing;
+                    KEYSTROKES.record(Math.max(queued, 0) + processing);
+                    KeystrokeEvent event = new KeystrokeEvent();
+                    if (event.shouldCommit()) {
+                        event.queued = Math.max(queued, 0);
+                        event.processing = processing;
+                        event.commit();
+                    }
+                }
+                before[0] = 0;
+            }
+            return false;
+        });
+    }
+
+    private static long editCount(Document doc) {
+        return doc instanceof EditorDocument ? ((EditorDocument) doc).getEditCount() : doc.getLength();
+    }
+
+    // --- Vigilante del EDT ---
+
+    // Cada WATCHDOG_PERIOD_MS manda un latido al EDT. Si no se atiende en
+    // STALL_THRESHOLD_MS se toma la pila del EDT (lo que lo está bloqueando) y, cuando por
+    // fin se atiende, se registra cuánto duró el bloqueo (contado desde el latido, así que
+    // es una cota inferior).
+    private static void watchEdt() {
+        try {
+            SwingUtilities.invokeAndWait(() -> edt = Thread.currentThread());
+            while (true) {
+                long posted = System.nanoTime();
+                long[] served = {0};
+                EventQueue.invokeLater(() -> {
+                    synchronized (served) {
+                        // El EDT puede cambiar (p. ej. tras una excepción no capturada)
+                        edt = Thread.currentThread();
+                        served[0] = System.nanoTime();
+                        served.notifyAll();
+                    }
+                });
+                StackTraceElement[] stack = null;
+                synchronized (served) {
+                    served.wait(STALL_THRESHOLD_MS);
+                    if (served[0] == 0) {
+                        stack = edt.getStackTrace();
+                        while (served[0] == 0)
+                            served.wait();
+                    }
+                }
+                if (stack != null)
+                    stall(served[0] - posted, stack);
+                Thread.sleep(WATCHDOG_PERIOD_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Diagnóstico: vigilante del EDT detenido: " + e);
+        }
+    }
+
+    private static void stall(long nanos, StackTraceElement[] stack) {
+        STALLS.record(nanos);
+        StringBuilder sb = new StringBuilder();
+        for (StackTraceElement frame : stack)
+            sb.append("    at ").append(frame).append('\n');
+        lastStallStack = String.format("%d ms bloqueado:%n%s", nanos / 1_000_000, sb);
+        EdtStallEvent event = new EdtStallEvent();
+        if (event.shouldCommit()) {
+            event.time = nanos;
+            event.stack = sb.toString();
+            event.commit();
+        }
+    }
+
+    // --- Eventos de JFR ---
+
+    @Name("MiEditorTexto.Keystroke")
+    @Label("Pulsación")
+    @Category("Editor")
+    @Description("Desde que se pulsa una tecla hasta que el documento la ha procesado")
+    @StackTrace(false)
+    static final class KeystrokeEvent extends Event {
+        @Label("Espera en cola")
+        @Timespan(Timespan.NANOSECONDS)
+        long queued;
+
+        @Label("Proceso")
+        @Timespan(Timespan.NANOSECONDS)
+        long processing;
+    }
+
+    @Name("MiEditorTexto.EdtStall")
+    @Label("Bloqueo del EDT")
+    @Category("Editor")
+    @Description("El EDT tardó más de " + STALL_THRESHOLD_MS + " ms en atender un evento")
+    @StackTrace(false)
+    static final class EdtStallEvent extends Event {
+        @Label("Duración")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+
+        @Label("Pila del EDT")
+        String stack;
+    }
+
+    @Name("MiEditorTexto.FileIo")
+    @Label("Abrir o guardar")
+    @Category("Editor")
+    @StackTrace(false)
+    static final class FileIoEvent extends Event {
+        @Label("Operación")
+        String operation;
+
+        @Label("Fichero")
+        String path;
+
+        @Label("Tamaño")
+        @DataAmount
+        long bytes;
+
+        @Label("Duración")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+
+        @Label("MB/s")
+        double megabytesPerSecond;
+    }
+
+    @Name("MiEditorTexto.Operation")
+    @Label("Operación lenta")
+    @Category("Editor")
+    @Description("Operación del editor que tardó 20 ms o más")
+    @StackTrace(false)
+    static final class OperationEvent extends Event {
+        static final long THRESHOLD_NANOS = 20_000_000;
+
+        @Label("Operación")
+        String operation;
+
+        @Label("Duración")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    // --- JMX ---
+
+    // Atributos del MBean; los tiempos van en microsegundos
+    public interface DiagnosticsMBean {
+        long getKeystrokeCount();
+
+        long getKeystrokeP50Micros();
+
+        long getKeystrokeP99Micros();
+
+        long getKeystrokeMaxMicros();
+
+        long getEdtStallCount();
+
+        long getEdtStallMaxMicros();
+
+        String getLastEdtStall();
+
+        long getOpenCount();
+
+        long getOpenP95Micros();
+
+        long getBytesOpened();
+
+        long getSaveCount();
+
+        long getSaveP95Micros();
+
+        long getBytesSaved();
+
+        // "operación: n, p50, p95, p99, max" por cada operación medida
+        String[] getOperations();
+
+        void reset();
+    }
+
+    private static final class Bean implements DiagnosticsMBean {
+        @Override
+        public long getKeystrokeCount() {
+            return KEYSTROKES.count();
+        }
+
+        @Override
+        public long getKeystrokeP50Micros() {
+            return KEYSTROKES.percentile(0.5) / 1000;
+        }
+
+        @Override
+        public long getKeystrokeP99Micros() {
+            return KEYSTROKES.percentile(0.99) / 1000;
+        }
+
+        @Override
+        public long getKeystrokeMaxMicros() {
+            return KEYSTROKES.max() / 1000;
+        }
+
+        @Override
+        public long getEdtStallCount() {
+            return STALLS.count();
+        }
+
+        @Override
+        public long getEdtStallMaxMicros() {
+            return STALLS.max() / 1000;
+        }
+
+        @Override
+        public String getLastEdtStall() {
+            return lastStallStack;
+        }
+
+        @Override
+        public long getOpenCount() {
+            return OPENS.count();
+        }
+
+        @Override
+        public long getOpenP95Micros() {
+            return OPENS.percentile(0.95) / 1000;
+        }
+
+        @Override
+        public long getBytesOpened() {
+            return bytesOpened.get();
+        }
+
+        @Override
+        public long getSaveCount() {
+            return SAVES.count();
+        }
+
+        @Override
+        public long getSaveP95Micros() {
+            return SAVES.percentile(0.95) / 1000;
+        }
+
+        @Override
+        public long getBytesSaved() {
+            return bytesSaved.get();
+        }
+
+        @Override
+        public String[] getOperations() {
+            return operations().entrySet().stream()
+                    .map(e -> String.format("%s: n=%d p50=%dus p95=%dus p99=%dus max=%dus", e.getKey(),
+                            e.getValue().count(), e.getValue().percentile(0.5) / 1000,
+                            e.getValue().percentile(0.95) / 1000, e.getValue().percentile(0.99) / 1000,
+                            e.getValue().max() / 1000))
+                    .toArray(String[]::new);
+        }
+
+        @Override
+        public void reset() {
+            Diagnostics.reset();
+        }
+    }
+}
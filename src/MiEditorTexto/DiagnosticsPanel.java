@@ -0,0 +1,110 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.Map;
+
+// ======================================================================================
+// Panel de diagnóstico (Ctrl+Mayús+D)
+// ======================================================================================
+
+// Ventana oculta con los percentiles que va recogiendo Diagnostics, refrescada cada medio
+// segundo mientras está abierta.
+class DiagnosticsPanel extends JDialog {
+
+    private static final String[] COLUMNS = {"Medida", "n", "p50", "p95", "p99", "máx"};
+
+    private final DefaultTableModel model = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final JLabel io = new JLabel();
+    private final JTextArea stall = new JTextArea(8, 60);
+    private final Timer refresh = new Timer(500, e -> refresh());
+
+    DiagnosticsPanel(Frame owner) {
+        super(owner, "Diagnóstico", false);
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        table.setPreferredScrollableViewportSize(new Dimension(520, 180));
+        stall.setEditable(false);
+        stall.setFont(new Font("Monospaced", Font.PLAIN, 11));
+
+        JButton reset = new JButton("Reiniciar");
+        reset.addActionListener(e -> {
+            Diagnostics.reset();
+            refresh();
+        });
+        JButton close = new JButton("Cerrar");
+        close.addActionListener(e -> setVisible(false));
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(reset);
+        buttons.add(close);
+
+        JPanel south = new JPanel(new BorderLayout(5, 5));
+        south.add(io, BorderLayout.NORTH);
+        JScrollPane stallScroll = new JScrollPane(stall);
+        stallScroll.setBorder(BorderFactory.createTitledBorder(
+                "Último bloqueo del EDT (> " + Diagnostics.STALL_THRESHOLD_MS + " ms)"));
+        south.add(stallScroll, BorderLayout.CENTER);
+        south.add(buttons, BorderLayout.SOUTH);
+
+        JPanel content = new JPanel(new BorderLayout(5, 5));
+        content.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        content.add(new JScrollPane(table), BorderLayout.CENTER);
+        content.add(south, BorderLayout.SOUTH);
+        setContentPane(content);
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        if (visible) {
+            refresh();
+            refresh.start();
+        } else {
+            refresh.stop();
+        }
+        super.setVisible(visible);
+    }
+
+    private void refresh() {
+        model.setRowCount(0);
+        addRow("Pulsación → documento", Diagnostics.KEYSTROKES);
+        addRow("Bloqueos del EDT", Diagnostics.STALLS);
+        addRow("Abrir", Diagnostics.OPENS);
+        addRow("Guardar", Diagnostics.SAVES);
+        for (Map.Entry<String, LatencyHistogram> entry : Diagnostics.operations().entrySet())
+            addRow(entry.getKey(), entry.getValue());
+
+        io.setText(String.format("Leído: %s en %d aperturas | Escrito: %s en %d guardados",
+                megabytes(Diagnostics.bytesOpened()), Diagnostics.OPENS.count(),
+                megabytes(Diagnostics.bytesSaved()), Diagnostics.SAVES.count()));
+        String text = Diagnostics.lastStallStack();
+        if (!text.equals(stall.getText())) {
+            stall.setText(text);
+            stall.setCaretPosition(0);
+        }
+    }
+
+    private void addRow(String name, LatencyHistogram h) {
+        model.addRow(new Object[]{name, h.count(), time(h.percentile(0.5)), time(h.percentile(0.95)),
+                time(h.percentile(0.99)), time(h.max())});
+    }
+
+    private static String time(long nanos) {
+        if (nanos >= 1_000_000_000L)
+            return String.format("%.2f s", nanos / 1e9);
+        if (nanos >= 1_000_000)
+            return String.format("%.1f ms", nanos / 1e6);
+        return String.format("%d µs", nanos / 1000);
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
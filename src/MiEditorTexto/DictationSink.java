@@ -0,0 +1,147 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Document;
+import javax.swing.text.Highlighter;
+import javax.swing.text.Position;
+import java.awt.*;
+import java.util.function.Supplier;
+
+// ======================================================================================
+// Entrada de dictado
+// ======================================================================================
+
+// Junta lo que llega por DICTAR_TEXTO y lo escribe en el editor de una vez por ciclo de
+// eventos (o antes, si se acumula mucho), en vez de un insertString por orden. Admite
+// además texto provisional: lo que el reconocedor va entendiendo mientras se habla, que
+// se muestra resaltado en gris y se sustituye en cada corrección hasta que llega el
+// texto definitivo. Cada escritura es una sola edición para deshacer. Solo desde el EDT.
+class DictationSink {
+
+    // Con más texto pendiente que esto se escribe sin esperar al siguiente ciclo
+    static final int FLUSH_CHARS = 4096;
+    private static final Color PROVISIONAL = new Color(128, 128, 128, 70);
+
+    private final JTextPane textPane;
+    private final Supplier<CoalescingUndoManager> undoManager; // El de la pestaña activa
+    private final Highlighter.HighlightPainter painter = new DefaultHighlighter.DefaultHighlightPainter(PROVISIONAL);
+
+    private final StringBuilder pending = new StringBuilder(); // Texto definitivo por escribir
+    private String revision; // Última versión del texto provisional (null si no ha cambiado)
+    private boolean scheduled;
+
+    // Texto provisional que hay ahora mismo en el documento
+    private Document provisionalDoc;
+    private Position provisionalStart;
+    private String provisionalText = "";
+    private Object provisionalTag;
+
+    DictationSink(JTextPane textPane, Supplier<CoalescingUndoManager> undoManager) {
+        this.textPane = textPane;
+        this.undoManager = undoManager;
+    }
+
+    // Texto definitivo: sustituye al provisional que hubiera
+    void append(String text) {
+        pending.append(text).append(' ');
+        revision = "";
+        schedule();
+    }
+
+    // Nueva versión del texto provisional (reemplaza a la anterior)
+    void revise(String text) {
+        revision = text;
+        schedule();
+    }
+
+    // Olvida lo pendiente y el texto provisional (nuevo documento, fichero abierto...)
+    void reset() {
+        pending.setLength(0);
+        revision = null;
+        forgetProvisional();
+    }
+
+    private void schedule() {
+        if (pending.length() >= FLUSH_CHARS) {
+            flush();
+        } else if (!scheduled) {
+            scheduled = true;
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    void flush() {
+        scheduled = false;
+        if (pending.length() == 0 && revision == null)
+            return;
+        String text = pending.toString();
+        String newProvisional = revision != null ? revision : provisionalText;
+        pending.setLength(0);
+        revision = null;
+        if (!textPane.isEditable()) {
+            forgetProvisional();
+            return;
+        }
+
+        Document doc = textPane.getDocument();
+        // Si el provisional ya no está tal cual (otro documento, o se ha editado a
+        // mano), se deja donde esté y se escribe en el cursor
+        int start = provisionalOffset(doc);
+        int removeLength = start >= 0 ? provisionalText.length() : 0;
+        if (start < 0)
+            start = textPane.getCaretPosition();
+        forgetProvisional();
+
+        AttributeSet attrs = textPane.getInputAttributes().copyAttributes();
+        CoalescingUndoManager undo = undoManager.get();
+        undo.beginGroup();
+        try {
+            if (removeLength > 0)
+                doc.remove(start, removeLength);
+            doc.insertString(start, text + newProvisional, attrs);
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            undo.endGroup();
+        }
+
+        int end = start + text.length() + newProvisional.length();
+        textPane.setCaretPosition(end);
+        if (!newProvisional.isEmpty()) {
+            try {
+                provisionalDoc = doc;
+                provisionalStart = doc.createPosition(start + text.length());
+                provisionalText = newProvisional;
+                provisionalTag = textPane.getHighlighter().addHighlight(start + text.length(), end, painter);
+            } catch (BadLocationException e) {
+                forgetProvisional();
+            }
+        }
+    }
+
+    private int provisionalOffset(Document doc) {
+        if (provisionalDoc != doc || provisionalText.isEmpty())
+            return -1;
+        int start = provisionalStart.getOffset();
+        try {
+            if (start + provisionalText.length() <= doc.getLength()
+                    && doc.getText(start, provisionalText.length()).equals(provisionalText))
+                return start;
+        } catch (BadLocationException ignored) {
+        }
+        return -1;
+    }
+
+    private void forgetProvisional() {
+        if (provisionalTag != null)
+            textPane.getHighlighter().removeHighlight(provisionalTag);
+        provisionalTag = null;
+        provisionalDoc = null;
+        provisionalStart = null;
+        provisionalText = "";
+    }
+}
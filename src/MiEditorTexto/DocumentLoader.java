@@ -0,0 +1,302 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+// ======================================================================================
+// Carga de documentos en segundo plano
+// ======================================================================================
+
+// Lee el fichero por bloques grandes y lo vuelca en un EditorDocument "suelto" (sin
+// listeners, sin deshacer y fuera del EDT). Al terminar, el documento completo se
+// entrega en el EDT para colocarlo en el JTextPane de una sola vez.
+// El texto decodificado va a un CharBuffer directo (fuera del heap) que pasa a ser el
+// buffer original de un PieceTableContent: no se copia a Strings ni a un GapContent.
+// Si no queda memoria directa (-XX:MaxDirectMemorySize) se usa uno del heap, y si
+// tampoco cabe ahí la carga falla con TooLargeException (el editor lo abre entonces con
+// el visor de solo lectura, ver LargeFileView).
+// La codificación se deduce de los primeros bytes (ver TextFormat) y se comprueba al
+// decodificar: si aparece un byte que no encaja, se vuelve a empezar con el siguiente
+// charset posible. El formato encontrado (con el final de línea más usado) queda en el
+// documento para que DocumentSaver lo escriba igual.
+// Los .etx (con formato) los lee RichTextFile, que construye el documento de una vez.
+class DocumentLoader extends SwingWorker<EditorDocument, Integer> {
+
+    // Tamaño de bloque de lectura (bytes) y de inserción en el documento (caracteres)
+    private static final int CHUNK_SIZE = 1 << 20;
+    // Límite del CharBuffer directo (2 bytes por carácter)
+    private static final long MAX_CHARS = Integer.MAX_VALUE / 2 - 16;
+
+    private final File file;
+    private final EditorTextoGUI.ProgressLabel progressLabel;
+
+    DocumentLoader(File file, EditorTextoGUI.ProgressLabel progressLabel) {
+        this.file = file;
+        this.progressLabel = progressLabel;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    // --- Ganchos para quien lanza la carga (se llaman en el EDT) ---
+
+    protected void loaded(EditorDocument doc) {
+    }
+
+    protected void failed(Exception ex) {
+    }
+
+    protected void cancelled() {
+    }
+
+    @Override
+    protected EditorDocument doInBackground() throws Exception {
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (RichTextFile.isRichText(file)) {
+                EditorDocument doc = RichTextFile.read(progressStream(channel));
+                Diagnostics.fileIo(false, file, channel.size(), System.nanoTime() - started);
+                return doc;
+            }
+            long size = Math.max(1, channel.size());
+            // Nunca hay más caracteres que bytes en los charsets habituales
+            if (size > MAX_CHARS)
+                throw new IOException("El fichero es demasiado grande para editarlo (" + size + " bytes)");
+            CharBuffer text = textBuffer((int) size);
+            ByteBuffer bytes = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+
+            List<TextFormat> formats = TextFormat.candidates(sample(channel), channel.size() <= TextFormat.SAMPLE_SIZE);
+            for (int i = 0; ; i++) {
+                try {
+                    EditorDocument doc = read(channel, formats.get(i), text, bytes, chars);
+                    if (doc != null)
+                        Diagnostics.fileIo(false, file, channel.size(), System.nanoTime() - started);
+                    return doc;
+                } catch (CharacterCodingException ex) {
+                    if (i == formats.size() - 1)
+                        throw ex; // ISO-8859-1 (el último) acepta cualquier byte
+                }
+            }
+        }
+    }
+
+    // El fichero no cabe en memoria (ni directa ni en el heap)
+    static final class TooLargeException extends IOException {
+        TooLargeException(long size) {
+            super("No hay memoria para editar el fichero (" + size + " bytes)");
+        }
+    }
+
+    private static CharBuffer textBuffer(int chars) throws TooLargeException {
+        try {
+            return ByteBuffer.allocateDirect(chars * 2).asCharBuffer();
+        } catch (OutOfMemoryError directFull) {
+            try {
+                return CharBuffer.allocate(chars);
+            } catch (OutOfMemoryError heapFull) {
+                throw new TooLargeException(chars);
+            }
+        }
+    }
+
+    private static ByteBuffer sample(FileChannel channel) throws IOException {
+        ByteBuffer sample = ByteBuffer.allocate((int) Math.min(TextFormat.SAMPLE_SIZE, channel.size()));
+        while (sample.hasRemaining() && channel.read(sample, sample.position()) >= 0) {
+        }
+        return sample.flip();
+    }
+
+    // Un intento con un charset: null si se cancela; CharacterCodingException si algún
+    // byte no le corresponde
+    private EditorDocument read(FileChannel channel, TextFormat format, CharBuffer text, ByteBuffer bytes,
+                                CharBuffer chars) throws IOException, BadLocationException {
+        long size = Math.max(1, channel.size());
+        text.clear();
+        bytes.clear();
+        chars.clear();
+        channel.position(format.bomBytes().length);
+        EditorDocument doc = new EditorDocument(new PieceTableContent(text));
+        long read = channel.position();
+        int lastPercent = -1;
+
+        CharsetDecoder decoder = format.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        LineNormalizer normalizer = new LineNormalizer(text, CHUNK_SIZE);
+
+        boolean eof = false;
+        while (!eof) {
+            if (isCancelled())
+                return null;
+            int n = channel.read(bytes);
+            if (n < 0)
+                eof = true;
+            else
+                read += n;
+
+            bytes.flip();
+            decode(decoder, bytes, chars, eof, normalizer, doc);
+            bytes.compact();
+
+            int percent = (int) (read * 100 / size);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                publish(percent);
+            }
+        }
+        while (decoder.flush(chars) == CoderResult.OVERFLOW)
+            drain(chars, normalizer, doc);
+        drain(chars, normalizer, doc);
+        normalizer.finish(doc);
+        doc.putProperty(TextFormat.PROPERTY, format.withLineSeparator(normalizer.lineSeparator()));
+        doc.putProperty(FileFollower.READ_TO_PROPERTY, read);
+        return doc;
+    }
+
+    // Publica el avance según lo leído del canal (y deja de leer si se cancela)
+    private InputStream progressStream(FileChannel channel) throws IOException {
+        long size = Math.max(1, channel.size());
+        return new FilterInputStream(Channels.newInputStream(channel)) {
+            private int lastPercent = -1;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (isCancelled())
+                    throw new InterruptedIOException("Carga cancelada");
+                int n = super.read(b, off, len);
+                int percent = (int) (channel.position() * 100 / size);
+                if (percent != lastPercent) {
+                    lastPercent = percent;
+                    publish(percent);
+                }
+                return n;
+            }
+        };
+    }
+
+    private void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, boolean eof,
+                        LineNormalizer normalizer, EditorDocument doc) throws IOException, BadLocationException {
+        CoderResult result;
+        while ((result = decoder.decode(bytes, chars, eof)) == CoderResult.OVERFLOW)
+            drain(chars, normalizer, doc);
+        if (result.isError())
+            result.throwException();
+        drain(chars, normalizer, doc);
+    }
+
+    private void drain(CharBuffer chars, LineNormalizer normalizer, EditorDocument doc)
+            throws IOException, BadLocationException {
+        chars.flip();
+        normalizer.append(chars, doc);
+        chars.clear();
+    }
+
+    @Override
+    protected void process(List<Integer> chunks) {
+        progressLabel.setProgressValue(chunks.get(chunks.size() - 1));
+    }
+
+    @Override
+    protected void done() {
+        try {
+            loaded(get());
+        } catch (CancellationException ex) {
+            cancelled();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancelled();
+        } catch (Exception ex) {
+            failed(ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+        }
+    }
+
+    // Convierte los finales de línea "\r\n" y "\r" en "\n" (como hacía readLine),
+    // contando cuántos hay de cada, y va pasando al documento el texto ya decodificado
+    // en tramos grandes
+    private static class LineNormalizer {
+        private final CharBuffer text;
+        private final int flushSize;
+        private int inserted;
+        private boolean lastWasCR;
+        private long crlf, lf, cr;
+
+        LineNormalizer(CharBuffer text, int flushSize) {
+            this.text = text;
+            this.flushSize = flushSize;
+        }
+
+        // "chars" es el CharBuffer de decodificación (con array): lo que hay entre dos
+        // '\r' se copia de una vez
+        void append(CharBuffer chars, EditorDocument doc) throws IOException, BadLocationException {
+            char[] array = chars.array();
+            int start = chars.arrayOffset() + chars.position();
+            int end = chars.arrayOffset() + chars.limit();
+            // Sale como mucho lo mismo que entra
+            if (text.remaining() < end - start)
+                throw new IOException("El texto decodificado ocupa más de lo previsto");
+            int run = start;
+            for (int i = start; i < end; i++) {
+                char c = array[i];
+                if (c == '\r') {
+                    text.put(array, run, i - run).put('\n');
+                    run = i + 1;
+                    cr++;
+                    lastWasCR = true;
+                    continue;
+                }
+                if (c == '\n') {
+                    if (lastWasCR) {
+                        text.put(array, run, i - run);
+                        run = i + 1;
+                        cr--;
+                        crlf++;
+                    } else {
+                        lf++;
+                    }
+                }
+                lastWasCR = false;
+            }
+            text.put(array, run, end - run);
+            chars.position(chars.limit());
+            if (text.position() - inserted >= flushSize)
+                flush(doc);
+        }
+
+        void finish(EditorDocument doc) throws BadLocationException {
+            flush(doc);
+        }
+
+        // El más usado (si se mezclan, al guardar todos pasan a ser ese); "\n" si no hay
+        String lineSeparator() {
+            if (crlf > lf && crlf >= cr)
+                return "\r\n";
+            return cr > lf ? "\r" : "\n";
+        }
+
+        private void flush(EditorDocument doc) throws BadLocationException {
+            int end = text.position();
+            if (end == inserted)
+                return;
+            doc.insertOriginal(doc.getLength(), inserted, end - inserted);
+            inserted = end;
+        }
+    }
+}
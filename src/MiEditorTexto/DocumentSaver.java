@@ -0,0 +1,268 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+import javax.swing.text.StyledDocument;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+// ======================================================================================
+// Guardado de documentos en segundo plano
+// ======================================================================================
+
+// Recorre el documento por bloques (sin copiarlo entero a un String), lo codifica en un
+// buffer directo reutilizado y lo escribe en un fichero temporal junto al destino. El
+// cerrojo de lectura solo se tiene mientras se copia cada bloque (ver ChunkReader). Tras
+// forzarlo a disco, el temporal sustituye al original con un rename atómico: si algo
+// falla a mitad, el fichero anterior sigue intacto.
+// El formato sale de la extensión: .etx (con formato, ver RichTextFile), .rtf (exportar,
+// ver RtfWriter) o texto plano para todo lo demás, con el charset, el BOM y el final de
+// línea con que se leyó (ver TextFormat): un fichero que no se ha tocado sale idéntico.
+class DocumentSaver extends SwingWorker<Void, Integer> {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+    // Intentos soltando el cerrojo entre bloques; el último lo retiene de principio a fin
+    private static final int ATTEMPTS = 3;
+
+    private final Document doc;
+    private final File file;
+    private final EditorTextoGUI.ProgressLabel progressLabel;
+    private volatile int version = -1; // Versión del documento que se escribió
+    private int lastPercent = -1;
+
+    DocumentSaver(Document doc, File file, EditorTextoGUI.ProgressLabel progressLabel) {
+        this.doc = doc;
+        this.file = file;
+        this.progressLabel = progressLabel;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    // EditorDocument.getVersion() en el momento de leerlo (-1 si no es un EditorDocument):
+    // cubre también el formato, que el .etx guarda
+    int getVersion() {
+        return version;
+    }
+
+    // --- Ganchos para quien lanza el guardado (se llaman en el EDT) ---
+
+    protected void saved() {
+    }
+
+    protected void failed(Exception ex) {
+    }
+
+    @Override
+    protected Void doInBackground() throws Exception {
+        long started = System.nanoTime();
+        long bytes;
+        Path target = file.getAbsoluteFile().toPath();
+        Path dir = target.getParent();
+        // createFile (y no createTempFile) para que un fichero nuevo reciba los permisos normales
+        Path temp = Files.createFile(dir.resolve("." + target.getFileName() + "." + System.nanoTime() + ".tmp"));
+        try {
+            copyPermissions(target, temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                write(channel);
+                channel.force(true);
+                bytes = channel.size();
+            }
+            move(temp, target);
+            syncDirectory(dir);
+            Diagnostics.fileIo(true, file, bytes, System.nanoTime() - started);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return null;
+    }
+
+    // Cada bloque se copia con el documento bloqueado para lectura y se codifica y
+    // escribe sin él, así que se puede seguir editando mientras tanto. Si se edita a
+    // mitad, lo escrito mezcla dos versiones: se trunca y se empieza otra vez. Para que
+    // escribir sin parar no deje el guardado sin terminar, el último intento (y el único,
+    // si el documento no lleva la cuenta de ediciones) retiene el cerrojo hasta el final
+    // y las ediciones que lleguen esperan.
+    private void write(FileChannel channel) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                ChunkReader reader = new ChunkReader(doc);
+                if (attempt < ATTEMPTS && reader.detectsChanges()) {
+                    write(channel, reader);
+                } else {
+                    Exception[] error = new Exception[1];
+                    doc.render(() -> {
+                        try {
+                            write(channel, new ChunkReader(doc));
+                        } catch (Exception ex) {
+                            error[0] = ex;
+                        }
+                    });
+                    if (error[0] != null)
+                        throw error[0];
+                }
+                return;
+            } catch (ChunkReader.ChangedException ex) {
+                channel.truncate(0);
+                channel.position(0);
+            }
+        }
+    }
+
+    private void write(FileChannel channel, ChunkReader reader) throws Exception {
+        version = reader.getVersion();
+        if (RichTextFile.isRichText(file) && doc instanceof StyledDocument)
+            RichTextFile.write((StyledDocument) doc, reader, channel, this::progress);
+        else if (RtfWriter.isRtf(file) && doc instanceof StyledDocument)
+            RtfWriter.write((StyledDocument) doc, reader, channel, this::progress);
+        else
+            writeText(channel, reader);
+    }
+
+    // Caracteres escritos de los formatos con formato (el texto plano lleva su cuenta)
+    private void progress(int written) {
+        if (isCancelled())
+            throw new CancellationException();
+        int length = doc.getLength();
+        int percent = length == 0 ? 100 : (int) ((long) written * 100 / length);
+        if (percent != lastPercent) {
+            lastPercent = percent;
+            publish(percent);
+        }
+    }
+
+    private void writeText(FileChannel channel, ChunkReader reader) throws IOException, BadLocationException {
+        TextFormat format = TextFormat.of(doc);
+        CharsetEncoder encoder = format.charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        bytes.put(format.bomBytes());
+        Segment segment = new Segment();
+        // Solo hace falta si el final de línea no es "\n"
+        CharBuffer lines = format.lineSeparator.equals("\n") ? null
+                : CharBuffer.allocate(CHUNK_SIZE * format.lineSeparator.length());
+
+        int length = reader.getLength();
+        int offset = 0;
+        int lastPercent = -1;
+        while (offset < length) {
+            if (isCancelled())
+                throw new CancellationException();
+            reader.getText(offset, Math.min(CHUNK_SIZE, length - offset), segment);
+            CharBuffer chars = CharBuffer.wrap(segment.array, segment.offset, segment.count);
+            // No partimos un par surrogate entre dos bloques
+            if (offset + segment.count < length
+                    && Character.isHighSurrogate(segment.array[segment.offset + segment.count - 1])) {
+                if (segment.count > 1) {
+                    chars.limit(chars.limit() - 1);
+                } else {
+                    reader.getText(offset, 2, segment);
+                    chars = CharBuffer.wrap(segment.array, segment.offset, segment.count);
+                }
+            }
+            offset += chars.remaining();
+            if (lines != null)
+                chars = separate(chars, format.lineSeparator, lines);
+            encode(encoder, chars, bytes, channel, offset == length);
+
+            // El progreso avanza con lo que ya está escrito en el canal
+            int percent = (int) ((long) offset * 100 / length);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                publish(percent);
+            }
+        }
+        if (length == 0)
+            encode(encoder, CharBuffer.allocate(0), bytes, channel, true);
+        while (encoder.flush(bytes) == CoderResult.OVERFLOW)
+            drain(bytes, channel);
+        drain(bytes, channel);
+    }
+
+    // Copia "chars" en "lines" con cada "\n" cambiado por el final de línea del fichero
+    private static CharBuffer separate(CharBuffer chars, String separator, CharBuffer lines) {
+        lines.clear();
+        while (chars.hasRemaining()) {
+            char c = chars.get();
+            if (c == '\n')
+                lines.put(separator);
+            else
+                lines.put(c);
+        }
+        return lines.flip();
+    }
+
+    private void encode(CharsetEncoder encoder, CharBuffer chars, ByteBuffer bytes, FileChannel channel,
+                        boolean endOfInput) throws IOException {
+        while (encoder.encode(chars, bytes, endOfInput) == CoderResult.OVERFLOW)
+            drain(bytes, channel);
+        drain(bytes, channel);
+    }
+
+    private void drain(ByteBuffer bytes, FileChannel channel) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+        bytes.clear();
+    }
+
+    static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Si ya existía, el temporal hereda los permisos del fichero que va a sustituir
+    static void copyPermissions(Path from, Path to) {
+        try {
+            if (Files.exists(from))
+                Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (IOException | UnsupportedOperationException ignored) {
+        }
+    }
+
+    // Persiste la entrada del directorio tras el rename (no todos los sistemas lo permiten)
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    protected void process(List<Integer> chunks) {
+        progressLabel.setProgressValue(chunks.get(chunks.size() - 1));
+    }
+
+    @Override
+    protected void done() {
+        try {
+            get();
+            saved();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failed(ex);
+        } catch (Exception ex) {
+            failed(ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package MiEditorTexto;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.Segment;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyleContext;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// ======================================================================================
+// Diario de ediciones (autoguardado y recuperación)
+// ======================================================================================
+
+// Apunta cada cambio del documento (inserciones, borrados y cambios de formato) en un
+// fichero aparte, ".<nombre>.diario" junto al fichero (o en ~/.editortexto si aún no
+// tiene nombre). Los cambios se acumulan en memoria y un hilo los escribe por lotes cada
+// FLUSH_MS con un solo fsync. Cada lote lleva su longitud y su CRC, así que un lote a
+// medio escribir (un cuelgue) se detecta y se descarta. Cuando el diario crece mucho se
+// sustituye por una foto del documento (checkpoint) más lo que venga después.
+// Tras un cuelgue, replay() reaplica el diario sobre el fichero tal como estaba en disco
+// cuando empezó (la cabecera guarda su tamaño y fecha para comprobarlo).
+class EditJournal implements DocumentListener {
+
+    private static final int MAGIC = 0x45544A31; // "ETJ1"
+    static final long FLUSH_MS = 250;
+    // Con el diario por encima de esto (y del doble del último checkpoint) se compacta
+    private static final long COMPACT_BYTES = 16L << 20;
+    // Documentos sin título (pestañas) que se buscan al recuperar
+    static final int MAX_UNTITLED = 64;
+
+    private static final byte INSERT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CHARACTER_ATTRIBUTES = 3;
+    private static final byte PARAGRAPH_ATTRIBUTES = 4;
+    private static final byte CHECKPOINT = 5;
+
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Diario-ediciones");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final EditorDocument doc;
+    private File base;
+    private Path path;
+    private byte[] header;
+    private final Segment segment = new Segment();
+    private FileChannel channel;
+    private ScheduledFuture<?> flusher;
+    private long checkpointBytes;
+    private boolean closed;
+
+    // Cambios aún sin escribir (se llenan en el EDT, los vacía el hilo de escritura)
+    private ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+    private DataOutputStream pending = new DataOutputStream(pendingBytes);
+    private boolean dirty; // Hay cambios desde la última vez que se guardó el fichero
+
+    // Diario nuevo (vacío) para "doc", cuyo último estado guardado es "base" (o null)
+    static EditJournal start(EditorDocument doc, File base) throws IOException {
+        Path path = pathFor(base);
+        Files.createDirectories(path.getParent());
+        writeHeader(path, base);
+        return new EditJournal(doc, base, false);
+    }
+
+    // Sigue escribiendo al final de un diario que se acaba de reaplicar con replay()
+    static EditJournal resume(EditorDocument doc, File base) throws IOException {
+        return new EditJournal(doc, base, true);
+    }
+
+    private EditJournal(EditorDocument doc, File base, boolean dirty) throws IOException {
+        this.doc = doc;
+        this.base = base;
+        this.path = pathFor(base);
+        this.dirty = dirty;
+        header = header(base);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        checkpointBytes = channel.size();
+        doc.addDocumentListener(this);
+        flusher = WRITER.scheduleWithFixedDelay(this::flushQuietly, FLUSH_MS, FLUSH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    static Path pathFor(File base) {
+        if (base == null)
+            return Path.of(System.getProperty("user.home"), ".editortexto", "sin-titulo.diario");
+        Path file = base.getAbsoluteFile().toPath();
+        return file.resolveSibling("." + file.getFileName() + ".diario");
+    }
+
+    // Base del diario del n-ésimo documento sin título abierto a la vez: el primero usa el
+    // de siempre (null) y el resto un fichero inexistente en ~/.editortexto (tamaño y
+    // fecha 0, como un documento vacío)
+    static File untitled(int n) {
+        if (n <= 1)
+            return null;
+        return Path.of(System.getProperty("user.home"), ".editortexto", "sin-titulo-" + n).toFile();
+    }
+
+    // Números de los documentos sin título con trabajo pendiente de otra sesión
+    static List<Integer> untitledRecoveries() {
+        List<Integer> slots = new ArrayList<>();
+        for (int n = 1; n <= MAX_UNTITLED; n++) {
+            if (hasRecovery(untitled(n)))
+                slots.add(n);
+        }
+        return slots;
+    }
+
+    // Hay trabajo sin guardar de una sesión anterior para "base" (y el fichero no ha
+    // cambiado desde entonces)
+    static boolean hasRecovery(File base) {
+        Path path = pathFor(base);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return readHeader(in, base) >= 0 && in.read() >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // --- Registro de cambios (EDT, con el documento bloqueado para escritura) ---
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        try {
+            int offset = e.getOffset();
+            int length = e.getLength();
+            pending.writeByte(INSERT);
+            pending.writeInt(offset);
+            doc.getText(offset, length, segment);
+            RichText.writeText(pending, segment);
+            // También el carácter siguiente: replaceParagraphs cambia los atributos del
+            // salto de línea que cierra lo insertado
+            writeRuns(offset, Math.min(offset + length + 1, doc.getLength() + 1));
+            // Los párrafos que crea la inserción: sus atributos dependen de cómo se
+            // insertó (replaceParagraphs los conserva, insertString los hereda)
+            if (indexOf(segment, '\n') >= 0)
+                writeParagraphs(offset, offset + length);
+        } catch (IOException | BadLocationException ex) {
+            failed(ex);
+        }
+        dirty = true;
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        try {
+            pending.writeByte(REMOVE);
+            pending.writeInt(e.getOffset());
+            pending.writeInt(e.getLength());
+        } catch (IOException ex) {
+            failed(ex);
+        }
+        dirty = true;
+    }
+
+    // No se sabe si cambiaron atributos de carácter o de párrafo: se apuntan los dos
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        int start = e.getOffset();
+        int end = Math.min(start + e.getLength(), doc.getLength());
+        try {
+            writeRuns(start, end);
+            writeParagraphs(start, end);
+        } catch (IOException ex) {
+            failed(ex);
+        }
+        dirty = true;
+    }
+
+    private void writeRuns(int start, int end) throws IOException {
+        if (start >= end)
+            return;
+        pending.writeByte(CHARACTER_ATTRIBUTES);
+        pending.writeInt(start);
+        int count = 0;
+        for (int pos = start; pos < end; pos = doc.getCharacterElement(pos).getEndOffset())
+            count++;
+        pending.writeInt(count);
+        for (int pos = start; pos < end; ) {
+            Element leaf = doc.getCharacterElement(pos);
+            int runEnd = Math.min(end, leaf.getEndOffset());
+            pending.writeInt(runEnd - pos);
+            AttributeCodec.write(pending, leaf.getAttributes());
+            pos = runEnd;
+        }
+    }
+
+    private void writeParagraphs(int start, int end) throws IOException {
+        Element root = doc.getDefaultRootElement();
+        int first = root.getElementIndex(start);
+        int last = root.getElementIndex(Math.max(start, end));
+        pending.writeByte(PARAGRAPH_ATTRIBUTES);
+        pending.writeInt(root.getElement(first).getStartOffset());
+        pending.writeInt(last - first + 1);
+        for (int p = first; p <= last; p++)
+            AttributeCodec.write(pending, root.getElement(p).getAttributes());
+    }
+
+    private static int indexOf(Segment s, char c) {
+        for (int i = 0; i < s.count; i++) {
+            if (s.array[s.offset + i] == c)
+                return i;
+        }
+        return -1;
+    }
+
+    private static void failed(Exception ex) {
+        System.err.println("Diario: no se pudo apuntar un cambio: " + ex);
+    }
+
+    // --- Escritura por lotes (hilo del diario) ---
+
+    private synchronized void flushQuietly() {
+        try {
+            flush();
+            if (!closed && channel.size() > Math.max(COMPACT_BYTES, 2 * checkpointBytes))
+                checkpoint();
+        } catch (Exception ex) {
+            System.err.println("Diario: error al escribir " + path + ": " + ex);
+        }
+    }
+
+    // Escribe lo pendiente como un lote: longitud, CRC y registros, y un solo fsync
+    synchronized void flush() throws IOException {
+        if (closed)
+            return;
+        byte[] batch = takePending();
+        if (batch.length == 0)
+            return;
+        writeFrame(channel, batch);
+        channel.force(false);
+    }
+
+    private byte[] takePending() {
+        // Se cambia de buffer con el documento bloqueado para lectura: así ningún
+        // cambio queda a medias entre los dos
+        byte[][] taken = new byte[1][];
+        doc.render(() -> {
+            taken[0] = pendingBytes.toByteArray();
+            pendingBytes = new ByteArrayOutputStream();
+            pending = new DataOutputStream(pendingBytes);
+        });
+        return taken[0];
+    }
+
+    private static void writeFrame(FileChannel channel, byte[] batch) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(batch);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(batch.length).putInt((int) crc.getValue());
+        header.flip();
+        ByteBuffer[] buffers = {header, ByteBuffer.wrap(batch)};
+        while (buffers[1].hasRemaining())
+            channel.write(buffers);
+    }
+
+    // Sustituye el diario por una foto del documento: mismo resultado al reaplicarlo,
+    // pero sin toda la historia
+    synchronized void checkpoint() throws IOException {
+        if (closed)
+            return;
+        RichText[] snapshot = new RichText[1];
+        Exception[] error = new Exception[1];
+        doc.render(() -> {
+            try {
+                // Lo pendiente ya está en la foto
+                pendingBytes = new ByteArrayOutputStream();
+                pending = new DataOutputStream(pendingBytes);
+                RichText text = new RichText();
+                text.append(doc, 0, doc.getLength() + 1, new Segment());
+                snapshot[0] = text;
+            } catch (BadLocationException ex) {
+                error[0] = ex;
+            }
+        });
+        if (error[0] != null)
+            throw new IOException(error[0]);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(CHECKPOINT);
+        snapshot[0].write(out);
+        out.flush();
+
+        // El diario nuevo se prepara aparte y sustituye al viejo de una vez
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel compacted = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            compacted.write(ByteBuffer.wrap(header));
+            writeFrame(compacted, bytes.toByteArray());
+            compacted.force(true);
+        }
+        move(temp, path);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        checkpointBytes = channel.size();
+    }
+
+    // El documento se acaba de guardar en "file": el diario vuelve a empezar con él como
+    // base (y se muda junto a él si es un "Guardar como"). Si el documento cambió después
+    // de leerlo para guardar ("upToDate" falso), empieza con una foto para no perderlo.
+    synchronized void saved(File file, boolean upToDate) throws IOException {
+        if (closed)
+            return;
+        takePending();
+        channel.close();
+        Path newPath = pathFor(file);
+        if (!newPath.equals(path))
+            Files.deleteIfExists(path);
+        base = file;
+        path = newPath;
+        header = header(file);
+        writeHeader(path, file);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        checkpointBytes = channel.size();
+        dirty = !upToDate;
+        if (!upToDate)
+            checkpoint();
+    }
+
+    // Deja de apuntar cambios. Si no queda nada sin guardar (o "discard") se borra el
+    // diario; si no, se conserva para recuperarlo la próxima vez.
+    synchronized void close(boolean discard) {
+        if (closed)
+            return;
+        doc.removeDocumentListener(this);
+        flusher.cancel(false);
+        try {
+            flush();
+        } catch (IOException ex) {
+            System.err.println("Diario: error al escribir " + path + ": " + ex);
+        }
+        closed = true;
+        try {
+            channel.close();
+            if (discard || !dirty)
+                Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    boolean isFor(Document doc) {
+        return this.doc == doc;
+    }
+
+    // --- Cabecera ---
+
+    // Tamaño y fecha del fichero base: si no coinciden, el fichero cambió después y el
+    // diario ya no vale
+    private static byte[] header(File base) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        writeString(out, base == null ? "" : base.getAbsolutePath());
+        out.writeLong(base == null ? 0 : base.length());
+        out.writeLong(base == null ? 0 : base.lastModified());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeHeader(Path path, File base) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(header(base)));
+            channel.force(true);
+        }
+        move(temp, path);
+    }
+
+    // Longitud de la cabecera si corresponde a "base", -1 si no
+    private static int readHeader(DataInputStream in, File base) throws IOException {
+        if (in.readInt() != MAGIC)
+            return -1;
+        String name = readString(in);
+        long length = in.readLong();
+        long modified = in.readLong();
+        boolean matches = base == null ? name.isEmpty()
+                : name.equals(base.getAbsolutePath()) && length == base.length() && modified == base.lastModified();
+        return matches ? 4 + 4 + name.getBytes(StandardCharsets.UTF_8).length + 16 : -1;
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // --- Recuperación ---
+
+    // Reaplica sobre "doc" (recién cargado de "base", sin listeners) todo lo apuntado en
+    // el diario. Los lotes incompletos o dañados del final se descartan (y se recortan
+    // del fichero, para seguir escribiendo detrás con resume). Devuelve cuántos cambios
+    // se aplicaron.
+    static int replay(EditorDocument doc, File base) throws IOException, BadLocationException {
+        Path path = pathFor(base);
+        long valid;
+        int applied = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            valid = readHeader(in, base);
+            if (valid < 0)
+                throw new IOException("El diario no corresponde a " + (base == null ? "este documento" : base));
+            while (true) {
+                byte[] batch;
+                try {
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    if (length < 0 || length > Files.size(path))
+                        break;
+                    batch = new byte[length];
+                    in.readFully(batch);
+                    CRC32 check = new CRC32();
+                    check.update(batch);
+                    if ((int) check.getValue() != crc)
+                        break;
+                } catch (EOFException e) {
+                    break;
+                }
+                applied += apply(doc, batch);
+                valid += 8 + batch.length;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > valid)
+                channel.truncate(valid);
+        }
+        return applied;
+    }
+
+    private static int apply(EditorDocument doc, byte[] batch) throws IOException, BadLocationException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(batch));
+        AttributeSet defaultStyle = doc.getStyle(StyleContext.DEFAULT_STYLE);
+        int applied = 0;
+        while (in.available() > 0) {
+            byte type = in.readByte();
+            switch (type) {
+                case INSERT: {
+                    int offset = in.readInt();
+                    StringBuilder text = new StringBuilder();
+                    RichText.readText(in, text);
+                    doc.insertString(offset, text.toString(), null);
+                    break;
+                }
+                case REMOVE:
+                    doc.remove(in.readInt(), in.readInt());
+                    break;
+                case CHARACTER_ATTRIBUTES: {
+                    int pos = in.readInt();
+                    for (int runs = in.readInt(); runs > 0; runs--) {
+                        int length = in.readInt();
+                        doc.setCharacterAttributes(pos, length, AttributeCodec.read(in), true);
+                        pos += length;
+                    }
+                    break;
+                }
+                case PARAGRAPH_ATTRIBUTES: {
+                    int pos = in.readInt();
+                    for (int count = in.readInt(); count > 0; count--) {
+                        MutableAttributeSet attrs = new SimpleAttributeSet(AttributeCodec.read(in));
+                        attrs.addAttribute(StyleConstants.ResolveAttribute, defaultStyle);
+                        doc.setParagraphAttributes(pos, 0, attrs, true);
+                        pos = doc.getParagraphElement(pos).getEndOffset();
+                    }
+                    break;
+                }
+                case CHECKPOINT: {
+                    RichText text = RichText.read(in, defaultStyle);
+                    doc.replaceParagraphs(0, doc.getDefaultRootElement().getElementCount() - 1, text);
+                    break;
+                }
+                default:
+                    throw new IOException("Registro desconocido en el diario: " + type);
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,302 @@
+package MiEditorTexto;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
+import javax.swing.text.GapContent;
+import javax.swing.text.StyleContext;
+import javax.swing.undo.UndoableEdit;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// ======================================================================================
+// Documento del editor
+// ======================================================================================
+
+// DefaultStyledDocument cuyo contenido lleva la cuenta de caracteres y palabras,
+// para que la barra de estado no tenga que recorrer todo el texto en cada pulsación.
+class EditorDocument extends DefaultStyledDocument {
+
+    // Misma clave que AbstractDocument.MultiByteProperty (no es pública)
+    private static final String MULTI_BYTE_PROPERTY = "multiByte";
+
+    private SearchIndex searchIndex; // Se crea la primera vez que se busca
+    private TextAnalytics analytics; // Se crea la primera vez que se abre su panel
+    private int formatChanges; // Eventos CHANGE (ver getVersion)
+
+    EditorDocument() {
+        this(new GapContent(BUFFER_SIZE_DEFAULT));
+    }
+
+    // Permite elegir el almacenamiento del texto (GapContent, PieceTableContent...)
+    EditorDocument(Content content) {
+        super(new CountingContent(content), new StyleContext());
+    }
+
+    // Inserta un tramo del buffer original de un PieceTableContent sin pasar por un
+    // String. Hace lo mismo que insertString salvo la copia del texto.
+    void insertOriginal(int where, int start, int length) throws BadLocationException {
+        if (length == 0)
+            return;
+        writeLock();
+        try {
+            UndoableEdit edit = counting().insertOriginal(where, start, length);
+            DefaultDocumentEvent chng = new DefaultDocumentEvent(where, length, DocumentEvent.EventType.INSERT);
+            chng.addEdit(edit);
+            insertUpdate(chng, null);
+            chng.end();
+            fireInsertUpdate(chng);
+            fireUndoableEditUpdate(new UndoableEditEvent(this, chng));
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    // Sustituye los párrafos [first, last] por el contenido de "text" (que debe acabar en
+    // salto de línea) construyendo los elementos de golpe, en vez de ir edición a edición
+    // como insertString/remove. Se notifica como un borrado seguido de una inserción, así
+    // que las vistas y los listeners no necesitan nada especial, y se entrega como una
+    // sola edición deshacible.
+    void replaceParagraphs(int first, int last, RichText text) throws BadLocationException {
+        if (!text.isComplete())
+            throw new IllegalArgumentException("El texto debe acabar en salto de línea");
+        writeLock();
+        try {
+            BranchElement root = (BranchElement) getDefaultRootElement();
+            Element lastParagraph = root.getElement(last);
+            int start = root.getElement(first).getStartOffset();
+            int end = lastParagraph.getEndOffset();
+
+            // 1) Borrado: del tramo solo queda su último salto de línea, en un párrafo
+            //    provisional con los atributos del último párrafo
+            Element[] removed = new Element[last - first + 1];
+            for (int i = 0; i < removed.length; i++)
+                removed[i] = root.getElement(first + i);
+            DefaultDocumentEvent remove = new DefaultDocumentEvent(start, end - start - 1, DocumentEvent.EventType.REMOVE);
+            if (end - start > 1)
+                remove.addEdit(getContent().remove(start, end - start - 1));
+            Element lastLeaf = lastParagraph.getElement(lastParagraph.getElementCount() - 1);
+            BranchElement placeholder = (BranchElement) createBranchElement(root, lastParagraph.getAttributes());
+            placeholder.replace(0, 0, new Element[]{
+                    createLeafElement(placeholder, lastLeaf.getAttributes(), start, start + 1)});
+            Element[] placeholders = {placeholder};
+            root.replace(first, removed.length, placeholders);
+            remove.addEdit(new ElementEdit(root, first, removed, placeholders));
+            postRemoveUpdate(remove);
+            remove.end();
+            fireRemoveUpdate(remove);
+
+            // 2) Inserción del texto nuevo y de sus párrafos
+            String inserted = text.textWithoutLastNewline();
+            DefaultDocumentEvent insert = new DefaultDocumentEvent(start, inserted.length(), DocumentEvent.EventType.INSERT);
+            if (!inserted.isEmpty())
+                insert.addEdit(getContent().insertString(start, inserted));
+            Element[] added = createParagraphs(root, start, text);
+            root.replace(first, 1, added);
+            insert.addEdit(new ElementEdit(root, first, placeholders, added));
+            if (first > 0 && !inserted.isEmpty()) {
+                // El final del párrafo anterior estaba en "start" y la inserción lo ha
+                // empujado: se rehace su última hoja (lo mismo que hace DefaultStyledDocument)
+                BranchElement previous = (BranchElement) root.getElement(first - 1);
+                int index = previous.getElementCount() - 1;
+                Element oldLeaf = previous.getElement(index);
+                Element[] oldLeaves = {oldLeaf};
+                Element[] newLeaves = {createLeafElement(previous, oldLeaf.getAttributes(), oldLeaf.getStartOffset(), start)};
+                previous.replace(index, 1, newLeaves);
+                insert.addEdit(new ElementEdit(previous, index, oldLeaves, newLeaves));
+            }
+            // Lo que AbstractDocument.insertUpdate haría con el texto insertado
+            postRemoveUpdate(insert); // Estructura bidi (solo si el documento la usa)
+            if (!Boolean.TRUE.equals(getProperty(MULTI_BYTE_PROPERTY)) && hasMultiByte(inserted))
+                putProperty(MULTI_BYTE_PROPERTY, Boolean.TRUE);
+            insert.end();
+            fireInsertUpdate(insert);
+
+            CoalescingUndoManager.Group edit = new CoalescingUndoManager.Group();
+            edit.addEdit(remove);
+            edit.addEdit(insert);
+            edit.end();
+            fireUndoableEditUpdate(new UndoableEditEvent(this, edit));
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    private Element[] createParagraphs(BranchElement root, int offset, RichText text) {
+        Element[] paragraphs = new Element[text.paragraphCount()];
+        for (int p = 0; p < paragraphs.length; p++) {
+            AttributeSet attrs = text.paragraphAttributes(p);
+            BranchElement paragraph = (BranchElement) createBranchElement(root, attrs);
+            int firstRun = text.firstRun(p);
+            Element[] leaves = new Element[text.endRun(p) - firstRun];
+            for (int r = 0; r < leaves.length; r++) {
+                int len = text.runLength(firstRun + r);
+                leaves[r] = createLeafElement(paragraph, text.runAttributes(firstRun + r), offset, offset + len);
+                offset += len;
+            }
+            paragraph.replace(0, 0, leaves);
+            paragraphs[p] = paragraph;
+        }
+        return paragraphs;
+    }
+
+    // Como DefaultStyledDocument.setCharacterAttributes, pero rehace de una vez las hojas
+    // tocadas de cada párrafo: los tramos que acaban con los mismos atributos (también
+    // con las hojas vecinas) se funden en una sola hoja, y el resultado de cada conjunto
+    // de atributos distinto se calcula una vez y se comparte (StyleContext). Así el
+    // número de elementos sigue al de cambios de formato y no al tamaño de la selección,
+    // y todo llega como un único evento CHANGE y una sola edición deshacible.
+    @Override
+    public void setCharacterAttributes(int offset, int length, AttributeSet s, boolean replace) {
+        if (length <= 0)
+            return;
+        writeLock();
+        try {
+            int start = Math.max(0, offset);
+            int end = Math.min(offset + length, getLength() + 1);
+            if (start >= end)
+                return;
+            DefaultDocumentEvent changes = new DefaultDocumentEvent(start, end - start, DocumentEvent.EventType.CHANGE);
+            // Atributos de partida (compartidos) -> atributos resultantes
+            Map<AttributeSet, AttributeSet> restyled = new IdentityHashMap<>();
+            Element root = getDefaultRootElement();
+            int last = root.getElementIndex(end - 1);
+            for (int p = root.getElementIndex(start); p <= last; p++)
+                restyle((BranchElement) root.getElement(p), start, end, s, replace, restyled, changes);
+            changes.end();
+            fireChangedUpdate(changes);
+            fireUndoableEditUpdate(new UndoableEditEvent(this, changes));
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    // Todo cambio de formato pasa por aquí con el cerrojo de escritura tomado:
+    // setCharacterAttributes, setParagraphAttributes, setLogicalStyle y deshacer/rehacer
+    // cualquiera de ellos
+    @Override
+    protected void fireChangedUpdate(DocumentEvent e) {
+        formatChanges++;
+        super.fireChangedUpdate(e);
+    }
+
+    // Los cambios de formato se entregan ya medidos (CoalescingUndoManager.Change): al
+    // historial le llegarían en un envoltorio de AbstractDocument que no deja ver cuántos
+    // elementos guardan
+    @Override
+    protected void fireUndoableEditUpdate(UndoableEditEvent e) {
+        if (e.getEdit() instanceof DefaultDocumentEvent
+                && ((DocumentEvent) e.getEdit()).getType() == DocumentEvent.EventType.CHANGE)
+            e = new UndoableEditEvent(e.getSource(), new CoalescingUndoManager.Change((DefaultDocumentEvent) e.getEdit()));
+        super.fireUndoableEditUpdate(e);
+    }
+
+    private void restyle(BranchElement paragraph, int start, int end, AttributeSet s, boolean replace,
+                         Map<AttributeSet, AttributeSet> restyled, DefaultDocumentEvent changes) {
+        // Las hojas tocadas y una más a cada lado, por si se funden con ellas
+        int from = Math.max(0, paragraph.getElementIndex(start) - 1);
+        int to = Math.min(paragraph.getElementCount() - 1, paragraph.getElementIndex(end - 1) + 1);
+        Element[] removed = new Element[to - from + 1];
+        // Cada hoja da como mucho tres tramos: antes, dentro y después del cambio
+        int[] runStarts = new int[3 * removed.length + 1];
+        AttributeSet[] runAttrs = new AttributeSet[3 * removed.length];
+        int runs = 0;
+        AttributeContext context = getAttributeContext();
+        for (int i = 0; i < removed.length; i++) {
+            Element leaf = paragraph.getElement(from + i);
+            removed[i] = leaf;
+            // En un elemento, copyAttributes devuelve el conjunto compartido que tiene dentro
+            AttributeSet old = leaf.getAttributes().copyAttributes();
+            int leafStart = leaf.getStartOffset();
+            int leafEnd = leaf.getEndOffset();
+            int a = Math.max(leafStart, Math.min(start, leafEnd));
+            int b = Math.max(a, Math.min(end, leafEnd));
+            runs = addRun(runStarts, runAttrs, runs, leafStart, a, old);
+            if (a < b) {
+                AttributeSet attrs = restyled.computeIfAbsent(old, o ->
+                        context.addAttributes(replace ? context.getEmptySet() : o, s));
+                runs = addRun(runStarts, runAttrs, runs, a, b, attrs);
+            }
+            runs = addRun(runStarts, runAttrs, runs, b, leafEnd, old);
+        }
+        runStarts[runs] = removed[removed.length - 1].getEndOffset();
+        if (runs == removed.length && sameRuns(removed, runStarts, runAttrs))
+            return; // Ya tenía esos atributos
+
+        Element[] added = new Element[runs];
+        for (int r = 0; r < runs; r++)
+            added[r] = createLeafElement(paragraph, runAttrs[r], runStarts[r], runStarts[r + 1]);
+        paragraph.replace(from, removed.length, added);
+        changes.addEdit(new ElementEdit(paragraph, from, removed, added));
+    }
+
+    // Añade el tramo [start, end) o lo funde con el anterior si tiene los mismos atributos
+    private static int addRun(int[] runStarts, AttributeSet[] runAttrs, int runs, int start, int end,
+                              AttributeSet attrs) {
+        if (start == end || (runs > 0 && RichText.sameAttributes(runAttrs[runs - 1], attrs)))
+            return runs;
+        runStarts[runs] = start;
+        runAttrs[runs] = attrs;
+        return runs + 1;
+    }
+
+    private static boolean sameRuns(Element[] leaves, int[] runStarts, AttributeSet[] runAttrs) {
+        for (int i = 0; i < leaves.length; i++) {
+            if (leaves[i].getStartOffset() != runStarts[i]
+                    || !RichText.sameAttributes(leaves[i].getAttributes(), runAttrs[i]))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean hasMultiByte(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 255)
+                return true;
+        }
+        return false;
+    }
+
+    // Índice de búsqueda de este documento (llamar desde el EDT)
+    SearchIndex getSearchIndex() {
+        if (searchIndex == null)
+            searchIndex = new SearchIndex(this);
+        return searchIndex;
+    }
+
+    // Análisis del texto de este documento (llamar desde el EDT)
+    TextAnalytics getAnalytics() {
+        if (analytics == null)
+            analytics = new TextAnalytics(this);
+        return analytics;
+    }
+
+    int getCharCount() {
+        return counting().getCharCount();
+    }
+
+    int getWordCount() {
+        return counting().getWordCount();
+    }
+
+    int getEditCount() {
+        return counting().getEditCount();
+    }
+
+    // Como getEditCount, pero cambia también con el formato: para lo que guarda o
+    // reescribe atributos calculados en segundo plano (leer con el cerrojo tomado)
+    int getVersion() {
+        return getEditCount() + formatChanges;
+    }
+
+    int getLineCount() {
+        return getDefaultRootElement().getElementCount();
+    }
+
+    private CountingContent counting() {
+        return (CountingContent) getContent();
+    }
+}
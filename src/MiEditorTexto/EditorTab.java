@@ -0,0 +1,78 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.event.UndoableEditListener;
+import java.io.File;
+import java.nio.file.Path;
+
+// ======================================================================================
+// Pestañas del editor
+// ======================================================================================
+
+// Lo que es de cada documento abierto: su fichero, el documento (si está en memoria), su
+// historial de deshacer y su diario. El JTextPane es uno solo y muestra el documento de
+// la pestaña activa; los demás se quedan aquí, sin vistas, o en disco (ver Workspace).
+class EditorTab {
+
+    // Memoria aproximada de cada párrafo (su elemento, su hoja y sus atributos)
+    private static final long PARAGRAPH_BYTES = 200;
+
+    File file; // null = sin título
+    int untitled; // Número de "Sin título" (0 si tiene fichero), ver EditJournal.untitled
+    boolean large; // Fichero grande: se abre con LargeFileView cada vez que se activa
+    EditorDocument doc; // null mientras no se ha cargado o está en disco
+    final CoalescingUndoManager undoManager = new CoalescingUndoManager();
+    EditJournal journal;
+    Path snapshot; // Copia .etx del documento mientras está fuera de memoria
+    TextFormat format; // Codificación del fichero mientras el documento está en disco
+    SwingWorker<?, ?> loader; // Carga (o restauración) en curso
+    SwingWorker<?, ?> spill; // Volcado a disco en curso
+    FileFollower follower; // Siguiendo lo que se añade al fichero (solo lectura mientras tanto)
+    int caret;
+    long lastUsed; // Orden de uso, para elegir qué se vuelca primero
+
+    // Junta lo tecleado por palabras y limita el historial por memoria. Lo que añade el
+    // seguimiento del fichero no se deshace (el historial se vacía al empezar a seguirlo)
+    private final UndoableEditListener undoListener = e -> {
+        if (follower == null)
+            undoManager.addEdit(e.getEdit());
+    };
+
+    EditorTab(File file, int untitled) {
+        this.file = file;
+        this.untitled = untitled;
+    }
+
+    String title() {
+        if (file != null)
+            return file.getName();
+        return untitled > 1 ? "Sin título " + untitled : "Sin título";
+    }
+
+    // Dónde apunta el diario (ver EditJournal.untitled para los que no tienen fichero)
+    File journalBase() {
+        return file != null ? file : EditJournal.untitled(untitled);
+    }
+
+    // El historial de deshacer va con el documento: empieza vacío con cada uno
+    void setDocument(EditorDocument doc) {
+        if (this.doc != null)
+            this.doc.removeUndoableEditListener(undoListener);
+        this.doc = doc;
+        if (doc != null)
+            doc.addUndoableEditListener(undoListener);
+        undoManager.discardAllEdits();
+    }
+
+    // Un documento vacío, sin fichero y sin nada que deshacer: se puede sustituir
+    boolean isPristine() {
+        return file == null && doc != null && doc.getLength() == 0 && !undoManager.canUndo();
+    }
+
+    // Lo que ocupa el documento en el heap (el texto a 2 bytes por carácter)
+    long estimatedBytes() {
+        if (doc == null)
+            return 0;
+        return doc.getLength() * 2L + doc.getDefaultRootElement().getElementCount() * PARAGRAPH_BYTES;
+    }
+}
@@ -6,106 +6,63 @@ import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.text.*;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
-import javax.swing.undo.UndoManager;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.*;
-import java.util.ArrayList;
 import java.util.List;
-
-// ======================================================================================
-// 1. CAPA DE ABSTRACCIÓN NUI (Definiciones del PDF)
-// ======================================================================================
-
-// Enum con los comandos obligatorios y opcionales
-enum NuiCommand {
-    NUEVO_DOCUMENTO,
-    ABRIR_DOCUMENTO,
-    GUARDAR_DOCUMENTO,
-    APLICAR_NEGRITA,
-    APLICAR_CURSIVA,
-    COLOR_ROJO,
-    COLOR_AZUL,
-    DICTAR_TEXTO // Opcional
-}
-
-// Interface que debe implementar la ventana para recibir órdenes
-interface NuiListener {
-    void onCommand(NuiCommand cmd, String payload);
-}
-
-// Controlador: Traduce texto natural (simulando voz) a comandos estructurados
-class NuiController {
-    private List<NuiListener> listeners = new ArrayList<>();
-
-    public void addListener(NuiListener listener) {
-        listeners.add(listener);
-    }
-
-    // "Cerebro" que interpreta el lenguaje natural
-    public void processInput(String input) {
-        if (input == null || input.trim().isEmpty())
-            return;
-
-        String text = input.toLowerCase().trim();
-        NuiCommand cmd = null;
-        String payload = "";
-
-        // Detección de palabras clave (Keywords)
-        if (text.contains("nuevo") || text.contains("borrar todo")) {
-            cmd = NuiCommand.NUEVO_DOCUMENTO;
-        } else if (text.contains("abrir") || text.contains("cargar")) {
-            cmd = NuiCommand.ABRIR_DOCUMENTO;
-        } else if (text.contains("guardar") || text.contains("salvar")) {
-            cmd = NuiCommand.GUARDAR_DOCUMENTO;
-        } else if (text.contains("negrita") || text.contains("fuerte")) {
-            cmd = NuiCommand.APLICAR_NEGRITA;
-        } else if (text.contains("cursiva") || text.contains("italica")) {
-            cmd = NuiCommand.APLICAR_CURSIVA;
-        } else if (text.contains("rojo")) {
-            cmd = NuiCommand.COLOR_ROJO;
-        } else if (text.contains("azul")) {
-            cmd = NuiCommand.COLOR_AZUL;
-        } else if (text.startsWith("dictar") || text.startsWith("escribir")) {
-            cmd = NuiCommand.DICTAR_TEXTO;
-            // Obtenemos el texto real respetando mayúsculas del input original
-            int spaceIndex = input.indexOf(" ");
-            if (spaceIndex != -1) {
-                payload = input.substring(spaceIndex + 1);
-            }
-        }
-
-        if (cmd != null) {
-            notifyListeners(cmd, payload);
-        } else {
-            System.out.println("NUI: No entendí el comando '" + text + "'");
-        }
-    }
-
-    private void notifyListeners(NuiCommand cmd, String payload) {
-        for (NuiListener listener : listeners) {
-            listener.onCommand(cmd, payload);
-        }
-    }
-}
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 // ======================================================================================
 // 2. CLASE PRINCIPAL DEL EDITOR (Modificada para implementar NuiListener)
 // ======================================================================================
 public class EditorTextoGUI extends JFrame implements NuiListener {
 
+    private static final Map<String, ImageIcon> ICONS = new ConcurrentHashMap<>();
+    private static final String[] MENU_ICONS = {"open.png", "save.png", "save_as.png"};
+
     private JTextPane textPane;
     private JLabel statusLabel;
     private ProgressLabel progressLabel; // Tu componente visual propio
-    private UndoManager undoManager;
-    private File currentFile;
+    private Timer idleTimer; // Devuelve el ProgressLabel a "Listo" (uno solo, se reprograma)
+
+    // Documentos abiertos (ver EditorTab y Workspace); el editor muestra el de la activa
+    private Workspace workspace;
+    private EditorTab activeTab;
+    private JTabbedPane tabStrip; // Solo la fila de pestañas: no tienen contenido propio
+    private boolean selectingTab; // Para no reaccionar a los cambios de selección propios
+    private Action followAction; // "Seguir fichero": su marca es la de la pestaña activa
+    private Action analyticsAction; // "Análisis del texto": su marca es la del panel lateral
+
+    // Listener del documento activo (se mueve de documento al cambiar de pestaña)
+    private DocumentListener statusListener;
+    private SwingWorker<?, ?> search; // Búsqueda de reemplazar en curso
+    private LargeFileView largeView; // Fichero grande abierto en modo solo lectura
+
+    private JScrollPane scrollPane;
+    private JPanel editorPanel;
+    private FindBar findBar;
+    private DiagnosticsPanel diagnosticsPanel; // Se crea la primera vez (Ctrl+Mayús+D)
+    private AnalyticsPanel analyticsPanel; // Panel lateral; se crea la primera vez (Ctrl+Mayús+A)
 
     // Controlador NUI
     private NuiController nuiController;
+    private NuiCommand lastVoiceCommand; // Último comando de la tanda en curso
+    private int voiceCommands; // Comandos recibidos en la tanda en curso
+    private DictationSink dictation;
 
     public EditorTextoGUI() {
         super("Editor/Conversor de Texto + NUI Integrado");
@@ -120,6 +77,70 @@ public class EditorTextoGUI extends JFrame implements NuiListener {
         initComponents();
         createMenuBar();
         createPopupMenu();
+
+        // Medidas de tiempos (JFR/JMX) y su panel oculto
+        Diagnostics.install(textPane);
+        getRootPane().registerKeyboardAction(e -> showDiagnostics(),
+                KeyStroke.getKeyStroke(KeyEvent.VK_D, KeyEvent.CTRL_DOWN_MASK | KeyEvent.SHIFT_DOWN_MASK),
+                JComponent.WHEN_IN_FOCUSED_WINDOW);
+
+        // Diario de ediciones: se empieza al abrir la ventana (ofreciendo recuperar los
+        // documentos sin título de otra sesión) y se vuelca al cerrarla
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                recoverUntitled();
+                if (workspace.tabs().isEmpty())
+                    newTab();
+                Startup.readyWhenFocused(textPane, EditorTextoGUI.this);
+            }
+
+            @Override
+            public void windowClosing(WindowEvent e) {
+                for (EditorTab tab : workspace.tabs())
+                    closeJournal(tab);
+                workspace.close();
+            }
+        });
+    }
+
+    // Para saber cuándo se ha pintado la ventana por primera vez (ver Startup): Swing pinta
+    // a partir del JRootPane, no del JFrame
+    @Override
+    protected JRootPane createRootPane() {
+        JRootPane rootPane = new JRootPane() {
+            @Override
+            public void paint(Graphics g) {
+                super.paint(g);
+                if (Startup.painted())
+                    preload();
+            }
+        };
+        rootPane.setOpaque(true);
+        return rootPane;
+    }
+
+    // Lo que no hace falta para enseñar la ventana pero sí en cuanto se usa: la gramática
+    // NUI (la compila también el analizador, lo que llegue antes), los iconos de los menús
+    // y las clases de los diálogos, que son muchas y se cargan despacio la primera vez
+    private static void preload() {
+        Startup.preload(
+                NuiGrammar::standard,
+                () -> {
+                    for (String icon : MENU_ICONS)
+                        loadIcon(icon);
+                },
+                () -> {
+                    for (String name : new String[]{"javax.swing.JOptionPane", "javax.swing.JFileChooser",
+                            "javax.swing.JColorChooser", "javax.swing.filechooser.FileNameExtensionFilter"}) {
+                        try {
+                            Class.forName(name);
+                        } catch (ClassNotFoundException ignored) {
+                        }
+                    }
+                },
+                // Lo más lento del primer JFileChooser: preguntar al sistema por las carpetas
+                () -> javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory());
     }
 
     private void initComponents() {
@@ -148,8 +169,9 @@ public class EditorTextoGUI extends JFrame implements NuiListener {
 
         ActionListener sendAction = e -> {
             String command = txtSimulacion.getText();
-            nuiController.processInput(command); // Enviamos al controlador
-            txtSimulacion.setText("");
+            // Enviamos al controlador; si no cabe, el texto se queda para reenviarlo
+            if (nuiController.processInput(command))
+                txtSimulacion.setText("");
             txtSimulacion.requestFocus();
         };
 
@@ -167,9 +189,24 @@ public class EditorTextoGUI extends JFrame implements NuiListener {
 
         // Panel Central (Editor)
         textPane = new JTextPane();
+        textPane.setEditorKit(new LazyLayoutKit()); // Maqueta solo lo que se ve; crea un EditorDocument
         textPane.setFont(new Font("Monospaced", Font.PLAIN, 14));
-        JScrollPane scrollPane = new JScrollPane(textPane);
-        add(scrollPane, BorderLayout.CENTER);
+        scrollPane = new JScrollPane(textPane);
+        editorPanel = new JPanel(new BorderLayout());
+        editorPanel.add(scrollPane, BorderLayout.CENTER);
+        findBar = new FindBar(textPane, scrollPane);
+        workspace = new Workspace(Workspace.DEFAULT_BUDGET);
+        tabStrip = new JTabbedPane(JTabbedPane.TOP, JTabbedPane.SCROLL_TAB_LAYOUT);
+        tabStrip.addChangeListener(e -> {
+            int index = tabStrip.getSelectedIndex();
+            if (!selectingTab && index >= 0)
+                selectTab(workspace.tabs().get(index));
+        });
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(tabStrip, BorderLayout.NORTH);
+        northPanel.add(findBar, BorderLayout.CENTER);
+        editorPanel.add(northPanel, BorderLayout.NORTH);
+        add(editorPanel, BorderLayout.CENTER);
 
         // Panel Inferior (Status + ProgressLabel)
         JPanel bottomPanel = new JPanel(new BorderLayout());
@@ -179,33 +216,71 @@ public class EditorTextoGUI extends JFrame implements NuiListener {
         statusLabel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
 
         progressLabel = new ProgressLabel();
+        idleTimer = new Timer(0, e -> progressLabel.setState(ProgressLabel.State.IDLE));
+        idleTimer.setRepeats(false);
+        IoScheduler.SHARED.setListener(progressLabel);
 
         bottomPanel.add(statusLabel, BorderLayout.WEST);
         bottomPanel.add(progressLabel, BorderLayout.EAST);
 
         add(bottomPanel, BorderLayout.SOUTH);
 
-        // Lógica de deshacer y listeners de texto
-        undoManager = new UndoManager();
-        textPane.getDocument().addUndoableEditListener(e -> undoManager.addEdit(e.getEdit()));
+        // Listeners de texto (el historial de deshacer es de cada pestaña, ver EditorTab)
+        dictation = new DictationSink(textPane, () -> activeTab.undoManager);
 
-        textPane.getDocument().addDocumentListener(new DocumentListener() {
+        statusListener = new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent e) {
                 updateStatus();
+                refreshFindHighlights();
             }
 
             @Override
             public void removeUpdate(DocumentEvent e) {
                 updateStatus();
+                refreshFindHighlights();
             }
 
             @Override
             public void changedUpdate(DocumentEvent e) {
                 updateStatus();
             }
+        };
+        textPane.getDocument().addDocumentListener(statusListener);
+        // En modo fichero grande la barra de estado muestra la línea del cursor
+        textPane.addCaretListener(e -> {
+            if (largeView != null)
+                updateStatus();
         });
         updateStatus();
+
+        // Esc cancela la carga de un fichero en curso
+        getRootPane().registerKeyboardAction(e -> cancelLoad(),
+                KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), JComponent.WHEN_IN_FOCUSED_WINDOW);
+    }
+
+    // Sustituye el documento del editor de una sola vez, llevando consigo el listener
+    private void installDocument(EditorDocument doc) {
+        long t = Diagnostics.start();
+        textPane.getDocument().removeDocumentListener(statusListener);
+
+        dictation.reset();
+        textPane.setDocument(doc);
+        doc.addDocumentListener(statusListener);
+        textPane.setCaretPosition(0);
+
+        updateStatus();
+        findBar.refreshHighlights();
+        if (analyticsPanel != null && analyticsPanel.getParent() != null)
+            analyticsPanel.attach(largeView == null ? doc : null);
+        Diagnostics.end("Colocar documento", t);
+    }
+
+    // Con la barra de búsqueda abierta, el resaltado se rehace cuando las vistas ya
+    // reflejan el cambio
+    private void refreshFindHighlights() {
+        if (findBar.isVisible())
+            SwingUtilities.invokeLater(findBar::refreshHighlights);
     }
 
     // ===========================================================================
@@ -213,17 +288,19 @@ public class EditorTextoGUI extends JFrame implements NuiListener {
     // ===========================================================================
     @Override
     public void onCommand(NuiCommand cmd, String payload) {
-        // Feedback visual en el ProgressLabel
-        progressLabel.setState(ProgressLabel.State.WORKING);
-        progressLabel.setStatusText("Voz: " + cmd);
+        // Feedback visual en el ProgressLabel (una vez por tanda, ver onBatchEnd)
+        if (voiceCommands++ == 0) {
+            progressLabel.setState(ProgressLabel.State.WORKING);
+            progressLabel.setStatusText("Voz: " + cmd);
+        }
+        lastVoiceCommand = cmd;
 
-        System.out.println("[DEBUG NUI] Ejecutando: " + cmd);
+        if (NuiController.DEBUG)
+            System.out.println("[DEBUG NUI] Ejecutando: " + cmd);
 
         switch (cmd) {
             case NUEVO_DOCUMENTO:
-                textPane.setText("");
-                currentFile = null;
-                setTitle("Editor - Nuevo");
+                newTab();
                 break;
             case ABRIR_DOCUMENTO:
                 openFile();
@@ -244,271 +321,836 @@ public class EditorTextoGUI extends JFrame implements NuiListener {
                 applyColor(Color.BLUE);
                 break;
             case DICTAR_TEXTO:
-                try {
-                    Document doc = textPane.getDocument();
-                    doc.insertString(textPane.getCaretPosition(), payload + " ", null);
-                } catch (BadLocationException e) {
-                    e.printStackTrace();
-                }
+                if (textPane.isEditable())
+                    dictation.append(payload); // Se escribe una vez por ciclo (ver DictationSink)
                 break;
         }
+    }
 
+    @Override
+    public void onPartialDictation(String text) {
+        if (textPane.isEditable())
+            dictation.revise(text);
+    }
+
+    @Override
+    public void onBatchEnd() {
+        if (voiceCommands > 1)
+            progressLabel.setStatusText("Voz: " + lastVoiceCommand + " (" + voiceCommands + " órdenes)");
+        voiceCommands = 0;
         // Restaurar estado visual tras 1.5 segundos
-        Timer t = new Timer(1500, e -> progressLabel.setState(ProgressLabel.State.IDLE));
-        t.setRepeats(false);
-        t.start();
+        idleAfter(1500);
+    }
+
+    @Override
+    public void onNotUnderstood(String input) {
+        progressLabel.setState(ProgressLabel.State.ERROR);
+        progressLabel.setStatusText("Voz: no entendí \"" + input.trim() + "\"");
+        idleAfter(3000);
+    }
+
+    @Override
+    public void onInputDropped(String input) {
+        progressLabel.setState(ProgressLabel.State.ERROR);
+        progressLabel.setStatusText("Voz: demasiadas órdenes pendientes, se descartó \"" + input.trim() + "\"");
+        idleAfter(4000);
+    }
+
+    // Vuelve a "Listo" pasado el tiempo indicado (reemplaza cualquier espera anterior)
+    private void idleAfter(int delay) {
+        idleTimer.setInitialDelay(delay);
+        idleTimer.restart();
     }
 
     // Método auxiliar para colores directos (NUI)
     private void applyColor(Color c) {
+        long t = Diagnostics.start();
         MutableAttributeSet attrs = new SimpleAttributeSet();
         StyleConstants.setForeground(attrs, c);
         textPane.setCharacterAttributes(attrs, false);
+        Diagnostics.end("Color", t);
     }
     // ===========================================================================
 
     // --- MÉTODOS DEL EDITOR ORIGINAL (Menus, Iconos, Lógica) ---
 
-    private ImageIcon loadIcon(String path) {
-        try {
-            return new ImageIcon(getClass().getResource("/icons/" + path));
-        } catch (Exception e) {
-            return null;
-        }
+    // Los iconos se leen una vez y se comparten; la precarga los lee antes de que se abra
+    // ningún menú (ver preload)
+    private static ImageIcon loadIcon(String path) {
+        return ICONS.computeIfAbsent(path, p -> {
+            try {
+                return new ImageIcon(EditorTextoGUI.class.getResource("/icons/" + p));
+            } catch (Exception e) {
+                return null;
+            }
+        });
     }
 
+    // Los atajos funcionan desde el principio (van en el JRootPane); las entradas de cada
+    // menú se crean la primera vez que se abre, con las mismas acciones
     private void createMenuBar() {
-        JMenuBar menuBar = new JMenuBar();
+        int ctrl = KeyEvent.CTRL_DOWN_MASK;
 
         // --- MENU ARCHIVO ---
-        JMenu fileMenu = new JMenu("Archivo");
-        JMenuItem openItem = new JMenuItem("Abrir", KeyEvent.VK_O);
-        openItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, KeyEvent.CTRL_DOWN_MASK));
-        openItem.setIcon(loadIcon("open.png"));
-        openItem.addActionListener(e -> openFile());
-
-        JMenuItem saveItem = new JMenuItem("Guardar", KeyEvent.VK_S);
-        saveItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, KeyEvent.CTRL_DOWN_MASK));
-        saveItem.setIcon(loadIcon("save.png"));
-        saveItem.addActionListener(e -> saveFileWithProgress()); // Usamos la versión con progreso
-
-        JMenuItem saveAsItem = new JMenuItem("Guardar como...");
-        saveAsItem.setIcon(loadIcon("save_as.png"));
-        saveAsItem.addActionListener(e -> saveFileAs());
-
-        JMenuItem exitItem = new JMenuItem("Salir", KeyEvent.VK_Q);
-        exitItem.addActionListener(e -> System.exit(0));
-
-        fileMenu.add(openItem);
-        fileMenu.add(saveItem);
-        fileMenu.add(saveAsItem);
-        fileMenu.addSeparator();
-        fileMenu.add(exitItem);
+        Action newTabAction = action("Nueva pestaña", KeyEvent.VK_T, KeyStroke.getKeyStroke(KeyEvent.VK_T, ctrl),
+                e -> newTab());
+        Action openAction = action("Abrir", KeyEvent.VK_O, KeyStroke.getKeyStroke(KeyEvent.VK_O, ctrl),
+                e -> openFile());
+        Action saveAction = action("Guardar", KeyEvent.VK_S, KeyStroke.getKeyStroke(KeyEvent.VK_S, ctrl),
+                e -> saveFileWithProgress()); // Usamos la versión con progreso
+        Action saveAsAction = action("Guardar como...", 0, null, e -> saveFileAs());
+        Action exportTextAction = action("Exportar como texto...", 0, null, e -> exportFile("txt"));
+        Action exportRtfAction = action("Exportar como RTF...", 0, null, e -> exportFile(RtfWriter.EXTENSION));
+        Action closeTabAction = action("Cerrar pestaña", KeyEvent.VK_W, KeyStroke.getKeyStroke(KeyEvent.VK_W, ctrl),
+                e -> closeTab(activeTab));
+        Action exitAction = action("Salir", KeyEvent.VK_Q, null, e -> System.exit(0));
+
+        JMenu fileMenu = lazyMenu("Archivo", menu -> {
+            menu.add(newTabAction);
+            menu.add(openAction).setIcon(loadIcon("open.png"));
+            menu.add(saveAction).setIcon(loadIcon("save.png"));
+            menu.add(saveAsAction).setIcon(loadIcon("save_as.png"));
+            menu.addSeparator();
+            menu.add(exportTextAction);
+            menu.add(exportRtfAction);
+            menu.addSeparator();
+            menu.add(closeTabAction);
+            menu.add(exitAction);
+        });
 
         // --- MENU EDICIÓN ---
-        JMenu editMenu = new JMenu("Edición");
-        JMenuItem undoItem = new JMenuItem("Deshacer", KeyEvent.VK_Z);
-        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, KeyEvent.CTRL_DOWN_MASK));
-        undoItem.addActionListener(e -> {
+        Action undoAction = action("Deshacer", KeyEvent.VK_Z, KeyStroke.getKeyStroke(KeyEvent.VK_Z, ctrl), e -> {
             try {
-                undoManager.undo();
+                activeTab.undoManager.undo();
             } catch (CannotUndoException ex) {
             }
         });
-
-        JMenuItem redoItem = new JMenuItem("Rehacer", KeyEvent.VK_Y);
-        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, KeyEvent.CTRL_DOWN_MASK));
-        redoItem.addActionListener(e -> {
+        Action redoAction = action("Rehacer", KeyEvent.VK_Y, KeyStroke.getKeyStroke(KeyEvent.VK_Y, ctrl), e -> {
             try {
-                undoManager.redo();
+                activeTab.undoManager.redo();
             } catch (CannotRedoException ex) {
             }
         });
 
-        JMenuItem cutItem = new JMenuItem("Cortar");
-        cutItem.addActionListener(e -> textPane.cut());
-        JMenuItem copyItem = new JMenuItem("Copiar");
-        copyItem.addActionListener(e -> textPane.copy());
-        JMenuItem pasteItem = new JMenuItem("Pegar");
-        pasteItem.addActionListener(e -> textPane.paste());
-
-        editMenu.add(cutItem);
-        editMenu.add(copyItem);
-        editMenu.add(pasteItem);
-        editMenu.addSeparator();
-        editMenu.add(undoItem);
-        editMenu.add(redoItem);
+        JMenu editMenu = lazyMenu("Edición", menu -> {
+            addClipboardItems(menu.getPopupMenu());
+            menu.addSeparator();
+            menu.add(undoAction);
+            menu.add(redoAction);
+        });
 
         // --- MENU FORMATO ---
-        JMenu formatMenu = new JMenu("Formato");
-        JMenuItem boldItem = new JMenuItem("Negrita");
-        boldItem.addActionListener(e -> applyStyle(StyleConstants.Bold));
-        JMenuItem italicItem = new JMenuItem("Cursiva");
-        italicItem.addActionListener(e -> applyStyle(StyleConstants.Italic));
-        JMenuItem colorItem = new JMenuItem("Color...");
-        colorItem.addActionListener(e -> {
-            Color newColor = JColorChooser.showDialog(this, "Elige Color", textPane.getForeground());
-            if (newColor != null)
-                applyColor(newColor);
+        JMenu formatMenu = lazyMenu("Formato", menu -> {
+            menu.add("Negrita").addActionListener(e -> applyStyle(StyleConstants.Bold));
+            menu.add("Cursiva").addActionListener(e -> applyStyle(StyleConstants.Italic));
+            menu.add("Color...").addActionListener(e -> {
+                Color newColor = JColorChooser.showDialog(this, "Elige Color", textPane.getForeground());
+                if (newColor != null)
+                    applyColor(newColor);
+            });
         });
 
-        formatMenu.add(boldItem);
-        formatMenu.add(italicItem);
-        formatMenu.add(colorItem);
-
         // --- MENU HERRAMIENTAS ---
-        JMenu toolsMenu = new JMenu("Herramientas");
-        JMenuItem findItem = new JMenuItem("Buscar y Reemplazar...");
-        findItem.addActionListener(e -> showFindReplaceDialog());
-        toolsMenu.add(findItem);
+        Action searchAction = action("Buscar...", 0, KeyStroke.getKeyStroke(KeyEvent.VK_F, ctrl), e -> findBar.open());
+        Action nextAction = action("Buscar siguiente", 0, KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0),
+                e -> findNext(true));
+        Action previousAction = action("Buscar anterior", 0,
+                KeyStroke.getKeyStroke(KeyEvent.VK_F3, KeyEvent.SHIFT_DOWN_MASK), e -> findNext(false));
+
+        followAction = action("Seguir fichero", 0,
+                KeyStroke.getKeyStroke(KeyEvent.VK_L, ctrl | KeyEvent.SHIFT_DOWN_MASK), e -> toggleFollow());
+        analyticsAction = action("Análisis del texto", 0,
+                KeyStroke.getKeyStroke(KeyEvent.VK_A, ctrl | KeyEvent.SHIFT_DOWN_MASK), e -> toggleAnalytics());
+        analyticsAction.putValue(Action.SELECTED_KEY, false);
+
+        JMenu toolsMenu = lazyMenu("Herramientas", menu -> {
+            menu.add(searchAction);
+            menu.add(nextAction);
+            menu.add(previousAction);
+            menu.addSeparator();
+            menu.add("Buscar y Reemplazar...").addActionListener(e -> showFindReplaceDialog());
+            menu.addSeparator();
+            menu.add(new JCheckBoxMenuItem(followAction));
+            menu.add(new JCheckBoxMenuItem(analyticsAction));
+        });
 
+        JMenuBar menuBar = new JMenuBar();
         menuBar.add(fileMenu);
         menuBar.add(editMenu);
         menuBar.add(formatMenu);
         menuBar.add(toolsMenu);
-
         setJMenuBar(menuBar);
     }
 
+    // Acción de menú; si tiene atajo, se registra ya en la ventana (cuando el menú llega a
+    // existir, su entrada muestra el mismo atajo y no se dispara dos veces: lo consume el
+    // JRootPane antes que la barra de menús)
+    private Action action(String name, int mnemonic, KeyStroke accelerator, ActionListener listener) {
+        Action action = new AbstractAction(name) {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                listener.actionPerformed(e);
+            }
+        };
+        if (mnemonic != 0)
+            action.putValue(Action.MNEMONIC_KEY, mnemonic);
+        if (accelerator != null) {
+            action.putValue(Action.ACCELERATOR_KEY, accelerator);
+            getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(accelerator, name);
+            getRootPane().getActionMap().put(name, action);
+        }
+        return action;
+    }
+
+    // Menú vacío que se llena la primera vez que se abre
+    private static JMenu lazyMenu(String title, Consumer<JMenu> builder) {
+        JMenu menu = new JMenu(title);
+        menu.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                menu.removeMenuListener(this);
+                builder.accept(menu);
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
+        return menu;
+    }
+
+    private void addClipboardItems(JPopupMenu menu) {
+        menu.add("Cortar").addActionListener(e -> textPane.cut());
+        menu.add("Copiar").addActionListener(e -> textPane.copy());
+        menu.add("Pegar").addActionListener(e -> textPane.paste());
+    }
+
+    // Como los menús: se llena justo antes de enseñarse por primera vez
     private void createPopupMenu() {
         JPopupMenu popupMenu = new JPopupMenu();
-        JMenuItem cutPopup = new JMenuItem("Cortar");
-        cutPopup.addActionListener(e -> textPane.cut());
-        JMenuItem copyPopup = new JMenuItem("Copiar");
-        copyPopup.addActionListener(e -> textPane.copy());
-        JMenuItem pastePopup = new JMenuItem("Pegar");
-        pastePopup.addActionListener(e -> textPane.paste());
-
-        popupMenu.add(cutPopup);
-        popupMenu.add(copyPopup);
-        popupMenu.add(pastePopup);
+        popupMenu.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                popupMenu.removePopupMenuListener(this);
+                addClipboardItems(popupMenu);
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
         textPane.setComponentPopupMenu(popupMenu);
     }
 
+    // Los contadores los mantiene el propio documento con cada edición (ver CountingContent)
     private void updateStatus() {
-        String text = textPane.getText();
-        int chars = text.length();
-        String[] words = text.trim().split("\\s+");
-        int numWords = text.trim().isEmpty() ? 0 : words.length;
-        int lines = textPane.getDocument().getDefaultRootElement().getElementCount();
-        statusLabel.setText("Caracteres: " + chars + " | Palabras: " + numWords + " | Líneas: " + lines);
+        long t = Diagnostics.start();
+        if (largeView != null) {
+            statusLabel.setText(largeView.statusText(textPane.getCaretPosition()));
+        } else {
+            EditorDocument doc = (EditorDocument) textPane.getDocument();
+            statusLabel.setText("Caracteres: " + doc.getCharCount() + " | Palabras: " + doc.getWordCount()
+                    + " | Líneas: " + doc.getLineCount() + " | " + TextFormat.of(doc).label()
+                    + (activeTab != null && activeTab.follower != null ? " | Siguiendo" : ""));
+        }
+        Diagnostics.end("Barra de estado", t);
+    }
+
+    private void showDiagnostics() {
+        if (diagnosticsPanel == null)
+            diagnosticsPanel = new DiagnosticsPanel(this);
+        diagnosticsPanel.setVisible(true);
+    }
+
+    // Muestra u oculta el panel lateral de análisis; oculto, no se analiza nada
+    private void toggleAnalytics() {
+        if (analyticsPanel == null)
+            analyticsPanel = new AnalyticsPanel();
+        boolean show = analyticsPanel.getParent() == null;
+        if (show) {
+            add(analyticsPanel, BorderLayout.EAST);
+            analyticsPanel.attach(largeView == null ? (EditorDocument) textPane.getDocument() : null);
+        } else {
+            remove(analyticsPanel);
+            analyticsPanel.attach(null);
+        }
+        analyticsAction.putValue(Action.SELECTED_KEY, show);
+        revalidate();
+        repaint();
     }
 
     private void applyStyle(Object styleConstant) {
-        MutableAttributeSet attrs = new SimpleAttributeSet(textPane.getCharacterAttributes());
-        boolean isApplied = false;
+        long t = Diagnostics.start();
+        // Solo el atributo que cambia: el resto de cada tramo se conserva y los tramos
+        // iguales se funden (ver EditorDocument.setCharacterAttributes)
+        AttributeSet current = textPane.getCharacterAttributes();
+        MutableAttributeSet attrs = new SimpleAttributeSet();
         if (styleConstant == StyleConstants.Bold) {
-            isApplied = StyleConstants.isBold(attrs);
-            StyleConstants.setBold(attrs, !isApplied);
+            StyleConstants.setBold(attrs, !StyleConstants.isBold(current));
         } else if (styleConstant == StyleConstants.Italic) {
-            isApplied = StyleConstants.isItalic(attrs);
-            StyleConstants.setItalic(attrs, !isApplied);
+            StyleConstants.setItalic(attrs, !StyleConstants.isItalic(current));
         }
         textPane.setCharacterAttributes(attrs, false);
+        Diagnostics.end("Estilo", t);
+    }
+
+    private void findNext(boolean forward) {
+        if (findBar.isVisible())
+            findBar.find(forward);
+        else
+            findBar.open();
     }
 
     private void showFindReplaceDialog() {
-        JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+        JPanel panel = new JPanel(new GridLayout(3, 2, 5, 5));
         JTextField findField = new JTextField();
         JTextField replaceField = new JTextField();
+        JCheckBox regexBox = new JCheckBox("Expresión regular");
         panel.add(new JLabel("Buscar:"));
         panel.add(findField);
         panel.add(new JLabel("Reemplazar:"));
         panel.add(replaceField);
+        panel.add(regexBox);
 
         int result = JOptionPane.showConfirmDialog(this, panel, "Buscar y Reemplazar", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
-            String txt = textPane.getText();
             String find = findField.getText();
-            String repl = replaceField.getText();
-            if (!find.isEmpty()) {
-                textPane.setText(txt.replace(find, repl));
+            if (!find.isEmpty() && textPane.isEditable()) {
+                replaceAll((EditorDocument) textPane.getDocument(), find, replaceField.getText(), regexBox.isSelected());
+            }
+        }
+    }
+
+    // Busca y prepara los párrafos reescritos en segundo plano (ver FindReplaceEngine);
+    // en el EDT solo se cambian, como una única edición que se deshace de una vez
+    private void replaceAll(EditorDocument doc, String find, String repl, boolean regex) {
+        CoalescingUndoManager undoManager = activeTab.undoManager;
+        progressLabel.setState(ProgressLabel.State.WORKING);
+        progressLabel.setStatusText("Buscando...");
+
+        SwingWorker<FindReplaceEngine.Matches, Integer> worker = new SwingWorker<>() {
+            @Override
+            protected FindReplaceEngine.Matches doInBackground() throws Exception {
+                FindReplaceEngine.Matches matches =
+                        FindReplaceEngine.findAll(doc, find, repl, regex, this::publishProgress, this::isCancelled);
+                // Si el texto ya cambió no se prepara nada: done() vuelve a buscar
+                FindReplaceEngine.prepare(doc, matches);
+                return matches;
+            }
+
+            private void publishProgress(int percent) {
+                publish(percent);
+            }
+
+            @Override
+            protected void process(List<Integer> chunks) {
+                progressLabel.setProgressValue(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                if (search == this)
+                    search = null;
+                if (isCancelled()) {
+                    progressLabel.setState(ProgressLabel.State.IDLE);
+                    return;
+                }
+                try {
+                    FindReplaceEngine.Matches matches = get();
+                    if (textPane.getDocument() != doc)
+                        return; // Se cambió de pestaña mientras tanto
+                    if (matches.editCount() != doc.getEditCount()) {
+                        replaceAll(doc, find, repl, regex); // El texto cambió: se vuelve a buscar
+                        return;
+                    }
+                    long t = Diagnostics.start();
+                    undoManager.beginGroup();
+                    try {
+                        FindReplaceEngine.replaceAll(doc, matches);
+                    } finally {
+                        undoManager.endGroup();
+                    }
+                    Diagnostics.end("Reemplazar", t);
+                    progressLabel.setState(ProgressLabel.State.DONE);
+                    progressLabel.setStatusText(matches.count() + " reemplazos");
+                    idleAfter(2000);
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    progressLabel.setState(ProgressLabel.State.ERROR);
+                    JOptionPane.showMessageDialog(EditorTextoGUI.this,
+                            "Error al reemplazar:\n" + cause.getMessage(),
+                            "Buscar y Reemplazar", JOptionPane.ERROR_MESSAGE);
+                }
             }
+        };
+        search = worker;
+        worker.execute();
+    }
+
+    // ===========================================================================
+    // PESTAÑAS (ver EditorTab y Workspace)
+    // ===========================================================================
+
+    private void newTab() {
+        EditorTab tab = new EditorTab(null, workspace.nextUntitled());
+        tab.setDocument(new EditorDocument());
+        startJournal(tab, false);
+        addTab(tab);
+        selectTab(tab);
+    }
+
+    private void addTab(EditorTab tab) {
+        workspace.add(tab);
+        selectingTab = true;
+        try {
+            tabStrip.addTab(tab.title(), null);
+        } finally {
+            selectingTab = false;
+        }
+    }
+
+    // Guarda el estado de la pestaña que se deja y pone en el editor la nueva
+    private void selectTab(EditorTab tab) {
+        if (tab == activeTab)
+            return;
+        if (activeTab != null) {
+            if (activeTab.doc != null && textPane.getDocument() == activeTab.doc)
+                activeTab.caret = textPane.getCaretPosition();
+            closeLargeFile();
+        }
+        activeTab = tab;
+        selectingTab = true;
+        try {
+            tabStrip.setSelectedIndex(workspace.tabs().indexOf(tab));
+        } finally {
+            selectingTab = false;
+        }
+        showTab(tab);
+        workspace.activate(tab);
+    }
+
+    private void showTab(EditorTab tab) {
+        followAction.putValue(Action.SELECTED_KEY, tab.follower != null);
+        if (tab.large) {
+            openLargeFile(tab);
+            return;
+        }
+        setTitle("Editor - " + tab.title());
+        if (tab.doc != null) {
+            installDocument(tab.doc);
+            textPane.setCaretPosition(Math.min(tab.caret, tab.doc.getLength()));
+            textPane.setEditable(tab.follower == null);
+            return;
+        }
+        // Aún no está en memoria: un documento vacío de solo lectura mientras se carga
+        installDocument(new EditorDocument());
+        textPane.setEditable(false);
+        if (tab.loader == null)
+            loadTab(tab);
+    }
+
+    // Lee el documento de la pestaña: de su copia en disco si se volcó (con los cambios
+    // sin guardar ya dentro) o de su fichero la primera vez que se muestra
+    private void loadTab(EditorTab tab) {
+        boolean restore = tab.snapshot != null;
+        File source = restore ? tab.snapshot.toFile() : tab.file;
+        progressLabel.setState(ProgressLabel.State.WORKING);
+        progressLabel.setStatusText(restore ? "Restaurando " + tab.title() + "..." : "Abriendo... (Esc para cancelar)");
+
+        // El documento se construye aparte, fuera del EDT, y se coloca al terminar
+        DocumentLoader loader = new DocumentLoader(source, progressLabel) {
+            @Override
+            protected void loaded(EditorDocument doc) {
+                tab.loader = null;
+                if (!workspace.tabs().contains(tab))
+                    return; // Se cerró mientras se cargaba
+                boolean recovered;
+                if (restore) {
+                    Workspace.deleteSnapshot(tab);
+                    doc.putProperty(TextFormat.PROPERTY, tab.format);
+                    recovered = EditJournal.hasRecovery(tab.journalBase());
+                } else {
+                    recovered = recoverJournal(doc, tab);
+                }
+                tab.setDocument(doc);
+                startJournal(tab, recovered);
+                if (tab == activeTab)
+                    showTab(tab);
+                workspace.trim();
+                progressLabel.setState(ProgressLabel.State.DONE);
+                idleAfter(1000);
+            }
+
+            @Override
+            protected void failed(Exception ex) {
+                tab.loader = null;
+                // Sin memoria para editarlo: se ve con el visor de solo lectura
+                if (ex instanceof DocumentLoader.TooLargeException && !restore
+                        && workspace.tabs().contains(tab)) {
+                    tab.large = true;
+                    if (tab == activeTab)
+                        showTab(tab);
+                    return;
+                }
+                progressLabel.setState(ProgressLabel.State.ERROR);
+                // --- MEJORA 2: Feedback de error visible ---
+                JOptionPane.showMessageDialog(EditorTextoGUI.this,
+                        "Error al abrir el archivo:\n" + ex.getMessage(),
+                        "Error de Lectura", JOptionPane.ERROR_MESSAGE);
+                // Lo que no se hubiera guardado sigue en su diario
+                closeTab(tab);
+            }
+
+            @Override
+            protected void cancelled() {
+                tab.loader = null;
+                progressLabel.setState(ProgressLabel.State.IDLE);
+                progressLabel.setStatusText("Apertura cancelada");
+                // Una copia en disco se vuelve a intentar la próxima vez que se muestre
+                if (!restore)
+                    closeTab(tab);
+            }
+        };
+        tab.loader = loader;
+        // Sin tiempo máximo: una carga larga se cancela con Esc
+        IoScheduler.SHARED.schedule("Abrir " + tab.title(), source, null, 0, loader);
+    }
+
+    // Lo que no se haya guardado queda en el diario para la próxima vez
+    private void closeTab(EditorTab tab) {
+        int index = workspace.tabs().indexOf(tab);
+        if (index < 0)
+            return;
+        if (tab == activeTab) {
+            closeLargeFile();
+            activeTab = null;
+        }
+        closeJournal(tab);
+        workspace.remove(tab);
+        selectingTab = true;
+        try {
+            tabStrip.removeTabAt(index);
+        } finally {
+            selectingTab = false;
         }
+        if (workspace.tabs().isEmpty())
+            newTab();
+        else if (activeTab == null)
+            selectTab(workspace.tabs().get(Math.min(index, workspace.tabs().size() - 1)));
+    }
+
+    private void updateTabTitle(EditorTab tab) {
+        int index = workspace.tabs().indexOf(tab);
+        if (index >= 0)
+            tabStrip.setTitleAt(index, tab.title());
+        if (tab == activeTab)
+            setTitle("Editor - " + tab.title() + (tab.large ? " (solo lectura)" : ""));
     }
 
+    // Cada fichero va a su pestaña, pero solo se lee el que se muestra: el resto se
+    // carga la primera vez que se elija su pestaña
     private void openFile() {
         JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setMultiSelectionEnabled(true);
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-            currentFile = fileChooser.getSelectedFile();
-            // Simulación visual en NUI también
-            progressLabel.setState(ProgressLabel.State.WORKING);
-            progressLabel.setStatusText("Abriendo...");
-
-            new Thread(() -> {
-                try (BufferedReader reader = new BufferedReader(new FileReader(currentFile))) {
-                    textPane.setText("");
-                    String line;
-                    StyledDocument doc = textPane.getStyledDocument();
-                    while ((line = reader.readLine()) != null) {
-                        doc.insertString(doc.getLength(), line + "\n", null);
-                    }
-                    undoManager.discardAllEdits();
-                    SwingUtilities.invokeLater(() -> {
-                        setTitle("Editor - " + currentFile.getName());
-                        progressLabel.setState(ProgressLabel.State.DONE);
-                        new Timer(1000, e -> progressLabel.setState(ProgressLabel.State.IDLE)).start();
-                    });
-                } catch (Exception ex) {
-                    SwingUtilities.invokeLater(() -> {
-                        progressLabel.setState(ProgressLabel.State.ERROR);
-                        // --- MEJORA 2: Feedback de error visible ---
-                        JOptionPane.showMessageDialog(EditorTextoGUI.this,
-                                "Error al abrir el archivo:\n" + ex.getMessage(),
-                                "Error de Lectura", JOptionPane.ERROR_MESSAGE);
-                    });
+            EditorTab replaced = activeTab != null && activeTab.isPristine() ? activeTab : null;
+            EditorTab first = null;
+            for (File file : fileChooser.getSelectedFiles()) {
+                EditorTab tab = findTab(file);
+                if (tab == null) {
+                    tab = new EditorTab(file, 0);
+                    // El visor de ficheros grandes es de texto plano
+                    tab.large = file.length() > LargeFileView.THRESHOLD && !RichTextFile.isRichText(file);
+                    addTab(tab);
                 }
-            }).start();
+                if (first == null)
+                    first = tab;
+            }
+            if (first == null)
+                return;
+            selectTab(first);
+            // Un "Sin título" vacío no se queda abierto al lado de lo que se abre
+            if (replaced != null && replaced != first)
+                closeTab(replaced);
+        }
+    }
+
+    private EditorTab findTab(File file) {
+        for (EditorTab tab : workspace.tabs()) {
+            if (tab.file != null && tab.file.getAbsoluteFile().equals(file.getAbsoluteFile()))
+                return tab;
+        }
+        return null;
+    }
+
+    // Ficheros por encima del umbral: visor por ventanas de solo lectura (ver LargeFileView).
+    // Se abre al mostrar la pestaña y se cierra al dejarla
+    private void openLargeFile(EditorTab tab) {
+        try {
+            largeView = new LargeFileView(tab.file, textPane, scrollPane, this::installDocument, this::updateStatus);
+        } catch (IOException ex) {
+            progressLabel.setState(ProgressLabel.State.ERROR);
+            JOptionPane.showMessageDialog(this,
+                    "Error al abrir el archivo:\n" + ex.getMessage(),
+                    "Error de Lectura", JOptionPane.ERROR_MESSAGE);
+            closeTab(tab);
+            return;
+        }
+        textPane.setEditable(false);
+        editorPanel.add(largeView.getScrollBar(), BorderLayout.EAST);
+        editorPanel.revalidate();
+        largeView.start();
+        setTitle("Editor - " + tab.title() + " (solo lectura)");
+        progressLabel.setState(ProgressLabel.State.IDLE);
+    }
+
+    private void closeLargeFile() {
+        if (largeView == null)
+            return;
+        try {
+            largeView.close();
+        } catch (IOException ignored) {
+        }
+        editorPanel.remove(largeView.getScrollBar());
+        editorPanel.revalidate();
+        largeView = null;
+        textPane.setEditable(true);
+    }
+
+    private void cancelLoad() {
+        if (activeTab != null && activeTab.loader != null)
+            activeTab.loader.cancel(true);
+        if (search != null) {
+            search.cancel(false);
+            search = null;
         }
     }
 
     private void saveFileWithProgress() {
-        if (currentFile == null) {
+        EditorTab tab = activeTab;
+        if (followingBlocksSave(tab))
+            return;
+        if (tab.large) {
+            JOptionPane.showMessageDialog(this,
+                    "El fichero está abierto en modo solo lectura por su tamaño.",
+                    "Guardar", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (tab.doc == null)
+            return; // Todavía se está cargando
+        if (tab.file == null) {
             saveFileAs();
             return;
         }
 
-        SwingWorker<Void, Integer> worker = new SwingWorker<>() {
+        progressLabel.setState(ProgressLabel.State.WORKING);
+        progressLabel.setStatusText("Guardando...");
+
+        EditorDocument doc = tab.doc;
+        DocumentSaver saver = new DocumentSaver(doc, tab.file, progressLabel) {
             @Override
-            protected Void doInBackground() throws Exception {
-                SwingUtilities.invokeLater(() -> {
-                    progressLabel.setState(ProgressLabel.State.WORKING);
-                    progressLabel.setStatusText("Guardando...");
-                });
-
-                String content = textPane.getText();
-                try (BufferedWriter writer = new BufferedWriter(new FileWriter(currentFile))) {
-                    for (int i = 0; i <= 100; i += 5) {
-                        Thread.sleep(20); // Simular escritura lenta
-                        publish(i);
-                    }
-                    writer.write(content);
-                }
-                return null;
+            protected void saved() {
+                doc.putProperty(FileFollower.READ_TO_PROPERTY, getFile().length());
+                journalSaved(tab, doc, getFile(), getVersion() == doc.getVersion());
+                progressLabel.setState(ProgressLabel.State.DONE);
+                updateTabTitle(tab);
+                idleAfter(2000);
             }
 
             @Override
-            protected void process(List<Integer> chunks) {
-                progressLabel.setProgressValue(chunks.get(chunks.size() - 1));
+            protected void failed(Exception ex) {
+                progressLabel.setState(ProgressLabel.State.ERROR);
+                // --- MEJORA 2: Feedback de error visible en guardado ---
+                JOptionPane.showMessageDialog(EditorTextoGUI.this,
+                        "Error crítico al guardar el archivo:\n" + IoScheduler.message(ex),
+                        "Error de Guardado", JOptionPane.ERROR_MESSAGE);
             }
+        };
+        // Un solo guardado a la vez por fichero; si ya espera otro de este documento, ese
+        // guardará también lo de ahora
+        if (!IoScheduler.SHARED.schedule("Guardar " + tab.title(), tab.file, doc, IoScheduler.WRITE_TIMEOUT_MS, saver))
+            progressLabel.setStatusText("Guardando... (se une al guardado que ya esperaba)");
+    }
+
+    // ===========================================================================
+    // DIARIO DE EDICIONES (autoguardado y recuperación)
+    // ===========================================================================
+
+    // Una pestaña por cada documento sin título que quedó sin guardar en otra sesión
+    private void recoverUntitled() {
+        for (int n : EditJournal.untitledRecoveries()) {
+            EditorTab tab = new EditorTab(null, n);
+            EditorDocument doc = new EditorDocument();
+            boolean recovered = recoverJournal(doc, tab);
+            if (!recovered && n > 1)
+                continue; // Su diario se reinicia si vuelve a usarse ese número
+            tab.setDocument(doc);
+            startJournal(tab, recovered);
+            addTab(tab);
+            if (activeTab == null)
+                selectTab(tab);
+        }
+    }
+
+    // Si quedó trabajo sin guardar de otra sesión sobre el fichero de la pestaña, se
+    // ofrece reaplicarlo a "doc", recién cargado y aún sin colocar en el editor
+    private boolean recoverJournal(EditorDocument doc, EditorTab tab) {
+        File base = tab.journalBase();
+        if (!EditJournal.hasRecovery(base))
+            return false;
+        String name = tab.file == null ? "un documento sin título" : tab.file.getName();
+        int answer = JOptionPane.showConfirmDialog(this,
+                "Hay cambios sin guardar en " + name + " de una sesión anterior.\n¿Quieres recuperarlos?",
+                "Recuperar cambios", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+        if (answer != JOptionPane.YES_OPTION)
+            return false;
+        long t = Diagnostics.start();
+        try {
+            int changes = EditJournal.replay(doc, base);
+            progressLabel.setStatusText("Recuperados " + changes + " cambios");
+            return true;
+        } catch (IOException | BadLocationException ex) {
+            JOptionPane.showMessageDialog(this,
+                    "No se pudieron recuperar los cambios:\n" + ex.getMessage(),
+                    "Recuperar cambios", JOptionPane.ERROR_MESSAGE);
+            return false;
+        } finally {
+            Diagnostics.end("Recuperar diario", t);
+        }
+    }
+
+    // "resume": seguir el diario que se acaba de recuperar en vez de empezar uno vacío
+    private void startJournal(EditorTab tab, boolean resume) {
+        File base = tab.journalBase();
+        try {
+            tab.journal = resume ? EditJournal.resume(tab.doc, base) : EditJournal.start(tab.doc, base);
+        } catch (IOException ex) {
+            tab.journal = null;
+            System.err.println("Diario: no se pudo abrir " + EditJournal.pathFor(base) + ": " + ex);
+        }
+    }
+
+    // Lo que no se haya guardado queda en el diario para la próxima vez
+    private void closeJournal(EditorTab tab) {
+        if (tab.journal != null) {
+            tab.journal.close(false);
+            tab.journal = null;
+        }
+    }
+
+    private void journalSaved(EditorTab tab, EditorDocument doc, File file, boolean upToDate) {
+        if (tab.journal == null || !tab.journal.isFor(doc))
+            return;
+        try {
+            tab.journal.saved(file, upToDate);
+        } catch (IOException ex) {
+            System.err.println("Diario: no se pudo reiniciar tras guardar: " + ex);
+            closeJournal(tab);
+        }
+    }
+
+    // --- Seguir el fichero (modo "tail -f", ver FileFollower) ---
+
+    // Mientras se sigue, el documento es de solo lectura, sin diario y sin historial de
+    // deshacer: el fichero cambia por su cuenta y el documento puede no tener ya el principio
+    private void toggleFollow() {
+        EditorTab tab = activeTab;
+        if (tab.follower != null) {
+            stopFollowing(tab);
+        } else if (tab.file == null || tab.large || RichTextFile.isRichText(tab.file)) {
+            JOptionPane.showMessageDialog(this,
+                    "Solo se puede seguir un fichero de texto abierto en modo normal.",
+                    "Seguir fichero", JOptionPane.INFORMATION_MESSAGE);
+        } else if (tab.doc != null) {
+            startFollowing(tab);
+        }
+        followAction.putValue(Action.SELECTED_KEY, tab.follower != null);
+        updateStatus();
+    }
+
+    private void startFollowing(EditorTab tab) {
+        EditorDocument doc = tab.doc;
+        Object readTo = doc.getProperty(FileFollower.READ_TO_PROPERTY);
+        long from = readTo instanceof Long ? (Long) readTo : tab.file.length();
+        closeJournal(tab);
+        // Lo añadido no entra en el historial, así que lo anterior ya no se podría deshacer
+        // en orden (y sus ElementEdit apuntan a párrafos que replaceParagraphs sustituye)
+        tab.undoManager.discardAllEdits();
+        tab.follower = new FileFollower(doc, tab.file.toPath(), TextFormat.of(doc).charset, from,
+                FileFollower.DEFAULT_MAX_LINES) {
+            private boolean atEnd; // El cursor estaba al final: se queda al final
+            private int caret;
 
             @Override
-            protected void done() {
-                try {
-                    get();
-                    progressLabel.setState(ProgressLabel.State.DONE);
-                    setTitle("Editor - " + currentFile.getName());
-                    new Timer(2000, e -> progressLabel.setState(ProgressLabel.State.IDLE)).start();
-                } catch (Exception e) {
-                    progressLabel.setState(ProgressLabel.State.ERROR);
-                    // --- MEJORA 2: Feedback de error visible en guardado ---
-                    JOptionPane.showMessageDialog(EditorTextoGUI.this,
-                            "Error crítico al guardar el archivo.",
-                            "Error de Guardado", JOptionPane.ERROR_MESSAGE);
+            protected void appending() {
+                if (tab == activeTab && textPane.getDocument() == doc) {
+                    caret = textPane.getCaretPosition();
+                    atEnd = caret >= doc.getLength();
                 }
             }
+
+            @Override
+            protected void appended(int removed) {
+                if (tab == activeTab && textPane.getDocument() == doc)
+                    textPane.setCaretPosition(atEnd ? doc.getLength() : Math.max(0, caret - removed));
+                else
+                    tab.caret = Math.max(0, tab.caret - removed);
+            }
+
+            @Override
+            protected void notice(String message) {
+                progressLabel.setStatusText(tab.title() + ": " + message);
+                idleAfter(3000);
+            }
+
+            @Override
+            protected void failed(IOException ex) {
+                stopFollowing(tab);
+                if (tab == activeTab)
+                    followAction.putValue(Action.SELECTED_KEY, false);
+                JOptionPane.showMessageDialog(EditorTextoGUI.this,
+                        "Se ha dejado de seguir " + tab.title() + ":\n" + ex.getMessage(),
+                        "Error de Lectura", JOptionPane.ERROR_MESSAGE);
+            }
         };
-        worker.execute();
+        tab.follower.start();
+        textPane.setEditable(false);
+    }
+
+    private void stopFollowing(EditorTab tab) {
+        if (tab.follower == null)
+            return;
+        tab.follower.stop();
+        tab.follower = null;
+        if (tab == activeTab && textPane.getDocument() == tab.doc)
+            textPane.setEditable(true);
+        // El diario empieza con una foto: el documento ya no es el fichero más cambios
+        startJournal(tab, false);
+        try {
+            if (tab.journal != null)
+                tab.journal.checkpoint();
+        } catch (IOException ex) {
+            System.err.println("Diario: no se pudo escribir la foto de " + tab.title() + ": " + ex);
+        }
+        updateStatus();
+    }
+
+    // Guardar encima de un fichero que se está siguiendo lo recortaría a lo que se ve
+    private boolean followingBlocksSave(EditorTab tab) {
+        if (tab.follower == null)
+            return false;
+        JOptionPane.showMessageDialog(this,
+                "Deja de seguir el fichero (Herramientas > Seguir fichero) para guardarlo.",
+                "Guardar", JOptionPane.INFORMATION_MESSAGE);
+        return true;
     }
 
     // --- MEJORA 1: Implementación del diálogo de ayuda ---
@@ -523,27 +1165,88 @@ public class EditorTextoGUI extends JFrame implements NuiListener {
         JOptionPane.showMessageDialog(this, helpMsg, "Ayuda de Comandos NUI", JOptionPane.INFORMATION_MESSAGE);
     }
 
+    // El formato lo decide la extensión (ver DocumentSaver); sin extensión se pone la del
+    // filtro elegido, .etx por defecto para no perder el formato
     private void saveFileAs() {
+        if (followingBlocksSave(activeTab))
+            return;
         JFileChooser fileChooser = new JFileChooser();
+        FileNameExtensionFilter rich = new FileNameExtensionFilter("Documento con formato (*.etx)", RichTextFile.EXTENSION);
+        fileChooser.addChoosableFileFilter(rich);
+        fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("Texto plano (*.txt)", "txt"));
+        fileChooser.setFileFilter(rich);
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            currentFile = fileChooser.getSelectedFile();
-            if (!currentFile.getName().toLowerCase().endsWith(".txt")) {
-                currentFile = new File(currentFile.getAbsolutePath() + ".txt");
+            File file = withExtension(fileChooser.getSelectedFile(), fileChooser.getFileFilter());
+            if (RtfWriter.isRtf(file)) {
+                // El RTF no se vuelve a abrir con formato: es una exportación
+                saveCopy(file);
+                return;
             }
+            activeTab.file = file;
+            activeTab.untitled = 0;
             saveFileWithProgress();
         }
     }
 
+    private void exportFile(String extension) {
+        if (activeTab.large) {
+            JOptionPane.showMessageDialog(this,
+                    "El fichero está abierto en modo solo lectura por su tamaño.",
+                    "Exportar", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        FileNameExtensionFilter filter = RtfWriter.EXTENSION.equals(extension)
+                ? new FileNameExtensionFilter("Texto enriquecido (*.rtf)", extension)
+                : new FileNameExtensionFilter("Texto plano (*.txt)", extension);
+        fileChooser.setFileFilter(filter);
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION)
+            saveCopy(withExtension(fileChooser.getSelectedFile(), filter));
+    }
+
+    private static File withExtension(File file, javax.swing.filechooser.FileFilter filter) {
+        if (file.getName().contains(".") || !(filter instanceof FileNameExtensionFilter))
+            return file;
+        return new File(file.getAbsolutePath() + "." + ((FileNameExtensionFilter) filter).getExtensions()[0]);
+    }
+
+    // Escribe el documento en otro fichero sin cambiar el que se está editando
+    private void saveCopy(File file) {
+        if (activeTab.doc == null)
+            return; // Todavía se está cargando
+        progressLabel.setState(ProgressLabel.State.WORKING);
+        progressLabel.setStatusText("Exportando...");
+        DocumentSaver saver = new DocumentSaver(activeTab.doc, file, progressLabel) {
+            @Override
+            protected void saved() {
+                progressLabel.setState(ProgressLabel.State.DONE);
+                progressLabel.setStatusText("Exportado: " + getFile().getName());
+                idleAfter(2000);
+            }
+
+            @Override
+            protected void failed(Exception ex) {
+                progressLabel.setState(ProgressLabel.State.ERROR);
+                JOptionPane.showMessageDialog(EditorTextoGUI.this,
+                        "Error al exportar el archivo:\n" + IoScheduler.message(ex),
+                        "Error de Exportación", JOptionPane.ERROR_MESSAGE);
+            }
+        };
+        IoScheduler.SHARED.schedule("Exportar " + file.getName(), file, null, IoScheduler.WRITE_TIMEOUT_MS, saver);
+    }
+
     // ===========================================================================
     // TU COMPONENTE PROGRESS LABEL (Mantenido intacto)
     // ===========================================================================
-    public static class ProgressLabel extends JPanel {
+    public static class ProgressLabel extends JPanel implements IoScheduler.Listener {
         public enum State {
             IDLE, WORKING, DONE, ERROR
         }
 
         private JLabel textLabel;
         private JProgressBar progressBar;
+        private JLabel ioLabel; // Cola de E/S o lo que tardó la última tarea (ver IoScheduler)
+        private String lastTask = "";
         private State currentState;
 
         public ProgressLabel() {
@@ -552,11 +1255,31 @@ public class EditorTextoGUI extends JFrame implements NuiListener {
             progressBar = new JProgressBar(0, 100);
             progressBar.setPreferredSize(new Dimension(150, 15));
             progressBar.setVisible(false);
+            ioLabel = new JLabel();
+            ioLabel.setForeground(Color.GRAY);
             add(textLabel);
             add(progressBar);
+            add(ioLabel);
             setState(State.IDLE);
         }
 
+        @Override
+        public void queueChanged(int waiting, int running) {
+            if (waiting + running == 0)
+                ioLabel.setText(lastTask);
+            else
+                ioLabel.setText("E/S: " + running + " en marcha" + (waiting > 0 ? ", " + waiting + " en cola" : ""));
+        }
+
+        @Override
+        public void taskFinished(String label, long waitNanos, long runNanos, boolean timedOut) {
+            lastTask = label + ": " + (timedOut ? "tiempo agotado" : runNanos / 1_000_000 + " ms")
+                    + (waitNanos >= 1_000_000 ? " (+" + waitNanos / 1_000_000 + " ms en cola)" : "");
+            ioLabel.setToolTipText(lastTask);
+            if (!ioLabel.getText().startsWith("E/S:"))
+                ioLabel.setText(lastTask);
+        }
+
         public void setStatusText(String text) {
             textLabel.setText(text);
         }
@@ -594,6 +1317,9 @@ public class EditorTextoGUI extends JFrame implements NuiListener {
     }
 
     public static void main(String[] args) {
+        // Conversor por lotes, sin ventana (ver BatchConverter)
+        if (args.length > 0 && args[0].equals(BatchConverter.OPTION))
+            System.exit(BatchConverter.run(java.util.Arrays.copyOfRange(args, 1, args.length)));
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(new FlatDarculaLaf());
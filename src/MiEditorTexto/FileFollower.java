@@ -0,0 +1,371 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// ======================================================================================
+// Seguir un fichero que crece (modo "tail -f")
+// ======================================================================================
+
+// Lleva al final del documento lo que se va añadiendo a su fichero (registros de
+// servicios), sin volver a leer lo anterior. Un hilo espera a que el WatchService del
+// directorio avise de un cambio (y mira de todos modos cada POLL_MS: hay sistemas de
+// ficheros que no avisan, y en macOS el WatchService va por sondeo) y lee por su
+// FileChannel solo los bytes nuevos. Los decodifica y normaliza los finales de línea como
+// DocumentLoader, y el EDT recoge todo lo acumulado una vez por ciclo de eventos y lo
+// añade de una vez (replaceParagraphs del último párrafo). El documento se queda con las
+// últimas maxLines líneas; si el EDT no da abasto, de lo acumulado también se guardan
+// solo las últimas maxLines, porque lo demás se iba a recortar igualmente.
+// Si el fichero se vuelve más corto que lo leído (truncado, p. ej. logrotate con
+// copytruncate) se sigue desde el principio; si el nombre pasa a ser otro fichero
+// (rotado) se termina de leer el viejo y se sigue el nuevo. Los ganchos van en el EDT.
+class FileFollower {
+
+    // Hasta qué byte del fichero llega el documento (lo apuntan la carga y el guardado):
+    // el seguimiento empieza ahí y no se pierde lo escrito entre medias
+    static final String READ_TO_PROPERTY = "leidoHasta";
+    // Líneas que se conservan: -Deditor.seguir.lineas=...
+    static final int DEFAULT_MAX_LINES = Integer.getInteger("editor.seguir.lineas", 100_000);
+
+    private static final long POLL_MS = 500;
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final char BOM = '\uFEFF';
+
+    private final EditorDocument doc;
+    private final Path file;
+    private final int maxLines;
+    private final CharsetDecoder decoder;
+    private final Thread reader;
+    private final Segment segment = new Segment();
+    private volatile boolean stopped;
+
+    // Del hilo lector al EDT (con el monitor de "pending")
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingLines;
+    private boolean skipped; // Se descartaron líneas: lo que hay en el documento sobra
+    private String pendingNotice;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // Solo del hilo lector
+    private FileChannel channel;
+    private Object identity; // Para reconocer el fichero tras una rotación
+    private long position;
+    private boolean atStart; // Se lee desde el byte 0 (puede venir un BOM)
+    private boolean lastWasCR;
+    private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+    private final StringBuilder decoded = new StringBuilder();
+
+    FileFollower(EditorDocument doc, Path file, Charset charset, long position, int maxLines) {
+        this.doc = doc;
+        this.file = file.toAbsolutePath();
+        this.position = position;
+        this.maxLines = Math.max(1, maxLines);
+        // Un byte que no encaja no puede hacer que se vuelva a leer todo, como al abrir
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        reader = new Thread(this::follow, "Seguir-" + file.getFileName());
+        reader.setDaemon(true);
+    }
+
+    // --- Ganchos para quien sigue el fichero (se llaman en el EDT) ---
+
+    // Justo antes de añadir texto al documento
+    protected void appending() {
+    }
+
+    // Después de añadirlo; "removed" son los caracteres recortados del principio
+    protected void appended(int removed) {
+    }
+
+    // El fichero se ha truncado o rotado, o se han saltado líneas
+    protected void notice(String message) {
+    }
+
+    // El seguimiento se ha parado por un error de lectura
+    protected void failed(IOException ex) {
+    }
+
+    void start() {
+        reader.start();
+    }
+
+    // Desde el EDT: lo que quede sin entregar se descarta
+    void stop() {
+        stopped = true;
+        reader.interrupt();
+    }
+
+    // --- Hilo lector ---
+
+    private void follow() {
+        try (WatchService watcher = file.getFileSystem().newWatchService()) {
+            file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            open(position);
+            while (!stopped) {
+                readAvailable();
+                // Los avisos de otros ficheros del directorio también despiertan: leer
+                // sin que haya nada nuevo es solo mirar el tamaño
+                WatchKey key = watcher.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+            }
+        } catch (InterruptedException | ClosedByInterruptException ignored) {
+            // stop()
+        } catch (IOException ex) {
+            if (!stopped)
+                SwingUtilities.invokeLater(() -> {
+                    if (!stopped)
+                        failed(ex);
+                });
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void open(long from) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        identity = identity(Files.readAttributes(file, BasicFileAttributes.class));
+        position = from;
+        atStart = from == 0;
+        if (channel.size() < position)
+            truncated();
+    }
+
+    private void readAvailable() throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            attrs = null; // Rotado y aún sin sustituto: se sigue leyendo el viejo
+        }
+        if (attrs != null && !identity(attrs).equals(identity)) {
+            // Otro fichero con el mismo nombre: lo que quede del viejo y después el nuevo
+            readTo(channel.size());
+            closeChannel();
+            open(0);
+            resetDecoder();
+            announce("el fichero se ha rotado, se sigue el nuevo");
+        }
+        long size = channel.size();
+        if (size < position)
+            truncated();
+        readTo(size);
+    }
+
+    private void truncated() {
+        position = 0;
+        atStart = true;
+        resetDecoder();
+        announce("el fichero se ha truncado, se sigue desde el principio");
+    }
+
+    private void readTo(long end) throws IOException {
+        while (position < end && !stopped) {
+            int n = channel.read(bytes, position);
+            if (n <= 0)
+                break;
+            position += n;
+            bytes.flip();
+            while (decoder.decode(bytes, chars, false) == CoderResult.OVERFLOW)
+                drainChars();
+            drainChars();
+            // Lo que queda a medias (un carácter partido entre dos lecturas) se completa
+            // con la siguiente
+            bytes.compact();
+            deliver();
+        }
+    }
+
+    // De "chars" a "decoded", con "\r\n" y "\r" convertidos en "\n"
+    private void drainChars() {
+        chars.flip();
+        char[] array = chars.array();
+        int start = chars.arrayOffset() + chars.position();
+        int end = chars.arrayOffset() + chars.limit();
+        if (atStart && start < end) {
+            if (array[start] == BOM)
+                start++;
+            atStart = false;
+        }
+        int run = start;
+        for (int i = start; i < end; i++) {
+            char c = array[i];
+            if (c == '\r') {
+                decoded.append(array, run, i - run).append('\n');
+                run = i + 1;
+                lastWasCR = true;
+                continue;
+            }
+            if (c == '\n' && lastWasCR) {
+                decoded.append(array, run, i - run);
+                run = i + 1;
+            }
+            lastWasCR = false;
+        }
+        decoded.append(array, run, end - run);
+        chars.clear();
+    }
+
+    private void resetDecoder() {
+        decoder.reset();
+        bytes.clear();
+        lastWasCR = false;
+    }
+
+    // Pasa lo decodificado al EDT
+    private void deliver() {
+        if (decoded.length() == 0)
+            return;
+        int lines = 0;
+        for (int i = 0; i < decoded.length(); i++) {
+            if (decoded.charAt(i) == '\n')
+                lines++;
+        }
+        synchronized (pending) {
+            pending.append(decoded);
+            pendingLines += lines;
+            // El EDT se está quedando atrás: solo se van a ver las últimas maxLines
+            if (pendingLines > 2 * maxLines) {
+                int cut = 0;
+                for (int drop = pendingLines - maxLines; drop > 0; drop--)
+                    cut = pending.indexOf("\n", cut) + 1;
+                pending.delete(0, cut);
+                pendingLines = maxLines;
+                skipped = true;
+            }
+        }
+        decoded.setLength(0);
+        if (decoded.capacity() > 2 * CHUNK_SIZE)
+            decoded.trimToSize();
+        schedule();
+    }
+
+    private void announce(String message) {
+        synchronized (pending) {
+            pendingNotice = message;
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true))
+            SwingUtilities.invokeLater(this::dispatch);
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel != null)
+                channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private static Object identity(BasicFileAttributes attrs) {
+        // El i-nodo donde lo hay; en Windows, la fecha de creación
+        return attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime();
+    }
+
+    // --- EDT ---
+
+    private void dispatch() {
+        scheduled.set(false);
+        String text;
+        String message;
+        boolean replace;
+        synchronized (pending) {
+            text = pending.toString();
+            message = pendingNotice;
+            replace = skipped;
+            pending.setLength(0);
+            if (pending.capacity() > 4 * CHUNK_SIZE)
+                pending.trimToSize();
+            pendingLines = 0;
+            pendingNotice = null;
+            skipped = false;
+        }
+        if (stopped)
+            return;
+        if (replace)
+            message = "el fichero crece más deprisa de lo que se puede mostrar: se han saltado líneas";
+        if (message != null)
+            notice(message);
+        if (text.isEmpty() && !replace)
+            return;
+        long t = Diagnostics.start();
+        appending();
+        int removed;
+        try {
+            removed = replace ? clear() : 0;
+            append(text);
+            removed += trim();
+        } catch (BadLocationException ex) {
+            stop();
+            failed(new IOException(ex));
+            return;
+        }
+        appended(removed);
+        Diagnostics.end("Seguir fichero", t);
+    }
+
+    // Todo en un bloque: el último párrafo se rehace con su texto más el nuevo (una sola
+    // edición y un solo evento, con los párrafos nuevos construidos de golpe)
+    private void append(String text) throws BadLocationException {
+        if (text.isEmpty())
+            return;
+        Element root = doc.getDefaultRootElement();
+        int last = root.getElementCount() - 1;
+        Element paragraph = root.getElement(last);
+        AttributeSet attrs = paragraph.getElement(paragraph.getElementCount() - 1).getAttributes();
+        RichText added = new RichText();
+        added.append(doc, paragraph.getStartOffset(), doc.getLength(), segment);
+        added.append(text, attrs, paragraph.getAttributes());
+        added.append("\n", attrs, paragraph.getAttributes());
+        doc.replaceParagraphs(last, last, added);
+    }
+
+    // Recorta el principio a maxLines líneas, dejando pasar un 10% de más para no
+    // recortar unas pocas líneas en cada tanda
+    private int trim() throws BadLocationException {
+        Element root = doc.getDefaultRootElement();
+        int excess = root.getElementCount() - maxLines;
+        if (excess <= maxLines / 10)
+            return 0;
+        int end = root.getElement(excess).getStartOffset();
+        doc.remove(0, end);
+        return end;
+    }
+
+    private int clear() throws BadLocationException {
+        int length = doc.getLength();
+        doc.remove(0, length);
+        return length;
+    }
+}
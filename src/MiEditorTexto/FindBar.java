@@ -0,0 +1,188 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Highlighter;
+import javax.swing.text.Segment;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+// ======================================================================================
+// Barra de búsqueda (Ctrl+F)
+// ======================================================================================
+
+// Busca mientras se escribe: salta a la siguiente aparición usando el SearchIndex del
+// documento y resalta en ámbar todas las apariciones, pero solo las que caen en la
+// parte visible del editor (se recalculan al hacer scroll), así que el coste no depende
+// del tamaño.
+class FindBar extends JPanel {
+
+    private static final Color HIGHLIGHT = new Color(255, 200, 0, 90);
+    // Si la parte visible tuviera más texto que esto (líneas enormes), se resalta solo esto
+    private static final int MAX_VISIBLE_CHARS = 256 << 10;
+
+    private final JTextPane textPane;
+    private final JScrollPane scrollPane;
+    private final JTextField field = new JTextField(24);
+    private final JLabel info = new JLabel();
+    private final Highlighter.HighlightPainter painter = new DefaultHighlighter.DefaultHighlightPainter(HIGHLIGHT);
+    private final List<Object> highlights = new ArrayList<>();
+    private final Segment segment = new Segment();
+    private final ChangeListener viewportListener = e -> refreshHighlights();
+
+    // Donde empezó la búsqueda incremental (se vuelve aquí al corregir lo escrito)
+    private int anchor;
+
+    FindBar(JTextPane textPane, JScrollPane scrollPane) {
+        super(new FlowLayout(FlowLayout.LEFT, 5, 2));
+        this.textPane = textPane;
+        this.scrollPane = scrollPane;
+        setBorder(BorderFactory.createMatteBorder(0, 0, 1, 0, Color.GRAY));
+
+        JButton previous = new JButton("▲");
+        previous.setToolTipText("Anterior (Mayús+F3)");
+        previous.addActionListener(e -> find(false));
+        JButton next = new JButton("▼");
+        next.setToolTipText("Siguiente (F3 o Enter)");
+        next.addActionListener(e -> find(true));
+        JButton close = new JButton("×");
+        close.setToolTipText("Cerrar (Esc)");
+        close.addActionListener(e -> close());
+
+        field.addActionListener(e -> find(true));
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                incremental();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                incremental();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        field.registerKeyboardAction(e -> close(), KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), JComponent.WHEN_FOCUSED);
+        field.registerKeyboardAction(e -> find(false),
+                KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, KeyEvent.SHIFT_DOWN_MASK), JComponent.WHEN_FOCUSED);
+
+        add(new JLabel("Buscar:"));
+        add(field);
+        add(previous);
+        add(next);
+        add(close);
+        add(info);
+        setVisible(false);
+    }
+
+    void open() {
+        if (!isVisible()) {
+            setVisible(true);
+            scrollPane.getViewport().addChangeListener(viewportListener);
+            revalidate();
+        }
+        String selected = textPane.getSelectedText();
+        if (selected != null && !selected.isEmpty() && selected.indexOf('\n') < 0)
+            field.setText(selected);
+        anchor = textPane.getSelectionStart();
+        field.selectAll();
+        field.requestFocusInWindow();
+        refreshHighlights();
+    }
+
+    void close() {
+        if (!isVisible())
+            return;
+        setVisible(false);
+        scrollPane.getViewport().removeChangeListener(viewportListener);
+        clearHighlights();
+        revalidate();
+        textPane.requestFocusInWindow();
+    }
+
+    // Siguiente (o anterior) aparición desde la selección actual
+    void find(boolean forward) {
+        String text = field.getText();
+        if (text.isEmpty())
+            return;
+        int from = forward ? textPane.getSelectionStart() + 1 : textPane.getSelectionStart();
+        if (select(text, Math.min(from, textPane.getDocument().getLength()), forward))
+            anchor = textPane.getSelectionStart();
+    }
+
+    // Al escribir en el campo se busca desde donde empezó la búsqueda
+    private void incremental() {
+        String text = field.getText();
+        if (text.isEmpty()) {
+            textPane.select(anchor, anchor);
+            info.setText("");
+        } else {
+            select(text, anchor, true);
+        }
+        refreshHighlights();
+    }
+
+    private boolean select(String text, int from, boolean forward) {
+        int found = ((EditorDocument) textPane.getDocument()).getSearchIndex().find(text, from, forward);
+        if (found < 0) {
+            info.setText("Sin resultados");
+            return false;
+        }
+        info.setText("");
+        // Se selecciona de atrás hacia delante para que el cursor no tape el principio
+        textPane.setCaretPosition(found + text.length());
+        textPane.moveCaretPosition(found);
+        return true;
+    }
+
+    // --- Resaltado de la parte visible ---
+
+    // Se llama también cuando cambia el texto o el documento del editor
+    void refreshHighlights() {
+        clearHighlights();
+        String text = field.getText();
+        if (!isVisible() || text.isEmpty())
+            return;
+        Rectangle view = scrollPane.getViewport().getViewRect();
+        int start = textPane.viewToModel2D(new Point(view.x, view.y));
+        int end = textPane.viewToModel2D(new Point(view.x + view.width, view.y + view.height));
+        if (start < 0 || end < 0)
+            return;
+        // Se amplía lo justo para pillar apariciones cortadas por el borde
+        int length = textPane.getDocument().getLength();
+        start = Math.max(0, start - text.length() + 1);
+        end = Math.min(length, Math.min(end + text.length(), start + MAX_VISIBLE_CHARS));
+        try {
+            textPane.getDocument().getText(start, end - start, segment);
+            Highlighter highlighter = textPane.getHighlighter();
+            char[] a = segment.array;
+            int m = text.length();
+            for (int i = 0; i + m <= segment.count; i++) {
+                int j = 0;
+                while (j < m && a[segment.offset + i + j] == text.charAt(j))
+                    j++;
+                if (j == m) {
+                    highlights.add(highlighter.addHighlight(start + i, start + i + m, painter));
+                    i += m - 1;
+                }
+            }
+        } catch (BadLocationException ignored) {
+        }
+    }
+
+    private void clearHighlights() {
+        Highlighter highlighter = textPane.getHighlighter();
+        for (Object tag : highlights)
+            highlighter.removeHighlight(tag);
+        highlights.clear();
+    }
+}
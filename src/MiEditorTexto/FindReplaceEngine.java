@@ -0,0 +1,437 @@
+package MiEditorTexto;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import javax.swing.text.StyledDocument;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// ======================================================================================
+// Motor de buscar y reemplazar
+// ======================================================================================
+
+// La búsqueda se hace fuera del EDT, leyendo el documento por bloques y tomando su
+// cerrojo de lectura solo para cada bloque (si entretanto cambia el texto, se deja de
+// buscar): texto literal con Boyer-Moore-Horspool o expresión regular sobre una vista
+// CharSequence del documento. El resultado es una lista de tramos que luego se
+// reemplazan en el EDT conservando los atributos del texto sustituido: si son pocos, uno
+// a uno; si son muchos, reconstruyendo los párrafos afectados, que se preparan también
+// fuera del EDT (prepare) para que en él solo quede cambiarlos.
+final class FindReplaceEngine {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+    // A partir de aquí compensa reconstruir párrafos en lugar de reemplazar tramo a tramo
+    private static final int BULK_THRESHOLD = 256;
+    // Coincidencias separadas por menos de esto se reconstruyen en el mismo bloque
+    private static final int MAX_GAP = 64 << 10;
+
+    private FindReplaceEngine() {
+    }
+
+    // Coincidencias encontradas sobre una versión concreta del documento
+    static final class Matches {
+        private int[] starts = new int[64];
+        private int[] ends = new int[64];
+        private String[] replacements; // Solo con regex y referencias a grupos
+        private int count;
+        private List<Block> blocks; // Párrafos ya reescritos (prepare), del último al primero
+        private int blocksVersion; // EditorDocument.getVersion() con que se reescribieron
+        private final String replacement;
+        private final int editCount;
+
+        Matches(String replacement, int editCount) {
+            this.replacement = replacement;
+            this.editCount = editCount;
+        }
+
+        int count() {
+            return count;
+        }
+
+        int start(int i) {
+            return starts[i];
+        }
+
+        int end(int i) {
+            return ends[i];
+        }
+
+        String replacement(int i) {
+            return replacements != null ? replacements[i] : replacement;
+        }
+
+        // Versión del documento (EditorDocument.getEditCount) sobre la que se buscó
+        int editCount() {
+            return editCount;
+        }
+
+        private void add(int start, int end, String expanded) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                if (replacements != null)
+                    replacements = Arrays.copyOf(replacements, count * 2);
+            }
+            if (expanded != null) {
+                if (replacements == null)
+                    replacements = new String[starts.length];
+                replacements[count] = expanded;
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+    }
+
+    // Párrafos first..last reescritos con sus coincidencias ya sustituidas
+    private static final class Block {
+        final int first;
+        final int last;
+        final RichText text;
+
+        Block(int first, int last, RichText text) {
+            this.first = first;
+            this.last = last;
+            this.text = text;
+        }
+    }
+
+    // El documento cambió mientras se leía un bloque: la búsqueda se abandona y el
+    // resultado se queda con su editCount antiguo, que el llamador ya no dará por bueno
+    private static final class Stale extends RuntimeException {
+        Stale() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Busca todas las apariciones (sin solaparse, de izquierda a derecha, como
+    // String.replace / Matcher.replaceAll). Se puede llamar desde cualquier hilo; el
+    // cerrojo de lectura se suelta entre bloque y bloque, así que si el texto cambia a
+    // mitad el resultado vuelve incompleto y con un editCount que ya no coincide.
+    static Matches findAll(EditorDocument doc, String find, String replacement, boolean regex,
+                           IntConsumer progress, BooleanSupplier cancelled) throws Exception {
+        int[] version = new int[2];
+        doc.render(() -> {
+            version[0] = doc.getEditCount();
+            version[1] = doc.getLength();
+        });
+        Matches matches = new Matches(replacement, version[0]);
+        try {
+            if (regex)
+                findRegex(doc, version[1], Pattern.compile(find, Pattern.MULTILINE), replacement, matches,
+                        progress, cancelled);
+            else
+                findLiteral(doc, version[1], find, matches, progress, cancelled);
+        } catch (Stale stale) {
+            // Se devuelve lo que haya; editCount() ya no es el del documento
+        }
+        return matches;
+    }
+
+    // Lee bajo el cerrojo de lectura, siempre que el documento siga siendo la versión
+    // sobre la que se empezó a buscar
+    private interface Read {
+        void run() throws BadLocationException;
+    }
+
+    private static void locked(EditorDocument doc, int editCount, Read read) throws BadLocationException {
+        BadLocationException[] error = new BadLocationException[1];
+        boolean[] stale = new boolean[1];
+        doc.render(() -> {
+            if (doc.getEditCount() != editCount) {
+                stale[0] = true;
+                return;
+            }
+            try {
+                read.run();
+            } catch (BadLocationException e) {
+                error[0] = e;
+            }
+        });
+        if (stale[0])
+            throw new Stale();
+        if (error[0] != null)
+            throw error[0];
+    }
+
+    // Con muchas coincidencias, reescribe fuera del EDT los párrafos afectados para que
+    // replaceAll solo tenga que cambiarlos. false si el documento ya no es el de la
+    // búsqueda (y entonces no hay nada preparado).
+    static boolean prepare(EditorDocument doc, Matches matches) throws BadLocationException {
+        if (matches.count() < BULK_THRESHOLD)
+            return true;
+        try {
+            locked(doc, matches.editCount(), () -> {
+                matches.blocks = blocks(doc, matches);
+                matches.blocksVersion = doc.getVersion();
+            });
+            return true;
+        } catch (Stale stale) {
+            return false;
+        }
+    }
+
+    // Aplica los reemplazos (en el EDT). Cada tramo se sustituye con los atributos que
+    // tenía su primer carácter, así que negritas, cursivas y colores se conservan. Los
+    // bloques de prepare solo se usan si desde entonces tampoco cambió el formato: si no,
+    // devolverían los atributos de antes.
+    static void replaceAll(EditorDocument doc, Matches matches) throws BadLocationException {
+        if (matches.count() < BULK_THRESHOLD) {
+            // Del último al primero, para que los offsets pendientes sigan valiendo
+            for (int i = matches.count() - 1; i >= 0; i--) {
+                int start = matches.start(i);
+                int end = matches.end(i);
+                doc.replace(start, end - start, matches.replacement(i), attributesAt(doc, start, end));
+            }
+            return;
+        }
+        // Los bloques van del último al primero, así que los índices de párrafo de los que
+        // quedan por cambiar siguen valiendo
+        List<Block> blocks = matches.blocks != null && matches.blocksVersion == doc.getVersion()
+                ? matches.blocks : blocks(doc, matches);
+        matches.blocks = null;
+        for (Block block : blocks)
+            doc.replaceParagraphs(block.first, block.last, block.text);
+    }
+
+    // Con muchas coincidencias, cada replace() cuesta sus eventos, sus elementos y sus
+    // marcas: se agrupan en bloques de párrafos y cada bloque se reescribe entero
+    private static List<Block> blocks(EditorDocument doc, Matches matches) throws BadLocationException {
+        List<Block> blocks = new ArrayList<>();
+        Element root = doc.getDefaultRootElement();
+        int last = matches.count() - 1;
+        while (last >= 0) {
+            int first = last;
+            while (first > 0 && matches.end(first - 1) >= matches.start(first) - MAX_GAP)
+                first--;
+            // El párrafo final es el que contiene el fin de la última coincidencia, de modo
+            // que su salto de línea nunca forma parte de una coincidencia
+            int firstParagraph = root.getElementIndex(matches.start(first));
+            int lastParagraph = root.getElementIndex(matches.end(last));
+            blocks.add(new Block(firstParagraph, lastParagraph,
+                    rewrite(doc, root.getElement(firstParagraph).getStartOffset(),
+                            root.getElement(lastParagraph).getEndOffset(), matches, first, last)));
+            last = first - 1;
+        }
+        return blocks;
+    }
+
+    private static AttributeSet attributesAt(StyledDocument doc, int start, int end) {
+        return doc.getCharacterElement(start == end ? Math.max(0, start - 1) : start).getAttributes();
+    }
+
+    // Texto y formato de [from, to) con las coincidencias first..last ya sustituidas
+    private static RichText rewrite(EditorDocument doc, int from, int to, Matches matches, int first, int last)
+            throws BadLocationException {
+        RichText text = new RichText();
+        Segment segment = new Segment();
+        int pos = from;
+        for (int i = first; i <= last; i++) {
+            int start = matches.start(i);
+            text.append(doc, pos, start, segment);
+            text.append(matches.replacement(i), attributesAt(doc, start, matches.end(i)),
+                    doc.getParagraphElement(start).getAttributes());
+            pos = matches.end(i);
+        }
+        text.append(doc, pos, to, segment);
+        return text;
+    }
+
+    // --- Texto literal: Boyer-Moore-Horspool ---
+
+    private static void findLiteral(EditorDocument doc, int n, String find, Matches out, IntConsumer progress,
+                                    BooleanSupplier cancelled) throws BadLocationException {
+        char[] pattern = find.toCharArray();
+        int m = pattern.length;
+        if (m == 0 || m > n)
+            return;
+
+        // Tabla de saltos por el byte bajo del carácter: si dos caracteres comparten
+        // casilla se queda el salto menor, que siempre es seguro
+        int[] shift = new int[256];
+        Arrays.fill(shift, m);
+        for (int i = 0; i < m - 1; i++)
+            shift[pattern[i] & 0xFF] = Math.min(shift[pattern[i] & 0xFF], m - 1 - i);
+        char last = pattern[m - 1];
+
+        Segment segment = new Segment();
+        int[] next = new int[1]; // Siguiente inicio candidato (offset del documento)
+        for (int pos = 0; pos < n && next[0] <= n - m; pos += CHUNK_SIZE) {
+            if (cancelled.getAsBoolean())
+                throw new CancellationException();
+            // Cada bloque se solapa m - 1 caracteres con el siguiente
+            int from = pos;
+            int end = Math.min(n, pos + CHUNK_SIZE + m - 1);
+            int limit = Math.min(pos + CHUNK_SIZE, end - m + 1);
+            if (next[0] >= limit)
+                continue;
+            // El segmento puede apuntar al contenido del documento: solo vale con el
+            // cerrojo tomado
+            locked(doc, out.editCount(), () -> {
+                doc.getText(from, end - from, segment);
+                char[] a = segment.array;
+                int base = segment.offset - from;
+                int i = next[0];
+                while (i < limit) {
+                    char c = a[base + i + m - 1];
+                    if (c == last && regionMatches(a, base + i, pattern)) {
+                        out.add(i, i + m, null);
+                        i += m;
+                    } else {
+                        i += shift[c & 0xFF];
+                    }
+                }
+                next[0] = i;
+            });
+            progress.accept((int) ((long) end * 100 / n));
+        }
+    }
+
+    private static boolean regionMatches(char[] a, int from, char[] pattern) {
+        for (int k = pattern.length - 2; k >= 0; k--) {
+            if (a[from + k] != pattern[k])
+                return false;
+        }
+        return true;
+    }
+
+    // --- Expresiones regulares ---
+
+    private static void findRegex(EditorDocument doc, int n, Pattern pattern, String replacement, Matches out,
+                                  IntConsumer progress, BooleanSupplier cancelled) {
+        boolean expand = replacement.indexOf('$') >= 0 || replacement.indexOf('\\') >= 0;
+        Matcher matcher = pattern.matcher(new DocumentText(doc, n, out.editCount()));
+        int nextReport = CHUNK_SIZE;
+        while (matcher.find()) {
+            out.add(matcher.start(), matcher.end(), expand ? expand(matcher, replacement) : null);
+            if (matcher.end() >= nextReport) {
+                if (cancelled.getAsBoolean())
+                    throw new CancellationException();
+                nextReport = matcher.end() + CHUNK_SIZE;
+                progress.accept((int) ((long) matcher.end() * 100 / Math.max(1, n)));
+            }
+        }
+    }
+
+    // Mismas reglas que Matcher.appendReplacement: $n, ${nombre} y \ para escapar
+    private static String expand(Matcher m, String template) {
+        StringBuilder sb = new StringBuilder();
+        int len = template.length();
+        for (int i = 0; i < len; i++) {
+            char c = template.charAt(i);
+            if (c == '\\') {
+                if (++i == len)
+                    throw new IllegalArgumentException("character to be escaped is missing");
+                sb.append(template.charAt(i));
+            } else if (c == '$') {
+                if (++i == len)
+                    throw new IllegalArgumentException("Illegal group reference: group index is missing");
+                String group;
+                if (template.charAt(i) == '{') {
+                    int close = template.indexOf('}', i);
+                    if (close < 0)
+                        throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+                    group = m.group(template.substring(i + 1, close));
+                    i = close;
+                } else {
+                    int g = template.charAt(i) - '0';
+                    if (g < 0 || g > 9)
+                        throw new IllegalArgumentException("Illegal group reference");
+                    // Se toman más dígitos mientras formen un grupo que exista
+                    while (i + 1 < len && Character.isDigit(template.charAt(i + 1))
+                            && g * 10 + (template.charAt(i + 1) - '0') <= m.groupCount()) {
+                        g = g * 10 + (template.charAt(++i) - '0');
+                    }
+                    group = m.group(g);
+                }
+                if (group != null)
+                    sb.append(group);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // Vista CharSequence del documento que lee por ventanas (sin copiarlo entero). Cada
+    // ventana se copia con el cerrojo de lectura tomado y se suelta en cuanto está
+    // copiada, de modo que la regex corre sin bloquear el documento; si entre ventana y
+    // ventana cambió el texto, se abandona (Stale). La ventana empieza un poco antes del
+    // carácter pedido para que el backtracking de la regex no obligue a recargar a cada paso.
+    private static final class DocumentText implements CharSequence {
+        private static final int BACKTRACK = 1024;
+
+        private final EditorDocument doc;
+        private final int length;
+        private final int editCount;
+        private final Segment segment = new Segment();
+        private final char[] window;
+        private int windowStart;
+        private int windowEnd;
+
+        DocumentText(EditorDocument doc, int length, int editCount) {
+            this.doc = doc;
+            this.length = length;
+            this.editCount = editCount;
+            window = new char[Math.min(CHUNK_SIZE, length)];
+            segment.setPartialReturn(true);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < windowStart || index >= windowEnd) {
+                if (index < 0 || index >= length)
+                    throw new IndexOutOfBoundsException(index);
+                int from = Math.max(0, index - BACKTRACK);
+                read(from, Math.min(window.length, length - from), window, 0);
+                windowStart = from;
+                windowEnd = from + Math.min(window.length, length - from);
+            }
+            return window[index - windowStart];
+        }
+
+        // Copia [from, from + count) en "to" con el cerrojo tomado (getText puede
+        // devolverlo en varios trozos)
+        private void read(int from, int count, char[] to, int offset) {
+            try {
+                locked(doc, editCount, () -> {
+                    for (int done = 0; done < count; done += segment.count) {
+                        doc.getText(from + done, count - done, segment);
+                        System.arraycopy(segment.array, segment.offset, to, offset + done, segment.count);
+                    }
+                });
+            } catch (BadLocationException e) {
+                throw new IndexOutOfBoundsException(from);
+            }
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || start > end || end > length)
+                throw new IndexOutOfBoundsException(start);
+            if (start >= windowStart && end <= windowEnd)
+                return new String(window, start - windowStart, end - start);
+            char[] text = new char[end - start];
+            read(start, text.length, text, 0);
+            return new String(text);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length).toString();
+        }
+    }
+}
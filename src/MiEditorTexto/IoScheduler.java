@@ -0,0 +1,190 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ======================================================================================
+// Planificador de E/S
+// ======================================================================================
+
+// Todas las lecturas y escrituras de documentos (cargas, guardados, exportaciones y
+// volcados de pestañas) pasan por aquí y se ejecutan en un grupo pequeño y acotado de
+// hilos (este JDK no tiene hilos virtuales). Cada fichero tiene su carril: lo que va al
+// mismo fichero se ejecuta de uno en uno y en orden, y lo de ficheros distintos a la vez.
+// Un guardado que llega cuando ya espera otro del mismo documento en su carril no se
+// encola: el que espera lee el documento al empezar, así que ya guarda lo último (con
+// Ctrl+S o "guardar" repetidos hay como mucho uno escribiendo y otro esperando).
+// Las tareas son SwingWorkers: se cancelan con cancel(true), también las que aún esperan,
+// y las que tienen tiempo máximo se cancelan solas al pasarlo (la interrupción corta la
+// E/S de FileChannel). Lo que hay en cola y lo que tardó cada tarea se avisa en el EDT
+// al Listener (la barra de estado, ver ProgressLabel).
+final class IoScheduler {
+
+    static final IoScheduler SHARED = new IoScheduler(2);
+    // Tiempo máximo de las escrituras: -Deditor.es.segundos=... (0 = sin límite)
+    static final long WRITE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(Long.getLong("editor.es.segundos", 120));
+
+    private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "E/S-plazos");
+        t.setDaemon(true);
+        return t;
+    });
+
+    interface Listener {
+        // Tareas esperando y en marcha, cada vez que cambian
+        void queueChanged(int waiting, int running);
+
+        // Al terminar cada tarea (bien, mal o cancelada)
+        void taskFinished(String label, long waitNanos, long runNanos, boolean timedOut);
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Map<File, Lane> lanes = new HashMap<>();
+    private int waiting;
+    private int running;
+    private volatile Listener listener;
+
+    private static final class Lane {
+        Task current; // Entregada al ejecutor (puede no haber empezado aún)
+        final ArrayDeque<Task> queue = new ArrayDeque<>();
+    }
+
+    private static final class Task {
+        final String label;
+        final File lane;
+        final Object coalesceKey;
+        final long timeoutMs;
+        final SwingWorker<?, ?> work;
+        final long submitted = System.nanoTime();
+        boolean started; // Con el monitor del planificador
+        volatile boolean timedOut;
+
+        Task(String label, File lane, Object coalesceKey, long timeoutMs, SwingWorker<?, ?> work) {
+            this.label = label;
+            this.lane = lane;
+            this.coalesceKey = coalesceKey;
+            this.timeoutMs = timeoutMs;
+            this.work = work;
+        }
+    }
+
+    IoScheduler(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "E/S-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // Sin carril (ficheros temporales propios) ni tiempo máximo
+    void schedule(String label, SwingWorker<?, ?> work) {
+        schedule(label, null, null, 0, work);
+    }
+
+    // "file" es el carril (null = ninguno). Si "coalesceKey" no es null y ya espera una
+    // tarea con la misma clave en el carril, "work" no se ejecuta y devuelve false.
+    synchronized boolean schedule(String label, File file, Object coalesceKey, long timeoutMs, SwingWorker<?, ?> work) {
+        File key = file != null ? file.getAbsoluteFile() : null;
+        Lane lane = key != null ? lanes.computeIfAbsent(key, k -> new Lane()) : null;
+        if (lane != null && coalesceKey != null) {
+            if (lane.current != null && !lane.current.started && coalesceKey.equals(lane.current.coalesceKey))
+                return false;
+            for (Task queued : lane.queue) {
+                if (coalesceKey.equals(queued.coalesceKey))
+                    return false;
+            }
+        }
+        Task task = new Task(label, key, coalesceKey, timeoutMs, work);
+        waiting++;
+        if (lane == null) {
+            executor.execute(() -> run(task));
+        } else {
+            lane.queue.add(task);
+            if (lane.current == null)
+                next(key, lane);
+        }
+        changed();
+        return true;
+    }
+
+    // Con el monitor
+    private void next(File key, Lane lane) {
+        Task task = lane.queue.poll();
+        lane.current = task;
+        if (task == null) {
+            lanes.remove(key);
+            return;
+        }
+        executor.execute(() -> run(task));
+    }
+
+    private void run(Task task) {
+        synchronized (this) {
+            task.started = true;
+            waiting--;
+            running++;
+            changed();
+        }
+        long started = System.nanoTime();
+        ScheduledFuture<?> timeout = null;
+        if (task.timeoutMs > 0) {
+            timeout = TIMEOUTS.schedule(() -> {
+                task.timedOut = true;
+                task.work.cancel(true);
+            }, task.timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        try {
+            task.work.run(); // No hace nada si se canceló mientras esperaba
+        } finally {
+            if (timeout != null)
+                timeout.cancel(false);
+            Thread.interrupted(); // Que una cancelación no alcance a la siguiente tarea del hilo
+            long ended = System.nanoTime();
+            Diagnostics.end("E/S", started);
+            synchronized (this) {
+                running--;
+                if (task.lane != null)
+                    next(task.lane, lanes.get(task.lane));
+                changed();
+            }
+            Listener l = listener;
+            if (l != null)
+                SwingUtilities.invokeLater(() -> l.taskFinished(task.label, started - task.submitted,
+                        ended - started, task.timedOut));
+        }
+    }
+
+    // Con el monitor
+    private void changed() {
+        Listener l = listener;
+        if (l == null)
+            return;
+        int w = waiting;
+        int r = running;
+        SwingUtilities.invokeLater(() -> l.queueChanged(w, r));
+    }
+
+    // Para los mensajes de error: una tarea cancelada por tiempo llega como CancellationException
+    static String message(Exception ex) {
+        if (ex instanceof CancellationException)
+            return "Se ha cancelado (tiempo máximo: " + TimeUnit.MILLISECONDS.toSeconds(WRITE_TIMEOUT_MS) + " s)";
+        return ex.getMessage();
+    }
+}
@@ -0,0 +1,344 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import java.awt.*;
+import java.awt.event.AdjustmentListener;
+import java.awt.geom.Rectangle2D;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// ======================================================================================
+// Modo "fichero grande": visor de solo lectura por ventanas
+// ======================================================================================
+
+// Para ficheros que no caben (o no conviene meter) en el heap. El fichero se mapea en
+// memoria, un hilo aparte construye un índice disperso de líneas (el byte donde empieza
+// una de cada INDEX_STRIDE líneas) y en el JTextPane solo se coloca una ventana de
+// WINDOW_LINES líneas. Al acercarse al borde de la ventana, esta se desplaza; la barra
+// lateral permite saltar a cualquier punto del fichero. El heap usado no depende del
+// tamaño del fichero (salvo el índice: un long cada INDEX_STRIDE líneas). Al cerrar se
+// deshace el mapeo en el momento, sin esperar a que el recolector suelte los buffers.
+class LargeFileView implements Closeable {
+
+    // Por encima de este tamaño openFile() abre el fichero en este modo
+    static final long THRESHOLD = 256L << 20;
+
+    private static final int WINDOW_LINES = 2000;
+    private static final int INDEX_STRIDE = 1024;
+    private static final int MAX_WINDOW_BYTES = 8 << 20;
+    // Cada cuántos bytes mira el índice si se ha cerrado el visor
+    private static final int UNMAP_CHECK = 1 << 20;
+    private static final long SEGMENT_SIZE = 1L << 30;
+    // Fracción de la ventana que, al alcanzarla con el scroll, provoca el desplazamiento
+    private static final double EDGE = 0.1;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long size;
+    private final MappedByteBuffer[] segments;
+    private final Charset charset;
+
+    // Índice disperso: index[i] = byte donde empieza la línea i * INDEX_STRIDE
+    private volatile long[] index = new long[1024];
+    private volatile int indexCount;
+    private volatile long lineCount;
+    private volatile boolean indexed;
+    private volatile boolean closed;
+
+    private final JTextPane textPane;
+    private final JScrollPane scrollPane;
+    private final JScrollBar globalBar;
+    private final Consumer<EditorDocument> installer;
+    private final Runnable statusUpdater;
+    private final AdjustmentListener innerListener;
+    private final Thread indexer;
+
+    private long windowStart;
+    private int windowLines;
+    private boolean moving;
+
+    // installer coloca cada ventana en el editor; statusUpdater refresca la barra de estado
+    LargeFileView(File file, JTextPane textPane, JScrollPane scrollPane,
+                  Consumer<EditorDocument> installer, Runnable statusUpdater) throws IOException {
+        this.file = file;
+        this.textPane = textPane;
+        this.scrollPane = scrollPane;
+        this.installer = installer;
+        this.statusUpdater = statusUpdater;
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        size = channel.size();
+        int count = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+        }
+        charset = count == 0 ? Charset.defaultCharset() : windowCharset(segments[0]);
+
+        globalBar = new JScrollBar(JScrollBar.VERTICAL, 0, WINDOW_LINES, 0, WINDOW_LINES);
+        globalBar.setToolTipText("Posición en el fichero");
+        globalBar.addAdjustmentListener(e -> {
+            if (!moving)
+                showWindow(e.getValue(), 0);
+        });
+        innerListener = e -> {
+            if (!moving && !e.getValueIsAdjusting())
+                SwingUtilities.invokeLater(this::slideIfNearEdge);
+        };
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(innerListener);
+
+        addIndexEntry(0); // La línea 0 empieza en el byte 0
+        indexer = new Thread(this::buildIndex, "Indice-" + file.getName());
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    // Como en DocumentLoader (ver TextFormat), pero el índice busca bytes '\n': si sale
+    // UTF-16 o UTF-32 se queda el charset de la plataforma
+    private static Charset windowCharset(ByteBuffer first) {
+        ByteBuffer sample = first.duplicate().limit(Math.min(first.limit(), TextFormat.SAMPLE_SIZE));
+        Charset charset = TextFormat.candidates(sample, false).get(0).charset;
+        return "\n".getBytes(charset).length == 1 ? charset : Charset.defaultCharset();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    JScrollBar getScrollBar() {
+        return globalBar;
+    }
+
+    // Coloca la primera ventana (llamar en el EDT)
+    void start() {
+        showWindow(0, 0);
+    }
+
+    String statusText(int caret) {
+        Element root = textPane.getDocument().getDefaultRootElement();
+        long line = windowStart + root.getElementIndex(caret) + 1;
+        return "Solo lectura (fichero grande) | Línea: " + line + " de " + lineCount + (indexed ? "" : "+")
+                + " | Tamaño: " + (size >> 20) + " MB";
+    }
+
+    // Llamar en el EDT, que es el otro que lee los segmentos (showWindow)
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        scrollPane.getVerticalScrollBar().removeAdjustmentListener(innerListener);
+        channel.close();
+        // Leer un segmento ya desmapeado tumba la JVM: antes hay que esperar a que el
+        // índice lo vea (lo mira cada UNMAP_CHECK bytes)
+        try {
+            indexer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return; // Que los suelte el recolector
+        }
+        for (int i = 0; i < segments.length; i++) {
+            unmap(segments[i]);
+            segments[i] = null;
+        }
+    }
+
+    // MappedByteBuffer no tiene un unmap público; Unsafe.invokeCleaner (jdk.unsupported)
+    // es lo que usan las bibliotecas que lo necesitan. Si no está, se queda para el GC.
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(field.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+        }
+    }
+
+    // --- Índice de líneas (hilo aparte) ---
+
+    private void buildIndex() {
+        long lines = 0;
+        long nextPublish = 64L << 20;
+        for (int s = 0; s < segments.length && !closed; s++) {
+            ByteBuffer segment = segments[s].duplicate();
+            long base = s * SEGMENT_SIZE;
+            int limit = segment.limit();
+            for (int i = 0; i < limit; i++) {
+                if ((i & (UNMAP_CHECK - 1)) == 0 && closed)
+                    return;
+                if (segment.get(i) != '\n')
+                    continue;
+                lines++;
+                if (lines % INDEX_STRIDE == 0)
+                    addIndexEntry(base + i + 1);
+                if (base + i >= nextPublish) {
+                    nextPublish += 64L << 20;
+                    lineCount = lines;
+                    SwingUtilities.invokeLater(this::refreshBar);
+                    if (closed)
+                        return;
+                }
+            }
+        }
+        // La última línea cuenta aunque no acabe en salto de línea
+        lineCount = lines + (size > 0 && byteAt(size - 1) != '\n' ? 1 : 0);
+        indexed = true;
+        SwingUtilities.invokeLater(this::refreshBar);
+    }
+
+    private void addIndexEntry(long offset) {
+        long[] current = index;
+        int n = indexCount;
+        if (n == current.length) {
+            current = Arrays.copyOf(current, n * 2);
+            index = current;
+        }
+        current[n] = offset;
+        indexCount = n + 1;
+    }
+
+    private void refreshBar() {
+        if (closed)
+            return;
+        moving = true;
+        globalBar.setMaximum((int) Math.min(Integer.MAX_VALUE, Math.max(lineCount, WINDOW_LINES)));
+        moving = false;
+        statusUpdater.run();
+    }
+
+    // --- Acceso a los bytes mapeados ---
+
+    private byte byteAt(long offset) {
+        return segments[(int) (offset / SEGMENT_SIZE)].get((int) (offset % SEGMENT_SIZE));
+    }
+
+    private byte[] readBytes(long offset, int len) {
+        byte[] bytes = new byte[len];
+        int done = 0;
+        while (done < len) {
+            long pos = offset + done;
+            ByteBuffer segment = segments[(int) (pos / SEGMENT_SIZE)].duplicate();
+            int in = (int) (pos % SEGMENT_SIZE);
+            int n = Math.min(len - done, segment.limit() - in);
+            segment.position(in);
+            segment.get(bytes, done, n);
+            done += n;
+        }
+        return bytes;
+    }
+
+    // Byte donde empieza la línea "line" (o la más cercana ya indexada)
+    private long lineOffset(long line) {
+        int entry = (int) Math.min(line / INDEX_STRIDE, indexCount - 1);
+        long offset = index[entry];
+        long current = (long) entry * INDEX_STRIDE;
+        while (current < line && offset < size) {
+            if (byteAt(offset++) == '\n')
+                current++;
+        }
+        return offset;
+    }
+
+    // --- Ventana ---
+
+    // Muestra la ventana que empieza en la línea "first" y deja arriba la línea "top"
+    // (relativa a la ventana)
+    private void showWindow(long first, int top) {
+        if (closed)
+            return;
+        long start = lineOffset(first);
+        long end = start;
+        int lines = 0;
+        long lastNewline = -1; // Posición tras el último '\n' de la ventana
+        while (end < size && lines < WINDOW_LINES && end - start < MAX_WINDOW_BYTES) {
+            if (byteAt(end++) == '\n') {
+                lines++;
+                lastNewline = end;
+            }
+        }
+        if (end < size && lines < WINDOW_LINES) {
+            // Cortada por MAX_WINDOW_BYTES: se acaba en la última línea completa o, si una
+            // sola línea ya no cabe, en un límite de carácter (sin partir un UTF-8)
+            if (lastNewline > 0) {
+                end = lastNewline;
+            } else {
+                if (charset.equals(StandardCharsets.UTF_8)) {
+                    while (end > start + 1 && (byteAt(end) & 0xC0) == 0x80)
+                        end--;
+                }
+                if (byteAt(end - 1) == '\r')
+                    end--; // Ni entre "\r" y "\n"
+                lines = 1; // La línea se ve truncada
+            }
+        } else if (end == size && end > start && byteAt(end - 1) != '\n') {
+            lines++;
+        }
+
+        String text = new String(readBytes(start, (int) (end - start)), charset).replace("\r\n", "\n");
+        EditorDocument doc = new EditorDocument();
+        try {
+            doc.insertString(0, text, null);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        moving = true;
+        try {
+            windowStart = first;
+            windowLines = lines;
+            installer.accept(doc);
+            globalBar.setValue((int) Math.min(Integer.MAX_VALUE, first));
+            scrollToLine(top);
+        } finally {
+            moving = false;
+        }
+        statusUpdater.run();
+    }
+
+    private void scrollToLine(int line) {
+        Element root = textPane.getDocument().getDefaultRootElement();
+        int offset = root.getElement(Math.max(0, Math.min(line, root.getElementCount() - 1))).getStartOffset();
+        textPane.setCaretPosition(offset);
+        try {
+            Rectangle2D r = textPane.modelToView2D(offset);
+            if (r != null)
+                scrollPane.getViewport().setViewPosition(new Point(0, (int) r.getY()));
+        } catch (BadLocationException ignored) {
+        }
+    }
+
+    // Si el scroll interno llega cerca del principio o del final de la ventana, la
+    // desplaza media ventana manteniendo a la vista las mismas líneas
+    private void slideIfNearEdge() {
+        if (closed || moving)
+            return;
+        JScrollBar bar = scrollPane.getVerticalScrollBar();
+        int range = bar.getMaximum() - bar.getMinimum() - bar.getVisibleAmount();
+        if (range <= 0)
+            return;
+        double position = (bar.getValue() - bar.getMinimum()) / (double) range;
+
+        Point top = scrollPane.getViewport().getViewPosition();
+        int topLine = textPane.getDocument().getDefaultRootElement().getElementIndex(textPane.viewToModel2D(top));
+        int half = WINDOW_LINES / 2;
+
+        if (position > 1 - EDGE && windowStart + windowLines < lineCount) {
+            showWindow(windowStart + half, topLine - half);
+        } else if (position < EDGE && windowStart > 0) {
+            long first = Math.max(0, windowStart - half);
+            showWindow(first, topLine + (int) (windowStart - first));
+        }
+    }
+}
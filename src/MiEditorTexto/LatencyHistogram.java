@@ -0,0 +1,87 @@
+package MiEditorTexto;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// ======================================================================================
+// Histograma de latencias
+// ======================================================================================
+
+// Histograma de duraciones (en nanosegundos) sin bloqueos: 8 cubetas por cada potencia
+// de dos, así que los percentiles tienen un error de como mucho un 12,5 %, y registrar
+// un valor son un par de incrementos atómicos. Se puede usar desde cualquier hilo.
+class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        buckets.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        if (nanos > max.get())
+            max.accumulateAndGet(nanos, Math::max);
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    long mean() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    // Valor por debajo del cual queda la fracción p (0..1) de lo registrado
+    long percentile(double p) {
+        long n = count.get();
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank)
+                return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < buckets.length(); i++)
+            buckets.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    // Los valores pequeños tienen una cubeta cada uno; a partir de ahí, la potencia de dos
+    // y los SUB_BITS bits siguientes al más alto
+    private static int bucket(long v) {
+        if (v < SUB_BUCKETS)
+            return (int) v;
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
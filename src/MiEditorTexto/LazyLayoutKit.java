@@ -0,0 +1,39 @@
+package MiEditorTexto;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.StyledEditorKit;
+import javax.swing.text.View;
+import javax.swing.text.ViewFactory;
+
+// ======================================================================================
+// Kit del editor: maquetación perezosa
+// ======================================================================================
+
+// StyledEditorKit con las mismas vistas salvo la de la sección (el elemento raíz), que
+// es un LazySectionView en vez de un BoxView: los párrafos solo se maquetan cuando se
+// ven. Los documentos nuevos son EditorDocument.
+class LazyLayoutKit extends StyledEditorKit {
+
+    private static final ViewFactory FACTORY = new ViewFactory() {
+        private final ViewFactory styled = new StyledEditorKit().getViewFactory();
+
+        @Override
+        public View create(Element elem) {
+            if (AbstractDocument.SectionElementName.equals(elem.getName()))
+                return new LazySectionView(elem);
+            return styled.create(elem);
+        }
+    };
+
+    @Override
+    public ViewFactory getViewFactory() {
+        return FACTORY;
+    }
+
+    @Override
+    public Document createDefaultDocument() {
+        return new EditorDocument();
+    }
+}
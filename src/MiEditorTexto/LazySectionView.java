@@ -0,0 +1,757 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.FlowView;
+import javax.swing.text.ParagraphView;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.text.View;
+import javax.swing.text.ViewFactory;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// ======================================================================================
+// Vista perezosa de la sección (todos los párrafos del documento)
+// ======================================================================================
+
+// El BoxView que pone StyledEditorKit crea y maqueta la vista de cada párrafo en cuanto
+// se coloca el documento, y otra vez con cada cambio de ancho o de fuente: con un millón
+// de líneas son segundos. Aquí de cada párrafo solo se guarda su altura, estimada con
+// su número de caracteres y el ancho disponible mientras no se ha maquetado de verdad.
+// Las vistas de los párrafos se crean al pintarlos, al colocar el cursor o al hacer clic
+// en ellos (solo las de esos) y se conservan las de los últimos MAX_BLOCKS párrafos
+// usados. Un Timer mide el resto en ratos cortos del EDT (las vistas de Swing no se
+// pueden maquetar en otro hilo), empezando por lo que se ve, y la barra de
+// desplazamiento se va ajustando; si cambia la altura de algo que queda por encima de lo
+// visible, la vista se desplaza lo mismo y el texto que se ve no se mueve.
+// Los párrafos de más de SEGMENT_CHARS caracteres (una línea de varios MB) se parten en
+// tramos, cortados en un espacio si lo hay cerca: cada tramo es un ParagraphView propio
+// y solo se maquetan los que se ven.
+class LazySectionView extends View {
+
+    // Tramos de los párrafos largos, y cuánto se retrocede buscando un espacio donde cortar
+    static final int SEGMENT_CHARS = 4096;
+    private static final int SNAP_CHARS = 128;
+    // Párrafos cuyas vistas se conservan
+    private static final int MAX_BLOCKS = 512;
+    // Medición en segundo plano: un rato de REFINE_SLICE_MS cada REFINE_DELAY_MS
+    private static final int REFINE_DELAY_MS = 25;
+    private static final long REFINE_SLICE_NANOS = 4_000_000;
+    private static final int[] WHOLE = {0};
+
+    private final Heights heights = new Heights();
+    private final Map<Element, Block> blocks = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Element, Block> eldest) {
+            if (size() <= MAX_BLOCKS)
+                return false;
+            eldest.getValue().release();
+            return true;
+        }
+    };
+    private final Timer refiner = new Timer(REFINE_DELAY_MS, e -> refine());
+    private final Segment text = new Segment();
+
+    private int width; // Ancho de maquetación (0 = aún no se sabe)
+    private int lineHeight = 16;
+    private int charWidth = 8;
+    private float minimumWidth;
+    private float preferredWidth;
+    private int refineNext;
+    private boolean quiet; // Creando o maquetando una vista: sus avisos no cuentan
+    private boolean painting;
+
+    // Pendiente de avisar al terminar cada operación (flush)
+    private int shift; // Altura ganada o perdida por encima de lo visible
+    private long repaintFrom = Long.MAX_VALUE; // Desde dónde ha cambiado lo visible
+    private boolean resized;
+
+    LazySectionView(Element section) {
+        super(section);
+    }
+
+    // --- Ciclo de vida ---
+
+    @Override
+    public void setParent(View parent) {
+        super.setParent(parent);
+        for (Block block : blocks.values())
+            block.release();
+        blocks.clear();
+        if (parent == null) {
+            refiner.stop();
+            return;
+        }
+        metrics();
+        minimumWidth = 0;
+        preferredWidth = 0;
+        heights.replace(0, heights.size(), getElement().getElementCount());
+        estimate(0, heights.size());
+        refineNext = 0;
+        refiner.start();
+    }
+
+    @Override
+    public void setSize(float width, float height) {
+        int w = (int) Math.min(width, Integer.MAX_VALUE);
+        if (w == this.width)
+            return;
+        // Todo lo medido era para el ancho anterior
+        int first = firstVisible();
+        this.width = w;
+        for (Block block : blocks.values())
+            Arrays.fill(block.valid, false);
+        estimate(0, heights.size());
+        refineNext = first;
+        resized = true;
+        refiner.restart();
+    }
+
+    // --- Tamaño ---
+
+    @Override
+    public float getPreferredSpan(int axis) {
+        return axis == X_AXIS ? preferredWidth : totalHeight();
+    }
+
+    @Override
+    public float getMinimumSpan(int axis) {
+        return axis == X_AXIS ? minimumWidth : totalHeight();
+    }
+
+    @Override
+    public float getMaximumSpan(int axis) {
+        return Integer.MAX_VALUE;
+    }
+
+    private float totalHeight() {
+        return Math.min(heights.total(), Integer.MAX_VALUE / 2);
+    }
+
+    // Un párrafo (o un tramo) ha cambiado: se vuelve a maquetar cuando haga falta
+    @Override
+    public void preferenceChanged(View child, boolean width, boolean height) {
+        if (quiet)
+            return;
+        if (child != null) {
+            Block block = blocks.get(child.getElement());
+            if (block != null) {
+                for (int s = 0; s < block.count(); s++) {
+                    if (block.views[s] == child)
+                        block.valid[s] = false;
+                }
+            }
+        }
+        super.preferenceChanged(child, width, height);
+    }
+
+    // --- Pintar y traducir coordenadas ---
+
+    @Override
+    public void paint(Graphics g, Shape a) {
+        Rectangle alloc = a.getBounds();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+            clip = alloc;
+        long bottom = (long) clip.y + clip.height;
+        Rectangle r = new Rectangle();
+        painting = true;
+        try {
+            int count = heights.size();
+            int i = heights.indexAt(clip.y - alloc.y);
+            long y = alloc.y + heights.top(i);
+            for (; i < count && y < bottom; i++) {
+                Block block = block(i);
+                for (int s = 0; s < block.count(); s++) {
+                    if (y < bottom && y + block.heights[s] > clip.y) {
+                        layOut(i, block, s);
+                        r.setBounds(alloc.x, (int) y, alloc.width, block.heights[s]);
+                        if (r.intersects(clip))
+                            block.views[s].paint(g, r);
+                    }
+                    y += block.heights[s];
+                }
+            }
+        } finally {
+            painting = false;
+        }
+        flush();
+    }
+
+    @Override
+    public Shape modelToView(int pos, Shape a, Position.Bias b) throws BadLocationException {
+        // Como CompositeView: con Backward cuenta el carácter anterior
+        boolean backward = b == Position.Bias.Backward;
+        int test = backward ? Math.max(0, pos - 1) : pos;
+        if (backward && test < getStartOffset())
+            return null;
+        int i = getElement().getElementIndex(test);
+        Block block = block(i);
+        int s = block.segmentAt(test);
+        layOut(i, block, s);
+        Shape shape = block.views[s].modelToView(pos, bounds(a.getBounds(), i, block, s), b);
+        flush();
+        return shape;
+    }
+
+    @Override
+    public int viewToModel(float x, float y, Shape a, Position.Bias[] bias) {
+        Rectangle alloc = a.getBounds();
+        int i = heights.indexAt((long) Math.floor(y) - alloc.y);
+        Block block = block(i);
+        int s = 0;
+        long top = alloc.y + heights.top(i);
+        while (s < block.count() - 1 && top + block.heights[s] <= y)
+            top += block.heights[s++];
+        layOut(i, block, s);
+        int pos = block.views[s].viewToModel(x, y, bounds(alloc, i, block, s), bias);
+        flush();
+        return pos;
+    }
+
+    // Sitio del tramo s del párrafo i
+    private Rectangle bounds(Rectangle alloc, int i, Block block, int s) {
+        long y = alloc.y + heights.top(i);
+        for (int k = 0; k < s; k++)
+            y += block.heights[k];
+        return new Rectangle(alloc.x, (int) y, alloc.width, block.heights[s]);
+    }
+
+    // --- Cambios en el documento ---
+
+    @Override
+    public void insertUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+        update(e, f);
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+        update(e, f);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+        // Un cambio de fuente (setFont cambia el estilo por defecto) deja mal todas las
+        // estimaciones
+        int oldLineHeight = lineHeight;
+        int oldCharWidth = charWidth;
+        metrics();
+        if (lineHeight != oldLineHeight || charWidth != oldCharWidth)
+            estimate(0, heights.size());
+        update(e, f);
+    }
+
+    private void update(DocumentEvent e, ViewFactory f) {
+        Element section = getElement();
+        DocumentEvent.ElementChange change = e.getChange(section);
+        int first = Integer.MAX_VALUE;
+        if (change != null) {
+            for (Element removed : change.getChildrenRemoved()) {
+                Block block = blocks.remove(removed);
+                if (block != null)
+                    block.release();
+            }
+            Element[] added = change.getChildrenAdded();
+            first = change.getIndex();
+            heights.replace(first, change.getChildrenRemoved().length, added.length);
+            for (int k = 0; k < added.length; k++)
+                heights.set(first + k, estimate(added[k]), false);
+        }
+
+        // Los párrafos que siguen ahí pero han cambiado: sus vistas se actualizan como en
+        // BoxView (las de los tramos se descartan, porque los cortes ya no valen)
+        int p0 = section.getElementIndex(e.getOffset());
+        int p1 = e.getType() == DocumentEvent.EventType.REMOVE ? p0
+                : section.getElementIndex(e.getOffset() + e.getLength());
+        first = Math.min(first, p0);
+        for (int i = p0; i <= p1; i++)
+            heights.set(i, heights.get(i), false);
+        int from = section.getElement(p0).getStartOffset();
+        int to = section.getElement(p1).getEndOffset();
+        List<Block> affected = new ArrayList<>();
+        if (p1 - p0 < blocks.size()) {
+            for (int i = p0; i <= p1; i++) {
+                Block block = blocks.get(section.getElement(i));
+                if (block != null)
+                    affected.add(block);
+            }
+        } else {
+            for (Block block : blocks.values()) {
+                int start = block.paragraph.getStartOffset();
+                if (start >= from && start < to)
+                    affected.add(block);
+            }
+        }
+        for (Block block : affected) {
+            Element paragraph = block.paragraph;
+            boolean whole = paragraph.getEndOffset() - paragraph.getStartOffset() <= SEGMENT_CHARS;
+            if (block.count() == 1 && whole && block.views[0] != null) {
+                forward(e, block.views[0], f);
+                block.valid[0] = false;
+            } else {
+                blocks.remove(paragraph);
+                block.release();
+            }
+        }
+
+        Rectangle visible = visibleArea();
+        if (visible != null)
+            repaintFrom = Math.min(repaintFrom, heights.top(first));
+        resized = true;
+        flush();
+    }
+
+    private static void forward(DocumentEvent e, View view, ViewFactory f) {
+        DocumentEvent.EventType type = e.getType();
+        if (type == DocumentEvent.EventType.INSERT)
+            view.insertUpdate(e, null, f);
+        else if (type == DocumentEvent.EventType.REMOVE)
+            view.removeUpdate(e, null, f);
+        else
+            view.changedUpdate(e, null, f);
+    }
+
+    // --- Maquetación ---
+
+    // Las vistas del párrafo i (se crean si no las hay)
+    private Block block(int i) {
+        Element paragraph = getElement().getElement(i);
+        Block block = blocks.get(paragraph);
+        if (block == null) {
+            block = new Block(paragraph, split(paragraph));
+            distribute(block, heights.get(i));
+            blocks.put(paragraph, block);
+        }
+        return block;
+    }
+
+    // Maqueta el tramo s del párrafo i con el ancho actual y apunta su altura
+    private void layOut(int i, Block block, int s) {
+        if (block.valid[s])
+            return;
+        int h;
+        quiet = true;
+        try {
+            View view = block.views[s];
+            if (view == null) {
+                view = block.count() == 1 ? getViewFactory().create(block.paragraph) : new SegmentView(block, s);
+                view.setParent(this);
+                block.views[s] = view;
+            }
+            int w = width > 0 ? width : Integer.MAX_VALUE;
+            view.setSize(w, block.heights[s]);
+            h = (int) Math.ceil(view.getPreferredSpan(Y_AXIS));
+            view.setSize(w, h);
+            float min = view.getMinimumSpan(X_AXIS);
+            float pref = view.getPreferredSpan(X_AXIS);
+            if (min > minimumWidth || pref > preferredWidth) {
+                minimumWidth = Math.max(minimumWidth, min);
+                preferredWidth = Math.max(preferredWidth, pref);
+                resized = true;
+            }
+        } finally {
+            quiet = false;
+        }
+        block.valid[s] = true;
+
+        int old = heights.get(i);
+        int delta = h - block.heights[s];
+        block.heights[s] = h;
+        heights.set(i, old + delta, block.allValid());
+        if (delta != 0)
+            heightChanged(i, old);
+    }
+
+    // Ajustes pendientes por el cambio de altura del párrafo i (que antes medía "old")
+    private void heightChanged(int i, int old) {
+        resized = true;
+        Rectangle visible = visibleArea();
+        if (visible == null)
+            return;
+        long top = heights.top(i);
+        if (!painting && top + old <= visible.y + shift)
+            shift += heights.get(i) - old; // Todo por encima de lo visible
+        else if (top < visible.y + shift + visible.height)
+            repaintFrom = Math.min(repaintFrom, top);
+    }
+
+    // Avisa de lo que ha cambiado: desplazamiento, repintado y tamaño
+    private void flush() {
+        Container host = getContainer();
+        if (shift != 0 && host != null && host.getParent() instanceof JViewport) {
+            JViewport viewport = (JViewport) host.getParent();
+            Point p = viewport.getViewPosition();
+            p.y = Math.max(0, p.y + shift);
+            viewport.setViewPosition(p);
+        }
+        shift = 0;
+        if (repaintFrom != Long.MAX_VALUE && host != null) {
+            Insets insets = host instanceof JComponent ? ((JComponent) host).getInsets() : new Insets(0, 0, 0, 0);
+            long y = repaintFrom + insets.top;
+            if (y < host.getHeight())
+                host.repaint(0, (int) y, host.getWidth(), host.getHeight() - (int) y);
+        }
+        repaintFrom = Long.MAX_VALUE;
+        if (resized) {
+            resized = false;
+            View parent = getParent();
+            if (parent != null)
+                parent.preferenceChanged(this, true, true);
+        }
+        if (heights.unmeasured() > 0 && getParent() != null && !refiner.isRunning())
+            refiner.start();
+    }
+
+    // Un rato del Timer: mide párrafos sin medir, siguiendo desde donde se quedó
+    private void refine() {
+        int count = heights.size();
+        if (getParent() == null || heights.unmeasured() == 0) {
+            refiner.stop();
+            return;
+        }
+        long t = Diagnostics.start();
+        long deadline = System.nanoTime() + REFINE_SLICE_NANOS;
+        AbstractDocument doc = (AbstractDocument) getDocument();
+        doc.readLock();
+        try {
+            for (int visited = 0; visited < count && System.nanoTime() < deadline; visited++) {
+                if (refineNext >= count)
+                    refineNext = 0;
+                int i = refineNext;
+                if (!heights.isMeasured(i) && !measure(i, deadline))
+                    break; // Se sigue con este párrafo en el próximo rato
+                refineNext++;
+            }
+        } finally {
+            doc.readUnlock();
+        }
+        flush();
+        Diagnostics.end("Maquetar", t);
+    }
+
+    // Mide el párrafo i; devuelve false si se acabó el tiempo a medias
+    private boolean measure(int i, long deadline) {
+        Element paragraph = getElement().getElement(i);
+        Block block = blocks.get(paragraph);
+        if (block == null && paragraph.getEndOffset() - paragraph.getStartOffset() <= SEGMENT_CHARS) {
+            // Vista de usar y tirar: no hace falta que desplace a las que se ven
+            block = new Block(paragraph, WHOLE);
+            distribute(block, heights.get(i));
+            layOut(i, block, 0);
+            block.release();
+            return true;
+        }
+        // Los párrafos largos se guardan, para no perder lo medido si no da tiempo
+        block = block(i);
+        for (int s = 0; s < block.count(); s++) {
+            if (System.nanoTime() >= deadline)
+                return false;
+            layOut(i, block, s);
+        }
+        return true;
+    }
+
+    // --- Estimaciones ---
+
+    private void metrics() {
+        Container host = getContainer();
+        if (host == null)
+            return;
+        FontMetrics fm = host.getFontMetrics(host.getFont());
+        lineHeight = Math.max(1, fm.getHeight());
+        charWidth = Math.max(1, fm.charWidth('n'));
+    }
+
+    // Vuelve a estimar los párrafos [from, to) (quedan por medir)
+    private void estimate(int from, int to) {
+        Element section = getElement();
+        for (int i = from; i < to; i++)
+            heights.set(i, estimate(section.getElement(i)), false);
+        for (Block block : blocks.values()) {
+            int i = section.getElementIndex(block.paragraph.getStartOffset());
+            if (i >= from && i < to)
+                distribute(block, heights.get(i));
+        }
+    }
+
+    private int estimate(Element paragraph) {
+        return estimate(paragraph.getEndOffset() - paragraph.getStartOffset());
+    }
+
+    // Filas que ocupan "chars" caracteres con el ancho actual
+    private int estimate(int chars) {
+        if (width <= 0 || width >= Integer.MAX_VALUE / 2)
+            return lineHeight;
+        long rows = ((long) chars * charWidth + width - 1) / width;
+        return (int) Math.max(1, Math.min(rows, Integer.MAX_VALUE / 2 / lineHeight)) * lineHeight;
+    }
+
+    // Reparte la altura del párrafo entre sus tramos, en proporción a lo que ocupa cada uno
+    private void distribute(Block block, int total) {
+        int n = block.count();
+        if (n == 1) {
+            block.heights[0] = total;
+            return;
+        }
+        long sum = 0;
+        for (int s = 0; s < n; s++)
+            sum += block.end(s) - block.start(s);
+        int left = total;
+        for (int s = 0; s < n - 1; s++) {
+            block.heights[s] = (int) ((long) total * (block.end(s) - block.start(s)) / sum);
+            left -= block.heights[s];
+        }
+        block.heights[n - 1] = left;
+    }
+
+    // Principio de cada tramo, relativo al del párrafo
+    private int[] split(Element paragraph) {
+        int start = paragraph.getStartOffset();
+        int length = paragraph.getEndOffset() - start;
+        if (length <= SEGMENT_CHARS)
+            return WHOLE;
+        int[] cuts = new int[length / (SEGMENT_CHARS - SNAP_CHARS) + 2];
+        int n = 1;
+        int pos = 0;
+        while (length - pos > SEGMENT_CHARS) {
+            int cut = pos + SEGMENT_CHARS;
+            try {
+                getDocument().getText(start + cut - SNAP_CHARS, SNAP_CHARS, text);
+                int k = text.count - 1;
+                while (k >= 0 && !Character.isWhitespace(text.array[text.offset + k]))
+                    k--;
+                if (k >= 0)
+                    cut += k + 1 - SNAP_CHARS;
+                else if (Character.isHighSurrogate(text.array[text.offset + text.count - 1]))
+                    cut--; // No partir un carácter en dos
+            } catch (BadLocationException ignored) {
+                // No pasa: el tramo está dentro del párrafo
+            }
+            cuts[n++] = cut;
+            pos = cut;
+        }
+        return Arrays.copyOf(cuts, n);
+    }
+
+    // --- Utilidades ---
+
+    // Lo visible, en coordenadas de esta vista (null si no está en pantalla)
+    private Rectangle visibleArea() {
+        Container host = getContainer();
+        if (!(host instanceof JComponent))
+            return null;
+        JComponent component = (JComponent) host;
+        Rectangle visible = component.getVisibleRect();
+        Insets insets = component.getInsets();
+        visible.translate(-insets.left, -insets.top);
+        return visible;
+    }
+
+    private int firstVisible() {
+        Rectangle visible = visibleArea();
+        return visible != null && heights.size() > 0 ? heights.indexAt(visible.y) : 0;
+    }
+
+    // Las vistas de un párrafo: una por tramo, creadas según hacen falta
+    private static final class Block {
+        final Element paragraph;
+        final int[] cuts;
+        final View[] views;
+        final int[] heights;
+        final boolean[] valid; // Maquetada con el ancho actual y con su altura en "heights"
+
+        Block(Element paragraph, int[] cuts) {
+            this.paragraph = paragraph;
+            this.cuts = cuts;
+            views = new View[cuts.length];
+            heights = new int[cuts.length];
+            valid = new boolean[cuts.length];
+        }
+
+        int count() {
+            return cuts.length;
+        }
+
+        int start(int s) {
+            return paragraph.getStartOffset() + cuts[s];
+        }
+
+        int end(int s) {
+            return s + 1 < cuts.length ? paragraph.getStartOffset() + cuts[s + 1] : paragraph.getEndOffset();
+        }
+
+        int segmentAt(int offset) {
+            int k = Arrays.binarySearch(cuts, offset - paragraph.getStartOffset());
+            if (k < 0)
+                k = -k - 2;
+            return Math.max(0, Math.min(k, cuts.length - 1));
+        }
+
+        boolean allValid() {
+            for (boolean v : valid) {
+                if (!v)
+                    return false;
+            }
+            return true;
+        }
+
+        void release() {
+            for (View view : views) {
+                if (view != null)
+                    view.setParent(null);
+            }
+        }
+    }
+
+    // Un tramo de un párrafo largo: ParagraphView limitado a [start, end)
+    private static final class SegmentView extends ParagraphView {
+        private final Block block;
+        private final int segment;
+
+        SegmentView(Block block, int segment) {
+            super(block.paragraph);
+            this.block = block;
+            this.segment = segment;
+            // Con texto bidireccional ParagraphView usa otra estrategia, que ya se limita
+            // a [getStartOffset(), getEndOffset())
+            if (strategy.getClass() == FlowStrategy.class)
+                strategy = new SegmentStrategy();
+        }
+
+        @Override
+        public int getStartOffset() {
+            return block.start(segment);
+        }
+
+        @Override
+        public int getEndOffset() {
+            return block.end(segment);
+        }
+    }
+
+    // La racha que cruza el final del tramo se corta ahí (el resto es del tramo siguiente)
+    private static final class SegmentStrategy extends FlowView.FlowStrategy {
+        @Override
+        protected View createView(FlowView fv, int startOffset, int spanLeft, int rowIndex) {
+            View view = super.createView(fv, startOffset, spanLeft, rowIndex);
+            int end = fv.getEndOffset();
+            return view != null && view.getEndOffset() > end ? view.createFragment(startOffset, end) : view;
+        }
+    }
+
+    // Alturas de los párrafos, con la suma de cada STRIDE párrafos para pasar de párrafo
+    // a coordenada y al revés sin recorrerlos todos
+    private static final class Heights {
+        private static final int STRIDE = 1024;
+
+        private int[] height = new int[STRIDE];
+        private boolean[] measured = new boolean[STRIDE];
+        private long[] sums = new long[1];
+        private int count;
+        private int validSums; // Bloques del principio cuya suma está al día
+        private long total;
+        private int unmeasured;
+
+        int size() {
+            return count;
+        }
+
+        int get(int i) {
+            return height[i];
+        }
+
+        boolean isMeasured(int i) {
+            return measured[i];
+        }
+
+        int unmeasured() {
+            return unmeasured;
+        }
+
+        long total() {
+            return total;
+        }
+
+        void set(int i, int h, boolean measured) {
+            int delta = h - height[i];
+            height[i] = h;
+            total += delta;
+            if (i / STRIDE < validSums)
+                sums[i / STRIDE] += delta;
+            if (this.measured[i] != measured) {
+                this.measured[i] = measured;
+                unmeasured += measured ? -1 : 1;
+            }
+        }
+
+        // Sustituye "removed" párrafos desde "index" por "added" de altura 0 sin medir
+        void replace(int index, int removed, int added) {
+            for (int i = index; i < index + removed; i++) {
+                total -= height[i];
+                if (!measured[i])
+                    unmeasured--;
+            }
+            int size = count - removed + added;
+            if (size > height.length) {
+                int capacity = Math.max(size, height.length + (height.length >> 1));
+                height = Arrays.copyOf(height, capacity);
+                measured = Arrays.copyOf(measured, capacity);
+            }
+            int tail = count - index - removed;
+            System.arraycopy(height, index + removed, height, index + added, tail);
+            System.arraycopy(measured, index + removed, measured, index + added, tail);
+            Arrays.fill(height, index, index + added, 0);
+            Arrays.fill(measured, index, index + added, false);
+            unmeasured += added;
+            count = size;
+            validSums = Math.min(validSums, index / STRIDE);
+            if (sums.length < size / STRIDE + 1)
+                sums = Arrays.copyOf(sums, size / STRIDE + 1);
+        }
+
+        // Suma de las alturas de los párrafos [0, i)
+        long top(int i) {
+            int block = i / STRIDE;
+            validate(block);
+            long y = 0;
+            for (int b = 0; b < block; b++)
+                y += sums[b];
+            for (int j = block * STRIDE; j < i; j++)
+                y += height[j];
+            return y;
+        }
+
+        // Párrafo en la coordenada y (el primero o el último si y queda fuera)
+        int indexAt(long y) {
+            int blocks = (count + STRIDE - 1) / STRIDE;
+            validate(blocks);
+            int b = 0;
+            long top = 0;
+            while (b < blocks - 1 && top + sums[b] <= y)
+                top += sums[b++];
+            int i = b * STRIDE;
+            int end = Math.min(count, i + STRIDE);
+            while (i < end - 1 && top + height[i] <= y)
+                top += height[i++];
+            return i;
+        }
+
+        private void validate(int blocks) {
+            for (; validSums < blocks; validSums++) {
+                long sum = 0;
+                int end = Math.min(count, (validSums + 1) * STRIDE);
+                for (int j = validSums * STRIDE; j < end; j++)
+                    sum += height[j];
+                sums[validSums] = sum;
+            }
+        }
+    }
+}
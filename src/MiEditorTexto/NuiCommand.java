@@ -0,0 +1,17 @@
+package MiEditorTexto;
+
+// ======================================================================================
+// CAPA DE ABSTRACCIÓN NUI (Definiciones del PDF)
+// ======================================================================================
+
+// Enum con los comandos obligatorios y opcionales
+enum NuiCommand {
+    NUEVO_DOCUMENTO,
+    ABRIR_DOCUMENTO,
+    GUARDAR_DOCUMENTO,
+    APLICAR_NEGRITA,
+    APLICAR_CURSIVA,
+    COLOR_ROJO,
+    COLOR_AZUL,
+    DICTAR_TEXTO // Opcional
+}
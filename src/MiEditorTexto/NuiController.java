@@ -0,0 +1,153 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// ======================================================================================
+// CAPA DE ABSTRACCIÓN NUI (Definiciones del PDF)
+// ======================================================================================
+
+// Controlador: Traduce texto natural (simulando voz) a comandos estructurados.
+// Lo dicho entra en una cola acotada, se analiza en un hilo aparte y los comandos
+// reconocidos se entregan en el EDT por tandas (una tanda por ciclo de eventos, con un
+// tope de tiempo para no congelar la interfaz). Si el EDT no da abasto las colas se
+// llenan y submit bloquea a quien esté enviando.
+class NuiController {
+    // Trazas por consola: -Dnui.debug=true
+    static final boolean DEBUG = Boolean.getBoolean("nui.debug");
+    private static final int QUEUE_CAPACITY = 1024;
+    // Tiempo máximo por tanda en el EDT; lo que sobre va en la siguiente
+    private static final long FRAME_BUDGET_NANOS = 8_000_000;
+
+    private final List<NuiListener> listeners = new CopyOnWriteArrayList<>();
+    // Lo dicho, aún sin analizar (command == null), o el texto provisional de un dictado
+    // (ver submitPartial), en orden de llegada
+    private final BlockingQueue<NuiGrammar.Match> inputs = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // Lo analizado, para el EDT (command == null: no se entendió)
+    private final BlockingQueue<NuiGrammar.Match> ready = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+
+    NuiController() {
+        Thread parser = new Thread(this::parseLoop, "NUI-analizador");
+        parser.setDaemon(true);
+        parser.start();
+    }
+
+    public void addListener(NuiListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(NuiListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Desde el EDT nunca bloquea: si la cola está llena, la orden se descarta y se avisa
+    // a los oyentes (onInputDropped) para que quien habla lo vea. Desde otros hilos
+    // espera a que haya sitio.
+    public boolean processInput(String input) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            try {
+                submit(input);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        if (input == null || input.trim().isEmpty())
+            return false;
+        boolean accepted = inputs.offer(new NuiGrammar.Match(null, input));
+        if (!accepted) {
+            if (DEBUG)
+                System.out.println("NUI: Cola llena, se descarta '" + input.trim() + "'");
+            for (NuiListener listener : listeners)
+                listener.onInputDropped(input);
+        }
+        return accepted;
+    }
+
+    // Para fuentes de alta frecuencia (reconocedor de voz, guiones): bloquea mientras
+    // la cola esté llena. No llamar desde el EDT.
+    public void submit(String input) throws InterruptedException {
+        if (input != null && !input.trim().isEmpty())
+            inputs.put(new NuiGrammar.Match(null, input));
+    }
+
+    // Resultado parcial del reconocedor mientras se dicta. No se analiza: se entrega tal
+    // cual (a onPartialDictation), en orden con el resto de lo enviado.
+    public void submitPartial(String text) throws InterruptedException {
+        inputs.put(new NuiGrammar.Match(NuiCommand.DICTAR_TEXTO, text, true));
+    }
+
+    // Analiza lo dicho en el hilo que llama, sin colas, EDT ni controlador (guiones del
+    // modo por lotes, ver BatchConverter). null si no se entiende.
+    static NuiGrammar.Match interpret(String input) {
+        return input == null || input.trim().isEmpty() ? null : NuiGrammar.standard().parse(input);
+    }
+
+    private void parseLoop() {
+        // "Cerebro" que interpreta el lenguaje natural (ver NuiGrammar y /nui/comandos.txt).
+        // Se compila aquí y no en el constructor, que corre en el EDT durante el arranque
+        NuiGrammar grammar = NuiGrammar.standard();
+        try {
+            while (true) {
+                NuiGrammar.Match input = inputs.take();
+                NuiGrammar.Match match = input.partial ? input : grammar.parse(input.payload);
+                if (match == null) {
+                    // Nada de consola en este hilo: con guiones llegan ráfagas de esto
+                    if (DEBUG)
+                        System.out.println("NUI: No entendí el comando '" + input.payload.trim() + "'");
+                    match = input; // Sin comando: se avisa a onNotUnderstood, en su orden
+                }
+                ready.put(match);
+                scheduleDispatch();
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void scheduleDispatch() {
+        if (dispatchScheduled.compareAndSet(false, true))
+            SwingUtilities.invokeLater(this::dispatch);
+    }
+
+    // En el EDT: entrega lo que haya listo hasta agotar el tiempo de la tanda
+    private void dispatch() {
+        long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+        NuiGrammar.Match match;
+        int count = 0;
+        while ((match = ready.poll()) != null) {
+            if (match.partial) {
+                for (NuiListener listener : listeners)
+                    listener.onPartialDictation(match.payload);
+            } else if (match.command == null) {
+                for (NuiListener listener : listeners)
+                    listener.onNotUnderstood(match.payload);
+            } else {
+                notifyListeners(match.command, match.payload);
+            }
+            count++;
+            if (System.nanoTime() > deadline)
+                break;
+        }
+        if (count > 0) {
+            for (NuiListener listener : listeners)
+                listener.onBatchEnd();
+        }
+        dispatchScheduled.set(false);
+        // Lo que quede (o haya llegado mientras tanto) va en la siguiente tanda, después
+        // de los eventos y repintados que ya estén en cola
+        if (!ready.isEmpty())
+            scheduleDispatch();
+    }
+
+    private void notifyListeners(NuiCommand cmd, String payload) {
+        for (NuiListener listener : listeners) {
+            listener.onCommand(cmd, payload);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package MiEditorTexto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ======================================================================================
+// Gramática de comandos NUI
+// ======================================================================================
+
+// Traduce lo dicho a un NuiCommand a partir de una tabla de sinónimos (por defecto
+// /nui/comandos.txt; el formato está explicado en ese fichero). Las frases se compilan
+// en un autómata de Aho-Corasick sobre palabras, así que cada frase se analiza de una
+// sola pasada, sin importar cuántos sinónimos haya. Las frases de DICTAR_TEXTO van en un
+// trie aparte porque solo cuentan al principio.
+final class NuiGrammar {
+
+    private static final String RESOURCE = "/nui/comandos.txt";
+    private static final int NONE = Integer.MAX_VALUE;
+
+    // Lo que se usa si falta el recurso: las palabras clave de la cadena de if/else original,
+    // salvo "nuevo" y "fuerte", que saltaban con frases normales
+    private static final String FALLBACK = String.join("\n",
+            "DICTAR_TEXTO: dictar | escribir",
+            "NUEVO_DOCUMENTO: nuevo documento | borrar todo",
+            "ABRIR_DOCUMENTO: abrir | cargar",
+            "GUARDAR_DOCUMENTO: guardar | salvar",
+            "APLICAR_NEGRITA: negrita",
+            "APLICAR_CURSIVA: cursiva | italica",
+            "COLOR_ROJO: rojo",
+            "COLOR_AZUL: azul");
+
+    private static NuiGrammar standard;
+
+    // Resultado del análisis
+    static final class Match {
+        final NuiCommand command;
+        final String payload;
+        final boolean partial; // Texto provisional de un dictado (ver NuiController.submitPartial)
+
+        Match(NuiCommand command, String payload) {
+            this(command, payload, false);
+        }
+
+        Match(NuiCommand command, String payload, boolean partial) {
+            this.command = command;
+            this.payload = payload;
+            this.partial = partial;
+        }
+    }
+
+    private final Map<String, Integer> vocabulary = new HashMap<>();
+    private final List<NuiCommand> ranking = new ArrayList<>(); // Prioridad = posición
+
+    // Autómata de Aho-Corasick. Los hijos de cada estado van ordenados por palabra.
+    private int[][] childWords;
+    private int[][] childStates;
+    private int[] fail;
+    private int[] output; // Mejor prioridad de las frases que acaban en el estado (o NONE)
+
+    // Vocabulario en una tabla hash abierta indexada por los caracteres de la palabra
+    private char[][] wordKeys;
+    private int[] wordIds;
+
+    // Trie de prefijos de dictado: estado -> (palabra -> estado), y si acaba una frase
+    private final List<Map<Integer, Integer>> dictation = new ArrayList<>();
+    private final List<Boolean> dictationEnd = new ArrayList<>();
+
+    private NuiGrammar() {
+        dictation.add(new HashMap<>());
+        dictationEnd.add(false);
+    }
+
+    // Gramática por defecto (se compila una vez)
+    static synchronized NuiGrammar standard() {
+        if (standard == null) {
+            try (InputStream in = NuiGrammar.class.getResourceAsStream(RESOURCE)) {
+                standard = in != null ? load(new InputStreamReader(in, StandardCharsets.UTF_8))
+                        : load(new StringReader(FALLBACK));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return standard;
+    }
+
+    static NuiGrammar load(Reader reader) throws IOException {
+        NuiGrammar grammar = new NuiGrammar();
+        // Trie provisional para las frases de comandos (antes de aplanarlo)
+        List<Map<Integer, Integer>> trie = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        trie.add(new HashMap<>());
+        ends.add(NONE);
+
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        int number = 0;
+        while ((line = in.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            int colon = line.indexOf(':');
+            if (colon < 0)
+                throw new IllegalArgumentException("Línea " + number + ": falta ':'");
+            NuiCommand command;
+            try {
+                command = NuiCommand.valueOf(line.substring(0, colon).trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Línea " + number + ": comando desconocido " + line.substring(0, colon));
+            }
+            int rank = grammar.ranking.indexOf(command);
+            if (rank < 0 && command != NuiCommand.DICTAR_TEXTO) {
+                rank = grammar.ranking.size();
+                grammar.ranking.add(command);
+            }
+            for (String phrase : line.substring(colon + 1).split("\\|")) {
+                List<String> words = new ArrayList<>();
+                tokenize(phrase, (word, start, end) -> words.add(word));
+                if (words.isEmpty())
+                    continue;
+                if (command == NuiCommand.DICTAR_TEXTO)
+                    grammar.addDictation(words);
+                else
+                    grammar.addPhrase(trie, ends, words, rank);
+            }
+        }
+        grammar.compile(trie, ends);
+        return grammar;
+    }
+
+    private void addPhrase(List<Map<Integer, Integer>> trie, List<Integer> ends, List<String> words, int rank) {
+        int state = 0;
+        for (String word : words) {
+            int id = vocabulary.computeIfAbsent(word, w -> vocabulary.size());
+            Integer next = trie.get(state).get(id);
+            if (next == null) {
+                next = trie.size();
+                trie.add(new HashMap<>());
+                ends.add(NONE);
+                trie.get(state).put(id, next);
+            }
+            state = next;
+        }
+        ends.set(state, Math.min(ends.get(state), rank));
+    }
+
+    private void addDictation(List<String> words) {
+        int state = 0;
+        for (String word : words) {
+            int id = vocabulary.computeIfAbsent(word, w -> vocabulary.size());
+            Integer next = dictation.get(state).get(id);
+            if (next == null) {
+                next = dictation.size();
+                dictation.add(new HashMap<>());
+                dictationEnd.add(false);
+                dictation.get(state).put(id, next);
+            }
+            state = next;
+        }
+        dictationEnd.set(state, true);
+    }
+
+    // Aplana el trie y calcula los enlaces de fallo por anchura; cada estado hereda la
+    // salida de su enlace de fallo (frases que son sufijo de otras)
+    private void compile(List<Map<Integer, Integer>> trie, List<Integer> ends) {
+        int n = trie.size();
+        childWords = new int[n][];
+        childStates = new int[n][];
+        fail = new int[n];
+        output = new int[n];
+        for (int s = 0; s < n; s++) {
+            int[] words = trie.get(s).keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            childWords[s] = words;
+            childStates[s] = new int[words.length];
+            for (int i = 0; i < words.length; i++)
+                childStates[s][i] = trie.get(s).get(words[i]);
+            output[s] = ends.get(s);
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : childStates[0])
+            queue.add(child);
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int i = 0; i < childWords[s].length; i++) {
+                int word = childWords[s][i];
+                int child = childStates[s][i];
+                int f = fail[s];
+                while (f != 0 && next(f, word) < 0)
+                    f = fail[f];
+                int target = next(f, word);
+                fail[child] = target >= 0 && target != child ? target : 0;
+                output[child] = Math.min(output[child], output[fail[child]]);
+                queue.add(child);
+            }
+        }
+
+        int size = Integer.highestOneBit(Math.max(vocabulary.size(), 8) * 4);
+        wordKeys = new char[size][];
+        wordIds = new int[size];
+        for (Map.Entry<String, Integer> entry : vocabulary.entrySet()) {
+            char[] key = entry.getKey().toCharArray();
+            int slot = hash(key, key.length) & (size - 1);
+            while (wordKeys[slot] != null)
+                slot = (slot + 1) & (size - 1);
+            wordKeys[slot] = key;
+            wordIds[slot] = entry.getValue();
+        }
+    }
+
+    private int next(int state, int word) {
+        int i = Arrays.binarySearch(childWords[state], word);
+        return i >= 0 ? childStates[state][i] : -1;
+    }
+
+    // Analiza lo dicho. Devuelve null si no contiene ningún comando.
+    Match parse(String input) {
+        char[] word = new char[32];
+        int dictState = 0;
+        int payloadStart = -1;
+        boolean prefix = true; // Seguimos dentro del posible prefijo de dictado
+        int state = 0;
+        int best = NONE;
+
+        // Mismo troceado que tokenize, pero sin crear un String por palabra
+        int len = input.length();
+        int length = 0;
+        for (int i = 0; i <= len; i++) {
+            char c = i < len ? input.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (length == word.length)
+                    word = Arrays.copyOf(word, length * 2);
+                word[length++] = fold(c);
+                continue;
+            }
+            if (length == 0)
+                continue;
+            int w = wordId(word, length);
+            length = 0;
+            if (prefix) {
+                Integer next = w >= 0 ? dictation.get(dictState).get(w) : null;
+                if (next == null) {
+                    prefix = false;
+                } else {
+                    dictState = next;
+                    if (dictationEnd.get(next))
+                        payloadStart = i; // Gana el prefijo más largo
+                }
+            }
+            if (w < 0) {
+                state = 0;
+                continue;
+            }
+            while (state != 0 && next(state, w) < 0)
+                state = fail[state];
+            state = Math.max(next(state, w), 0);
+            best = Math.min(best, output[state]);
+        }
+
+        if (payloadStart >= 0)
+            return new Match(NuiCommand.DICTAR_TEXTO, dictationPayload(input, payloadStart));
+        return best == NONE ? null : new Match(ranking.get(best), "");
+    }
+
+    // Busca la palabra en el vocabulario compilado (-1 si no aparece en ninguna frase)
+    private int wordId(char[] word, int length) {
+        int mask = wordKeys.length - 1;
+        for (int slot = hash(word, length) & mask; wordKeys[slot] != null; slot = (slot + 1) & mask) {
+            char[] key = wordKeys[slot];
+            if (key.length == length && Arrays.equals(key, 0, length, word, 0, length))
+                return wordIds[slot];
+        }
+        return -1;
+    }
+
+    private static int hash(char[] word, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++)
+            h = 31 * h + word[i];
+        return h ^ (h >>> 16);
+    }
+
+    // El texto tras el prefijo, tal cual se dijo, sin los separadores del principio
+    private static String dictationPayload(String input, int from) {
+        while (from < input.length() && !Character.isLetterOrDigit(input.charAt(from))
+                && !isOpening(input.charAt(from)))
+            from++;
+        return input.substring(from).trim();
+    }
+
+    private static boolean isOpening(char c) {
+        return c == '"' || c == '\'' || c == '(' || c == '¿' || c == '¡' || c == '«' || c == '-';
+    }
+
+    // --- Palabras ---
+
+    private interface WordSink {
+        void word(String word, int start, int end);
+    }
+
+    // Trocea en palabras (letras y dígitos) en minúsculas y sin acentos, indicando dónde
+    // empieza y acaba cada una en el texto original
+    private static void tokenize(String text, WordSink sink) {
+        StringBuilder word = new StringBuilder();
+        int start = -1;
+        int len = text.length();
+        for (int i = 0; i <= len; i++) {
+            char c = i < len ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0)
+                    start = i;
+                word.append(fold(c));
+            } else if (start >= 0) {
+                sink.word(word.toString(), start, i);
+                word.setLength(0);
+                start = -1;
+            }
+        }
+    }
+
+    // Minúscula sin acento. Latín básico y Latin-1/Extendido-A van por tabla; el resto,
+    // por Normalizer.
+    private static char fold(char c) {
+        if (c < FOLD.length)
+            return FOLD[c];
+        return foldSlow(c);
+    }
+
+    private static final char[] FOLD = new char[0x180];
+
+    static {
+        for (char c = 0; c < FOLD.length; c++)
+            FOLD[c] = foldSlow(c);
+    }
+
+    private static char foldSlow(char c) {
+        String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        return Character.toLowerCase(base.charAt(0));
+    }
+}
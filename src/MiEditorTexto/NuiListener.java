@@ -0,0 +1,27 @@
+package MiEditorTexto;
+
+// ======================================================================================
+// CAPA DE ABSTRACCIÓN NUI (Definiciones del PDF)
+// ======================================================================================
+
+// Interface que debe implementar la ventana para recibir órdenes
+interface NuiListener {
+    void onCommand(NuiCommand cmd, String payload);
+
+    // Texto provisional de un dictado en curso: cada llamada corrige la anterior, hasta
+    // que llega el DICTAR_TEXTO con el texto definitivo
+    default void onPartialDictation(String text) {
+    }
+
+    // Tras cada tanda de comandos entregada en el EDT (para agrupar el feedback visual)
+    default void onBatchEnd() {
+    }
+
+    // Lo dicho no corresponde a ninguna orden (ver NuiGrammar). En el EDT, en su tanda.
+    default void onNotUnderstood(String input) {
+    }
+
+    // Lo dicho no cupo en la cola y se descartó (ver NuiController.processInput). En el EDT.
+    default void onInputDropped(String input) {
+    }
+}
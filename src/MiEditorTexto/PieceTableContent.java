@@ -0,0 +1,569 @@
+package MiEditorTexto;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+// ======================================================================================
+// Contenido "piece table" para documentos grandes
+// ======================================================================================
+
+// Alternativa a GapContent. El texto vive en dos buffers que nunca se modifican:
+//  - "original": el fichero tal como se cargó (puede estar fuera del heap, p.ej. en un
+//    CharBuffer directo), y
+//  - "added": un buffer en el que solo se añade al final todo lo que se escribe.
+// El documento es una secuencia de piezas (buffer, inicio, longitud) guardada en un
+// treap con tamaños acumulados, así que localizar un offset, insertar o borrar en
+// cualquier punto cuesta O(log n) piezas, sin mover texto. Escribir seguido alarga la
+// última pieza en lugar de crear una nueva.
+//
+// Las posiciones (Position) siguen el mismo esquema que GapContent: índices "crudos" con
+// un hueco virtual en la última edición, de modo que solo se recolocan las marcas que
+// quedan entre dos ediciones consecutivas.
+class PieceTableContent implements AbstractDocument.Content {
+
+    // Máximo de caracteres que se copian del buffer original en una lectura parcial
+    private static final int MAX_PARTIAL_COPY = 1 << 16;
+    private static final long GAP_GROWTH = 1L << 30;
+
+    private final CharBuffer original;
+    private char[] added;
+    private int addedLength;
+    private Node root;
+    private final Random random = new Random();
+
+    // Resultado de split() (evita reservar un array por cada nivel de recursión)
+    private Node splitLeft;
+    private Node splitRight;
+
+    // Marcas de las posiciones, ordenadas por índice crudo
+    private MarkData[] marks = new MarkData[16];
+    private int markCount;
+    private long gapStart;
+    private long gapLength = GAP_GROWTH;
+    private final ReferenceQueue<StickyPosition> queue = new ReferenceQueue<>();
+    private int deadMarks;
+
+    PieceTableContent() {
+        this(CharBuffer.allocate(0));
+    }
+
+    // "original" se lee con accesos absolutos: su contenido no debe cambiar en la zona que
+    // ya se haya insertado (se puede seguir rellenando por detrás mientras se carga)
+    PieceTableContent(CharBuffer original) {
+        this.original = original;
+        this.added = new char[1024];
+        // Como todo Content, empieza con el salto de línea implícito del final
+        int start = append("\n");
+        root = new Node(false, start, 1, random.nextInt());
+    }
+
+    // --- Content ---
+
+    @Override
+    public int length() {
+        return size(root);
+    }
+
+    @Override
+    public UndoableEdit insertString(int where, String str) throws BadLocationException {
+        if (where < 0 || where > length())
+            throw new BadLocationException("Invalid insert", length());
+        int start = append(str);
+        insertPiece(where, false, start, str.length());
+        return new InsertUndo(where, str.length());
+    }
+
+    // Inserta un tramo del buffer original sin copiarlo
+    UndoableEdit insertOriginal(int where, int start, int len) throws BadLocationException {
+        if (where < 0 || where > length())
+            throw new BadLocationException("Invalid insert", length());
+        if (start < 0 || len < 0 || start + len > original.limit())
+            throw new BadLocationException("Invalid original range", start);
+        insertPiece(where, true, start, len);
+        return new InsertUndo(where, len);
+    }
+
+    @Override
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+        if (where < 0 || nitems < 0 || where + nitems >= length())
+            throw new BadLocationException("Invalid remove", length() + 1);
+        MarkSnapshot snapshot = new MarkSnapshot(where, nitems);
+        Node removed = cut(where, nitems);
+        marksRemoved(where, nitems);
+        return new RemoveUndo(where, nitems, removed, snapshot);
+    }
+
+    @Override
+    public String getString(int where, int len) throws BadLocationException {
+        Segment s = new Segment();
+        getChars(where, len, s);
+        return new String(s.array, s.offset, s.count);
+    }
+
+    @Override
+    public void getChars(int where, int len, Segment txt) throws BadLocationException {
+        int end = where + len;
+        if (where < 0 || len < 0 || end > length())
+            throw new BadLocationException("Invalid location", length());
+        if (len == 0) {
+            txt.array = new char[0];
+            txt.offset = 0;
+            txt.count = 0;
+            return;
+        }
+
+        // Pieza que contiene "where"
+        Node t = root;
+        int pos = where;
+        while (true) {
+            int ls = size(t.left);
+            if (pos < ls) {
+                t = t.left;
+            } else if (pos < ls + t.length) {
+                pos -= ls;
+                break;
+            } else {
+                pos -= ls + t.length;
+                t = t.right;
+            }
+        }
+
+        int available = t.length - pos;
+        if (len <= available || txt.isPartialReturn()) {
+            int n = Math.min(len, available);
+            if (!t.orig) {
+                // El buffer de añadidos solo crece: se puede devolver sin copiar
+                txt.array = added;
+                txt.offset = t.start + pos;
+                txt.count = n;
+                return;
+            }
+            if (original.hasArray()) {
+                txt.array = original.array();
+                txt.offset = original.arrayOffset() + t.start + pos;
+                txt.count = n;
+                return;
+            }
+            if (txt.isPartialReturn())
+                n = Math.min(n, MAX_PARTIAL_COPY);
+            char[] copy = new char[n];
+            original.get(t.start + pos, copy, 0, n);
+            txt.array = copy;
+            txt.offset = 0;
+            txt.count = n;
+            return;
+        }
+
+        // Abarca varias piezas: se copia
+        char[] copy = new char[len];
+        copy(root, where, end, copy, 0);
+        txt.array = copy;
+        txt.offset = 0;
+        txt.count = len;
+    }
+
+    @Override
+    public Position createPosition(int offset) throws BadLocationException {
+        purgeDeadMarks();
+        long raw = rawOf(offset);
+        int index = findSortIndex(raw);
+        for (int i = index; i < markCount && marks[i].raw == raw; i++) {
+            StickyPosition existing = marks[i].get();
+            if (existing != null)
+                return existing;
+        }
+        StickyPosition position = new StickyPosition();
+        MarkData mark = new MarkData(position, raw, queue);
+        position.mark = mark;
+        insertMark(index, mark);
+        return position;
+    }
+
+    // --- Buffer de añadidos ---
+
+    private int append(String str) {
+        int len = str.length();
+        if (addedLength + len > added.length) {
+            long capacity = Math.max((long) added.length * 2, (long) addedLength + len);
+            added = Arrays.copyOf(added, (int) Math.min(Integer.MAX_VALUE - 8, capacity));
+        }
+        int start = addedLength;
+        str.getChars(0, len, added, start);
+        addedLength += len;
+        return start;
+    }
+
+    // --- Treap de piezas ---
+
+    private static final class Node {
+        final boolean orig;
+        final int priority;
+        int start;
+        int length;
+        int size;
+        Node left;
+        Node right;
+
+        Node(boolean orig, int start, int length, int priority) {
+            this.orig = orig;
+            this.start = start;
+            this.length = length;
+            this.size = length;
+            this.priority = priority;
+        }
+    }
+
+    private static int size(Node t) {
+        return t == null ? 0 : t.size;
+    }
+
+    private static void update(Node t) {
+        t.size = size(t.left) + t.length + size(t.right);
+    }
+
+    private void insertPiece(int where, boolean orig, int start, int len) {
+        if (len == 0)
+            return;
+        if (!extend(root, where, orig, start, len)) {
+            split(root, where);
+            Node left = splitLeft;
+            Node right = splitRight;
+            root = merge(merge(left, new Node(orig, start, len, random.nextInt())), right);
+        }
+        marksInserted(where, len);
+    }
+
+    // Alarga la pieza que termina justo en "pos" si el texto nuevo la continúa en el mismo
+    // buffer (lo normal al escribir seguido o al cargar por bloques)
+    private static boolean extend(Node t, int pos, boolean orig, int start, int len) {
+        if (t == null)
+            return false;
+        int ls = size(t.left);
+        boolean done;
+        if (pos <= ls) {
+            done = extend(t.left, pos, orig, start, len);
+        } else if (pos < ls + t.length) {
+            done = false;
+        } else if (pos == ls + t.length) {
+            done = t.orig == orig && t.start + t.length == start;
+            if (done)
+                t.length += len;
+        } else {
+            done = extend(t.right, pos - ls - t.length, orig, start, len);
+        }
+        if (done)
+            t.size += len;
+        return done;
+    }
+
+    // Parte el árbol en [0, k) y [k, fin); el resultado queda en splitLeft/splitRight
+    private void split(Node t, int k) {
+        if (t == null) {
+            splitLeft = null;
+            splitRight = null;
+            return;
+        }
+        int ls = size(t.left);
+        if (k <= ls) {
+            split(t.left, k);
+            t.left = splitRight;
+            update(t);
+            splitRight = t;
+        } else if (k >= ls + t.length) {
+            split(t.right, k - ls - t.length);
+            t.right = splitLeft;
+            update(t);
+            splitLeft = t;
+        } else {
+            // k cae dentro de la pieza: se divide en dos nodos con la misma prioridad
+            int cut = k - ls;
+            Node tail = new Node(t.orig, t.start + cut, t.length - cut, t.priority);
+            tail.right = t.right;
+            update(tail);
+            t.length = cut;
+            t.right = null;
+            update(t);
+            splitLeft = t;
+            splitRight = tail;
+        }
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        if (a.priority >= b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    // Saca del árbol las piezas de [where, where + len) y las devuelve como subárbol.
+    // Como los buffers no cambian, ese subárbol basta para deshacer sin copiar texto.
+    private Node cut(int where, int len) {
+        split(root, where);
+        Node left = splitLeft;
+        split(splitRight, len);
+        Node middle = splitLeft;
+        root = merge(left, splitRight);
+        return middle;
+    }
+
+    private void paste(int where, Node pieces) {
+        split(root, where);
+        Node right = splitRight;
+        root = merge(merge(splitLeft, pieces), right);
+    }
+
+    // Copia [from, to) del subárbol "t" (offsets relativos a él) en dst[dstOffset...]
+    private void copy(Node t, int from, int to, char[] dst, int dstOffset) {
+        if (t == null || from >= to)
+            return;
+        int ls = size(t.left);
+        if (from < ls)
+            copy(t.left, from, Math.min(to, ls), dst, dstOffset);
+        int pieceEnd = ls + t.length;
+        int s = Math.max(from, ls);
+        int e = Math.min(to, pieceEnd);
+        if (s < e) {
+            if (t.orig)
+                original.get(t.start + s - ls, dst, dstOffset + s - from, e - s);
+            else
+                System.arraycopy(added, t.start + s - ls, dst, dstOffset + s - from, e - s);
+        }
+        if (to > pieceEnd) {
+            int f = Math.max(from, pieceEnd);
+            copy(t.right, f - pieceEnd, to - pieceEnd, dst, dstOffset + f - from);
+        }
+    }
+
+    // --- Marcas ---
+
+    private final class StickyPosition implements Position {
+        MarkData mark;
+
+        @Override
+        public int getOffset() {
+            return offsetOf(mark.raw);
+        }
+
+        @Override
+        public String toString() {
+            return Integer.toString(getOffset());
+        }
+    }
+
+    private static final class MarkData extends WeakReference<StickyPosition> {
+        long raw;
+
+        MarkData(StickyPosition position, long raw, ReferenceQueue<StickyPosition> queue) {
+            super(position, queue);
+            this.raw = raw;
+        }
+    }
+
+    private int offsetOf(long raw) {
+        return (int) (raw < gapStart ? raw : raw - gapLength);
+    }
+
+    private long rawOf(int offset) {
+        return offset < gapStart ? offset : offset + gapLength;
+    }
+
+    // Primer índice cuya marca tiene raw >= "raw"
+    private int findSortIndex(long raw) {
+        int lo = 0;
+        int hi = markCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (marks[mid].raw < raw)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private void insertMark(int index, MarkData mark) {
+        if (markCount == marks.length)
+            marks = Arrays.copyOf(marks, markCount * 2);
+        System.arraycopy(marks, index, marks, index + 1, markCount - index);
+        marks[index] = mark;
+        markCount++;
+    }
+
+    // Lleva el hueco virtual a "offset" recolocando solo las marcas que hay por medio
+    private void moveGap(long offset) {
+        if (offset < gapStart) {
+            int lo = findSortIndex(offset);
+            int hi = findSortIndex(gapStart);
+            for (int i = lo; i < hi; i++)
+                marks[i].raw += gapLength;
+        } else if (offset > gapStart) {
+            long gapEnd = gapStart + gapLength;
+            int lo = findSortIndex(gapEnd);
+            int hi = findSortIndex(offset + gapLength);
+            for (int i = lo; i < hi; i++)
+                marks[i].raw -= gapLength;
+        }
+        gapStart = offset;
+    }
+
+    // Las marcas en "where" avanzan con el texto insertado, salvo las del offset 0
+    private void marksInserted(int where, int len) {
+        int zeros = 0;
+        if (where == 0)
+            while (zeros < markCount && offsetOf(marks[zeros].raw) == 0)
+                zeros++;
+        moveGap(where);
+        if (gapLength <= len) {
+            long growth = len + GAP_GROWTH;
+            for (int i = findSortIndex(gapStart + gapLength); i < markCount; i++)
+                marks[i].raw += growth;
+            gapLength += growth;
+        }
+        gapStart += len;
+        gapLength -= len;
+        for (int i = 0; i < zeros; i++)
+            marks[i].raw = 0;
+    }
+
+    // Las marcas dentro de lo borrado se quedan en "where"
+    private void marksRemoved(int where, int len) {
+        moveGap(where);
+        long gapEnd = gapStart + gapLength;
+        int lo = findSortIndex(gapEnd);
+        int hi = findSortIndex(gapEnd + len + 1);
+        for (int i = lo; i < hi; i++)
+            marks[i].raw = gapEnd + len;
+        gapLength += len;
+    }
+
+    private void purgeDeadMarks() {
+        while (queue.poll() != null)
+            deadMarks++;
+        if (deadMarks < 64 || deadMarks < markCount / 2)
+            return;
+        int live = 0;
+        for (int i = 0; i < markCount; i++) {
+            if (marks[i].get() != null)
+                marks[live++] = marks[i];
+        }
+        Arrays.fill(marks, live, markCount, null);
+        markCount = live;
+        deadMarks = 0;
+    }
+
+    // Offsets de las marcas de un tramo antes de colapsarlo, para devolverlas a su sitio
+    // al deshacer (como UndoPosRef en GapContent): sin esto, los elementos que restaura
+    // el documento quedarían con sus posiciones aplastadas en "where"
+    private final class MarkSnapshot {
+        private final int where;
+        private final int length;
+        private final MarkData[] saved;
+        private final int[] relative;
+
+        MarkSnapshot(int where, int length) {
+            this.where = where;
+            this.length = length;
+            int lo = findSortIndex(rawOf(where));
+            int hi = findSortIndex(rawOf(where + length) + 1);
+            saved = Arrays.copyOfRange(marks, lo, hi);
+            relative = new int[saved.length];
+            for (int i = 0; i < saved.length; i++)
+                relative[i] = offsetOf(saved[i].raw) - where;
+        }
+
+        // Se llama con el tramo ya reinsertado
+        void restore() {
+            if (saved.length == 0)
+                return;
+            int lo = findSortIndex(rawOf(where));
+            int hi = findSortIndex(rawOf(where + length) + 1);
+            for (int i = 0; i < saved.length; i++)
+                saved[i].raw = rawOf(where + relative[i]);
+            Arrays.sort(marks, lo, hi, Comparator.comparingLong(m -> m.raw));
+        }
+    }
+
+    // --- Deshacer ---
+
+    private class InsertUndo extends AbstractUndoableEdit {
+        private final int where;
+        private final int length;
+        private Node removed;
+        private MarkSnapshot snapshot;
+
+        InsertUndo(int where, int length) {
+            this.where = where;
+            this.length = length;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            snapshot = new MarkSnapshot(where, length);
+            removed = cut(where, length);
+            marksRemoved(where, length);
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            paste(where, removed);
+            removed = null;
+            marksInserted(where, length);
+            snapshot.restore();
+            snapshot = null;
+        }
+    }
+
+    private class RemoveUndo extends AbstractUndoableEdit {
+        private final int where;
+        private final int length;
+        private Node removed;
+        private MarkSnapshot snapshot;
+
+        RemoveUndo(int where, int length, Node removed, MarkSnapshot snapshot) {
+            this.where = where;
+            this.length = length;
+            this.removed = removed;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            paste(where, removed);
+            removed = null;
+            marksInserted(where, length);
+            snapshot.restore();
+            snapshot = null;
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            snapshot = new MarkSnapshot(where, length);
+            removed = cut(where, length);
+            marksRemoved(where, length);
+        }
+    }
+}
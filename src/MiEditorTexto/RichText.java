@@ -0,0 +1,335 @@
+package MiEditorTexto;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.Segment;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+// ======================================================================================
+// Texto con formato preparado para volcarlo de golpe en un EditorDocument
+// ======================================================================================
+
+// Texto + rachas de atributos de carácter + atributos de cada párrafo, en el mismo orden
+// en que EditorDocument.replaceParagraphs construye los elementos. Las rachas nunca
+// cruzan un salto de línea y las consecutivas con los mismos atributos se funden, así
+// que el número de elementos depende de los cambios de formato y no del tamaño.
+final class RichText {
+
+    private final StringBuilder text = new StringBuilder();
+    private int[] runLengths = new int[16];
+    private AttributeSet[] runAttrs = new AttributeSet[16];
+    private int runCount;
+    // runEnds[p] = número de rachas hasta el final del párrafo p (incluido)
+    private int[] paragraphRunEnds = new int[16];
+    private AttributeSet[] paragraphAttrs = new AttributeSet[16];
+    private int paragraphCount;
+    private boolean paragraphOpen;
+    private int openRunStart; // Primera racha del párrafo abierto
+    private final boolean keepText; // Sin texto: solo párrafos y rachas (ver write(doc))
+
+    RichText() {
+        this(true);
+    }
+
+    private RichText(boolean keepText) {
+        this.keepText = keepText;
+    }
+
+    // Añade texto con sus atributos de carácter; "paragraph" son los atributos que toma
+    // el párrafo si este texto es lo primero que entra en él
+    void append(CharSequence s, AttributeSet attrs, AttributeSet paragraph) {
+        int len = s.length();
+        int from = 0;
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) == '\n') {
+                addRun(i + 1 - from, attrs, paragraph);
+                if (keepText)
+                    text.append(s, from, i + 1);
+                closeParagraph();
+                from = i + 1;
+            }
+        }
+        if (from < len) {
+            addRun(len - from, attrs, paragraph);
+            if (keepText)
+                text.append(s, from, len);
+        }
+    }
+
+    void append(char[] chars, int offset, int len, AttributeSet attrs, AttributeSet paragraph) {
+        int from = offset;
+        int end = offset + len;
+        for (int i = offset; i < end; i++) {
+            if (chars[i] == '\n') {
+                addRun(i + 1 - from, attrs, paragraph);
+                if (keepText)
+                    text.append(chars, from, i + 1 - from);
+                closeParagraph();
+                from = i + 1;
+            }
+        }
+        if (from < end) {
+            addRun(end - from, attrs, paragraph);
+            if (keepText)
+                text.append(chars, from, end - from);
+        }
+    }
+
+    // Copia [from, to) de un documento tal cual, hoja a hoja para llevarse los atributos
+    void append(StyledDocument doc, int from, int to, Segment segment) throws BadLocationException {
+        while (from < to) {
+            Element paragraph = doc.getParagraphElement(from);
+            Element leaf = paragraph.getElement(paragraph.getElementIndex(from));
+            int end = Math.min(to, leaf.getEndOffset());
+            doc.getText(from, end - from, segment);
+            append(segment.array, segment.offset, segment.count, leaf.getAttributes(), paragraph.getAttributes());
+            from = end;
+        }
+    }
+
+    private void addRun(int len, AttributeSet attrs, AttributeSet paragraph) {
+        if (!paragraphOpen) {
+            if (paragraphCount == paragraphAttrs.length) {
+                paragraphAttrs = Arrays.copyOf(paragraphAttrs, paragraphCount * 2);
+                paragraphRunEnds = Arrays.copyOf(paragraphRunEnds, paragraphCount * 2);
+            }
+            paragraphAttrs[paragraphCount] = paragraph;
+            paragraphOpen = true;
+            openRunStart = runCount;
+        }
+        if (runCount > openRunStart && sameAttributes(runAttrs[runCount - 1], attrs)) {
+            runLengths[runCount - 1] += len;
+            return;
+        }
+        if (runCount == runLengths.length) {
+            runLengths = Arrays.copyOf(runLengths, runCount * 2);
+            runAttrs = Arrays.copyOf(runAttrs, runCount * 2);
+        }
+        runLengths[runCount] = len;
+        runAttrs[runCount] = attrs;
+        runCount++;
+    }
+
+    private void closeParagraph() {
+        paragraphRunEnds[paragraphCount++] = runCount;
+        paragraphOpen = false;
+    }
+
+    static boolean sameAttributes(AttributeSet a, AttributeSet b) {
+        return a == b || (a != null && b != null && a.isEqual(b));
+    }
+
+    // --- Lectura (EditorDocument) ---
+
+    // Todo RichText completo termina en salto de línea
+    boolean isComplete() {
+        return !paragraphOpen && paragraphCount > 0;
+    }
+
+    int length() {
+        return text.length();
+    }
+
+    String textWithoutLastNewline() {
+        return text.substring(0, text.length() - 1);
+    }
+
+    void getChars(int start, int end, char[] dst, int dstOffset) {
+        text.getChars(start, end, dst, dstOffset);
+    }
+
+    int paragraphCount() {
+        return paragraphCount;
+    }
+
+    AttributeSet paragraphAttributes(int p) {
+        return paragraphAttrs[p];
+    }
+
+    int firstRun(int p) {
+        return p == 0 ? 0 : paragraphRunEnds[p - 1];
+    }
+
+    int endRun(int p) {
+        return paragraphRunEnds[p];
+    }
+
+    int runLength(int r) {
+        return runLengths[r];
+    }
+
+    AttributeSet runAttributes(int r) {
+        return runAttrs[r];
+    }
+
+    // --- Binario (diario de ediciones, formato .etx) ---
+
+    // Los atributos distintos van en una tabla y párrafos y rachas la referencian por
+    // posición; el texto va detrás, por bloques (writeText)
+    void write(DataOutput out) throws IOException {
+        writeStructure(out);
+        writeText(out, text);
+    }
+
+    // Lo mismo que copiar el documento entero (con su salto de línea final) y llamar a
+    // write(), pero el texto pasa del documento a "out" por bloques, sin copiarlo entero:
+    // cada bloque se copia con el cerrojo de lectura y se escribe sin él (ver
+    // ChunkReader). "progress" recibe los caracteres escritos.
+    static void write(DataOutput out, StyledDocument doc, ChunkReader reader, IntConsumer progress)
+            throws IOException, BadLocationException {
+        int length = reader.getLength();
+        Segment segment = new Segment();
+        structure(doc, reader).writeStructure(out);
+
+        out.writeInt(length + 1);
+        for (int from = 0; from <= length; from += TEXT_BLOCK) {
+            int to = Math.min(length, from + TEXT_BLOCK);
+            reader.getText(from, to - from, segment);
+            String block = segment.toString();
+            out.writeUTF(to - from < TEXT_BLOCK ? block + "\n" : block);
+            progress.accept(to);
+        }
+    }
+
+    // Párrafos y rachas del documento entero (con su salto de línea final), sin el texto.
+    // Se recorren de una vez con el cerrojo tomado, que va a velocidad de memoria.
+    static RichText structure(StyledDocument doc, ChunkReader reader) throws IOException, BadLocationException {
+        RichText structure = new RichText(false);
+        reader.locked(() -> structure.append(doc, 0, reader.getLength() + 1, new Segment()));
+        return structure;
+    }
+
+    private void writeStructure(DataOutput out) throws IOException {
+        List<AttributeSet> table = new ArrayList<>();
+        Map<AttributeSet, Integer> seen = new IdentityHashMap<>();
+        int[] paragraphIndex = new int[paragraphCount];
+        int[] runIndex = new int[runCount];
+        for (int p = 0; p < paragraphCount; p++)
+            paragraphIndex[p] = intern(table, seen, paragraphAttrs[p]);
+        for (int r = 0; r < runCount; r++)
+            runIndex[r] = intern(table, seen, runAttrs[r]);
+
+        out.writeInt(table.size());
+        for (AttributeSet attrs : table)
+            AttributeCodec.write(out, attrs);
+        out.writeInt(paragraphCount);
+        for (int p = 0; p < paragraphCount; p++) {
+            out.writeInt(paragraphIndex[p]);
+            out.writeInt(paragraphRunEnds[p]);
+        }
+        out.writeInt(runCount);
+        for (int r = 0; r < runCount; r++) {
+            out.writeInt(runIndex[r]);
+            out.writeInt(runLengths[r]);
+        }
+    }
+
+    // "paragraphParent" es el estilo del que heredan los párrafos leídos (normalmente el
+    // estilo por defecto del documento de destino); puede ser null
+    static RichText read(DataInput in, AttributeSet paragraphParent) throws IOException {
+        RichText rt = new RichText();
+        AttributeSet[] table = new AttributeSet[in.readInt()];
+        AttributeSet[] paragraphTable = new AttributeSet[table.length];
+        for (int i = 0; i < table.length; i++)
+            table[i] = AttributeCodec.read(in);
+
+        int paragraphs = in.readInt();
+        rt.paragraphAttrs = new AttributeSet[Math.max(paragraphs, 1)];
+        rt.paragraphRunEnds = new int[Math.max(paragraphs, 1)];
+        for (int p = 0; p < paragraphs; p++) {
+            int index = in.readInt();
+            if (paragraphTable[index] == null)
+                paragraphTable[index] = withParent(table[index], paragraphParent);
+            rt.paragraphAttrs[p] = paragraphTable[index];
+            rt.paragraphRunEnds[p] = in.readInt();
+        }
+        rt.paragraphCount = paragraphs;
+
+        int runs = in.readInt();
+        rt.runAttrs = new AttributeSet[Math.max(runs, 1)];
+        rt.runLengths = new int[Math.max(runs, 1)];
+        long total = 0;
+        for (int r = 0; r < runs; r++) {
+            rt.runAttrs[r] = table[in.readInt()];
+            rt.runLengths[r] = in.readInt();
+            total += rt.runLengths[r];
+        }
+        rt.runCount = runs;
+
+        int length = readText(in, rt.text);
+        if (total != length || (paragraphs > 0 && rt.paragraphRunEnds[paragraphs - 1] != runs))
+            throw new IOException("Texto con formato dañado");
+        return rt;
+    }
+
+    // Texto en bloques de writeUTF (UTF-8 modificado: cada char por separado, así que
+    // también sobreviven los surrogates sueltos). Con este tamaño un bloque nunca pasa de
+    // los 64 KB que admite writeUTF.
+    private static final int TEXT_BLOCK = 65535 / 3;
+
+    static void writeText(DataOutput out, CharSequence s) throws IOException {
+        out.writeInt(s.length());
+        for (int from = 0; from < s.length(); from += TEXT_BLOCK)
+            out.writeUTF(s.subSequence(from, Math.min(s.length(), from + TEXT_BLOCK)).toString());
+    }
+
+    // Añade el texto a "into" y devuelve su longitud
+    static int readText(DataInput in, StringBuilder into) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            throw new IOException("Longitud de texto no válida: " + length);
+        into.ensureCapacity(into.length() + length);
+        int read = 0;
+        while (read < length) {
+            String block = in.readUTF();
+            if (block.isEmpty())
+                throw new IOException("Texto dañado");
+            into.append(block);
+            read += block.length();
+        }
+        if (read != length)
+            throw new IOException("Texto dañado");
+        return length;
+    }
+
+    // Los atributos de un documento ya vienen compartidos (StyleContext), así que casi
+    // siempre basta con la identidad; la comparación completa solo con tablas pequeñas
+    private static int intern(List<AttributeSet> table, Map<AttributeSet, Integer> seen, AttributeSet attrs) {
+        Integer index = seen.get(attrs);
+        if (index != null)
+            return index;
+        if (table.size() <= 256) {
+            for (int i = table.size() - 1; i >= 0 && index == null; i--) {
+                if (sameAttributes(table.get(i), attrs))
+                    index = i;
+            }
+        }
+        if (index == null) {
+            index = table.size();
+            table.add(attrs);
+        }
+        seen.put(attrs, index);
+        return index;
+    }
+
+    private static AttributeSet withParent(AttributeSet attrs, AttributeSet parent) {
+        if (parent == null)
+            return attrs;
+        MutableAttributeSet copy = new SimpleAttributeSet(attrs);
+        copy.addAttribute(StyleConstants.ResolveAttribute, parent);
+        return copy;
+    }
+}
@@ -0,0 +1,65 @@
+package MiEditorTexto;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.StyleContext;
+import javax.swing.text.StyledDocument;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.IntConsumer;
+
+// ======================================================================================
+// Formato propio con formato (.etx)
+// ======================================================================================
+
+// Cabecera ("ETX" + versión) y un RichText en binario: la tabla de atributos distintos,
+// los párrafos y las rachas (cada una con su índice en la tabla y su longitud) y el texto
+// una sola vez. Ocupa casi lo mismo que el texto plano y se escribe y se lee de corrido
+// sobre el canal, sin pasar por RTFEditorKit.
+final class RichTextFile {
+
+    static final String EXTENSION = "etx";
+    private static final int MAGIC = 0x45545801; // "ETX" + versión 1
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private RichTextFile() {
+    }
+
+    static boolean isRichText(File file) {
+        return file.getName().toLowerCase().endsWith("." + EXTENSION);
+    }
+
+    // "reader" es el de "doc" (ver ChunkReader); "progress" recibe los caracteres escritos
+    static void write(StyledDocument doc, ChunkReader reader, WritableByteChannel channel, IntConsumer progress)
+            throws IOException, BadLocationException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        RichText.write(out, doc, reader, progress);
+        out.flush(); // Sin close: el canal es de quien lo abrió
+    }
+
+    // Construye el documento de una vez (replaceParagraphs): un solo evento y los
+    // elementos justos, uno por racha
+    static EditorDocument read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE));
+        if (in.readInt() != MAGIC)
+            throw new IOException("No es un documento " + EXTENSION + " o es de una versión posterior");
+        EditorDocument doc = new EditorDocument();
+        RichText text = RichText.read(in, doc.getStyle(StyleContext.DEFAULT_STYLE));
+        if (!text.isComplete())
+            throw new IOException("Documento " + EXTENSION + " incompleto");
+        try {
+            doc.replaceParagraphs(0, 0, text);
+        } catch (BadLocationException e) {
+            throw new IOException(e);
+        }
+        return doc;
+    }
+}
@@ -0,0 +1,183 @@
+package MiEditorTexto;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Segment;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+// ======================================================================================
+// Exportación a RTF
+// ======================================================================================
+
+// Escribe el documento como RTF recorriendo sus párrafos y rachas (RichText.structure,
+// tomados de una vez con el cerrojo de lectura): una primera pasada (sin tocar el texto)
+// reúne las tablas de fuentes y colores, y la segunda vuelca cada racha como un grupo con
+// sus atributos, leyendo el texto por bloques con ChunkReader. Solo los atributos que
+// usa el editor; lo que no es ASCII va con su código Unicode.
+final class RtfWriter {
+
+    static final String EXTENSION = "rtf";
+    private static final int BLOCK = 1 << 14;
+
+    private final RichText structure;
+    private final ChunkReader reader;
+    private final Writer out;
+    private final Map<String, Integer> fonts = new LinkedHashMap<>();
+    private final Map<Color, Integer> colors = new LinkedHashMap<>();
+    private final Segment segment = new Segment();
+
+    private RtfWriter(RichText structure, ChunkReader reader, Writer out) {
+        this.structure = structure;
+        this.reader = reader;
+        this.out = out;
+    }
+
+    static boolean isRtf(File file) {
+        return file.getName().toLowerCase().endsWith("." + EXTENSION);
+    }
+
+    // "reader" es el de "doc" (ver ChunkReader); "progress" recibe los caracteres escritos
+    static void write(StyledDocument doc, ChunkReader reader, WritableByteChannel channel, IntConsumer progress)
+            throws IOException, BadLocationException {
+        RichText structure = RichText.structure(doc, reader);
+        // Todo lo que sale es ASCII
+        Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.US_ASCII), 1 << 16);
+        new RtfWriter(structure, reader, out).write(progress);
+        out.flush(); // Sin close: el canal es de quien lo abrió
+    }
+
+    private void write(IntConsumer progress) throws IOException, BadLocationException {
+        int paragraphs = structure.paragraphCount();
+        for (int r = 0; r < structure.endRun(paragraphs - 1); r++) {
+            AttributeSet attrs = structure.runAttributes(r);
+            fonts.putIfAbsent(StyleConstants.getFontFamily(attrs), fonts.size());
+            addColor(attrs, StyleConstants.Foreground);
+            addColor(attrs, StyleConstants.Background);
+        }
+
+        out.write("{\\rtf1\\ansi\\deff0\n{\\fonttbl");
+        for (Map.Entry<String, Integer> font : fonts.entrySet()) {
+            out.write("{\\f" + font.getValue() + "\\fnil ");
+            text(font.getKey());
+            out.write(";}");
+        }
+        // El color 0 es el automático
+        out.write("}\n{\\colortbl;");
+        for (Color color : colors.keySet())
+            out.write("\\red" + color.getRed() + "\\green" + color.getGreen() + "\\blue" + color.getBlue() + ";");
+        out.write("}\n");
+
+        int length = reader.getLength();
+        int offset = 0;
+        for (int p = 0; p < paragraphs; p++) {
+            paragraph(structure.paragraphAttributes(p));
+            for (int r = structure.firstRun(p); r < structure.endRun(p); r++) {
+                int start = offset;
+                offset += structure.runLength(r);
+                // El salto de línea final de cada párrafo es el \par (el del último es
+                // el implícito del documento)
+                int end = r == structure.endRun(p) - 1 ? offset - 1 : offset;
+                if (end > start)
+                    run(structure.runAttributes(r), start, end);
+            }
+            out.write(p < paragraphs - 1 ? "\\par\n" : "\n");
+            progress.accept(Math.min(offset, length));
+        }
+        out.write("}\n");
+    }
+
+    private void addColor(AttributeSet attrs, Object key) {
+        Object color = attrs.getAttribute(key);
+        if (color instanceof Color)
+            colors.putIfAbsent((Color) color, colors.size() + 1);
+    }
+
+    private void paragraph(AttributeSet attrs) throws IOException {
+        out.write("\\pard");
+        switch (StyleConstants.getAlignment(attrs)) {
+            case StyleConstants.ALIGN_CENTER:
+                out.write("\\qc");
+                break;
+            case StyleConstants.ALIGN_RIGHT:
+                out.write("\\qr");
+                break;
+            case StyleConstants.ALIGN_JUSTIFIED:
+                out.write("\\qj");
+                break;
+            default:
+                out.write("\\ql");
+        }
+        twips("\\fi", StyleConstants.getFirstLineIndent(attrs));
+        twips("\\li", StyleConstants.getLeftIndent(attrs));
+        twips("\\ri", StyleConstants.getRightIndent(attrs));
+        twips("\\sb", StyleConstants.getSpaceAbove(attrs));
+        twips("\\sa", StyleConstants.getSpaceBelow(attrs));
+        out.write(' ');
+    }
+
+    // Los puntos de Swing pasan a twips (1/20 de punto)
+    private void twips(String control, float points) throws IOException {
+        if (points != 0)
+            out.write(control + Math.round(points * 20));
+    }
+
+    private void run(AttributeSet attrs, int start, int end) throws IOException, BadLocationException {
+        out.write("{\\f" + fonts.get(StyleConstants.getFontFamily(attrs)));
+        out.write("\\fs" + StyleConstants.getFontSize(attrs) * 2);
+        if (StyleConstants.isBold(attrs))
+            out.write("\\b");
+        if (StyleConstants.isItalic(attrs))
+            out.write("\\i");
+        if (StyleConstants.isUnderline(attrs))
+            out.write("\\ul");
+        if (StyleConstants.isStrikeThrough(attrs))
+            out.write("\\strike");
+        if (StyleConstants.isSubscript(attrs))
+            out.write("\\sub");
+        if (StyleConstants.isSuperscript(attrs))
+            out.write("\\super");
+        Object foreground = attrs.getAttribute(StyleConstants.Foreground);
+        if (foreground instanceof Color)
+            out.write("\\cf" + colors.get(foreground));
+        Object background = attrs.getAttribute(StyleConstants.Background);
+        if (background instanceof Color)
+            out.write("\\highlight" + colors.get(background));
+        out.write(' ');
+        for (int from = start; from < end; from += BLOCK) {
+            reader.getText(from, Math.min(BLOCK, end - from), segment);
+            text(segment);
+        }
+        out.write('}');
+    }
+
+    private void text(CharSequence s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' || c == '{' || c == '}') {
+                out.write('\\');
+                out.write(c);
+            } else if (c == '\t') {
+                out.write("\\tab ");
+            } else if (c == '\n') {
+                out.write("\\line ");
+            } else if (c < 0x80) {
+                out.write(c);
+            } else {
+                // Con signo, como pide RTF, y "?" para los lectores que no lo entienden
+                out.write("\\u" + (short) c + "?");
+            }
+        }
+    }
+}
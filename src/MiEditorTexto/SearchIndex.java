@@ -0,0 +1,326 @@
+package MiEditorTexto;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import java.util.ArrayList;
+import java.util.List;
+
+// ======================================================================================
+// Índice de búsqueda del documento
+// ======================================================================================
+
+// El documento se divide en bloques de párrafos completos (unos TARGET_CHARS caracteres)
+// y de cada bloque se guarda un filtro de Bloom con sus trigramas. Para buscar un texto
+// solo se recorren los bloques cuyo filtro contiene todos los trigramas de la consulta;
+// el resto se descarta sin leerlo. Los bloques se delimitan con Positions, así que una
+// edición solo invalida el filtro del bloque tocado, que se recalcula cuando hace falta.
+// Un hilo aparte indexa el documento entero la primera vez.
+class SearchIndex implements DocumentListener {
+
+    private static final int TARGET_CHARS = 64 << 10;
+    private static final int BATCH = 16; // Bloques por cada toma del cerrojo de lectura
+
+    private final EditorDocument doc;
+    // Solo se modifica con el cerrojo de escritura del documento (desde el listener) y
+    // solo se lee con el de lectura
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final Segment segment = new Segment();
+
+    private static final class Chunk {
+        final Position start;
+        volatile long[] bloom; // null = sin indexar o modificado desde entonces
+
+        Chunk(Position start) {
+            this.start = start;
+        }
+    }
+
+    SearchIndex(EditorDocument doc) {
+        this.doc = doc;
+        doc.render(() -> {
+            try {
+                split(0, doc.getLength() + 1, 0);
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        doc.addDocumentListener(this);
+
+        Thread builder = new Thread(this::buildAll, "Indice-busqueda");
+        builder.setDaemon(true);
+        builder.setPriority(Thread.MIN_PRIORITY);
+        builder.start();
+    }
+
+    // Primera aparición de "text" a partir de "from" (o la última que empieza antes de
+    // "from" si forward es false). Si no hay ninguna hasta el extremo, se da la vuelta.
+    // Devuelve -1 si no aparece. Llamar desde el EDT.
+    int find(String text, int from, boolean forward) {
+        int[] result = {-1};
+        doc.render(() -> {
+            try {
+                long[] grams = trigrams(text);
+                int n = doc.getLength();
+                result[0] = forward ? findForward(text, grams, from, n) : findBackward(text, grams, from, 0);
+                if (result[0] < 0)
+                    result[0] = forward ? findForward(text, grams, 0, from) : findBackward(text, grams, n, from);
+            } catch (BadLocationException e) {
+                result[0] = -1;
+            }
+        });
+        return result[0];
+    }
+
+    // Coincidencias que empiezan en [from, to)
+    private int findForward(String text, long[] grams, int from, int to) throws BadLocationException {
+        for (int i = chunkIndex(from); i < chunks.size(); i++) {
+            int start = Math.max(from, chunkStart(i));
+            int end = Math.min(to - 1 + text.length(), textEnd(i));
+            if (start >= to)
+                break;
+            if (end - start < text.length() || !mayContain(i, grams))
+                continue;
+            int found = scan(text, start, end, true);
+            if (found >= 0 && found < to)
+                return found;
+        }
+        return -1;
+    }
+
+    // Coincidencias que empiezan en [to, from)
+    private int findBackward(String text, long[] grams, int from, int to) throws BadLocationException {
+        for (int i = chunkIndex(from); i >= 0; i--) {
+            int start = Math.max(to, chunkStart(i));
+            int end = Math.min(from - 1 + text.length(), textEnd(i));
+            if (chunkEnd(i) <= to)
+                break;
+            if (end - start < text.length() || !mayContain(i, grams))
+                continue;
+            int found = scan(text, start, end, false);
+            if (found >= 0)
+                return found;
+        }
+        return -1;
+    }
+
+    // Búsqueda directa dentro de [start, end)
+    private int scan(String text, int start, int end, boolean forward) throws BadLocationException {
+        doc.getText(start, end - start, segment);
+        char[] a = segment.array;
+        int base = segment.offset;
+        int m = text.length();
+        int last = segment.count - m;
+        for (int k = 0; k <= last; k++) {
+            int i = forward ? k : last - k;
+            int j = 0;
+            while (j < m && a[base + i + j] == text.charAt(j))
+                j++;
+            if (j == m)
+                return start + i;
+        }
+        return -1;
+    }
+
+    // --- Bloques ---
+
+    private int chunkStart(int i) {
+        return chunks.get(i).start.getOffset();
+    }
+
+    private int chunkEnd(int i) {
+        return i + 1 < chunks.size() ? chunkStart(i + 1) : doc.getLength() + 1;
+    }
+
+    // Como chunkEnd pero sin el salto de línea implícito del final del documento
+    private int textEnd(int i) {
+        return Math.min(chunkEnd(i), doc.getLength());
+    }
+
+    // Último bloque que empieza en "offset" o antes
+    private int chunkIndex(int offset) {
+        int lo = 0;
+        int hi = chunks.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (chunkStart(mid) <= offset)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return lo;
+    }
+
+    // Crea bloques de párrafos completos que cubren [from, to), insertándolos en "index"
+    private void split(int from, int to, int index) throws BadLocationException {
+        Element root = doc.getDefaultRootElement();
+        int p = root.getElementIndex(from);
+        int start = from;
+        List<Chunk> created = new ArrayList<>();
+        created.add(new Chunk(doc.createPosition(start)));
+        for (; p < root.getElementCount(); p++) {
+            int end = root.getElement(p).getEndOffset();
+            if (end >= to)
+                break;
+            if (end - start >= TARGET_CHARS) {
+                start = end;
+                created.add(new Chunk(doc.createPosition(start)));
+            }
+        }
+        chunks.addAll(index, created);
+    }
+
+    // --- DocumentListener (se llama con el cerrojo de escritura) ---
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        int offset = e.getOffset();
+        int end = offset + e.getLength();
+        int first = chunkIndex(offset);
+        try {
+            // Los bloques que ahora empiezan dentro de lo insertado dejan de estar en un
+            // principio de párrafo si lo insertado no acaba en salto de línea
+            for (int i = chunkIndex(end); i > first; i--) {
+                if (!isParagraphStart(chunkStart(i)))
+                    chunks.remove(i);
+            }
+            first = chunkIndex(offset);
+            int last = chunkIndex(end);
+            for (int i = first; i <= last; i++)
+                chunks.get(i).bloom = null;
+            // Un pegado grande se reparte en bloques nuevos
+            for (int i = last; i >= first; i--) {
+                int from = chunkStart(i);
+                int to = chunkEnd(i);
+                if (to - from > 2 * TARGET_CHARS) {
+                    chunks.remove(i);
+                    split(from, to, i);
+                }
+            }
+        } catch (BadLocationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        int offset = e.getOffset();
+        try {
+            // Los bloques que quedaban dentro de lo borrado se han juntado en "offset"
+            int i = chunkIndex(offset);
+            while (i > 0 && chunkStart(i) == offset && (chunkStart(i - 1) == offset || !isParagraphStart(offset)))
+                chunks.remove(i--);
+            chunks.get(i).bloom = null;
+        } catch (BadLocationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        // Solo cambian atributos: el texto indexado es el mismo
+    }
+
+    private boolean isParagraphStart(int offset) throws BadLocationException {
+        if (offset == 0)
+            return true;
+        doc.getText(offset - 1, 1, segment);
+        return segment.array[segment.offset] == '\n';
+    }
+
+    // --- Filtros de Bloom de trigramas ---
+
+    // Claves de los trigramas de la consulta (vacío si es demasiado corta para filtrar)
+    private static long[] trigrams(String text) {
+        if (text.length() < 3)
+            return new long[0];
+        long[] grams = new long[text.length() - 2];
+        for (int i = 0; i < grams.length; i++)
+            grams[i] = key(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2));
+        return grams;
+    }
+
+    private static long key(char a, char b, char c) {
+        long k = ((long) a << 32 | (long) b << 16 | c) * 0x9E3779B97F4A7C15L;
+        return k ^ (k >>> 29);
+    }
+
+    private boolean mayContain(int i, long[] grams) throws BadLocationException {
+        if (grams.length == 0)
+            return true;
+        Chunk chunk = chunks.get(i);
+        long[] bloom = chunk.bloom;
+        if (bloom == null) {
+            bloom = buildBloom(chunkStart(i), textEnd(i));
+            chunk.bloom = bloom;
+        }
+        int mask = bloom.length * 64 - 1;
+        for (long k : grams) {
+            int b1 = (int) k & mask;
+            int b2 = (int) (k >>> 32) & mask;
+            if ((bloom[b1 >>> 6] & 1L << b1) == 0 || (bloom[b2 >>> 6] & 1L << b2) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    // Un bit por carácter del bloque (potencia de dos), dos bits por trigrama
+    private long[] buildBloom(int start, int end) throws BadLocationException {
+        int bits = Math.max(512, Integer.highestOneBit(Math.max(1, end - start - 1)) << 1);
+        long[] bloom = new long[bits / 64];
+        int mask = bits - 1;
+        Segment s = new Segment();
+        s.setPartialReturn(true);
+        char a = 0;
+        char b = 0;
+        int seen = 0;
+        int pos = start;
+        while (pos < end) {
+            doc.getText(pos, end - pos, s);
+            char[] array = s.array;
+            int stop = s.offset + s.count;
+            for (int i = s.offset; i < stop; i++) {
+                char c = array[i];
+                if (++seen >= 3) {
+                    long k = key(a, b, c);
+                    int b1 = (int) k & mask;
+                    int b2 = (int) (k >>> 32) & mask;
+                    bloom[b1 >>> 6] |= 1L << b1;
+                    bloom[b2 >>> 6] |= 1L << b2;
+                }
+                a = b;
+                b = c;
+            }
+            pos += s.count;
+        }
+        return bloom;
+    }
+
+    // Indexa todos los bloques pendientes, soltando el cerrojo cada BATCH bloques para
+    // no frenar la edición
+    private void buildAll() {
+        int[] next = {0};
+        boolean[] done = {false};
+        while (!done[0]) {
+            doc.render(() -> {
+                try {
+                    for (int k = 0; k < BATCH; k++) {
+                        if (next[0] >= chunks.size()) {
+                            done[0] = true;
+                            return;
+                        }
+                        Chunk chunk = chunks.get(next[0]);
+                        if (chunk.bloom == null)
+                            chunk.bloom = buildBloom(chunkStart(next[0]), textEnd(next[0]));
+                        next[0]++;
+                    }
+                } catch (BadLocationException e) {
+                    done[0] = true;
+                }
+            });
+        }
+    }
+}
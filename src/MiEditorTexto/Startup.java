@@ -0,0 +1,108 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.WindowEvent;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+// ======================================================================================
+// Arranque: lo que se deja para después del primer pintado y cuánto se tarda
+// ======================================================================================
+
+// La ventana se enseña con lo justo (componentes, atajos de teclado y menús vacíos que se
+// llenan al abrirlos); lo demás se prepara en el hilo "Precarga" en cuanto se ha pintado.
+// Se apuntan dos momentos, contados desde que arrancó el proceso:
+//  - primer pintado: la ventana ya se ve
+//  - acepta entrada: la primera pestaña está abierta y el texto tiene el foco
+// Con -Deditor.arranque.medir=true se imprimen (una línea REPORT) cuando además ha
+// terminado la precarga, y la ventana se cierra sola: así lo usan StartupBenchmark y la
+// ejecución de entrenamiento del archivo CDS (ver scripts/appcds.sh).
+// Solo desde el EDT, salvo la precarga.
+final class Startup {
+
+    static final boolean MEASURE = Boolean.getBoolean("editor.arranque.medir");
+    // Principio de la línea con los tiempos (la busca StartupBenchmark)
+    static final String REPORT = "ARRANQUE";
+
+    private static final CountDownLatch preloaded = new CountDownLatch(1);
+    private static long firstPaint; // System.currentTimeMillis(), 0 = todavía no
+    private static long ready;
+
+    private Startup() {
+    }
+
+    // true solo la primera vez: quien pinta arranca entonces la precarga
+    static boolean painted() {
+        if (firstPaint != 0)
+            return false;
+        firstPaint = System.currentTimeMillis();
+        return true;
+    }
+
+    // Las tareas se ejecutan en orden en un hilo aparte; si alguna falla se sigue con
+    // las demás (lo que no se precarga se carga igual cuando haga falta)
+    static void preload(Runnable... tasks) {
+        Thread preloader = new Thread(() -> {
+            for (Runnable task : tasks) {
+                try {
+                    task.run();
+                } catch (RuntimeException | LinkageError e) {
+                    System.err.println("Precarga: " + e);
+                }
+            }
+            preloaded.countDown();
+        }, "Precarga");
+        preloader.setDaemon(true);
+        preloader.setPriority(Thread.MIN_PRIORITY);
+        preloader.start();
+    }
+
+    // El editor acepta teclas en cuanto "input" tiene el foco
+    static void readyWhenFocused(JComponent input, Window window) {
+        input.requestFocusInWindow();
+        if (input.isFocusOwner()) {
+            ready(window);
+            return;
+        }
+        input.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                input.removeFocusListener(this);
+                ready(window);
+            }
+        });
+    }
+
+    private static void ready(Window window) {
+        if (ready != 0)
+            return;
+        ready = System.currentTimeMillis();
+        if (!MEASURE)
+            return;
+        long paint = firstPaint != 0 ? firstPaint : ready;
+        Thread reporter = new Thread(() -> {
+            try {
+                preloaded.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long started = processStart();
+            System.out.printf(Locale.ROOT, "%s pintado_ms=%d entrada_ms=%d%n", REPORT, paint - started, ready - started);
+            // Como si la cerrara el usuario: los diarios se cierran y no quedan recuperaciones
+            SwingUtilities.invokeLater(() -> window.dispatchEvent(new WindowEvent(window, WindowEvent.WINDOW_CLOSING)));
+        }, "Arranque-medida");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    // Cuándo arrancó el proceso (antes que la JVM ejecutara nada nuestro)
+    private static long processStart() {
+        return ProcessHandle.current().info().startInstant()
+                .map(instant -> instant.toEpochMilli())
+                .orElseGet(() -> ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+}
@@ -0,0 +1,656 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// ======================================================================================
+// Análisis del texto
+// ======================================================================================
+
+// Frecuencia de palabras, oraciones y párrafos, legibilidad (Fernández Huerta y la escala
+// INFLESZ de Szigriszt-Pazos, pensadas para español) y frases de tres palabras que se
+// repiten. Como en SearchIndex, el documento se divide en bloques de párrafos completos
+// (unos TARGET_CHARS caracteres) delimitados con Positions y cada bloque guarda su
+// resultado, así que una edición solo invalida los bloques que toca. Los pendientes se
+// analizan en paralelo en un ForkJoinPool (cada tarea copia su texto con el cerrojo de
+// lectura y lo analiza sin él) y los totales se corrigen restando lo que tenían los
+// bloques invalidados y sumando lo nuevo, sin volver a mirar los demás. El resumen se
+// entrega en el EDT al Listener, a lo sumo una vez cada DELAY_MS mientras se escribe;
+// la primera pasada de un documento grande lo va entregando según avanza.
+class TextAnalytics implements DocumentListener {
+
+    // Palabras y frases que se enseñan
+    static final int TOP = 15;
+
+    private static final int TARGET_CHARS = 32 << 10;
+    private static final int BATCH = 64; // Bloques por tanda del ForkJoinPool
+    private static final long DELAY_MS = 150;
+    private static final long PROGRESS_NANOS = 250_000_000;
+    // Hasta este tamaño se cuentan todas las frases; por encima, solo una de cada
+    // "sampling" (siempre las mismas, así que sus cuentas son exactas). Se vuelve a
+    // elegir cuando el documento crece por encima de lo previsto o se queda en menos de
+    // la cuarta parte.
+    private static final int PHRASE_BUDGET = 4 << 20;
+
+    // Artículos, preposiciones, pronombres... no salen entre las palabras más usadas
+    private static final Set<String> STOPWORDS = Set.of(
+            "el", "la", "los", "las", "un", "una", "unos", "unas", "lo", "al", "del", "de", "en", "que",
+            "se", "su", "sus", "por", "para", "con", "sin", "sobre", "entre", "como", "más", "mas", "pero",
+            "es", "son", "fue", "ser", "era", "ha", "han", "hay", "no", "sí", "si", "me", "te", "le", "les",
+            "nos", "mi", "mis", "tu", "tus", "ya", "muy", "este", "esta", "estos", "estas", "ese", "esa",
+            "eso", "esto", "cual", "quien", "donde", "cuando", "porque", "también", "hasta", "desde", "todo",
+            "todos", "otro", "otra", "ni", "yo", "él", "ella", "ellos", "ellas");
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("Analisis-" + t.getPoolIndex());
+                return t;
+            }, null, false);
+    // Las pasadas (de todos los documentos) van de una en una en este hilo
+    private static final ScheduledExecutorService DRIVER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Analisis");
+        t.setDaemon(true);
+        return t;
+    });
+
+    interface Listener {
+        void analyzed(Summary summary);
+    }
+
+    // Una palabra o frase y sus apariciones
+    static final class Count {
+        final String text;
+        final int count;
+
+        Count(String text, int count) {
+            this.text = text;
+            this.count = count;
+        }
+    }
+
+    // Resultado de una pasada (inmutable)
+    static final class Summary {
+        final long words;
+        final long sentences;
+        final long paragraphs;
+        final long syllables;
+        final List<Count> topWords;
+        final List<Count> repeatedPhrases;
+        final int phraseSampling; // 1 = se cuentan todas las frases
+        final int analyzed; // Bloques analizados de "blocks"
+        final int blocks;
+
+        Summary(Totals totals, int phraseSampling, int analyzed, int blocks) {
+            words = totals.words;
+            sentences = totals.sentences;
+            paragraphs = totals.paragraphs;
+            syllables = totals.syllables;
+            topWords = top(totals.wordCounts, 1, false);
+            repeatedPhrases = top(totals.phraseCounts, 2, true);
+            this.phraseSampling = phraseSampling;
+            this.analyzed = analyzed;
+            this.blocks = blocks;
+        }
+
+        boolean complete() {
+            return analyzed == blocks;
+        }
+
+        double wordsPerSentence() {
+            return sentences == 0 ? 0 : (double) words / sentences;
+        }
+
+        double syllablesPerWord() {
+            return words == 0 ? 0 : (double) syllables / words;
+        }
+
+        // Fernández Huerta: 206,84 - 0,60 P - 1,02 F (P sílabas y F oraciones cada 100 palabras)
+        double fernandezHuerta() {
+            return words == 0 ? 0 : 206.84 - 60.0 * syllables / words - 102.0 * sentences / words;
+        }
+
+        // Szigriszt-Pazos: 206,835 - 62,3 sílabas/palabra - palabras/oración
+        double szigriszt() {
+            return words == 0 ? 0 : 206.835 - 62.3 * syllablesPerWord() - wordsPerSentence();
+        }
+
+        // Escala INFLESZ sobre el índice de Szigriszt-Pazos
+        String inflesz() {
+            double s = szigriszt();
+            if (s < 40)
+                return "muy difícil";
+            if (s < 55)
+                return "algo difícil";
+            if (s < 65)
+                return "normal";
+            if (s < 80)
+                return "bastante fácil";
+            return "muy fácil";
+        }
+    }
+
+    private final EditorDocument doc;
+    // Solo lo cambia el hilo "Analisis", entre tanda y tanda
+    private int phraseSampling;
+    // Palabras y frases una sola vez en memoria (los bloques guardan referencias); se
+    // olvidan cuando su cuenta total vuelve a cero
+    private final Map<String, String> dictionary = new ConcurrentHashMap<>();
+    // Solo se modifican con el cerrojo de escritura del documento (desde el listener) y
+    // solo se leen con el de lectura
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final List<Stats> retired = new ArrayList<>(); // Resultados que hay que restar
+    private final Segment segment = new Segment();
+    // Solo del hilo "Analisis"
+    private final Totals totals = new Totals();
+    private int analyzed;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile Listener listener;
+    private volatile Summary last;
+
+    private static final class Chunk {
+        final Position start;
+        Stats stats; // null = sin analizar o modificado desde entonces
+        int version; // Cambia con cada invalidación: lo que se analizó antes no vale
+        boolean removed;
+
+        Chunk(Position start) {
+            this.start = start;
+        }
+    }
+
+    TextAnalytics(EditorDocument doc) {
+        this.doc = doc;
+        phraseSampling = sampling(doc.getLength());
+        doc.render(() -> {
+            try {
+                split(0, doc.getLength() + 1, 0);
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        doc.addDocumentListener(this);
+    }
+
+    // Quien recibe los resúmenes (null = nadie: se deja de analizar hasta que vuelva a
+    // haberlo). Llamar desde el EDT.
+    void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener == null)
+            return;
+        Summary summary = last;
+        if (summary != null)
+            listener.analyzed(summary);
+        schedule(0);
+    }
+
+    private static int sampling(int length) {
+        return Integer.highestOneBit(Math.max(1, length / PHRASE_BUDGET) * 2 - 1);
+    }
+
+    private void schedule(long delayMs) {
+        if (listener != null && scheduled.compareAndSet(false, true))
+            DRIVER.schedule(this::pass, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // --- Pasada (hilo "Analisis") ---
+
+    private void pass() {
+        scheduled.set(false); // Lo que se edite desde aquí pide otra pasada
+        Listener l = listener;
+        if (l == null)
+            return;
+        List<Job> jobs = new ArrayList<>();
+        int[] blocks = new int[1];
+        doc.render(() -> {
+            drainRetired();
+            resample();
+            for (Chunk chunk : chunks) {
+                if (chunk.stats == null)
+                    jobs.add(new Job(chunk));
+            }
+            blocks[0] = chunks.size();
+        });
+        long lastPublished = System.nanoTime();
+        for (int from = 0; from < jobs.size(); from += BATCH) {
+            List<Job> batch = jobs.subList(from, Math.min(jobs.size(), from + BATCH));
+            long t = Diagnostics.start();
+            POOL.invoke(new Analyze(batch, 0, batch.size()));
+            Diagnostics.end("Analizar texto", t);
+            doc.render(() -> {
+                drainRetired();
+                for (Job job : batch) {
+                    Chunk chunk = job.chunk;
+                    if (job.stats != null && !chunk.removed && chunk.version == job.version && chunk.stats == null) {
+                        chunk.stats = job.stats;
+                        totals.add(job.stats, 1);
+                        analyzed++;
+                    }
+                }
+                blocks[0] = chunks.size();
+            });
+            if (System.nanoTime() - lastPublished >= PROGRESS_NANOS && from + BATCH < jobs.size()) {
+                publish(l, blocks[0]);
+                lastPublished = System.nanoTime();
+            }
+            if (listener != l)
+                return; // Ya no se enseña: se sigue cuando vuelva a hacer falta
+        }
+        publish(l, blocks[0]);
+    }
+
+    private void drainRetired() {
+        for (Stats stats : retired) {
+            totals.add(stats, -1);
+            analyzed--;
+        }
+        retired.clear();
+    }
+
+    // Con otro muestreo las frases de los bloques ya analizados no casan con las de los
+    // nuevos: se empieza de cero (con el cerrojo de lectura, antes de repartir la pasada)
+    private void resample() {
+        int sampling = sampling(doc.getLength());
+        if (sampling <= phraseSampling && sampling * 4 > phraseSampling)
+            return;
+        phraseSampling = sampling;
+        totals.clear();
+        dictionary.clear();
+        analyzed = 0;
+        for (Chunk chunk : chunks)
+            chunk.stats = null;
+    }
+
+    private void publish(Listener l, int blocks) {
+        Summary summary = new Summary(totals, phraseSampling, Math.min(analyzed, blocks), blocks);
+        last = summary;
+        SwingUtilities.invokeLater(() -> {
+            if (listener == l)
+                l.analyzed(summary);
+        });
+    }
+
+    // Lo que hay que analizar de un bloque y el resultado
+    private static final class Job {
+        final Chunk chunk;
+        final int version;
+        Stats stats;
+
+        Job(Chunk chunk) {
+            this.chunk = chunk;
+            this.version = chunk.version;
+        }
+    }
+
+    // Divide la tanda en mitades hasta llegar a un bloque
+    private final class Analyze extends RecursiveAction {
+        private final List<Job> jobs;
+        private final int from;
+        private final int to;
+
+        Analyze(List<Job> jobs, int from, int to) {
+            this.jobs = jobs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Analyze(jobs, from, mid), new Analyze(jobs, mid, to));
+                return;
+            }
+            Job job = jobs.get(from);
+            char[][] text = new char[1][];
+            Segment s = new Segment();
+            doc.render(() -> {
+                Chunk chunk = job.chunk;
+                if (chunk.removed || chunk.version != job.version)
+                    return;
+                try {
+                    int i = chunkIndex(chunk.start.getOffset());
+                    int start = chunkStart(i);
+                    doc.getText(start, textEnd(i) - start, s);
+                    text[0] = Arrays.copyOfRange(s.array, s.offset, s.offset + s.count);
+                } catch (BadLocationException ignored) {
+                    // Se vuelve a intentar en la próxima pasada
+                }
+            });
+            if (text[0] != null)
+                job.stats = analyze(text[0]);
+        }
+    }
+
+    // --- Análisis de un bloque ---
+
+    // Lo que aporta un bloque a los totales
+    private static final class Stats {
+        int words;
+        int sentences;
+        int paragraphs;
+        int syllables;
+        String[] wordKeys; // Palabras (sin las de STOPWORDS) y sus cuentas
+        int[] wordCounts;
+        String[] phrases; // Frases de tres palabras y sus cuentas
+        int[] phraseCounts;
+    }
+
+    private Stats analyze(char[] text) {
+        Stats stats = new Stats();
+        Map<String, int[]> words = new HashMap<>();
+        Map<String, int[]> phrases = new HashMap<>();
+        StringBuilder word = new StringBuilder();
+        String w1 = null; // Las dos palabras anteriores de la misma frase
+        String w2 = null;
+        boolean sentenceOpen = false;
+        boolean paragraphOpen = false;
+        for (int i = 0; i <= text.length; i++) {
+            char c = i < text.length ? text[i] : '\n';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+                continue;
+            }
+            if (word.length() > 0) {
+                String w = word.toString();
+                word.setLength(0);
+                stats.words++;
+                stats.syllables += syllables(w);
+                sentenceOpen = true;
+                paragraphOpen = true;
+                // Al diccionario solo va lo que se cuenta (y así se puede olvidar)
+                if (w.length() > 2 && !STOPWORDS.contains(w) && Character.isLetter(w.charAt(0)))
+                    words.computeIfAbsent(canonical(w), k -> new int[1])[0]++;
+                if (w1 != null && sampled(w1, w2, w))
+                    phrases.computeIfAbsent(canonical(w1 + " " + w2 + " " + w), k -> new int[1])[0]++;
+                w1 = w2;
+                w2 = w;
+            }
+            boolean end = c == '!' || c == '?' || c == '…'
+                    || c == '.' && (i + 1 >= text.length || !Character.isLetterOrDigit(text[i + 1])); // No en "3.5"
+            if (end || c == '\n') {
+                if (sentenceOpen)
+                    stats.sentences++;
+                sentenceOpen = false;
+                if (c == '\n' && paragraphOpen)
+                    stats.paragraphs++;
+                if (c == '\n')
+                    paragraphOpen = false;
+            }
+            // Las frases no cruzan signos de puntuación
+            if (!Character.isWhitespace(c) && c != '\'' && c != '-' || c == '\n') {
+                w1 = null;
+                w2 = null;
+            }
+        }
+        stats.wordKeys = words.keySet().toArray(new String[0]);
+        stats.wordCounts = counts(words, stats.wordKeys);
+        stats.phrases = phrases.keySet().toArray(new String[0]);
+        stats.phraseCounts = counts(phrases, stats.phrases);
+        return stats;
+    }
+
+    private static int[] counts(Map<String, int[]> map, String[] keys) {
+        int[] counts = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            counts[i] = map.get(keys[i])[0];
+        return counts;
+    }
+
+    private boolean sampled(String w1, String w2, String w3) {
+        if (phraseSampling == 1)
+            return true;
+        long h = ((long) w1.hashCode() * 31 + w2.hashCode()) * 31 + w3.hashCode();
+        h *= 0x9E3779B97F4A7C15L;
+        return ((h ^ h >>> 32) & (phraseSampling - 1)) == 0;
+    }
+
+    private String canonical(String s) {
+        String known = dictionary.putIfAbsent(s, s);
+        return known != null ? known : s;
+    }
+
+    // Sílabas de una palabra en español: grupos de vocales, separando dos vocales fuertes
+    // seguidas (hiato). Aproximado, pero basta para los índices de legibilidad.
+    static int syllables(String word) {
+        int count = 0;
+        char previous = 0;
+        boolean inVowels = false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (isVowel(c)) {
+                if (!inVowels || isStrong(previous) && isStrong(c))
+                    count++;
+                inVowels = true;
+            } else {
+                inVowels = false;
+            }
+            previous = c;
+        }
+        return Math.max(1, count);
+    }
+
+    private static boolean isVowel(char c) {
+        return "aeiouáéíóúü".indexOf(c) >= 0;
+    }
+
+    // Las vocales acentuadas í y ú rompen el diptongo como si fueran fuertes
+    private static boolean isStrong(char c) {
+        return "aeoáéóíú".indexOf(c) >= 0;
+    }
+
+    // --- Totales (hilo "Analisis") ---
+
+    private final class Totals {
+        long words;
+        long sentences;
+        long paragraphs;
+        long syllables;
+        final Map<String, int[]> wordCounts = new HashMap<>();
+        final Map<String, int[]> phraseCounts = new HashMap<>();
+
+        void add(Stats stats, int sign) {
+            words += sign * stats.words;
+            sentences += sign * stats.sentences;
+            paragraphs += sign * stats.paragraphs;
+            syllables += sign * stats.syllables;
+            merge(wordCounts, stats.wordKeys, stats.wordCounts, sign);
+            merge(phraseCounts, stats.phrases, stats.phraseCounts, sign);
+        }
+
+        void clear() {
+            words = 0;
+            sentences = 0;
+            paragraphs = 0;
+            syllables = 0;
+            wordCounts.clear();
+            phraseCounts.clear();
+        }
+
+        private void merge(Map<String, int[]> totals, String[] keys, int[] counts, int sign) {
+            for (int i = 0; i < keys.length; i++) {
+                int[] total = totals.computeIfAbsent(keys[i], k -> new int[1]);
+                total[0] += sign * counts[i];
+                if (total[0] == 0) {
+                    totals.remove(keys[i]);
+                    dictionary.remove(keys[i]);
+                }
+            }
+        }
+    }
+
+    // Las TOP de más apariciones (al menos "min"); las frases hechas solo de palabras
+    // vacías ("de la que") no cuentan
+    private static List<Count> top(Map<String, int[]> counts, int min, boolean phrases) {
+        Comparator<Count> order = Comparator.<Count>comparingInt(c -> c.count).thenComparing(c -> c.text,
+                Comparator.reverseOrder());
+        PriorityQueue<Count> best = new PriorityQueue<>(TOP + 1, order);
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            int count = entry.getValue()[0];
+            if (count < min || best.size() == TOP && count < best.peek().count)
+                continue;
+            if (phrases && onlyStopwords(entry.getKey()))
+                continue;
+            best.add(new Count(entry.getKey(), count));
+            if (best.size() > TOP)
+                best.poll();
+        }
+        List<Count> list = new ArrayList<>(best);
+        list.sort(order.reversed());
+        return Collections.unmodifiableList(list);
+    }
+
+    private static boolean onlyStopwords(String phrase) {
+        for (String w : phrase.split(" ")) {
+            if (!STOPWORDS.contains(w) && Character.isLetter(w.charAt(0)))
+                return false;
+        }
+        return true;
+    }
+
+    // --- Bloques ---
+
+    private int chunkStart(int i) {
+        return chunks.get(i).start.getOffset();
+    }
+
+    private int chunkEnd(int i) {
+        return i + 1 < chunks.size() ? chunkStart(i + 1) : doc.getLength() + 1;
+    }
+
+    // Como chunkEnd pero sin el salto de línea implícito del final del documento
+    private int textEnd(int i) {
+        return Math.min(chunkEnd(i), doc.getLength());
+    }
+
+    // Último bloque que empieza en "offset" o antes
+    private int chunkIndex(int offset) {
+        int lo = 0;
+        int hi = chunks.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (chunkStart(mid) <= offset)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return lo;
+    }
+
+    // Crea bloques de párrafos completos que cubren [from, to), insertándolos en "index"
+    private void split(int from, int to, int index) throws BadLocationException {
+        Element root = doc.getDefaultRootElement();
+        int p = root.getElementIndex(from);
+        int start = from;
+        List<Chunk> created = new ArrayList<>();
+        created.add(new Chunk(doc.createPosition(start)));
+        for (; p < root.getElementCount(); p++) {
+            int end = root.getElement(p).getEndOffset();
+            if (end >= to)
+                break;
+            if (end - start >= TARGET_CHARS) {
+                start = end;
+                created.add(new Chunk(doc.createPosition(start)));
+            }
+        }
+        chunks.addAll(index, created);
+    }
+
+    // Lo analizado del bloque deja de valer (y hay que restarlo de los totales)
+    private void invalidate(Chunk chunk) {
+        if (chunk.stats != null) {
+            retired.add(chunk.stats);
+            chunk.stats = null;
+        }
+        chunk.version++;
+    }
+
+    private void remove(int i) {
+        Chunk chunk = chunks.remove(i);
+        invalidate(chunk);
+        chunk.removed = true;
+    }
+
+    // --- DocumentListener (se llama con el cerrojo de escritura) ---
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        int offset = e.getOffset();
+        int end = offset + e.getLength();
+        int first = chunkIndex(offset);
+        try {
+            // Los bloques que ahora empiezan dentro de lo insertado dejan de estar en un
+            // principio de párrafo si lo insertado no acaba en salto de línea
+            for (int i = chunkIndex(end); i > first; i--) {
+                if (!isParagraphStart(chunkStart(i)))
+                    remove(i);
+            }
+            first = chunkIndex(offset);
+            int last = chunkIndex(end);
+            for (int i = first; i <= last; i++)
+                invalidate(chunks.get(i));
+            // Un pegado grande se reparte en bloques nuevos
+            for (int i = last; i >= first; i--) {
+                int from = chunkStart(i);
+                int to = chunkEnd(i);
+                if (to - from > 2 * TARGET_CHARS) {
+                    remove(i);
+                    split(from, to, i);
+                }
+            }
+        } catch (BadLocationException ex) {
+            throw new IllegalStateException(ex);
+        }
+        schedule(DELAY_MS);
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        int offset = e.getOffset();
+        try {
+            // Los bloques que quedaban dentro de lo borrado se han juntado en "offset"
+            int i = chunkIndex(offset);
+            while (i > 0 && chunkStart(i) == offset && (chunkStart(i - 1) == offset || !isParagraphStart(offset)))
+                remove(i--);
+            invalidate(chunks.get(i));
+        } catch (BadLocationException ex) {
+            throw new IllegalStateException(ex);
+        }
+        schedule(DELAY_MS);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        // Solo cambian atributos: el texto analizado es el mismo
+    }
+
+    private boolean isParagraphStart(int offset) throws BadLocationException {
+        if (offset == 0)
+            return true;
+        doc.getText(offset - 1, 1, segment);
+        return segment.array[segment.offset] == '\n';
+    }
+}
@@ -0,0 +1,121 @@
+package MiEditorTexto;
+
+import javax.swing.text.Document;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// ======================================================================================
+// Codificación y finales de línea de los ficheros de texto
+// ======================================================================================
+
+// Cómo estaba escrito un fichero de texto (charset, BOM y final de línea), para guardarlo
+// igual que se leyó: viaja con el documento como propiedad (PROPERTY). candidates() elige
+// los charsets a probar mirando los primeros bytes: el del BOM si lo hay, UTF-8 si la
+// muestra es UTF-8 válido y si no el heredado. ISO-8859-1 queda siempre como último
+// recurso: cualquier secuencia de bytes es válida en él y vuelve a salir igual.
+final class TextFormat {
+
+    static final String PROPERTY = "formatoTexto";
+    // Lo que se usaba para todo antes: el charset de la plataforma y "\n"
+    static final TextFormat DEFAULT = new TextFormat(Charset.defaultCharset(), false, "\n");
+    // Bytes del principio del fichero que se examinan
+    static final int SAMPLE_SIZE = 64 << 10;
+
+    private static final char BOM = '\uFEFF';
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    final Charset charset;
+    final boolean bom;
+    final String lineSeparator;
+
+    TextFormat(Charset charset, boolean bom, String lineSeparator) {
+        this.charset = charset;
+        this.bom = bom;
+        this.lineSeparator = lineSeparator;
+    }
+
+    static TextFormat of(Document doc) {
+        Object format = doc.getProperty(PROPERTY);
+        return format instanceof TextFormat ? (TextFormat) format : DEFAULT;
+    }
+
+    TextFormat withLineSeparator(String lineSeparator) {
+        return new TextFormat(charset, bom, lineSeparator);
+    }
+
+    byte[] bomBytes() {
+        return bom ? String.valueOf(BOM).getBytes(charset) : new byte[0];
+    }
+
+    // Para la barra de estado
+    String label() {
+        String lines = "\r\n".equals(lineSeparator) ? "CRLF" : "\r".equals(lineSeparator) ? "CR" : "LF";
+        return charset.name() + (bom ? " (BOM)" : "") + " " + lines;
+    }
+
+    // Formatos a probar, en orden, según los primeros bytes del fichero ("complete": la
+    // muestra es el fichero entero, así que no puede acabar a mitad de un carácter)
+    static List<TextFormat> candidates(ByteBuffer sample, boolean complete) {
+        List<TextFormat> formats = new ArrayList<>();
+        Charset bomCharset = bomCharset(sample);
+        if (bomCharset != null) {
+            formats.add(new TextFormat(bomCharset, true, "\n"));
+        } else {
+            if (decodes(StandardCharsets.UTF_8, sample, complete))
+                formats.add(new TextFormat(StandardCharsets.UTF_8, false, "\n"));
+            Charset legacy = legacyCharset();
+            if (decodes(legacy, sample, complete))
+                formats.add(new TextFormat(legacy, false, "\n"));
+        }
+        formats.add(new TextFormat(StandardCharsets.ISO_8859_1, false, "\n"));
+        return formats;
+    }
+
+    // El de la plataforma si es de 8 bits; si es UTF-8 o ASCII, windows-1252 (que incluye
+    // Latin-1)
+    private static Charset legacyCharset() {
+        Charset platform = Charset.defaultCharset();
+        if (platform.equals(StandardCharsets.UTF_8) || platform.equals(StandardCharsets.US_ASCII))
+            return WINDOWS_1252;
+        return platform;
+    }
+
+    private static Charset bomCharset(ByteBuffer sample) {
+        int n = sample.remaining();
+        int p = sample.position();
+        int b0 = n > 0 ? sample.get(p) & 0xFF : -1;
+        int b1 = n > 1 ? sample.get(p + 1) & 0xFF : -1;
+        int b2 = n > 2 ? sample.get(p + 2) & 0xFF : -1;
+        int b3 = n > 3 ? sample.get(p + 3) & 0xFF : -1;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF)
+            return StandardCharsets.UTF_8;
+        if (b0 == 0xFF && b1 == 0xFE)
+            return b2 == 0 && b3 == 0 ? Charset.forName("UTF-32LE") : StandardCharsets.UTF_16LE;
+        if (b0 == 0xFE && b1 == 0xFF)
+            return StandardCharsets.UTF_16BE;
+        if (b0 == 0 && b1 == 0 && b2 == 0xFE && b3 == 0xFF)
+            return Charset.forName("UTF-32BE");
+        return null;
+    }
+
+    private static boolean decodes(Charset charset, ByteBuffer sample, boolean complete) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = sample.duplicate();
+        CharBuffer out = CharBuffer.allocate(4096);
+        while (true) {
+            if (decoder.decode(in, out, complete).isError())
+                return false;
+            if (!in.hasRemaining() || out.hasRemaining())
+                return true; // Lo que queda a medias al final de una muestra no cuenta
+            out.clear();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package MiEditorTexto;
+
+import javax.swing.*;
+import javax.swing.text.StyledDocument;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// ======================================================================================
+// Pestañas abiertas y memoria que ocupan
+// ======================================================================================
+
+// Las pestañas y el presupuesto de memoria. Cuando los
+// documentos cargados pasan del presupuesto, los usados hace más tiempo (nunca el activo
+// ni los que siguen su fichero) se escriben como .etx en un directorio temporal y se
+// sueltan; al volver a ellos se leen de ahí, que es más rápido que decodificar otra vez
+// el original y conserva el formato y los cambios sin guardar. Lo que se pierde es su
+// historial de deshacer.
+// Solo desde el EDT (los volcados van en IoScheduler y terminan en el EDT).
+class Workspace {
+
+    // Presupuesto en MB: -Deditor.pestanas.mb=...; por defecto, un cuarto del heap
+    static final long DEFAULT_BUDGET = Long.getLong("editor.pestanas.mb",
+            Runtime.getRuntime().maxMemory() / 4 >> 20) << 20;
+
+    private final List<EditorTab> tabs = new ArrayList<>();
+    private final long budget;
+    private EditorTab active;
+    private long clock; // Para lastUsed
+    private Path spillDirectory; // Se crea con el primer volcado
+
+    Workspace(long budget) {
+        this.budget = budget;
+    }
+
+    List<EditorTab> tabs() {
+        return Collections.unmodifiableList(tabs);
+    }
+
+    EditorTab getActive() {
+        return active;
+    }
+
+    void add(EditorTab tab) {
+        tabs.add(tab);
+    }
+
+    // Al cerrar la pestaña (su diario lo cierra quien la cierra)
+    void remove(EditorTab tab) {
+        tabs.remove(tab);
+        if (active == tab)
+            active = null;
+        if (tab.loader != null)
+            tab.loader.cancel(true);
+        if (tab.spill != null)
+            tab.spill.cancel(true);
+        if (tab.follower != null) {
+            tab.follower.stop();
+            tab.follower = null;
+        }
+        deleteSnapshot(tab);
+        tab.setDocument(null);
+    }
+
+    // Primer número de "Sin título" libre
+    int nextUntitled() {
+        for (int n = 1; ; n++) {
+            boolean used = false;
+            for (EditorTab tab : tabs)
+                used |= tab.file == null && tab.untitled == n;
+            if (!used)
+                return n;
+        }
+    }
+
+    void activate(EditorTab tab) {
+        active = tab;
+        tab.lastUsed = ++clock;
+        trim();
+    }
+
+    // Vuelca las pestañas usadas hace más tiempo hasta volver al presupuesto (también
+    // después de cargar un documento, que es cuando crece)
+    void trim() {
+        long total = 0;
+        for (EditorTab tab : tabs) {
+            if (tab.spill == null)
+                total += tab.estimatedBytes();
+        }
+        while (total > budget) {
+            EditorTab oldest = null;
+            for (EditorTab tab : tabs) {
+                if (tab != active && tab.doc != null && tab.spill == null && tab.loader == null
+                        && tab.follower == null && (oldest == null || tab.lastUsed < oldest.lastUsed))
+                    oldest = tab;
+            }
+            if (oldest == null)
+                return; // Solo queda el activo (o lo que ya se está volcando)
+            if (!spill(oldest))
+                return;
+            total -= oldest.estimatedBytes();
+        }
+    }
+
+    private boolean spill(EditorTab tab) {
+        EditorDocument doc = tab.doc;
+        int version = doc.getVersion(); // El .etx lleva el formato: también cuenta
+        SwingWorker<Path, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Path doInBackground() throws Exception {
+                long started = System.nanoTime();
+                Path file = Files.createTempFile(spillDirectory, "pestana", "." + RichTextFile.EXTENSION);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    write(doc, channel);
+                    Diagnostics.fileIo(true, file.toFile(), channel.size(), System.nanoTime() - started);
+                } catch (Exception ex) {
+                    Files.deleteIfExists(file);
+                    throw ex;
+                }
+                return file;
+            }
+
+            @Override
+            protected void done() {
+                if (tab.spill == this)
+                    tab.spill = null;
+                Path file;
+                try {
+                    file = get();
+                } catch (Exception ex) {
+                    // Se queda en memoria; se reintentará en el próximo trim()
+                    if (!isCancelled() && !(ex.getCause() instanceof ChunkReader.ChangedException))
+                        System.err.println("Pestañas: no se pudo volcar " + tab.title() + ": " + ex);
+                    return;
+                }
+                // Si mientras tanto volvió a ser la activa (o cambió), se queda en memoria
+                if (tab.doc != doc || tab == active || doc.getVersion() != version || !tabs.contains(tab)) {
+                    deleteQuietly(file);
+                    return;
+                }
+                released(tab, file);
+            }
+        };
+        try {
+            if (spillDirectory == null)
+                spillDirectory = Files.createTempDirectory("editortexto-pestanas");
+        } catch (IOException ex) {
+            System.err.println("Pestañas: no se pudo crear el directorio temporal: " + ex);
+            return false;
+        }
+        tab.spill = worker;
+        // Sin carril: cada volcado va a su propio fichero temporal
+        IoScheduler.SHARED.schedule("Volcar " + tab.title(), worker);
+        return true;
+    }
+
+    // Como DocumentSaver, soltando el cerrojo entre bloque y bloque. Si se edita a mitad
+    // no se insiste: la pestaña ya no está para volcarla (ver done())
+    private static void write(StyledDocument doc, FileChannel channel) throws Exception {
+        RichTextFile.write(doc, new ChunkReader(doc), channel, written -> {
+        });
+    }
+
+    // El documento ya está en disco: se suelta con su diario (que conserva lo que no se
+    // haya guardado, ver EditorTextoGUI.loadTab) y su historial
+    private static void released(EditorTab tab, Path file) {
+        if (tab.journal != null) {
+            tab.journal.close(false);
+            tab.journal = null;
+        }
+        // El .etx no guarda con qué codificación se leyó el fichero
+        tab.format = TextFormat.of(tab.doc);
+        tab.setDocument(null);
+        tab.snapshot = file;
+    }
+
+    static void deleteSnapshot(EditorTab tab) {
+        if (tab.snapshot != null) {
+            deleteQuietly(tab.snapshot);
+            tab.snapshot = null;
+        }
+    }
+
+    // Al salir: no quedan copias en el directorio temporal
+    void close() {
+        for (EditorTab tab : tabs) {
+            if (tab.spill != null)
+                tab.spill.cancel(true);
+            if (tab.follower != null)
+                tab.follower.stop();
+            deleteSnapshot(tab);
+        }
+        if (spillDirectory != null)
+            deleteQuietly(spillDirectory);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package MiEditorTexto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.undo.UndoableEdit;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// El total de memoria que lleva CoalescingUndoManager frente a sumar estimate() de todo el
+// historial, tras escribir, borrar, formatear, agrupar, deshacer y rehacer al azar, con
+// límites de ediciones y de memoria pequeños para que se olvide a menudo
+class CoalescingUndoManagerTest {
+
+    // Para ver el historial (edits es protected)
+    private static final class Manager extends CoalescingUndoManager {
+        long recount() {
+            long total = 0;
+            for (UndoableEdit edit : edits)
+                total += estimate(edit);
+            return total;
+        }
+    }
+
+    @Test
+    void runningTotalMatchesRecount() throws BadLocationException {
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            EditorDocument doc = new EditorDocument();
+            Manager undo = new Manager();
+            undo.setLimit(50);
+            undo.setMaxBytes(16 << 10);
+            doc.addUndoableEditListener(undo);
+            for (int step = 0; step < 2000; step++) {
+                edit(doc, undo, random);
+                String where = "(semilla " + seed + ", paso " + step + ")";
+                assertEquals(undo.recount(), undo.getEstimatedBytes(), where);
+            }
+            undo.discardAllEdits();
+            assertEquals(0, undo.getEstimatedBytes());
+        }
+    }
+
+    // Lo que cuesta un cambio de formato sigue a los párrafos y hojas que guarda, no a
+    // los caracteres: formatear un párrafo enorme es barato, miles de líneas no
+    @Test
+    void attributeChangesGrowWithTheParagraphsTheyTouch() throws BadLocationException {
+        SimpleAttributeSet bold = new SimpleAttributeSet();
+        StyleConstants.setBold(bold, true);
+        SimpleAttributeSet centered = new SimpleAttributeSet();
+        StyleConstants.setAlignment(centered, StyleConstants.ALIGN_CENTER);
+
+        EditorDocument doc = new EditorDocument();
+        doc.insertString(0, "x".repeat(1 << 20), null);
+        Manager undo = new Manager();
+        doc.addUndoableEditListener(undo);
+        doc.setCharacterAttributes(0, doc.getLength(), bold, false);
+        assertTrue(undo.getEstimatedBytes() < 1024, "un párrafo: " + undo.getEstimatedBytes());
+
+        long[] sizes = new long[2];
+        int[] lines = {100, 10000};
+        for (int i = 0; i < lines.length; i++) {
+            doc = new EditorDocument();
+            doc.insertString(0, "línea de texto\n".repeat(lines[i]), null);
+            undo = new Manager();
+            doc.addUndoableEditListener(undo);
+            doc.setCharacterAttributes(0, doc.getLength(), bold, false);
+            long characters = undo.getEstimatedBytes();
+            doc.setParagraphAttributes(0, doc.getLength(), centered, false);
+            long paragraphs = undo.getEstimatedBytes() - characters;
+            assertTrue(characters > lines[i] * 100L, lines[i] + " líneas en negrita: " + characters);
+            assertTrue(paragraphs > lines[i] * 50L, lines[i] + " líneas centradas: " + paragraphs);
+            sizes[i] = undo.getEstimatedBytes();
+
+            // Deshacer y rehacer no cambian lo que ocupa, y el total sigue cuadrando
+            undo.undo();
+            undo.undo();
+            undo.redo();
+            assertEquals(sizes[i], undo.getEstimatedBytes());
+            assertEquals(undo.recount(), undo.getEstimatedBytes());
+        }
+        assertTrue(sizes[1] > 90 * sizes[0], sizes[0] + " / " + sizes[1]);
+    }
+
+    private static void edit(EditorDocument doc, Manager undo, Random random) throws BadLocationException {
+        int length = doc.getLength();
+        int action = random.nextInt(12);
+        if (action < 4 || length == 0) {
+            // Casi siempre una tecla, para que TypingEdit vaya absorbiendo
+            String text = random.nextInt(5) == 0 ? "bloque de texto\n".repeat(1 + random.nextInt(20))
+                    : String.valueOf("ab c\n".charAt(random.nextInt(5)));
+            doc.insertString(random.nextInt(length + 1), text, null);
+        } else if (action < 6) {
+            int offset = random.nextInt(length);
+            doc.remove(offset, random.nextBoolean() ? 1 : 1 + random.nextInt(Math.min(length - offset, 200)));
+        } else if (action == 6) {
+            SimpleAttributeSet attrs = new SimpleAttributeSet();
+            StyleConstants.setItalic(attrs, random.nextBoolean());
+            int offset = random.nextInt(length);
+            doc.setCharacterAttributes(offset, random.nextInt(length - offset + 1), attrs, false);
+        } else if (action == 7) {
+            undo.beginGroup();
+            try {
+                doc.insertString(random.nextInt(length + 1), "grupo", null);
+                doc.remove(0, Math.min(3, doc.getLength()));
+            } finally {
+                undo.endGroup();
+            }
+        } else if (action < 10) {
+            if (undo.canUndo())
+                undo.undo();
+        } else if (undo.canRedo()) {
+            undo.redo();
+        }
+    }
+}
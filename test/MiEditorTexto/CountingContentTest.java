@@ -0,0 +1,67 @@
+package MiEditorTexto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.undo.UndoManager;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Los contadores incrementales de CountingContent frente a contarlo todo otra vez como
+// lo hacía updateStatus (split("\\s+") y una línea por salto de línea), tras cada
+// inserción, borrado, deshacer y rehacer al azar
+class CountingContentTest {
+
+    // Letras y todos los espacios en blanco que cuentan como separador
+    private static final char[] ALPHABET = {'a', 'b', 'ñ', 'z', ' ', ' ', '\t', '\n', '\n', '\r', '\f', (char) 11};
+
+    @Test
+    void randomEditsMatchFullRecount() throws BadLocationException {
+        for (long seed = 1; seed <= 20; seed++)
+            run(new EditorDocument(), seed);
+    }
+
+    @Test
+    void randomEditsMatchFullRecountOnPieceTable() throws BadLocationException {
+        for (long seed = 1; seed <= 20; seed++)
+            run(new EditorDocument(new PieceTableContent()), seed);
+    }
+
+    private static void run(EditorDocument doc, long seed) throws BadLocationException {
+        Random random = new Random(seed);
+        UndoManager undo = new UndoManager();
+        undo.setLimit(-1);
+        doc.addUndoableEditListener(undo);
+        for (int step = 0; step < 400; step++) {
+            int length = doc.getLength();
+            int action = random.nextInt(10);
+            if (action < 5 || length == 0) {
+                doc.insertString(random.nextInt(length + 1), text(random), null);
+            } else if (action < 8) {
+                int offset = random.nextInt(length);
+                doc.remove(offset, 1 + random.nextInt(Math.min(length - offset, 20)));
+            } else if (action == 8 && undo.canUndo()) {
+                undo.undo();
+            } else if (undo.canRedo()) {
+                undo.redo();
+            }
+            check(doc, "(semilla " + seed + ", paso " + step + ")");
+        }
+    }
+
+    private static String text(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1 + random.nextInt(random.nextInt(8) == 0 ? 200 : 6); i > 0; i--)
+            sb.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        return sb.toString();
+    }
+
+    private static void check(EditorDocument doc, String where) throws BadLocationException {
+        String text = doc.getText(0, doc.getLength());
+        String trimmed = text.trim();
+        assertEquals(text.length(), doc.getCharCount(), "caracteres " + where);
+        assertEquals(trimmed.isEmpty() ? 0 : trimmed.split("\\s+").length, doc.getWordCount(), "palabras " + where);
+        assertEquals(text.split("\n", -1).length, doc.getLineCount(), "líneas " + where);
+    }
+}
@@ -0,0 +1,117 @@
+package MiEditorTexto;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Abrir y guardar sin tocar nada tiene que dejar el fichero idéntico byte a byte:
+// charset, BOM y final de línea salen como entraron (ver TextFormat). La excepción
+// documentada son los finales de línea mezclados: todos pasan a ser el más usado
+class DocumentRoundTripTest {
+
+    // Lo que cabe en todos los charsets de la prueba (windows-1252 incluido)
+    private static final String[] LINES = {"año, café y pingüino", "", "€ — «comillas» ½", "última"};
+    private static final String[] SEPARATORS = {"\n", "\r\n", "\r"};
+    // Tamaño de bloque de DocumentLoader y DocumentSaver
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unchangedFilesSaveIdentical() throws Exception {
+        Object[][] formats = {
+                {StandardCharsets.UTF_8, false},
+                {StandardCharsets.UTF_8, true},
+                {StandardCharsets.UTF_16LE, true},
+                {StandardCharsets.UTF_16BE, true},
+                {Charset.forName("windows-1252"), false},
+        };
+        for (Object[] format : formats) {
+            Charset charset = (Charset) format[0];
+            boolean bom = (Boolean) format[1];
+            for (String separator : SEPARATORS) {
+                for (boolean finalNewline : new boolean[]{false, true}) {
+                    String text = String.join(separator, LINES) + (finalNewline ? separator : "");
+                    byte[] bytes = encode(text, charset, bom);
+                    String where = charset + (bom ? " BOM " : " ") + escape(separator)
+                            + (finalNewline ? " con salto final" : "");
+                    assertArrayEquals(bytes, roundTrip(bytes), where);
+                }
+            }
+        }
+    }
+
+    // El "\r\n" queda partido entre el primer bloque de lectura y el segundo
+    @Test
+    void crlfSplitAcrossBlocks() throws Exception {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < CHUNK_SIZE - 1)
+            text.append("linea de relleno\r\n");
+        text.setLength(CHUNK_SIZE - 1);
+        text.append("\r\nsegundo bloque\r\n".repeat(100));
+        byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+        assertEquals('\r', bytes[CHUNK_SIZE - 1]);
+        assertEquals('\n', bytes[CHUNK_SIZE]);
+
+        EditorDocument doc = load(write("bloques.txt", bytes));
+        assertEquals("\r\n", TextFormat.of(doc).lineSeparator);
+        assertFalse(doc.getText(0, doc.getLength()).contains("\r"));
+        assertArrayEquals(bytes, save(doc));
+    }
+
+    // Excepción documentada (DocumentLoader.LineNormalizer): con finales mezclados se
+    // guardan todos como el más usado
+    @Test
+    void mixedLineEndingsBecomeTheMostUsed() throws Exception {
+        assertArrayEquals(ascii("a\r\nb\r\nc\r\nd"), roundTrip(ascii("a\r\nb\r\nc\nd")));
+        assertArrayEquals(ascii("a\nb\nc\nd\n"), roundTrip(ascii("a\nb\r\nc\nd\r")));
+        assertArrayEquals(ascii("a\rb\rc\rd"), roundTrip(ascii("a\rb\rc\r\nd")));
+    }
+
+    private byte[] roundTrip(byte[] bytes) throws Exception {
+        return save(load(write("entrada.txt", bytes)));
+    }
+
+    private File write(String name, byte[] bytes) throws Exception {
+        File file = dir.resolve(name).toFile();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private static EditorDocument load(File file) throws Exception {
+        return new DocumentLoader(file, new EditorTextoGUI.ProgressLabel()).doInBackground();
+    }
+
+    private byte[] save(EditorDocument doc) throws Exception {
+        File file = dir.resolve("salida.txt").toFile();
+        new DocumentSaver(doc, file, new EditorTextoGUI.ProgressLabel()).doInBackground();
+        return Files.readAllBytes(file.toPath());
+    }
+
+    private static byte[] encode(String text, Charset charset, boolean bom) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (bom)
+            out.write("\uFEFF".getBytes(charset));
+        out.write(text.getBytes(charset));
+        return out.toByteArray();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String escape(String separator) {
+        return separator.replace("\r", "CR").replace("\n", "LF");
+    }
+}
@@ -0,0 +1,214 @@
+package MiEditorTexto;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.undo.UndoManager;
+import java.awt.Color;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Historias de edición al azar (texto, atributos, párrafos enteros, deshacer y rehacer)
+// con el diario abierto; se "cuelga" sin cerrarlo, a veces con basura al final, y
+// replay() sobre el fichero en disco tiene que dejar el mismo documento. Después se
+// sigue escribiendo con resume() y se vuelve a comprobar
+class EditJournalTest {
+
+    private static final String ORIGINAL = "hola mundo\nsegunda línea\ntercera\n";
+
+    // Lo que queda de una trama a medio escribir cuando se corta la luz
+    private static final byte[] TORN = {0, 0, 1, 0, 5, 6, 7};
+
+    @TempDir
+    Path dir;
+
+    private final UndoManager undo = new UndoManager();
+
+    @Test
+    void randomHistoriesSurviveCrash() throws Exception {
+        File base = dir.resolve("doc.txt").toFile();
+        Files.writeString(base.toPath(), ORIGINAL);
+        for (long seed = 1; seed <= 30; seed++) {
+            Random random = new Random(seed);
+            String where = "(semilla " + seed + ")";
+
+            EditorDocument doc = load(base);
+            EditJournal journal = EditJournal.start(doc, base);
+            int steps = 300 + random.nextInt(300);
+            for (int step = 0; step < steps; step++) {
+                edit(doc, random);
+                if (step == steps / 2 && seed % 3 == 0) {
+                    journal.flush();
+                    journal.checkpoint();
+                }
+                if (random.nextInt(40) == 0)
+                    journal.flush();
+            }
+            journal.flush();
+            // Cuelgue: sin close() y, la mitad de las veces, con la cola rota
+            if (seed % 2 == 0)
+                Files.write(EditJournal.pathFor(base), TORN, StandardOpenOption.APPEND);
+            assertTrue(EditJournal.hasRecovery(base), "sin recuperación " + where);
+
+            EditorDocument recovered = load(base);
+            EditJournal.replay(recovered, base);
+            assertSame(doc, recovered, where);
+
+            // Se sigue trabajando sobre lo recuperado y se vuelve a colgar
+            EditJournal resumed = EditJournal.resume(recovered, base);
+            for (int step = 0; step < 50; step++)
+                edit(recovered, random);
+            resumed.flush();
+            EditorDocument again = load(base);
+            EditJournal.replay(again, base);
+            assertSame(recovered, again, "tras resume " + where);
+
+            resumed.close(true);
+            journal.close(true);
+        }
+    }
+
+    @Test
+    void savingDropsRecoveryUntilNextEdit() throws Exception {
+        File base = dir.resolve("doc.txt").toFile();
+        Files.writeString(base.toPath(), ORIGINAL);
+        EditorDocument doc = load(base);
+        EditJournal journal = EditJournal.start(doc, base);
+        doc.insertString(0, "xyz", null);
+        journal.flush();
+        Files.writeString(base.toPath(), doc.getText(0, doc.getLength()));
+        journal.saved(base, true);
+        assertFalse(EditJournal.hasRecovery(base), "recuperación de lo ya guardado");
+
+        doc.insertString(0, "más", null);
+        journal.flush();
+        assertTrue(EditJournal.hasRecovery(base), "sin recuperación tras editar");
+        EditorDocument recovered = load(base);
+        EditJournal.replay(recovered, base);
+        assertSame(doc, recovered, "tras guardar");
+
+        // Con cambios mientras se guardaba el diario se conserva entero
+        journal.saved(base, false);
+        recovered = load(base);
+        EditJournal.replay(recovered, base);
+        assertSame(doc, recovered, "guardado sin estar al día");
+        journal.close(true);
+    }
+
+    // Formato que llega después de que el guardado leyera el documento: ni el fichero ni
+    // el diario pueden quedarse sin él (como hace la GUI con DocumentSaver.getVersion)
+    @Test
+    void formatDuringSaveIsRecovered() throws Exception {
+        File base = dir.resolve("doc.txt").toFile();
+        Files.writeString(base.toPath(), ORIGINAL);
+        EditorDocument doc = load(base);
+        EditJournal journal = EditJournal.start(doc, base);
+        doc.insertString(0, "xyz", null);
+        journal.flush();
+
+        ChunkReader reader = new ChunkReader(doc);
+        Segment text = new Segment();
+        reader.getText(0, reader.getLength(), text);
+        Files.writeString(base.toPath(), text.toString());
+        SimpleAttributeSet bold = new SimpleAttributeSet();
+        StyleConstants.setBold(bold, true);
+        doc.setCharacterAttributes(2, 6, bold, false);
+        journal.saved(base, reader.getVersion() == doc.getVersion());
+        journal.flush();
+
+        assertTrue(EditJournal.hasRecovery(base), "sin recuperación del formato");
+        EditorDocument recovered = load(base);
+        EditJournal.replay(recovered, base);
+        assertSame(doc, recovered, "formato durante el guardado");
+        journal.close(true);
+    }
+
+    private EditorDocument load(File file) throws Exception {
+        undo.discardAllEdits();
+        EditorDocument doc = new EditorDocument();
+        doc.insertString(0, Files.readString(file.toPath()), null);
+        doc.addUndoableEditListener(undo);
+        return doc;
+    }
+
+    private void edit(EditorDocument doc, Random random) throws Exception {
+        int action = random.nextInt(12);
+        if (action == 10) {
+            if (undo.canUndo())
+                undo.undo();
+            return;
+        }
+        if (action == 11) {
+            if (undo.canRedo())
+                undo.redo();
+            return;
+        }
+        int length = doc.getLength();
+        int start = random.nextInt(length + 1);
+        int end = Math.min(length, start + random.nextInt(20));
+        SimpleAttributeSet attrs = new SimpleAttributeSet();
+        if (random.nextBoolean())
+            StyleConstants.setBold(attrs, random.nextBoolean());
+        if (random.nextBoolean())
+            StyleConstants.setForeground(attrs, new Color(random.nextInt(0xffffff)));
+        if (random.nextBoolean())
+            StyleConstants.setFontSize(attrs, 10 + random.nextInt(10));
+        switch (action) {
+            case 0, 1, 2 -> doc.insertString(start, random.nextBoolean() ? "ab\ncd" : "texto ñ 😀",
+                    random.nextBoolean() ? attrs : null);
+            case 3, 4 -> {
+                if (end > start)
+                    doc.remove(start, end - start);
+            }
+            case 5, 6 -> doc.setCharacterAttributes(start, end - start, attrs, random.nextBoolean());
+            case 7 -> {
+                SimpleAttributeSet paragraph = new SimpleAttributeSet();
+                StyleConstants.setAlignment(paragraph, random.nextInt(3));
+                StyleConstants.setLeftIndent(paragraph, random.nextInt(30));
+                doc.setParagraphAttributes(start, end - start, paragraph, random.nextBoolean());
+            }
+            case 8 -> {
+                RichText text = new RichText();
+                text.append("reemplazo\nlinea\n", attrs, doc.getParagraphElement(start).getAttributes());
+                Element root = doc.getDefaultRootElement();
+                int first = root.getElementIndex(start);
+                doc.replaceParagraphs(first, Math.min(root.getElementCount() - 1, first + random.nextInt(2)), text);
+            }
+            default -> doc.replace(start, end - start, "R" + random.nextInt(100), attrs);
+        }
+    }
+
+    private static void assertSame(EditorDocument expected, EditorDocument actual, String where) throws Exception {
+        assertEquals(expected.getText(0, expected.getLength()), actual.getText(0, actual.getLength()),
+                "texto " + where);
+        for (int i = 0; i <= expected.getLength(); i++) {
+            AttributeSet a = strip(expected.getCharacterElement(i).getAttributes());
+            AttributeSet b = strip(actual.getCharacterElement(i).getAttributes());
+            assertTrue(a.isEqual(b), "atributos en " + i + " " + where + ": " + a + " / " + b);
+            a = strip(expected.getParagraphElement(i).getAttributes());
+            b = strip(actual.getParagraphElement(i).getAttributes());
+            assertTrue(a.isEqual(b), "párrafo en " + i + " " + where + ": " + a + " / " + b);
+        }
+    }
+
+    // Sin lo que pone el propio documento (nombre del elemento y estilo del que hereda)
+    private static AttributeSet strip(AttributeSet attrs) {
+        SimpleAttributeSet copy = new SimpleAttributeSet(attrs);
+        copy.removeAttribute(StyleConstants.ResolveAttribute);
+        copy.removeAttribute(AbstractDocument.ElementNameAttribute);
+        return copy;
+    }
+}
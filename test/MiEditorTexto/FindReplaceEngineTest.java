@@ -0,0 +1,91 @@
+package MiEditorTexto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Reemplazos masivos (prepare en segundo plano y replaceAll en el EDT) cuando el usuario
+// da formato entre medias: los bloques preparados llevan los atributos de antes y no
+// deben volver a ponerse encima de los nuevos
+class FindReplaceEngineTest {
+
+    private static final int PARAGRAPHS = 1000; // Muy por encima del umbral de reemplazo masivo
+
+    @Test
+    void formatBetweenPrepareAndReplaceAllIsKept() throws Exception {
+        EditorDocument doc = document();
+        FindReplaceEngine.Matches matches = find(doc);
+        assertTrue(FindReplaceEngine.prepare(doc, matches));
+
+        SimpleAttributeSet bold = new SimpleAttributeSet();
+        StyleConstants.setBold(bold, true);
+        doc.setCharacterAttributes(0, doc.getLength(), bold, false);
+        SimpleAttributeSet centered = new SimpleAttributeSet();
+        StyleConstants.setAlignment(centered, StyleConstants.ALIGN_CENTER);
+        doc.setParagraphAttributes(0, doc.getLength(), centered, false);
+        assertEquals(matches.editCount(), doc.getEditCount()); // El texto no cambió
+
+        FindReplaceEngine.replaceAll(doc, matches);
+        assertEquals("uno tres\n".repeat(PARAGRAPHS), doc.getText(0, doc.getLength()));
+        assertFormatted(doc, true, StyleConstants.ALIGN_CENTER);
+    }
+
+    @Test
+    void preparedBlocksKeepExistingFormat() throws Exception {
+        EditorDocument doc = document();
+        SimpleAttributeSet bold = new SimpleAttributeSet();
+        StyleConstants.setBold(bold, true);
+        doc.setCharacterAttributes(0, doc.getLength(), bold, false);
+        FindReplaceEngine.Matches matches = find(doc);
+        assertTrue(FindReplaceEngine.prepare(doc, matches));
+
+        FindReplaceEngine.replaceAll(doc, matches);
+        assertEquals("uno tres\n".repeat(PARAGRAPHS), doc.getText(0, doc.getLength()));
+        assertFormatted(doc, true, StyleConstants.ALIGN_LEFT);
+    }
+
+    @Test
+    void undoingFormatChangesTheVersion() throws Exception {
+        EditorDocument doc = document();
+        CoalescingUndoManager undo = new CoalescingUndoManager();
+        doc.addUndoableEditListener(undo);
+        SimpleAttributeSet italic = new SimpleAttributeSet();
+        StyleConstants.setItalic(italic, true);
+        doc.setCharacterAttributes(0, 10, italic, false);
+        int version = doc.getVersion();
+        int editCount = doc.getEditCount();
+        undo.undo();
+        assertTrue(doc.getVersion() != version);
+        assertEquals(editCount, doc.getEditCount());
+    }
+
+    private static EditorDocument document() throws BadLocationException {
+        EditorDocument doc = new EditorDocument();
+        doc.insertString(0, "uno dos\n".repeat(PARAGRAPHS), null);
+        return doc;
+    }
+
+    private static FindReplaceEngine.Matches find(EditorDocument doc) throws Exception {
+        FindReplaceEngine.Matches matches = FindReplaceEngine.findAll(doc, "dos", "tres", false,
+                percent -> {
+                }, () -> false);
+        assertEquals(PARAGRAPHS, matches.count());
+        return matches;
+    }
+
+    private static void assertFormatted(EditorDocument doc, boolean bold, int alignment) {
+        Element root = doc.getDefaultRootElement();
+        for (int p = 0; p < PARAGRAPHS; p++) {
+            Element paragraph = root.getElement(p);
+            assertEquals(alignment, StyleConstants.getAlignment(paragraph.getAttributes()), "párrafo " + p);
+            for (int i = 0; i < paragraph.getElementCount(); i++)
+                assertEquals(bold, StyleConstants.isBold(paragraph.getElement(i).getAttributes()), "párrafo " + p);
+        }
+    }
+}
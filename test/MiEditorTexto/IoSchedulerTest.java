@@ -0,0 +1,183 @@
+package MiEditorTexto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Carriles por fichero, guardados que se juntan y tiempos máximos, con tareas que solo
+// esperan y apuntan lo que pasa (el planificador no sabe qué hacen)
+class IoSchedulerTest {
+
+    private static final long WAIT_S = 10;
+
+    private static final File FILE = new File("carril.txt");
+
+    // Un guardado que llega mientras otro del mismo documento espera no se encola: el
+    // que espera lee el documento al empezar y escribe lo último
+    @Test
+    void queuedSavesOfTheSameDocumentCollapse() throws Exception {
+        IoScheduler scheduler = new IoScheduler(2);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.schedule("Ocupa", FILE, null, 0, task(() -> {
+            release.await();
+            return null;
+        }));
+
+        Object doc = new Object();
+        AtomicReference<String> text = new AtomicReference<>("v1");
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch saved = new CountDownLatch(1);
+        assertTrue(scheduler.schedule("Guardar", FILE, doc, 0, task(() -> {
+            written.add(text.get());
+            saved.countDown();
+            return null;
+        })));
+        for (int i = 2; i <= 5; i++) {
+            text.set("v" + i);
+            assertFalse(scheduler.schedule("Guardar", FILE, doc, 0, task(() -> {
+                written.add("repetido");
+                return null;
+            })), "guardado " + i + " encolado");
+        }
+        // Otro documento (u otro fichero) sí se encola
+        CountDownLatch other = new CountDownLatch(1);
+        assertTrue(scheduler.schedule("Guardar otro", FILE, new Object(), 0, task(() -> {
+            other.countDown();
+            return null;
+        })));
+
+        release.countDown();
+        assertTrue(saved.await(WAIT_S, TimeUnit.SECONDS));
+        assertTrue(other.await(WAIT_S, TimeUnit.SECONDS));
+        assertEquals(List.of("v5"), written);
+
+        // Una vez empezado ya no guarda lo que llegue: el siguiente se encola
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        assertTrue(scheduler.schedule("Guardar", FILE, doc, 0, task(() -> {
+            started.countDown();
+            finish.await();
+            return null;
+        })));
+        assertTrue(started.await(WAIT_S, TimeUnit.SECONDS));
+        CountDownLatch again = new CountDownLatch(1);
+        assertTrue(scheduler.schedule("Guardar", FILE, doc, 0, task(() -> {
+            again.countDown();
+            return null;
+        })));
+        finish.countDown();
+        assertTrue(again.await(WAIT_S, TimeUnit.SECONDS));
+    }
+
+    // En un carril, de una en una y en orden; en carriles distintos, a la vez
+    @Test
+    void laneRunsOneAtATimeInOrder() throws Exception {
+        IoScheduler scheduler = new IoScheduler(4);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        int tasks = 40;
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            int n = i;
+            scheduler.schedule("Tarea " + n, FILE, null, 0, task(() -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(2);
+                order.add(n);
+                active.decrementAndGet();
+                done.countDown();
+                return null;
+            }));
+        }
+        assertTrue(done.await(WAIT_S, TimeUnit.SECONDS));
+        assertEquals(1, maxActive.get());
+        for (int i = 0; i < tasks; i++)
+            assertEquals(i, order.get(i));
+
+        // Dos ficheros: cada tarea espera a la otra, así que solo acaban si van a la vez
+        CountDownLatch both = new CountDownLatch(2);
+        AtomicInteger met = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(2);
+        for (String name : new String[]{"a.txt", "b.txt"}) {
+            scheduler.schedule(name, new File(name), null, 0, task(() -> {
+                both.countDown();
+                if (both.await(WAIT_S, TimeUnit.SECONDS))
+                    met.incrementAndGet();
+                finished.countDown();
+                return null;
+            }));
+        }
+        assertTrue(finished.await(2 * WAIT_S, TimeUnit.SECONDS));
+        assertEquals(2, met.get());
+    }
+
+    // Pasado el tiempo máximo la tarea se cancela (interrumpida) y el carril sigue
+    @Test
+    void timeoutCancelsTheTaskAndFreesTheLane() throws Exception {
+        IoScheduler scheduler = new IoScheduler(1);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        CountDownLatch reported = new CountDownLatch(1);
+        scheduler.setListener(new IoScheduler.Listener() {
+            @Override
+            public void queueChanged(int waiting, int running) {
+            }
+
+            @Override
+            public void taskFinished(String label, long waitNanos, long runNanos, boolean timeout) {
+                if (label.equals("Lenta")) {
+                    timedOut.set(timeout);
+                    reported.countDown();
+                }
+            }
+        });
+
+        AtomicBoolean interrupted = new AtomicBoolean();
+        SwingWorker<Void, Void> slow = task(() -> {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(60));
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw e;
+            }
+            return null;
+        });
+        scheduler.schedule("Lenta", FILE, null, 200, slow);
+        CountDownLatch next = new CountDownLatch(1);
+        AtomicBoolean nextInterrupted = new AtomicBoolean();
+        scheduler.schedule("Siguiente", FILE, null, 0, task(() -> {
+            nextInterrupted.set(Thread.currentThread().isInterrupted());
+            next.countDown();
+            return null;
+        }));
+
+        assertTrue(next.await(WAIT_S, TimeUnit.SECONDS), "el carril sigue ocupado");
+        assertFalse(nextInterrupted.get(), "la interrupción pasó a la siguiente");
+        assertTrue(slow.isCancelled());
+        assertTrue(interrupted.get());
+        assertTrue(reported.await(WAIT_S, TimeUnit.SECONDS));
+        assertTrue(timedOut.get());
+    }
+
+    private static SwingWorker<Void, Void> task(Callable<Void> body) {
+        return new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                return body.call();
+            }
+        };
+    }
+}
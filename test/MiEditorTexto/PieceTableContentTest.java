@@ -0,0 +1,131 @@
+package MiEditorTexto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.GapContent;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoableEdit;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// PieceTableContent frente a GapContent con las mismas operaciones al azar: inserciones
+// (también de tramos del buffer original), borrados, deshacer/rehacer y posiciones.
+// Después de cada paso tienen que tener el mismo texto, devolver lo mismo en getChars
+// (con y sin lectura parcial) y tener todas las posiciones en el mismo sitio.
+class PieceTableContentTest {
+
+    private static final String ORIGINAL = "Primera línea del fichero original\nsegunda línea\n\ntercera, más larga que las demás\n";
+
+    @Test
+    void randomOperationsMatchGapContent() throws BadLocationException {
+        for (long seed = 1; seed <= 30; seed++)
+            run(seed);
+    }
+
+    // Las dos versiones de cada edición, para deshacerlas y rehacerlas juntas
+    private static final class Edit {
+        final UndoableEdit gap;
+        final UndoableEdit pieces;
+
+        Edit(UndoableEdit gap, UndoableEdit pieces) {
+            this.gap = gap;
+            this.pieces = pieces;
+        }
+    }
+
+    private static void run(long seed) throws BadLocationException {
+        Random random = new Random(seed);
+        GapContent gap = new GapContent();
+        PieceTableContent pieces = new PieceTableContent(CharBuffer.wrap(ORIGINAL));
+        List<Position[]> positions = new ArrayList<>();
+        Deque<Edit> done = new ArrayDeque<>();
+        Deque<Edit> undone = new ArrayDeque<>();
+
+        for (int step = 0; step < 500; step++) {
+            String where = "(semilla " + seed + ", paso " + step + ")";
+            int length = gap.length() - 1; // Sin el salto de línea implícito
+            int action = random.nextInt(12);
+            if (action < 4 || length == 0) {
+                int offset = random.nextInt(length + 1);
+                String text = text(random);
+                done.push(new Edit(gap.insertString(offset, text), pieces.insertString(offset, text)));
+                undone.clear();
+            } else if (action < 5) {
+                // Un tramo del original: en GapContent, el mismo texto copiado
+                int offset = random.nextInt(length + 1);
+                int start = random.nextInt(ORIGINAL.length());
+                int len = random.nextInt(ORIGINAL.length() - start + 1);
+                done.push(new Edit(gap.insertString(offset, ORIGINAL.substring(start, start + len)),
+                        pieces.insertOriginal(offset, start, len)));
+                undone.clear();
+            } else if (action < 8) {
+                int offset = random.nextInt(length);
+                int len = 1 + random.nextInt(Math.min(length - offset, 30));
+                done.push(new Edit(gap.remove(offset, len), pieces.remove(offset, len)));
+                undone.clear();
+            } else if (action < 9) {
+                int offset = random.nextInt(gap.length());
+                positions.add(new Position[]{gap.createPosition(offset), pieces.createPosition(offset)});
+            } else if (action < 11 && !done.isEmpty()) {
+                Edit edit = done.pop();
+                edit.gap.undo();
+                edit.pieces.undo();
+                undone.push(edit);
+            } else if (!undone.isEmpty()) {
+                Edit edit = undone.pop();
+                edit.gap.redo();
+                edit.pieces.redo();
+                done.push(edit);
+            }
+            check(gap, pieces, positions, random, where);
+        }
+    }
+
+    private static String text(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1 + random.nextInt(random.nextInt(10) == 0 ? 300 : 8); i > 0; i--)
+            sb.append("abc \nñé".charAt(random.nextInt(7)));
+        return sb.toString();
+    }
+
+    private static void check(GapContent gap, PieceTableContent pieces, List<Position[]> positions, Random random,
+                              String where) throws BadLocationException {
+        assertEquals(gap.length(), pieces.length(), "longitud " + where);
+        assertEquals(gap.getString(0, gap.length()), pieces.getString(0, pieces.length()), "texto " + where);
+        for (int i = 0; i < 5; i++) {
+            int offset = random.nextInt(gap.length());
+            int len = random.nextInt(gap.length() - offset + 1);
+            String expected = gap.getString(offset, len);
+            assertEquals(expected, chars(pieces, offset, len, false), "getChars " + where);
+            assertEquals(expected, chars(pieces, offset, len, true), "getChars parcial " + where);
+        }
+        for (int i = 0; i < positions.size(); i++) {
+            Position[] p = positions.get(i);
+            assertEquals(p[0].getOffset(), p[1].getOffset(), "posición " + i + " " + where);
+        }
+    }
+
+    // Lo que devuelve getChars, juntando los trozos si la lectura es parcial
+    private static String chars(AbstractDocument.Content content, int offset, int len, boolean partial)
+            throws BadLocationException {
+        Segment segment = new Segment();
+        segment.setPartialReturn(partial);
+        StringBuilder sb = new StringBuilder();
+        do {
+            content.getChars(offset, len, segment);
+            sb.append(segment.array, segment.offset, segment.count);
+            offset += segment.count;
+            len -= segment.count;
+        } while (len > 0);
+        return sb.toString();
+    }
+}